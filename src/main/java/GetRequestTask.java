@@ -25,7 +25,6 @@ import java.net.InetAddress;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
 
 import javax.swing.SwingUtilities;
@@ -45,7 +44,7 @@ import utilities.NullArgumentException;
 
 import libmib.MibObjectType;
 import libmib.mibtree.MibTreeNode;
-import libmib.mibtree.MibTreeNode.NodeSearchOption;
+import libmib.mibtree.OidNameResolver;
 
 /**
  *  This class retrieves OID values using SNMP GetNextRequests for a given host.  It executes in 
@@ -73,9 +72,6 @@ public class GetRequestTask extends SwingWorker<String, GetRequestResult>
     private final String oidInputString;
     private final MibTreeNode root;
     
-    private static final String STD_PREFIX = "iso.org.dod.internet.mgmt.mib-2.";
-    private static final String ENT_PREFIX = "iso.org.dod.internet.private.enterprises.";
-    
     /**
      * Initializes the get request task with all necessary values.
      * 
@@ -201,68 +197,73 @@ public class GetRequestTask extends SwingWorker<String, GetRequestResult>
             SnmpObject snmpValue;
             SnmpSequence pair;
 
-            String nextOid = baseOid;
+            SnmpObjectIdentifier baseObjectId = new SnmpObjectIdentifier(baseOid);
+            OidNameResolver resolver = new OidNameResolver(root);
+            SnmpObjectIdentifier requestedOid = baseObjectId;
 
-            // Retrieve all values until the next OID does not start with the base OID (walk the tree)
+            // Retrieve all values until the next OID is outside the base OID's subtree (walk the tree)
             // or the thread is interrupted by the user pressing the stop button.
-            while (nextOid.startsWith(baseOid))
+            while (true)
             {
                 // Instead of checking at the while condition like normal Threads,
                 // check for an interrupt here so that an exception can be thrown.
                 if (Thread.interrupted()) 
                     throw new InterruptedException();
 
-                newVarBinds = snmpInterface.getNextMIBEntry(nextOid);
+                newVarBinds = snmpInterface.getNextMIBEntry(requestedOid.toString());
  
                 // Extract OID information from the VarBindList.
                 pair = (SnmpSequence)newVarBinds.getSNMPObjectAt(0);
                 
                 receivedOid = (SnmpObjectIdentifier)pair.getSNMPObjectAt(0);
-                nextOid = receivedOid.toString();
 
-                // This check stops the last OID, which will not start 
-                // with with the base OID, from being displayed.
-                if (nextOid.startsWith(baseOid)) 
-                {
-                    // NOTE: the remaining interactions with any Swing components in this thread are all
-                    // with data models, and none of them are updated.  From what I've read,
-                    // the single thread rule applies to UPDATING Swing VISUAL components.
-                    
-                    MibTreeNode node = root.getNodeByOid(nextOid, NodeSearchOption.MatchNearestPath);
-                    
-                    String displayOid = nextOid;
-                    
-                    // If the OID or the nearest OID was found in the tree, resolve and format the OID for display.
-                    if (node != null)
-                        displayOid = formatDisplayOid(node, nextOid);
+                // This check stops the last OID, which is outside the base OID's subtree, from 
+                // being displayed. An OID that doesn't advance, as SNMPv2 agents return at the 
+                // end of their MIB view, also ends the walk.
+                if (!baseObjectId.isPrefixOf(receivedOid) || receivedOid.compareTo(requestedOid) <= 0)
+                    break;
+
+                requestedOid = receivedOid;
+                String nextOid = receivedOid.toString();
 
-                    // Extract the returned value from the VarBindList and convert it to a String.
-                    snmpValue = pair.getSNMPObjectAt(1);
-                    String snmpValueString = snmpValue.toString();                     
-                    
-                    // There is a potential problem here because the closest node is returned if the exact
-                    // match is not found.  However, it seems inefficient to do another search with the
-                    // option to return the exact node.
-                    if (node != null && (snmpValue instanceof SnmpInteger) && (node.getUserObject() instanceof MibObjectType))
+                // NOTE: the remaining interactions with any Swing components in this thread are all
+                // with data models, and none of them are updated.  From what I've read,
+                // the single thread rule applies to UPDATING Swing VISUAL components.
+                
+                MibTreeNode node = resolver.findNode(receivedOid);
+                
+                String displayOid = nextOid;
+                
+                // If the OID or the nearest OID was found in the tree, resolve and format the OID for display.
+                if (node != null)
+                    displayOid = resolver.getDisplayOid(node, receivedOid);
+
+                // Extract the returned value from the VarBindList and convert it to a String.
+                snmpValue = pair.getSNMPObjectAt(1);
+                String snmpValueString = snmpValue.toString();                     
+                
+                // There is a potential problem here because the closest node is returned if the exact
+                // match is not found.  However, it seems inefficient to do another search with the
+                // option to return the exact node.
+                if (node != null && (snmpValue instanceof SnmpInteger) && (node.getUserObject() instanceof MibObjectType))
+                {
+                    MibObjectType mibObject = (MibObjectType)node.getUserObject();
+                    if (mibObject.hasNameValuePairs())
                     {
-                        MibObjectType mibObject = (MibObjectType)node.getUserObject();
-                        if (mibObject.hasNameValuePairs())
-                        {
-                            int value = ((BigInteger)snmpValue.getValue()).intValue();
-                            String name = mibObject.getSyntax().findValueName(value);
-                            
-                            // Name will be empty if either the value wasn't found or for some reason the name was "".
-                            // Either way, the number is more informative than an empty String in this case.
-                            if (!name.equals(""))
-                                snmpValueString = name; 
-                        }
+                        int value = ((BigInteger)snmpValue.getValue()).intValue();
+                        String name = mibObject.getSyntax().findValueName(value);
+                        
+                        // Name will be empty if either the value wasn't found or for some reason the name was "".
+                        // Either way, the number is more informative than an empty String in this case.
+                        if (!name.equals(""))
+                            snmpValueString = name; 
                     }
-
-                    GetRequestResult result = new GetRequestResult(displayOid, nextOid, snmpValueString);
-                    this.publish(result);
-                    //this.fireResultReceivedEvent(result);
                 }
 
+                GetRequestResult result = new GetRequestResult(displayOid, nextOid, snmpValueString);
+                this.publish(result);
+                //this.fireResultReceivedEvent(result);
+
                 // Attempt to slow this sucker down a bit so it doesn't swamp the agent device
                 // and so requests are more easily cancellable.  Also, a long running request
                 // tends to freeze eventually. This helps alleviate things.
@@ -302,35 +303,6 @@ public class GetRequestTask extends SwingWorker<String, GetRequestResult>
     }
     
     
-    /**
-     * Replaces a portion of a numerical oid with its equivalent named OID as found in a 
-     * MibTree and trims the beginning path.  For example: 1.3.6.1.2.1.1.1.0 will be 
-     * changed to system.sysDescr.0
-     * 
-     * @return a resolved and formatted display OID String
-     */
-    private static String formatDisplayOid(MibTreeNode node, String oidString)
-    {
-        // Get the full name and numeral paths of the node.
-        Entry<String, String> paths = node.getOidPaths(); 
-        String oidNumeralPath = paths.getKey();
-        String oidNamePath = paths.getValue();
-
-        if (oidString.startsWith(oidNumeralPath)) // make sure the OID numeral pattern isn't matched elsewhere in a really long OID
-        {
-            oidString = oidString.replaceFirst(oidNumeralPath, oidNamePath);
-
-            // This is a bit of a hack since I'm trying to replicate the way GetIf displays
-            // OID names during a GET. All it does is chop off the beginning parts of the 
-            // OID paths to improve display.
-            if (oidString.contains(STD_PREFIX))
-                oidString = oidString.substring(oidString.indexOf(STD_PREFIX) + STD_PREFIX.length());
-            else if (oidString.contains(ENT_PREFIX))
-                oidString = oidString.substring(oidString.indexOf(ENT_PREFIX) + ENT_PREFIX.length());
-        }
-        
-        return oidString;
-    }
     
     
 
@@ -26,6 +26,7 @@ import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
+import java.io.IOException;
 import java.util.Enumeration;
 
 import javax.swing.AbstractAction;
@@ -44,7 +45,9 @@ import javax.swing.UIManager;
 import javax.swing.filechooser.FileFilter;
 import javax.swing.plaf.FontUIResource;
 
+import libmib.MibDescriptionStore;
 import libmib.format.InvalidMibFormatException;
+import libmib.mibtree.MibCache;
 import libmib.mibtree.TreeBuilderCreationException;
 import libmib.mibtree.MibTreeBuilder;
 import libmib.mibtree.MibTreeBuilderFactory;
@@ -72,6 +75,8 @@ import utilities.IOUtilities;
  */
 public class MIBNavigator 
 {
+    private static final String MIB_CACHE_FILENAME = "mibcache.bin";
+    
     private UserSettings appSettings;   // Saves and loads application state
     private MibBrowser browser;         // Main graphical component
    
@@ -353,6 +358,25 @@ public class MIBNavigator
             // ***Configure MIB Compiler***
         	MibTreeBuilderFactory mibTreeFactory = new MibTreeBuilderFactory();
         	final MibTreeBuilder treeBuilder = mibTreeFactory.createTreeBuilder(settings.MibFileFormat.getValue());
+        	
+        	// Keep descriptions in a mapped file until they are displayed.
+        	MibDescriptionStore descriptionStore = null;
+        	try
+        	{
+        		descriptionStore = MibDescriptionStore.createTemporary();
+        	}
+        	catch (IOException e)
+        	{
+        		// NOTE: the descriptions will simply stay in memory.
+        	}
+        	treeBuilder.setDescriptionStore(descriptionStore);
+        	
+        	// Load the previously compiled MIBs so that only changed files are parsed.  The 
+        	// cache shares the description store, so it doesn't hold the descriptions either.
+        	MibCache mibCache = new MibCache(FileSettingsLocation.getDefaultFile(MIB_CACHE_FILENAME));
+        	mibCache.setDescriptionStore(descriptionStore);
+        	mibCache.load();
+        	treeBuilder.setMibCache(mibCache);
             
             // Create and configure the interface components in the EventDispatch 
             // thread according to best practices for using Swing.
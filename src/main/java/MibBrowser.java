@@ -24,11 +24,13 @@ import java.awt.event.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.io.IOException;
 import java.math.RoundingMode;
 import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.swing.*;
 import javax.swing.event.*;
@@ -43,6 +45,8 @@ import libmib.MibObjectIdentifier;
 import libmib.MibObjectType;
 import libmib.mibtree.AbstractMibTreeBuilder;
 import libmib.mibtree.MibAddedEventInfo;
+import libmib.mibtree.MibDirectoryWatcher;
+import libmib.mibtree.MibNameIndex;
 import libmib.mibtree.MibTreeBuilder;
 import libmib.mibtree.MibTreeNode;
 import libmib.mibtree.MibTreeNode.NodeSearchOption;
@@ -81,6 +85,7 @@ public class MibBrowser
     private StringBuilder currentOidNumeral;
     
     private File mibDirectory;
+    private MibDirectoryWatcher mibWatcher;
 
     /**
      * Creates a new MibBrowser that uses the given MibTreeBuilder to manage its MIB tree.
@@ -207,17 +212,18 @@ public class MibBrowser
         try
         {
             treeBuilder.addMibDirectory(mibDirectory);
+            watchMibDirectory();
         }
         catch (IllegalArgumentException e) // if the default directory doesn't exist
         {
             System.out.print(e.getMessage());
         }
         
+        // The builder tells the tree model about the nodes it inserts, so only the new MIB needs showing.
         treeBuilder.addMibAddedListener(new EventListener<AbstractMibTreeBuilder, MibAddedEventInfo>()
 		{
 			public void handleEvent(AbstractMibTreeBuilder source, MibAddedEventInfo eventInfo)
 			{
-                ((DefaultTreeModel)treeBuilder.getTreeModel()).reload();
 				setVisibleNodeByOID(eventInfo.getMibRoot().getOidNumeralPath(), NodeSearchOption.MatchExactPath);
 			}
 		});
@@ -527,6 +533,34 @@ public class MibBrowser
 	}
     
     
+    /**
+     * Starts reloading the MIB files in the MIB directory when they change.  The files are 
+     * read on the watcher's thread and the changes are applied on the event dispatch thread, 
+     * which owns the tree.
+     */
+    private void watchMibDirectory()
+    {
+        mibWatcher = new MibDirectoryWatcher(treeBuilder, mibDirectory, new Executor()
+        {
+            public void execute(Runnable command)
+            {
+                SwingUtilities.invokeLater(command);
+            }
+        });
+        
+        try
+        {
+            mibWatcher.start();
+        }
+        catch (IOException e)
+        {
+            // The tree still works; it just won't pick up changes.
+            System.out.println(e.getMessage());
+            mibWatcher = null;
+        }
+    }
+    
+    
     // *** Start of MibBrowser configurable property methods. ***
     
     /**
@@ -668,6 +702,34 @@ public class MibBrowser
         }
     }
     
+    /**
+     * Searches for a node by name, such as sysDescr or SNMPv2-MIB::sysDescr, and then sets 
+     * the selected node in the JTree to that node.  If there is no exact match, the first 
+     * node with the name in a different case is selected.
+     * 
+     * @param name the bare or module-qualified name to search for
+     */
+    public void setVisibleNodeByName(String name)
+    {
+        MibNameIndex nameIndex = treeBuilder.getNameIndex();
+        
+        MibTreeNode testNode = nameIndex.getNode(name);
+        if (testNode == null)
+        {
+            List<MibTreeNode> nodes = nameIndex.getNodesIgnoreCase(name);
+            if (!nodes.isEmpty())
+                testNode = nodes.get(0);
+        }
+        
+        if (testNode != null)
+        {
+            TreePath nodePath = new TreePath(testNode.getPath());
+            
+            mibTree.setSelectionPath(nodePath);
+            mibTree.scrollPathToVisible(nodePath);
+        }
+    }
+    
 
     private class GetRequestAction extends AbstractAction
     {   	
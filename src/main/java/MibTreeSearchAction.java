@@ -29,7 +29,7 @@ import libmib.mibtree.MibTreeNode.NodeSearchOption;
 
 /**
  * Action for performing a search of a MIB tree based on an
- * OID string in a text field.
+ * OID or name string in a text field.
  */
 public class MibTreeSearchAction extends AbstractAction
 {
@@ -51,7 +51,8 @@ public class MibTreeSearchAction extends AbstractAction
 		    }
 		    catch (NumberFormatException e)
 		    {
-		        // just do nothing, I may add an "OID not found" message later
+		        // Not a numeric OID, so try it as a name.
+		        browser.setVisibleNodeByName(textField.getText().trim());
 		    }
     	}
     }
@@ -19,7 +19,12 @@
  *
  */
 
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import snmp.SnmpTarget;
 import snmp.SnmpV1Communicator;
+import snmp.SnmpVersion;
 
 /**
  * Class containing information necessary for communication with a host device
@@ -129,4 +134,16 @@ public final class SnmpHost
     {
         return hostTimeout;
     }
+    
+    /**
+     * Creates the target used to poll this host with an <code>SnmpPoller</code> or 
+     * <code>SnmpAsyncClient</code>, resolving its address.
+     * @param version the SNMP version the host uses
+     * @throws UnknownHostException if the address can't be resolved
+     */
+    public SnmpTarget createTarget(SnmpVersion version) throws UnknownHostException
+    {
+        InetAddress address = InetAddress.getByName(addressString);
+        return new SnmpTarget(address, hostPort, version, communityString, hostTimeout);
+    }
 }
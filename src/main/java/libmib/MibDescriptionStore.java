@@ -0,0 +1,174 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only file of MIB object descriptions that is read through a memory mapping.
+ * Descriptions make up most of the text in MIB files but are only needed when a node is 
+ * displayed, so moving them here keeps them off the heap; a MibObjectType keeps just the 
+ * offset and length of its description and decodes it when asked for it.
+ */
+public class MibDescriptionStore implements Closeable
+{
+    private final File file;
+    private final FileChannel channel;
+    private long size = 0;
+    private MappedByteBuffer mapping = null;
+    
+    /**
+     * Creates a store in the given file, replacing its contents.
+     * 
+     * @param storeFile the file to hold the descriptions
+     * @throws IOException if the file cannot be opened
+     */
+    public MibDescriptionStore(File storeFile) throws IOException
+    {
+        this.file = storeFile;
+        this.channel = FileChannel.open(storeFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, 
+        		StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    
+    /**
+     * Creates a store in a temporary file that is deleted when the application exits.
+     * 
+     * @throws IOException if the file cannot be created
+     */
+    public static MibDescriptionStore createTemporary() throws IOException
+    {
+        File storeFile = File.createTempFile("mibdescriptions", ".dat");
+        storeFile.deleteOnExit();
+        
+        return new MibDescriptionStore(storeFile);
+    }
+    
+    /**
+     * Gets the file holding the descriptions.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+    
+    /**
+     * Moves a MIB object's description into the store.  Objects with no description are 
+     * left alone.
+     * 
+     * @param mibObject the MIB object
+     * @throws IOException if the description cannot be written
+     */
+    public void storeDescription(MibObjectType mibObject) throws IOException
+    {
+        if (mibObject.isDescriptionStored())
+            return;
+        
+        String description = mibObject.getDescription();
+        if (description == null || description.equals(""))
+            return;
+        
+        byte[] encoding = description.getBytes(StandardCharsets.UTF_8);
+        long offset = this.append(encoding);
+        mibObject.setDescription(this, offset, encoding.length);
+    }
+    
+    /**
+     * Writes text to the end of the store.
+     * 
+     * @param encoding the UTF-8 encoded text
+     * @return the offset of the text in the store
+     * @throws IOException if the text cannot be written
+     */
+    public synchronized long append(byte[] encoding) throws IOException
+    {
+        if (!channel.isOpen())
+            throw new IOException("The description store is closed.");
+        
+        // A single mapping covers the whole store.
+        if (size + encoding.length > Integer.MAX_VALUE)
+            throw new IOException("The description store is full.");
+        
+        long offset = size;
+        ByteBuffer buffer = ByteBuffer.wrap(encoding);
+        while (buffer.hasRemaining())
+            channel.write(buffer, offset + buffer.position());
+        
+        size += encoding.length;
+        return offset;
+    }
+    
+    /**
+     * Reads text from the store.
+     * 
+     * @param offset the offset of the text
+     * @param length the encoded length of the text
+     * @return the decoded text
+     * @throws UncheckedIOException if the store cannot be mapped
+     */
+    public synchronized String read(long offset, int length)
+    {
+        if (offset < 0 || length < 0 || offset + length > size)
+            throw new IllegalArgumentException("The text is outside of the description store.");
+        
+        try
+        {
+            // Map the store again if it has grown past the current mapping.
+            if (mapping == null || offset + length > mapping.capacity())
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        
+        byte[] encoding = new byte[length];
+        ByteBuffer text = mapping.duplicate();
+        text.position((int)offset);
+        text.get(encoding);
+        
+        return new String(encoding, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Returns the number of bytes of text in the store.
+     */
+    public synchronized long size()
+    {
+        return size;
+    }
+    
+    /**
+     * Closes the store's file.  Descriptions already mapped can still be read.
+     */
+    public synchronized void close() throws IOException
+    {
+        channel.close();
+    }
+}
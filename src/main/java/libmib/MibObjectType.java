@@ -46,7 +46,10 @@ public class MibObjectType extends MibObjectIdentifier
 {
     private Status status;
     private Access accessLevel;
-    private String description;
+    private String description;           // null while the description is held in a store
+    private MibDescriptionStore descriptionStore;
+    private long descriptionOffset;
+    private int descriptionLength;
     private String reference;
     private List<String> indices;
     private MibSyntax syntax;
@@ -112,12 +115,16 @@ public class MibObjectType extends MibObjectIdentifier
     }
     
     /**
-     * Gets the MIB object description.
+     * Gets the MIB object description.  If the description is held in a description store, 
+     * it is read from the store each time this is called.
      * 
      * @return the MIB object description
      */
     public String getDescription()
     {
+    	if (description == null && descriptionStore != null)
+    		return descriptionStore.read(descriptionOffset, descriptionLength);
+    	
     	return description;
     }
     
@@ -129,6 +136,58 @@ public class MibObjectType extends MibObjectIdentifier
     public void setDescription(String newDesc)
     {
     	description = newDesc;
+    	descriptionStore = null;
+    }
+    
+    /**
+     * Sets the MIB object description to text held in a description store, so that it 
+     * doesn't stay on the heap.
+     * 
+     * @param store the store holding the description
+     * @param offset the position of the description in the store
+     * @param length the encoded length of the description
+     */
+    public void setDescription(MibDescriptionStore store, long offset, int length)
+    {
+    	if (store == null)
+    		throw new IllegalArgumentException("Description store cannot be null.");
+    	
+    	description = null;
+    	descriptionStore = store;
+    	descriptionOffset = offset;
+    	descriptionLength = length;
+    }
+    
+    /**
+     * Checks whether the description is held in a description store rather than on the heap.
+     */
+    public boolean isDescriptionStored()
+    {
+    	return description == null && descriptionStore != null;
+    }
+    
+    /**
+     * Gets the store holding the description, or null if the description is on the heap.
+     */
+    public MibDescriptionStore getDescriptionStore()
+    {
+    	return this.isDescriptionStored() ? descriptionStore : null;
+    }
+    
+    /**
+     * Gets the position of the description in its description store.
+     */
+    public long getDescriptionOffset()
+    {
+    	return descriptionOffset;
+    }
+    
+    /**
+     * Gets the encoded length of the description in its description store.
+     */
+    public int getDescriptionLength()
+    {
+    	return descriptionLength;
     }
     
     
@@ -23,15 +23,23 @@ package libmib;
 
 import java.util.Map;
 
+import utilities.Interner;
+
 /**
  * This class is a logical grouping of attributes that define the syntax of a
  * MIB Object. This includes a data type name and the optional default value and value list.
+ * <br><br>
+ * Most syntaxes repeat, such as every TruthValue or ifType object in a MIB, so a parsed
+ * syntax can be interned to share one unchangeable copy between the objects using it.
  */
 public class MibSyntax
 {
+    private static final Interner<MibSyntax> internedSyntaxes = new Interner<MibSyntax>(65536);
+    
     private String dataType;
     private String defaultValue;
-    private Map<Integer, String> pairs;
+    private MibValueTable pairs;
+    private boolean isInterned = false;
     
     public MibSyntax()
     {
@@ -65,6 +73,7 @@ public class MibSyntax
      */
     public void setDataType(String newType)
     {
+        checkNotInterned();
         dataType = newType;
     }
     
@@ -86,12 +95,14 @@ public class MibSyntax
      */
     public void setDefaultValue(String newDefault)
     {
+        checkNotInterned();
         defaultValue = newDefault;
     }
     
     
     /**
-     * Gets the list of possible values for this MIB object.
+     * Gets the list of possible values for this MIB object.  The 
+     * returned map cannot be modified.
      * 
      * @return a list of possible values
      */
@@ -101,7 +112,8 @@ public class MibSyntax
     }
     
     /**
-     * Sets the list of possible values for this MIB object.
+     * Sets the list of possible values for this MIB object.  The pairs
+     * are copied, so later changes to the map are not seen by the syntax.
      * 
      * @param newPairs name-value pairs
      */
@@ -110,7 +122,8 @@ public class MibSyntax
         if (newPairs == null)
             throw new IllegalArgumentException("Values cannot be set to null.");
         
-        pairs = newPairs;
+        checkNotInterned();
+        pairs = MibValueTable.copyOf(newPairs);
     }
     
     /**
@@ -138,16 +151,86 @@ public class MibSyntax
      * @return the String name associated with the integer value or an empty String if the 
      *         value wasn't found
      */
-    @SuppressWarnings("boxing")
-	public String findValueName(int value)
+    public String findValueName(int value)
     {
         if (pairs == null)
             throw new NullPointerException("This syntax has no name-value pairs.");
         
-        String name = pairs.get(value);
+        String name = pairs.getName(value);
         return (name == null) ? "" : name;
     }
     
     
-
+    /**
+     * Returns a canonical syntax equal to this one, so that the thousands of objects 
+     * with the same syntax share one instance and one value table. Interned syntaxes 
+     * can't be changed. Once many syntaxes have been interned, further ones are 
+     * returned as they are.
+     * <br><br>
+     * Interned syntaxes are kept for as long as the application runs, including those of 
+     * MIBs that have since been reloaded or removed.  They are few compared with the objects 
+     * using them, and an edited MIB mostly brings back the same syntaxes, but a long session 
+     * of reloads can fill the pool, after which new syntaxes are no longer shared.
+     */
+    public MibSyntax intern()
+    {
+        if (isInterned)
+            return this;
+        
+        MibSyntax interned = internedSyntaxes.get(this);
+        if (interned != null)
+            return interned;
+        
+        if (internedSyntaxes.isFull())
+            return this;
+        
+        MibSyntax candidate = new MibSyntax(dataType);
+        candidate.defaultValue = defaultValue;
+        candidate.pairs = (pairs == null) ? null : pairs.intern();
+        candidate.isInterned = true;
+        
+        return internedSyntaxes.add(candidate);
+    }
+    
+    /**
+     * Returns whether this syntax was returned by intern() and so is shared.
+     */
+    public boolean isInterned()
+    {
+        return isInterned;
+    }
+    
+    private void checkNotInterned()
+    {
+        if (isInterned)
+            throw new IllegalStateException("An interned syntax cannot be changed.");
+    }
+    
+    
+    @Override
+    public boolean equals(Object other)
+    {
+        if (other == this)
+            return true;
+        
+        if (!(other instanceof MibSyntax))
+            return false;
+        
+        MibSyntax syntax = (MibSyntax)other;
+        return equal(dataType, syntax.dataType) && equal(defaultValue, syntax.defaultValue) 
+            && equal(pairs, syntax.pairs);
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        int hash = (dataType == null) ? 0 : dataType.hashCode();
+        hash = 31 * hash + ((defaultValue == null) ? 0 : defaultValue.hashCode());
+        return 31 * hash + ((pairs == null) ? 0 : pairs.hashCode());
+    }
+    
+    private static boolean equal(Object a, Object b)
+    {
+        return (a == null) ? b == null : a.equals(b);
+    }
 }
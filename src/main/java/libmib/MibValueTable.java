@@ -0,0 +1,267 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import utilities.Interner;
+
+/**
+ * An immutable table of the named values of an enumerated MIB data type, such as 
+ * "up(1), down(2)".  Values are kept in a sorted int array alongside their names, so a 
+ * lookup is a binary search with no boxing or locking, and tables whose values are close 
+ * together, which is nearly all of them, also get an array indexed directly by value.
+ * <br><br>
+ * The table is a read-only Map so it can be shown and iterated like any other map; 
+ * iteration is in order of value.  Because it never changes it can be shared between 
+ * threads and between every MIB object with the same enumeration.
+ */
+public final class MibValueTable extends AbstractMap<Integer, String>
+{
+    // Values spread over more than this many slots per value use only the binary search.
+    private static final int MAXIMUM_DENSE_SLOTS_PER_VALUE = 4;
+    
+    private static final Interner<MibValueTable> internedTables = new Interner<MibValueTable>(16384);
+    
+    private final int[] values;
+    private final String[] names;
+    
+    private final String[] namesByValue;
+    private final int minimumValue;
+    
+    private final int hash;
+    
+    private MibValueTable(int[] sortedValues, String[] names)
+    {
+        this.values = sortedValues;
+        this.names = names;
+        
+        int count = sortedValues.length;
+        if (count > 0)
+        {
+            long span = (long)sortedValues[count - 1] - sortedValues[0] + 1;
+            if (span <= (long)count * MAXIMUM_DENSE_SLOTS_PER_VALUE)
+            {
+                minimumValue = sortedValues[0];
+                namesByValue = new String[(int)span];
+                for (int i = 0; i < count; i++)
+                    namesByValue[sortedValues[i] - minimumValue] = names[i];
+            }
+            else
+            {
+                minimumValue = 0;
+                namesByValue = null;
+            }
+        }
+        else
+        {
+            minimumValue = 0;
+            namesByValue = null;
+        }
+        
+        // The same hash code AbstractMap would compute, so equal maps of any kind agree.
+        int h = 0;
+        for (int i = 0; i < count; i++)
+            h += sortedValues[i] ^ names[i].hashCode();
+        
+        this.hash = h;
+    }
+    
+    /**
+     * Creates a table holding the same pairs as a map.
+     * 
+     * @param pairs the values and their names
+     * @return the table
+     * 
+     * @throws IllegalArgumentException if a value or a name is null
+     */
+    public static MibValueTable copyOf(Map<Integer, String> pairs)
+    {
+        if (pairs instanceof MibValueTable)
+            return (MibValueTable)pairs;
+        
+        int count = pairs.size();
+        long[] packed = new long[count];
+        String[] unsortedNames = new String[count];
+        
+        int i = 0;
+        for (Map.Entry<Integer, String> pair : pairs.entrySet())
+        {
+            if (pair.getKey() == null || pair.getValue() == null)
+                throw new IllegalArgumentException("Values and names cannot be null.");
+            
+            // Sort by value while remembering where each name came from.
+            packed[i] = ((long)pair.getKey() << 32) | i;
+            unsortedNames[i] = pair.getValue();
+            i++;
+        }
+        
+        Arrays.sort(packed);
+        
+        int[] sortedValues = new int[count];
+        String[] sortedNames = new String[count];
+        for (i = 0; i < count; i++)
+        {
+            sortedValues[i] = (int)(packed[i] >> 32);
+            sortedNames[i] = unsortedNames[(int)packed[i]];
+        }
+        
+        return new MibValueTable(sortedValues, sortedNames);
+    }
+    
+    /**
+     * Returns a canonical table equal to this one, so that enumerations repeated 
+     * across MIBs share one instance. Once many tables have been interned, further 
+     * ones are returned as they are.  Like interned syntaxes, interned tables are kept 
+     * for as long as the application runs.
+     */
+    public MibValueTable intern()
+    {
+        return internedTables.intern(this);
+    }
+    
+    /**
+     * Finds the name of a value.
+     * 
+     * @param value the value to search for
+     * @return the name, or null if the value is not in the table
+     */
+    public String getName(int value)
+    {
+        if (namesByValue != null)
+        {
+            long slot = (long)value - minimumValue;
+            if (slot < 0 || slot >= namesByValue.length)
+                return null;
+            
+            return namesByValue[(int)slot];
+        }
+        
+        int index = Arrays.binarySearch(values, value);
+        return (index < 0) ? null : names[index];
+    }
+    
+    /**
+     * Gets the value at a position in the table, which is ordered by value.
+     */
+    public int getValueAt(int index)
+    {
+        return values[index];
+    }
+    
+    /**
+     * Gets the name at a position in the table, which is ordered by value.
+     */
+    public String getNameAt(int index)
+    {
+        return names[index];
+    }
+    
+    @Override
+    public int size()
+    {
+        return values.length;
+    }
+    
+    @Override
+    public String get(Object key)
+    {
+        if (!(key instanceof Integer))
+            return null;
+        
+        return getName((Integer)key);
+    }
+    
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return get(key) != null;
+    }
+    
+    @Override
+    public Set<Map.Entry<Integer, String>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<Integer, String>>()
+        {
+            public int size()
+            {
+                return values.length;
+            }
+            
+            public Iterator<Map.Entry<Integer, String>> iterator()
+            {
+                return new Iterator<Map.Entry<Integer, String>>()
+                {
+                    private int index = 0;
+                    
+                    public boolean hasNext()
+                    {
+                        return index < values.length;
+                    }
+                    
+                    public Map.Entry<Integer, String> next()
+                    {
+                        if (index >= values.length)
+                            throw new NoSuchElementException();
+                        
+                        Map.Entry<Integer, String> entry = 
+                            new AbstractMap.SimpleImmutableEntry<Integer, String>(values[index], names[index]);
+                        index++;
+                        return entry;
+                    }
+                    
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+    
+    @Override
+    public boolean equals(Object other)
+    {
+        if (other == this)
+            return true;
+        
+        if (other instanceof MibValueTable)
+        {
+            MibValueTable table = (MibValueTable)other;
+            return hash == table.hash && Arrays.equals(values, table.values) && Arrays.equals(names, table.names);
+        }
+        
+        return super.equals(other);
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+}
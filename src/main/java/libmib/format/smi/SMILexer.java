@@ -0,0 +1,432 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib.format.smi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import utilities.IOUtilities;
+
+/**
+ * Splits the text of an SMI MIB module into a stream of tokens in a single pass.
+ * <br><br>
+ * Comments (from "--" to the end of the line or the next "--") and whitespace are
+ * skipped, quoted strings become a single token no matter how many lines they span,
+ * and the ASN.1 symbols "::=" and ".." are recognized as single tokens. Keywords are
+ * not treated specially; they are simply words, which lets a keyword and its value
+ * be separated by any amount of whitespace, including line breaks.
+ * <br><br>
+ * Parsers can look ahead any number of tokens without consuming them.
+ */
+public class SMILexer
+{
+    /**
+     * The different kinds of tokens produced by the lexer.
+     */
+    public enum TokenKind
+    {
+        /** An identifier or keyword, such as "ifIndex" or "OBJECT-TYPE". */
+        Word,
+        
+        /** A decimal integer, which may be negative. */
+        Number,
+        
+        /** The contents of a quoted string, without the quote marks. */
+        Text,
+        
+        /** A punctuation symbol, such as "{", "::=" or "..". */
+        Symbol
+    }
+    
+    /**
+     * A single token read from an SMI MIB module.
+     */
+    public static final class Token
+    {
+        private final TokenKind kind;
+        private final String text;
+        private final int line;
+        private final boolean spaced;
+        
+        public Token(TokenKind kind, String text, int line, boolean spaced)
+        {
+            this.kind = kind;
+            this.text = text;
+            this.line = line;
+            this.spaced = spaced;
+        }
+        
+        public TokenKind getKind() { return kind; }
+        
+        public String getText() { return text; }
+        
+        /**
+         * Gets the line the token starts on, beginning at 1.
+         */
+        public int getLine() { return line; }
+        
+        /**
+         * Returns true if the token was preceded by whitespace or a comment.
+         */
+        public boolean isSpaced() { return spaced; }
+        
+        /**
+         * Returns true if the token is the given word or symbol.  Quoted strings
+         * never match, so text inside a string can't be mistaken for a keyword.
+         */
+        public boolean is(String value)
+        {
+            return kind != TokenKind.Text && text.equals(value);
+        }
+        
+        /**
+         * Returns true if the token is the given single word keyword.
+         */
+        public boolean is(SMIToken keyword)
+        {
+            return is(keyword.token());
+        }
+        
+        /**
+         * Returns the token as it would appear in a MIB file.
+         */
+        public String toString()
+        {
+            if (kind == TokenKind.Text)
+                return "\"" + text + "\"";
+            
+            return text;
+        }
+    }
+    
+    
+    // Characters that end a word.
+    private static final String DELIMITERS = "\"'{}()[],;|:.<>=";
+    
+    private final CharBuffer input;
+    private final int limit;
+    private int position;
+    private int line = 1;
+    
+    // Tokens that have been read ahead but not yet consumed.
+    private final List<Token> lookahead = new ArrayList<Token>(4);
+    
+    /**
+     * Creates a lexer for the given text, which is read from its current
+     * position to its limit.
+     */
+    public SMILexer(CharBuffer input)
+    {
+        this.input = input;
+        this.position = input.position();
+        this.limit = input.limit();
+    }
+    
+    public SMILexer(CharSequence input)
+    {
+        this(CharBuffer.wrap(input));
+    }
+    
+    /**
+     * Creates a lexer for a MIB file.  The file is memory-mapped and decoded
+     * with the platform's default character set in one step rather than read
+     * line by line.
+     * 
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static SMILexer open(File mibFile) throws IOException
+    {
+        FileChannel channel = FileChannel.open(mibFile.toPath(), StandardOpenOption.READ);
+        try
+        {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SMILexer(Charset.defaultCharset().decode(mapped));
+        }
+        finally
+        {
+            IOUtilities.closeQuietly(channel);
+        }
+    }
+    
+    
+    /**
+     * Consumes and returns the next token.
+     * 
+     * @return the next token, or null if the end of the input has been reached
+     */
+    public Token next()
+    {
+        if (!lookahead.isEmpty())
+            return lookahead.remove(0);
+        
+        return readToken();
+    }
+    
+    /**
+     * Returns the next token without consuming it.
+     * 
+     * @return the next token, or null if the end of the input has been reached
+     */
+    public Token peek()
+    {
+        return peek(0);
+    }
+    
+    /**
+     * Returns a token further ahead in the stream without consuming anything.
+     * 
+     * @param ahead the number of tokens to skip; 0 is the next token
+     * @return the token, or null if the input ends before it
+     */
+    public Token peek(int ahead)
+    {
+        while (lookahead.size() <= ahead)
+        {
+            Token token = readToken();
+            if (token == null)
+                return null;
+            
+            lookahead.add(token);
+        }
+        
+        return lookahead.get(ahead);
+    }
+    
+    /**
+     * Returns true if the next tokens spell out the given keyword, which may span
+     * several words, such as "OBJECT IDENTIFIER".  Nothing is consumed.
+     */
+    public boolean lookingAt(SMIToken keyword)
+    {
+        String[] words = keyword.words();
+        for (int i = 0; i < words.length; i++)
+        {
+            Token token = peek(i);
+            if (token == null || !token.is(words[i]))
+                return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Consumes the given keyword if the next tokens spell it out.
+     * 
+     * @return true if the keyword was found and consumed
+     */
+    public boolean skip(SMIToken keyword)
+    {
+        if (!lookingAt(keyword))
+            return false;
+        
+        for (int i = keyword.words().length; i > 0; i--)
+            next();
+        
+        return true;
+    }
+    
+    /**
+     * Consumes tokens up to and including the next occurrence of the given
+     * word or symbol.
+     * 
+     * @return true if the word was found, false if the end of the input was reached
+     */
+    public boolean skipPast(String value)
+    {
+        Token token;
+        while ((token = next()) != null)
+        {
+            if (token.is(value))
+                return true;
+        }
+        
+        return false;
+    }
+    
+    
+    /**
+     * Scans the next token from the input.
+     */
+    private Token readToken()
+    {
+        boolean spaced = skipWhitespaceAndComments();
+        if (position >= limit)
+            return null;
+        
+        int start = position;
+        int startLine = line;
+        char c = input.get(position);
+        
+        if (c == '"')
+        {
+            // Strings end at the next quote mark and may contain anything else, including "--".
+            position++;
+            while (position < limit && input.get(position) != '"')
+                countLine(position++);
+            
+            String text = input.subSequence(start + 1 - input.position(), position - input.position()).toString();
+            if (position < limit)
+                position++;
+            
+            return new Token(TokenKind.Text, text, startLine, spaced);
+        }
+        
+        if (Character.isDigit(c) || (c == '-' && isDigitAt(position + 1)))
+        {
+            position++;
+            while (isDigitAt(position))
+                position++;
+            
+            return new Token(TokenKind.Number, slice(start), startLine, spaced);
+        }
+        
+        if (Character.isLetter(c) || c == '_')
+        {
+            position++;
+            while (position < limit)
+            {
+                char next = input.get(position);
+                
+                // A double hyphen starts a comment, even directly after a word.
+                if (next == '-' && position + 1 < limit && input.get(position + 1) == '-')
+                    break;
+                
+                // Be lenient about stray characters in names, which some vendor MIBs contain.
+                if (Character.isWhitespace(next) || DELIMITERS.indexOf(next) >= 0)
+                    break;
+                
+                position++;
+            }
+            
+            return new Token(TokenKind.Word, slice(start), startLine, spaced);
+        }
+        
+        if (c == '\'')
+        {
+            // Binary and hexadecimal strings, such as '00FF'H.
+            position++;
+            while (position < limit && input.get(position) != '\'')
+                countLine(position++);
+            
+            if (position < limit)
+                position++;
+            
+            if (position < limit && Character.isLetter(input.get(position)))
+                position++;
+            
+            return new Token(TokenKind.Word, slice(start), startLine, spaced);
+        }
+        
+        if (c == ':' && startsWith("::="))
+            position += 3;
+        else if (c == '.' && startsWith(".."))
+            position += 2;
+        else
+            position++;
+        
+        return new Token(TokenKind.Symbol, slice(start), startLine, spaced);
+    }
+    
+    /**
+     * Skips whitespace and comments.
+     * 
+     * @return true if anything was skipped
+     */
+    private boolean skipWhitespaceAndComments()
+    {
+        int start = position;
+        while (position < limit)
+        {
+            char c = input.get(position);
+            if (Character.isWhitespace(c))
+            {
+                countLine(position++);
+            }
+            else if (c == '-' && position + 1 < limit && input.get(position + 1) == '-')
+            {
+                // A comment ends at the end of the line or at the next "--".
+                position += 2;
+                while (position < limit)
+                {
+                    char next = input.get(position);
+                    if (next == '\n' || next == '\r')
+                        break;
+                    
+                    position++;
+                    if (next == '-' && position < limit && input.get(position) == '-')
+                    {
+                        position++;
+                        break;
+                    }
+                }
+            }
+            else
+            {
+                break;
+            }
+        }
+        
+        return position > start;
+    }
+    
+    /**
+     * Advances the line count if the character at the given index ends a line.
+     * "\r\n" is counted once, at the '\n'.
+     */
+    private void countLine(int index)
+    {
+        char c = input.get(index);
+        if (c == '\n' || (c == '\r' && (index + 1 >= limit || input.get(index + 1) != '\n')))
+            line++;
+    }
+    
+    private boolean isDigitAt(int index)
+    {
+        return index < limit && Character.isDigit(input.get(index));
+    }
+    
+    private boolean startsWith(String symbol)
+    {
+        if (position + symbol.length() > limit)
+            return false;
+        
+        for (int i = 0; i < symbol.length(); i++)
+        {
+            if (input.get(position + i) != symbol.charAt(i))
+                return false;
+        }
+        
+        return true;
+    }
+    
+    private String slice(int start)
+    {
+        return input.subSequence(start - input.position(), position - input.position()).toString();
+    }
+}
@@ -21,13 +21,13 @@
 
 package libmib.format.smi;
 
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import libmib.format.smi.SMILexer.Token;
+import libmib.format.smi.SMILexer.TokenKind;
 
 import static libmib.format.smi.SMIToken.*;
 
@@ -38,277 +38,276 @@ import static libmib.format.smi.SMIToken.*;
  * enumerations, which are simple lists with name-value pairs as entries.
  * <br><br>
  * It also handles specific common tasks such as finding the start of the MIB definition.
+ * All methods read from an SMILexer's token stream.
  */
 public class SMIStructureHandler 
 {
-    public static final String NEWLINE_REGEX = "\n|\r\n|\r"; //search for all types of line separators
-    
     /**
-     * Reads the stream in an attempt to find the start of a MIB module definition and return 
-     * its name.  The stream is scanned until a line containing "DEFINITIONS ::= BEGIN" is 
-     * found. If this BEGIN marker can't be found within 100 lines, the scan stops.
+     * Reads the token stream in an attempt to find the start of a MIB module definition and 
+     * return its name.  The stream is scanned until "DEFINITIONS ::= BEGIN" is found, and the
+     * word preceding it is the module name. If this BEGIN marker can't be found within 100 
+     * lines, the scan stops.
      * 
      * @return an empty string if the MIB definition could not be found, and the name 
      * of the MIB if it was found
-     * 
-     * @throws IOException if an error occurs when reading a line
      */
-    public static String readMibName(BufferedReader reader) throws IOException
+    public static String readMibName(SMILexer lexer)
     {      
-        int lineCount = 0;
-        String line;
-        String mibName = "";
+        Token previous = null;
+        Token token;
         
-        while ( ((line = reader.readLine()) != null) && (lineCount < 100) )
+        while ( ((token = lexer.peek()) != null) && (token.getLine() <= 100) )
         {
-            if (line.contains(MIB_BEGIN.token()))
+            if (lexer.lookingAt(MIB_BEGIN))
             {
-                mibName = line.substring(0, line.indexOf(MIB_BEGIN.token()) - 1).trim();
-                break;  // don't read any more lines
+                lexer.skip(MIB_BEGIN);
+                
+                if (previous != null && previous.getKind() == TokenKind.Word)
+                    return previous.getText();
+                
+                return "";
             }
-
-            lineCount++;
+            
+            previous = lexer.next();
         }
         
-        return mibName;
+        return "";
     }
     
     
     /**
-     * Reads all text between quote marks.
+     * Reads a quoted string and formats it for display.  Each line is trimmed, lines
+     * that are commented out are dropped, and line breaks become "&lt;br&gt;" tags.
+     * 
+     * @return the formatted text, or an empty string if the next token is not a quoted string
      */
-    public static String readQuotedSection(BufferedReader reader, String line, SMIToken keyword) throws IOException
+    public static String readQuotedSection(SMILexer lexer)
     {
-        StringBuilder quote = new StringBuilder("");
-        char c = 0;
-        boolean isSingleLine = false;
+        Token token = lexer.peek();
+        if (token == null || token.getKind() != TokenKind.Text)
+            return "";
         
-        //If the quoted portion starts on the same line as the given keyword,
-        //the line's contents following the quote mark must be collected.
-        line = line.trim();
-        if (!line.equals(keyword.token()) && line.contains("\""))
-        {
-            quote.append(line);
-            int firstQuoteMarkPos = quote.indexOf("\"");
-            quote.delete(0, firstQuoteMarkPos + 1);
-            
-            //strip comments
-            int commentPos = quote.indexOf(COMMENT.token());
-            if (commentPos > -1)
-                quote.delete(commentPos, quote.length());
-            
-            //check for a quote mark at the end of the line
-            int secondQuoteMarkPos = quote.indexOf("\"");
-            if (secondQuoteMarkPos > -1)
-            {
-                isSingleLine = true;
-                quote.delete(secondQuoteMarkPos, quote.length());
-            }      
-            
-            //this gets trimmed off and must be re-added; it's a sloppy fix
-            quote.append(System.getProperty("line.separator"));
-        }
-        else
-        {
-            //read the stream until the first quote mark is reached
-            c = 0;        
-            while ((c != -1) && (c != '\"'))
-                c = (char)reader.read();
-        }
+        lexer.next();
+        
+        String text = token.getText().trim();
+        StringBuilder quote = new StringBuilder(text.length() + 16);
         
-        //don't read any further if the quote was a single line on the same line as the keyword
-        if (!isSingleLine)
+        int start = 0;
+        while (true)
         {
-            //read the entire quoted section into the StringBuilder
-            c = 0;        
-            while ((c != -1) && (c != '\"'))
-            {
-                c = (char)reader.read();
-                
-                if (c != '\"')
-                    quote.append(c);
-            }
+            int end = start;
+            while (end < text.length() && text.charAt(end) != '\n' && text.charAt(end) != '\r')
+                end++;
             
-            String[] quoteLines = quote.toString().trim().split(NEWLINE_REGEX);
-            quote.delete(0, quote.length());//clear builder for reuse
+            String curLine = text.substring(start, end).trim();
+            boolean isLastLine = (end == text.length());
             
-            for (int i = 0; i < quoteLines.length; i++)
+            if (!curLine.startsWith(COMMENT.token()))    //ignore commented lines
             {
-                String curLine = quoteLines[i].trim();
-                
-                if (!curLine.trim().startsWith(COMMENT.token()))    //ignore commented lines
-                {
-                    if (i == (quoteLines.length - 1))
-                        quote.append(curLine.trim());   //last line needs no break at the end
-                    else
-                        quote.append(curLine.trim() + "<br>");
-                }   
+                quote.append(curLine);
+                if (!isLastLine)
+                    quote.append("<br>");   //last line needs no break at the end
             }
             
-        } //end of block that applies to quotes that are not entirely on a single line with the given keyword
+            if (isLastLine)
+                break;
+            
+            if (text.charAt(end) == '\r' && end + 1 < text.length() && text.charAt(end + 1) == '\n')
+                start = end + 2;
+            else
+                start = end + 1;
+        }
         
         return quote.toString().trim();
     }
     
     
     /**
-     * Reads a comma delimited list enclosed in curly brackets: { and }.
-     * The process is very similar to reading text enclosed in quote marks, but there
-     * are also enough differences to warrant different methods.
+     * Reads a comma delimited list enclosed in curly brackets: { and }.  Each entry is 
+     * returned as the text of its tokens, so an entry such as "IMPLIED ifName" keeps 
+     * all of its words.
+     * 
+     * @return the list entries, which is empty if the next token is not a left bracket
      */
-    public static List<String> readList(BufferedReader reader, String line, SMIToken keyword) throws IOException
+    public static List<String> readList(SMILexer lexer)
     {
-        StringBuilder listString = new StringBuilder("");
-        char c = 0;
-        boolean isSingleLine = false;
+        ArrayList<String> returnList = new ArrayList<String>();
+        if (!isNext(lexer, "{"))
+            return returnList;
         
-        //If the list starts on the same line as the given keyword,
-        //the line's contents following the left curly bracket must be collected.
-        line = line.trim();
-        if (!line.equals(keyword.token()) && line.contains("{"))
-        {
-            listString.append(line);
-            
-            int leftBracketPos = listString.indexOf("{");
-            listString.delete(0, leftBracketPos + 1);
-            
-            //strip comments
-            int commentPos = listString.indexOf(COMMENT.token());
-            if (commentPos > -1)
-                listString.delete(commentPos, listString.length());
-            
-            //check for a right bracket at the end of the line
-            int rightBracketPos = listString.indexOf("}");
-            if (rightBracketPos > 0)
-            {
-                isSingleLine = true;
-                listString.delete(rightBracketPos, listString.length());
-            }      
-            
-            //this gets trimmed off and must be re-added; it's a sloppy fix
-            listString.append(System.getProperty("line.separator"));
-        }
-        else
-        {
-            //read the stream until the left bracket is reached
-            c = 0;        
-            while ((c != -1) && (c != '{'))
-                c = (char)reader.read();
-        }
+        lexer.next();
         
-        //don't read any further if the list was a single line on the same line as the keyword
-        if (!isSingleLine)
+        StringBuilder entry = new StringBuilder();
+        int depth = 0;
+        Token token;
+        while ((token = lexer.next()) != null)
         {
-            //read the entire list (until the '}') into the StringBuilder
-            c = 0;        
-            while ((c != -1) && (c != '}'))
+            if (depth == 0 && (token.is(",") || token.is("}")))
             {
-                c = (char)reader.read();
-
-                if (c != '}')
-                    listString.append(c);
+                if (entry.length() > 0)
+                    returnList.add(entry.toString());
+                
+                entry.setLength(0);
+                
+                if (token.is("}"))
+                    break;
+                
+                continue;
             }
+            
+            if (token.is("{") || token.is("("))
+                depth++;
+            else if (token.is("}") || token.is(")"))
+                depth--;
+            
+            appendToken(entry, token);
         }
         
-        String[] listLines = listString.toString().split(NEWLINE_REGEX + "|,");
+        return returnList;
+    }
+    
+    
+    /**
+     * Reads a comma delimited list of name-value pairs, essentially an enumeration
+     * such as "{ up(1), down(2) }".
+     * 
+     * @return a mapping of integer values to string names
+     */
+    public static Map<Integer, String> readPairs(SMILexer lexer)
+    {
+        Map<Integer, String> pairs = new HashMap<Integer, String>();
+        if (!isNext(lexer, "{"))
+            return pairs;
         
-        //loop through each item and add it to the list
-        ArrayList<String> returnList = new ArrayList<String>();
+        lexer.next();
         
-        for (int i = 0; i < listLines.length; i++)
+        Token token;
+        while ((token = lexer.next()) != null && !token.is("}"))
         {
-            String curLine = listLines[i].trim();
-
-            if (!curLine.trim().equals("") && !curLine.trim().startsWith(COMMENT.token()))
+            // Each entry is a name followed by its value in parentheses.
+            if (token.getKind() == TokenKind.Word && isNext(lexer, "("))
             {
-                int commentPos = curLine.indexOf(COMMENT.token());
-                if (commentPos > -1)
-                    curLine = curLine.substring(0, commentPos).trim();
-
-                returnList.add(curLine);
+                Token value = lexer.peek(1);
+                if (value != null && value.getKind() == TokenKind.Number)
+                {
+                    lexer.next();
+                    lexer.next();
+                    
+                    try
+                    {
+                        pairs.put(Integer.valueOf(value.getText()), token.getText());
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        // ignore values that don't fit in an int
+                    }
+                }
             }
         }
         
-        return returnList;
+        return pairs;
     }
     
     
     /**
-     * Reads comma delimited lists of name-value pairs, essentially enumerations.
-     * This method uses readList and further parses the returned List of Strings
-     * to extract the names and values.
+     * Reads the text enclosed in curly brackets, such as a default value.
      * 
-     * @return a mapping of integer values to string names
+     * @return the text between the brackets, or an empty string if the next token 
+     * is not a left bracket
      */
-    public static Map<Integer, String> readPairs(BufferedReader reader, String line, SMIToken keyword) throws IOException
+    public static String readBracketedText(SMILexer lexer)
     {
-        List<String> valueLines = readList(reader, line, keyword);
-        Map<Integer, String> pairs = new HashMap<Integer, String>();
+        if (!isNext(lexer, "{"))
+            return "";
+        
+        lexer.next();
         
-        for (int i = 0; i < valueLines.size(); i++)
+        StringBuilder text = new StringBuilder();
+        int depth = 0;
+        Token token;
+        while ((token = lexer.next()) != null)
         {
-            String curLine = valueLines.get(i).trim();
+            if (token.is("{"))
+                depth++;
+            else if (token.is("}") && depth-- == 0)
+                break;
             
-            if (curLine.contains("(") && curLine.contains(")"))
-            {
-                int commentPos = curLine.indexOf(COMMENT.token());
-                if (commentPos > -1)
-                    curLine = curLine.substring(0, commentPos).trim();
-                
-                // Extract the integer value and its label/alias/name.
-                String name = curLine.substring(0, curLine.indexOf("(")).trim();
-                String value = curLine.substring(curLine.indexOf("(") + 1, curLine.lastIndexOf(")")).trim();
-
-                // Add the name-value pair entry.
-                pairs.put(new Integer(value), name);
-            }
+            appendToken(text, token);
         }
         
-        return pairs;
+        return text.toString();
     }
     
     
     /**
-     * Takes the given string, extracts a MIB object's parent node name and index in a 
-     * MIB tree hierarchy, and returns it.  If the index cannot be parsed, -1 will be
-     * returned.
-     * @param text the string to parse
+     * Reads a MIB object's value, such as "{ mib-2 1 }" or "{ iso org(3) dod(6) 1 }",
+     * and extracts its parent node name and index in a MIB tree hierarchy.  If the 
+     * index cannot be parsed, -1 will be returned as the index.
      */
-    public static HierarchyData parseHierarchyData(String text)
+    public static HierarchyData parseHierarchyData(SMILexer lexer)
     {
-    	String nodeInfo = text.substring(text.indexOf("{") + 1, text.indexOf("}")).trim();
+        if (!isNext(lexer, "{"))
+            return new HierarchyData("", -1);
+        
+        lexer.next();
+        
+        List<Token> elements = new ArrayList<Token>(4);
         String parentName = "";
         
-        if (nodeInfo.contains("(") && nodeInfo.contains(")"))
-        {   // these have the form ':= {test(1) test2(6) test3(2) 1}'
+        Token token;
+        while ((token = lexer.next()) != null && !token.is("}"))
+        {
+            // these have the form '::= {test(1) test2(6) test3(2) 1}', where the parent is the last named element
+            if (token.is("(") && !elements.isEmpty())
+                parentName = elements.get(elements.size() - 1).getText();
             
-            String parents = "";
-            parents = nodeInfo.substring(nodeInfo.indexOf(" "), nodeInfo.lastIndexOf(")"));
-            parents = parents.substring(parents.lastIndexOf(" "), parents.lastIndexOf("("));
-            parentName = parents.trim();
-        }
-        else
-        {   // these have the regular form ':= {test 1}'
-            int index = nodeInfo.indexOf(" ");
-            parentName = nodeInfo.substring(0, index);
+            elements.add(token);
         }
         
-        int index = nodeInfo.lastIndexOf(" ") + 1;
-        String nodeIndexString = nodeInfo.substring(index, nodeInfo.length());
+        if (elements.size() < 2)
+            return new HierarchyData("", -1);
         
-        int nodeIndex = 0;
-        try
-        {
-        	nodeIndex = Integer.parseInt(nodeIndexString);
-        }
-        catch (NumberFormatException e)
+        // these have the regular form '::= {test 1}'
+        if (parentName.equals(""))
+            parentName = elements.get(0).getText();
+        
+        Token last = elements.get(elements.size() - 1);
+        int nodeIndex = -1;
+        if (last.getKind() == TokenKind.Number)
         {
-        	nodeIndex = -1;
+            try
+            {
+                nodeIndex = Integer.parseInt(last.getText());
+            }
+            catch (NumberFormatException e)
+            {
+                nodeIndex = -1;
+            }
         }
         
         return new HierarchyData(parentName, nodeIndex);
     }
     
+    
+    /**
+     * Appends a token to text being rebuilt from the token stream, keeping a single space
+     * wherever the MIB file had whitespace or a comment between tokens.
+     */
+    public static void appendToken(StringBuilder text, Token token)
+    {
+        if (text.length() > 0 && token.isSpaced())
+            text.append(' ');
+        
+        text.append(token.toString());
+    }
+    
+    private static boolean isNext(SMILexer lexer, String value)
+    {
+        Token token = lexer.peek();
+        return token != null && token.is(value);
+    }
+    
+    
     /**
      * Small utility class containing a MIB object node's parent node name and
      * its index as a child of that parent.
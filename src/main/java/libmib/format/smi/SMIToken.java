@@ -60,6 +60,9 @@ public enum SMIToken
     /** "ACCESS" */
     ACCESS("ACCESS"),
     
+    /** "MAX-ACCESS" */
+    MAX_ACCESS("MAX-ACCESS"),
+    
     /** "STATUS" */
     STATUS("STATUS"),
     
@@ -117,10 +120,12 @@ public enum SMIToken
 	COMMENT("--");
 	
 	private String tokenValue;
+	private String[] tokenWords;
 	
 	private SMIToken(String token)
 	{
 		this.tokenValue = token;
+		this.tokenWords = token.split(" ");
 	}
 	
 	/**
@@ -131,4 +136,14 @@ public enum SMIToken
 	{
 		return tokenValue;
 	}
+	
+	/**
+	 * Gets the words that make up the token, which is a single word for most
+	 * keywords but several for ones like "OBJECT IDENTIFIER".
+	 * @return
+	 */
+	String[] words()
+	{
+		return tokenWords;
+	}
 }
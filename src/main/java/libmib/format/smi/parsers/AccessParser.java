@@ -21,23 +21,20 @@
 
 package libmib.format.smi.parsers;
 
-import static libmib.format.smi.SMIToken.ACCESS;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-
 import libmib.MibObjectType.Access;
+import libmib.format.smi.SMILexer;
+import libmib.format.smi.SMILexer.Token;
+import libmib.format.smi.SMILexer.TokenKind;
 
 public class AccessParser implements SMIParser<Access>
 {
-	public Access parse(BufferedReader reader, String currentLine) throws IOException
+	public Access parse(SMILexer lexer)
 	{
-		int index = currentLine.indexOf(ACCESS.token()) + ACCESS.token().length();
-        String access = currentLine.substring(index).trim();
-        
-        if (!access.equals(""))
-            return Access.valueOf(access.toUpperCase().replaceAll("-", "_"));
+		Token token = lexer.peek();
+        if (token == null || token.getKind() != TokenKind.Word)
+            return null;
         
-        return null;
+        lexer.next();
+        return Access.valueOf(token.getText().toUpperCase().replace('-', '_'));
 	}
 }
@@ -21,17 +21,13 @@
 
 package libmib.format.smi.parsers;
 
-import static libmib.format.smi.SMIToken.DESCRIPTION;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-
+import libmib.format.smi.SMILexer;
 import libmib.format.smi.SMIStructureHandler;
 
 public class DescriptionParser implements SMIParser<String>
 {
-	public String parse(BufferedReader reader, String currentLine) throws IOException
+	public String parse(SMILexer lexer)
 	{
-		return SMIStructureHandler.readQuotedSection(reader, currentLine, DESCRIPTION);
+		return SMIStructureHandler.readQuotedSection(lexer);
 	}
 }
@@ -22,10 +22,10 @@
 package libmib.format.smi.parsers;
 
 import static libmib.format.smi.SMIToken.ACCESS;
-import static libmib.format.smi.SMIToken.COMMENT;
 import static libmib.format.smi.SMIToken.DEFAULT;
 import static libmib.format.smi.SMIToken.DESCRIPTION;
 import static libmib.format.smi.SMIToken.INDICES;
+import static libmib.format.smi.SMIToken.MAX_ACCESS;
 import static libmib.format.smi.SMIToken.MODULE_COMP;
 import static libmib.format.smi.SMIToken.MODULE_CONTACT;
 import static libmib.format.smi.SMIToken.MODULE_ID;
@@ -39,12 +39,9 @@ import static libmib.format.smi.SMIToken.OBJECTS;
 import static libmib.format.smi.SMIToken.OBJECT_GROUP;
 import static libmib.format.smi.SMIToken.OBJECT_TYPE;
 import static libmib.format.smi.SMIToken.REFERENCE;
-import static libmib.format.smi.SMIToken.SOURCE;
 import static libmib.format.smi.SMIToken.STATUS;
 import static libmib.format.smi.SMIToken.SYNTAX;
 
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -53,40 +50,55 @@ import libmib.MibObjectExtended;
 import libmib.MibSyntax;
 import libmib.MibObjectType.Access;
 import libmib.MibObjectType.Status;
+import libmib.format.smi.SMILexer;
 import libmib.format.smi.SMIStructureHandler;
 import libmib.format.smi.SMIToken;
+import libmib.format.smi.SMILexer.Token;
+import libmib.format.smi.SMILexer.TokenKind;
 import libmib.format.smi.SMIStructureHandler.HierarchyData;
 
 /**
  * Parses MIB structures into a single object type containing a superset of all
- * known MIB Object properties.
+ * known MIB Object properties.  Unlike the other parsers, nothing has been consumed
+ * from the lexer beforehand; the next tokens are expected to be the object's name 
+ * followed by its type.
  */
 public class GeneralMibObjectParser implements SMIParser<MibObjectExtended>
 {
-	public MibObjectExtended parse(BufferedReader reader, String currentLine) throws IOException
+	private static final SMIToken[] OBJECT_TYPES = 
+		{ OBJECT_TYPE, OBJECT_GROUP, NOTIF, MODULE_COMP, MODULE_ID, NOTIF_GROUP };
+	
+	/**
+	 * Finds the object type keyword matching a token.
+	 * 
+	 * @return the object type, or null if the token isn't one of the supported types
+	 */
+	public static SMIToken getObjectType(Token token)
+	{
+		if (token != null)
+		{
+			for (SMIToken objectType : OBJECT_TYPES)
+			{
+				if (token.is(objectType))
+					return objectType;
+			}
+		}
+		
+		return null;
+	}
+	
+	public MibObjectExtended parse(SMILexer lexer)
 	{
 		// test for other object "types"
-	    SMIToken objectType = null;
-	    if (currentLine.contains(OBJECT_TYPE.token()))
-	        objectType = OBJECT_TYPE;
-	    else if (currentLine.contains(OBJECT_GROUP.token()))
-	        objectType = OBJECT_GROUP;
-	    else if (currentLine.contains(NOTIF.token()))
-	        objectType = NOTIF;
-	    else if (currentLine.contains(MODULE_COMP.token()))
-	        objectType = MODULE_COMP;
-	    else if (currentLine.contains(MODULE_ID.token()))
-	        objectType = MODULE_ID;
-        else if (currentLine.contains(NOTIF_GROUP.token()))
-            objectType = NOTIF_GROUP;
+		Token nameToken = lexer.peek();
+	    SMIToken objectType = getObjectType(lexer.peek(1));
 	    						
-		if ( objectType != null && !currentLine.trim().equalsIgnoreCase(objectType.token()) 
-		        && !currentLine.contains(SOURCE.token()) && !currentLine.contains(",") )
+		if ( objectType != null && nameToken.getKind() == TokenKind.Word )
 		{ 
 			// Get the node name.
-	        String name = "";
-	        int index = currentLine.indexOf(objectType.token());
-	        name = currentLine.substring(0, index).trim();
+	        String name = nameToken.getText();
+	        lexer.next();
+	        lexer.next();
 
 	        // Initialize properties.
 	        String defaultValue = "";
@@ -105,107 +117,82 @@ public class GeneralMibObjectParser implements SMIParser<MibObjectExtended>
 	        List<MibModuleIdRevision> revisions = null;
 	        
 	        // read until the end of the object definition, retrieving relevant information
-	        currentLine = reader.readLine();
-	        while (currentLine != null && !currentLine.trim().startsWith("::="))
+	        Token token;
+	        while ((token = lexer.next()) != null && !token.is("::="))
 	        {
-	        	currentLine = currentLine.trim();
-	        	
-	            // strip comments
-	            if (currentLine.contains(COMMENT.token()))
-	            {
-	                int commentIndex = currentLine.indexOf(COMMENT.token());
-	                currentLine = currentLine.substring(0, commentIndex).trim();
-	            }
-	            
-	            if (!currentLine.equals(""))
-	            {
-	                // SYNTAX
-	                if (currentLine.contains(SYNTAX.token()) && !objectType.equals(MODULE_COMP))
-	                	nodeSyntax = SMIParserFactory.<SMIParser<MibSyntax>>getParser(SYNTAX).parse(reader, currentLine);
-	                
-	                // ACCESS
-	                else if (currentLine.contains(ACCESS.token()) && !objectType.equals(MODULE_COMP))   
-	                	access = SMIParserFactory.<SMIParser<Access>>getParser(ACCESS).parse(reader, currentLine);
-	                
-	                // STATUS
-	                else if (currentLine.contains(STATUS.token()))
-	                	status = SMIParserFactory.<SMIParser<Status>>getParser(STATUS).parse(reader, currentLine);
-	                
-	                // LAST-UPDATED
-	                else if (currentLine.contains(MODULE_LAST_UPDATED.token()))
-	                    lastUpdated = currentLine.substring(currentLine.indexOf("\"") + 1, currentLine.lastIndexOf("\"")).trim();
-	                
-	                
-	                // ORGANIZATION
-	                else if (currentLine.contains(MODULE_ORGANIZATION.token()))
-	                    organization = currentLine.substring(currentLine.indexOf("\"") + 1, currentLine.lastIndexOf("\"")).trim();
-	                
-	                
-	                // DEFAULT VALUE (DEFVAL)
-	                else if (currentLine.contains(DEFAULT.token()))
-	                {
-	                    if (currentLine.contains("{") && currentLine.contains("}"))
-	                        defaultValue = currentLine.substring(currentLine.indexOf("{") + 1, currentLine.indexOf("}")).trim();
-	                }
-	                
-	                
-	                // OBJECT-GROUP members or NOTIFICATION-TYPE member
-	                else if ( (currentLine.contains(OBJECTS.token()) && objectType.equals(OBJECT_GROUP)) || 
-	                         (currentLine.contains(NOTIFS.token()) && objectType.equals(NOTIF_GROUP)) )
-	                {
-	                    if (currentLine.contains("{"))
-	                        group = SMIStructureHandler.readList(reader, currentLine, OBJECTS);
-	                }
-
-	                                    
-	                // CONTACT-INFO
-	                else if (currentLine.contains(MODULE_CONTACT.token()))
-	                    contact.append(SMIStructureHandler.readQuotedSection(reader, currentLine, MODULE_CONTACT));
+                // SYNTAX
+                if (token.is(SYNTAX) && !objectType.equals(MODULE_COMP))
+                	nodeSyntax = SMIParserFactory.<SMIParser<MibSyntax>>getParser(SYNTAX).parse(lexer);
+                
+                // ACCESS
+                else if ((token.is(ACCESS) || token.is(MAX_ACCESS)) && !objectType.equals(MODULE_COMP))   
+                	access = SMIParserFactory.<SMIParser<Access>>getParser(ACCESS).parse(lexer);
+                
+                // STATUS
+                else if (token.is(STATUS))
+                	status = SMIParserFactory.<SMIParser<Status>>getParser(STATUS).parse(lexer);
+                
+                // LAST-UPDATED
+                else if (token.is(MODULE_LAST_UPDATED))
+                    lastUpdated = readText(lexer);
+                
+                
+                // ORGANIZATION
+                else if (token.is(MODULE_ORGANIZATION))
+                    organization = readText(lexer);
+                
+                
+                // DEFAULT VALUE (DEFVAL)
+                else if (token.is(DEFAULT))
+                    defaultValue = SMIStructureHandler.readBracketedText(lexer);
+                
+                
+                // OBJECT-GROUP members or NOTIFICATION-TYPE member
+                else if ( (token.is(OBJECTS) && objectType.equals(OBJECT_GROUP)) || 
+                         (token.is(NOTIFS) && objectType.equals(NOTIF_GROUP)) )
+                {
+                    group = SMIStructureHandler.readList(lexer);
+                }
 
-	                
-	                // DESCRIPTION
-	                else if (currentLine.contains(DESCRIPTION.token()))
-	                    description.append(SMIParserFactory.<SMIParser<String>>getParser(DESCRIPTION).parse(reader, currentLine));
+                                    
+                // CONTACT-INFO
+                else if (token.is(MODULE_CONTACT))
+                    contact.append(SMIStructureHandler.readQuotedSection(lexer));
 
-	                
-	                // REFERENCE
-	                else if (currentLine.contains(REFERENCE.token()))
-	                    ref = SMIStructureHandler.readQuotedSection(reader, currentLine, REFERENCE);
+                
+                // DESCRIPTION
+                else if (token.is(DESCRIPTION))
+                    description.append(SMIParserFactory.<SMIParser<String>>getParser(DESCRIPTION).parse(lexer));
 
-	                
-	                // INDICES
-	                else if (currentLine.contains(INDICES.token()))
-	                {
-	                    if (currentLine.contains("{"))
-	                        indices = SMIStructureHandler.readList(reader, currentLine, INDICES);
-	                }
+                
+                // REFERENCE
+                else if (token.is(REFERENCE))
+                    ref = SMIStructureHandler.readQuotedSection(lexer);
 
-	                
-	                // REVISION
-	                else if (currentLine.contains(MODULE_REVISION.token()))
-	                {                                      
-	                    MibModuleIdRevision revision = SMIParserFactory.<SMIParser<MibModuleIdRevision>>getParser(MODULE_REVISION).parse(reader, currentLine);
-	                    if (revision != null)
-	                    {
-	                        if (revisions == null)
-	                            revisions = new ArrayList<MibModuleIdRevision>();
-	                        
-	                    	revisions.add(revision);
-	                    }
-	                }
-	                
-	                currentLine = reader.readLine();
-	            }
-	            else
-	                currentLine = reader.readLine();
+                
+                // INDICES
+                else if (token.is(INDICES))
+                    indices = SMIStructureHandler.readList(lexer);
 
+                
+                // REVISION
+                else if (token.is(MODULE_REVISION))
+                {                                      
+                    MibModuleIdRevision revision = SMIParserFactory.<SMIParser<MibModuleIdRevision>>getParser(MODULE_REVISION).parse(lexer);
+                    if (revision != null)
+                    {
+                        if (revisions == null)
+                            revisions = new ArrayList<MibModuleIdRevision>();
+                        
+                    	revisions.add(revision);
+                    }
+                }
 	        }
 
-	        if (currentLine != null)
+	        if (token != null)
 	        {
-		        // the currentLine with ::= should be processed here
-	        	HierarchyData objectInfo = SMIStructureHandler.parseHierarchyData(currentLine);
-	        	//System.out.println(objectInfo.getParent() + " " + objectInfo.getIndex());;
+		        // the tokens following ::= should be processed here
+	        	HierarchyData objectInfo = SMIStructureHandler.parseHierarchyData(lexer);
 		
 		        // set basic properties
 		        MibObjectExtended mibObject = new MibObjectExtended(name, objectInfo.getIndex());
@@ -248,4 +235,17 @@ public class GeneralMibObjectParser implements SMIParser<MibObjectExtended>
 		
 		return null;
 	}
+	
+	/**
+	 * Reads a single quoted string, such as a date, as it appears in the MIB.
+	 */
+	private static String readText(SMILexer lexer)
+	{
+		Token token = lexer.peek();
+		if (token == null || token.getKind() != TokenKind.Text)
+			return "";
+		
+		lexer.next();
+		return token.getText().trim();
+	}
 }
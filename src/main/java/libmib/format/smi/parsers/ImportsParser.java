@@ -21,84 +21,40 @@
 
 package libmib.format.smi.parsers;
 
-import static libmib.format.smi.SMIToken.COMMENT;
 import static libmib.format.smi.SMIToken.SOURCE;
 
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import libmib.MibImport;
-import libmib.format.smi.SMIStructureHandler;
+import libmib.format.smi.SMILexer;
+import libmib.format.smi.SMILexer.Token;
 
 public class ImportsParser implements SMIParser<List<MibImport>>
 {
-	public List<MibImport> parse(BufferedReader reader, String currentLine) throws IOException
+	public List<MibImport> parse(SMILexer lexer)
 	{
-		// Read the entire IMPORTS section into a StringBuilder.
-        char c = 0;
-        StringBuilder importSection = new StringBuilder("");
-        while (c != -1 && c != ';')
-        {
-            c = (char)reader.read();
-            importSection.append(c);
-        }
-        
-        String[] importLines = importSection.toString().trim().split(SMIStructureHandler.NEWLINE_REGEX + "|,");
-        
+        // Each group of imported items ends with "FROM" and the name of its source MIB,
+        // and the whole section ends with a ';'.
         List<MibImport> imports = new ArrayList<MibImport>();
-        for (int i = 0; i < importLines.length; i++) // iterate through tokens
+    	MibImport importItem = new MibImport();
+    	
+    	Token token;
+        while ((token = lexer.next()) != null && !token.is(";"))
         {
-        	MibImport importItem = new MibImport();
-            boolean endOfImport = false;
-            while (!endOfImport && i < importLines.length)
+            if (token.is(SOURCE))
+            {
+            	Token source = lexer.next();
+            	if (source == null || source.is(";"))
+            		break;
+            	
+                importItem.setSource(source.getText());
+                imports.add(importItem);
+                importItem = new MibImport();
+            }
+            else if (!token.is(","))
             {
-                String element = importLines[i].trim();
-                
-                // Strip comments.
-                if (element.contains(COMMENT.token()))
-                {
-                    int commentIndex = element.indexOf(COMMENT.token());
-                    element = element.substring(0, commentIndex).trim();
-                }
-                
-                // Skip empty lines.
-                if (element.equals(""))
-                {
-                    i++;
-                    continue;
-                }
-                
-                if (element.contains(SOURCE.token())) // identify source MIBS
-                {
-                    String source = element.trim();
-                    
-                    // take care of imports that get put in the same string as the FROM statement
-                    if (!source.startsWith(SOURCE.token()))
-                    {
-                        String item = source.substring(0, source.indexOf(SOURCE.token())).trim();
-                        importItem.addImport(item);
-                    }
-                    
-                    // don't include the ';' at the end
-                    if (source.endsWith(";"))
-                        source = source.substring(0, source.length() - 1);
-                    
-                    source = source.substring(source.indexOf(SOURCE.token()) 
-                             + SOURCE.token().length()).trim();
-                    importItem.setSource(source);
-                    
-                    endOfImport = true;
-                    imports.add(importItem);
-                }
-                else
-                {
-                    importItem.addImport(element.trim());
-                }
-                
-                if (!endOfImport)
-                    i++;
+                importItem.addImport(token.getText());
             }
         }
         
@@ -23,33 +23,30 @@ package libmib.format.smi.parsers;
 
 import static libmib.format.smi.SMIToken.DESCRIPTION;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-
 import libmib.MibModuleIdRevision;
+import libmib.format.smi.SMILexer;
 import libmib.format.smi.SMIStructureHandler;
+import libmib.format.smi.SMILexer.Token;
+import libmib.format.smi.SMILexer.TokenKind;
 
 public class ModuleRevisionParser implements SMIParser<MibModuleIdRevision>
 {
-	public MibModuleIdRevision parse(BufferedReader reader, String currentLine) throws IOException
+	public MibModuleIdRevision parse(SMILexer lexer)
 	{
-        // testing rev
-        String revisionId = currentLine.substring(currentLine.indexOf("\"") + 1, currentLine.lastIndexOf("\"")).trim();
+        Token revision = lexer.peek();
+        if (revision == null || revision.getKind() != TokenKind.Text)
+            return null;
+        
+        lexer.next();
+        String revisionId = revision.getText().trim();
         
         // As far as I've seen, a REVISION is always followed by a DESCRIPTION block, 
-        // but this may not always be true.  If it's not, there could be consequences 
-        // and repercussions.
-        currentLine = reader.readLine();
-        if (currentLine != null)
-        {
-        	currentLine = currentLine.trim();
-            String revDesc = "";
-            if (currentLine.contains(DESCRIPTION.token()))
-                revDesc = SMIStructureHandler.readQuotedSection(reader, currentLine, DESCRIPTION);
-            
-            return new MibModuleIdRevision(revisionId, revDesc);
-        }
+        // but this may not always be true.  If it's not, the description is left empty
+        // and the next clause is left for the caller.
+        String revDesc = "";
+        if (lexer.skip(DESCRIPTION))
+            revDesc = SMIStructureHandler.readQuotedSection(lexer);
         
-        return null;
+        return new MibModuleIdRevision(revisionId, revDesc);
 	}
 }
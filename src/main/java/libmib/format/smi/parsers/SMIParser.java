@@ -21,22 +21,20 @@
 
 package libmib.format.smi.parsers;
 
-import java.io.BufferedReader;
-import java.io.IOException;
+import libmib.format.smi.SMILexer;
 
 /**
- * Parses a buffered reader and returns an object.
+ * Parses part of an SMI token stream and returns an object.
  *
  * @param <T> the type of object to create from parsing
  */
 public interface SMIParser<T>
 {
 	/**
-	 * Parses a buffered reader and creates an object with the parsed result.
-	 * @param reader
-	 * @param currentLine
+	 * Parses the tokens following a keyword and creates an object with the parsed result.
+	 * The keyword itself has already been consumed from the lexer.
+	 * @param lexer
 	 * @return
-	 * @throws IOException 
 	 */
-	public T parse(BufferedReader reader, String currentLine) throws IOException;
+	public T parse(SMILexer lexer);
 }
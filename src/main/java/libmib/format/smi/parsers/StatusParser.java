@@ -21,23 +21,20 @@
 
 package libmib.format.smi.parsers;
 
-import static libmib.format.smi.SMIToken.STATUS;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-
 import libmib.MibObjectType.Status;
+import libmib.format.smi.SMILexer;
+import libmib.format.smi.SMILexer.Token;
+import libmib.format.smi.SMILexer.TokenKind;
 
 public class StatusParser implements SMIParser<Status>
 {
-	public Status parse(BufferedReader reader, String currentLine) throws IOException
+	public Status parse(SMILexer lexer)
 	{
-        int index = currentLine.indexOf(STATUS.token()) + STATUS.token().length();
-        String status = currentLine.substring(index).trim();
-        
-        if (!status.equals(""))
-            return Status.valueOf(status.toUpperCase());
+        Token token = lexer.peek();
+        if (token == null || token.getKind() != TokenKind.Word)
+            return null;
         
-        return null;
+        lexer.next();
+        return Status.valueOf(token.getText().toUpperCase());
 	}
 }
@@ -21,44 +21,55 @@
 
 package libmib.format.smi.parsers;
 
-import static libmib.format.smi.SMIToken.SYNTAX;
-
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.util.Map;
 
 import libmib.MibSyntax;
+import libmib.format.smi.SMILexer;
 import libmib.format.smi.SMIStructureHandler;
+import libmib.format.smi.SMILexer.Token;
 
 public class SyntaxParser implements SMIParser<MibSyntax>
 {
-	public MibSyntax parse(BufferedReader reader, String currentLine) throws IOException
+	public MibSyntax parse(SMILexer lexer)
 	{
-		if (currentLine.equals(SYNTAX.token()))
-			currentLine = reader.readLine();
-
-        // If the OID has a list of specific integer values
-		String dataType = "";
+        // The data type runs to the end of its line, unless a size or range constraint
+        // in parentheses wraps onto the next one, or until a list of specific integer values.
+		StringBuilder dataType = new StringBuilder();
 		Map<Integer, String> valuePairs = null;
-        if (currentLine != null)
-        {
-        	currentLine = currentLine.trim();
-            if (currentLine.contains("{"))
-            {
-                int index = currentLine.indexOf("{");
-                dataType = currentLine.substring(SYNTAX.token().length(), index).trim();
-                
-                valuePairs = SMIStructureHandler.readPairs(reader, currentLine, SYNTAX);
-            }
-            else
-            	dataType = currentLine.substring(SYNTAX.token().length()).trim();
-        }
+		
+		int depth = 0;
+		int line = -1;
+		Token token;
+		while ((token = lexer.peek()) != null)
+		{
+			if (depth == 0)
+			{
+				// If the OID has a list of specific integer values
+				if (token.is("{"))
+				{
+					valuePairs = SMIStructureHandler.readPairs(lexer);
+					break;
+				}
+				
+				if (token.is("::=") || (line != -1 && token.getLine() != line))
+					break;
+			}
+			
+			if (token.is("("))
+				depth++;
+			else if (token.is(")"))
+				depth--;
+			
+			lexer.next();
+			SMIStructureHandler.appendToken(dataType, token);
+			line = token.getLine();
+		}
         
         // Construct a Syntax object; an object's type is the only thing
         // required for the existence of a syntax element.
-        if (!dataType.equals("")) 
+        if (dataType.length() > 0) 
         {
-            MibSyntax syntax = new MibSyntax(dataType);
+            MibSyntax syntax = new MibSyntax(dataType.toString());
             if (valuePairs != null)
             	syntax.setValuePairs(valuePairs);
             
@@ -23,10 +23,21 @@ package libmib.mibtree;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeModel;
@@ -34,6 +45,7 @@ import javax.swing.tree.TreeModel;
 import utilities.events.Event;
 import utilities.events.EventListener;
 
+import libmib.MibDescriptionStore;
 import libmib.MibObjectIdentifier;
 import libmib.MibObjectType;
 import libmib.format.InvalidMibFormatException;
@@ -47,21 +59,36 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
 {
     protected TreeModel mibTreeModel = null;
     private FilenameFilter filter;
+    private MibCache mibCache;
+    private MibDescriptionStore descriptionStore;
     
     // Contains nodes that couldn't be added to the MIB tree at creation time and their parents
     // in pairs of (lost node, parent name).
     protected List<LostChildNode> lostChildren;
     
+    // The MIBs in the tree by the absolute path of the file they were read from, so that
+    // a changed file and the MIBs importing it can be taken out of the tree and read again.
+    // Reloads are prepared on another thread, which looks up the loaded MIBs concurrently.
+    private final Map<File, ParsedMib> loadedMibs = new ConcurrentHashMap<File, ParsedMib>();
+    
+    // The objects of loaded MIBs that were recorded as sharing another MIB's node rather 
+    // than added, so a reload can tell which MIBs lose a definition with a removed node.
+    private final Set<MibObjectIdentifier> sharedObjects = 
+            Collections.newSetFromMap(new ConcurrentHashMap<MibObjectIdentifier, Boolean>());
+    
+    // Nodes put into the tree since tracking started, so the tree model can be told about
+    // them; null when not tracking.
+    private List<MibTreeNode> insertedNodes;
+    
     // This improves performance in searching for existing nodes with what seems to be 
     // relatively little memory cost.  According to JProfiler, the call to the very 
     // inefficient getNodeByName actually took up the most amount of CPU time. Now,
-    // using the HashMap to search for existing nodes is an O(1) operation.
-    protected HashMap<String, MibTreeNode> nodeMap;
+    // using the name index to search for existing nodes is an O(1) operation.
+    protected final MibNameIndex nameIndex;
     
     public AbstractMibTreeBuilder()
     {
-        // Initialize the HashMap with 2000 entries to avoid rehashing early.
-        nodeMap = new HashMap<String, MibTreeNode>(2000); 
+        nameIndex = new MibNameIndex(); 
                 
         // Tree Initialization
         
@@ -71,19 +98,19 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
 
         MibObjectIdentifier iso = new MibObjectIdentifier("iso", 1);
         MibTreeNode isoNode = new MibTreeNode(iso);
-        nodeMap.put("iso", isoNode);
+        nameIndex.add(isoNode);
 
         MibObjectIdentifier ccitt = new MibObjectIdentifier("ccitt", 0);
         MibTreeNode ccittNode = new MibTreeNode(ccitt);
-        nodeMap.put("ccitt", ccittNode);
+        nameIndex.add(ccittNode);
 
         MibObjectIdentifier org = new MibObjectIdentifier("org", 3);
         MibTreeNode orgNode = new MibTreeNode(org);
-        nodeMap.put("org", orgNode);
+        nameIndex.add(orgNode);
 
         MibObjectIdentifier dod = new MibObjectIdentifier("dod", 6);
         MibTreeNode dodNode = new MibTreeNode(dod);
-        nodeMap.put("dod", dodNode);
+        nameIndex.add(dodNode);
 
         mibTreeModel = new DefaultTreeModel(rootNode); 			//use a default tree model
 
@@ -97,7 +124,7 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
     /**
      * Adds all MIB files in the specified directory to the MIB tree if that directory 
      * exists and the files are valid.  Because potentially more than one MIB is being 
-     * added, the order in which the files are added is taken into account.
+     * added, the files are read in parallel and then added in the order of their imports.
      * If a file in the directory is invalid, it is skipped and the next file is processed.
      * 
      * @param mibDir the directory containing the MIB files
@@ -112,11 +139,8 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
 
         File[] mibDirList = mibDir.listFiles(filter);
 
-        // Organize MIB files for a more optimal compile order.
-        // This is really half-assed; a proper handling of dependencies is very much in order,
-        // but I am not sure how to do this the first time around.
-        // TODO: create a way of determining mib dependencies and organizing the file list
-        //       accordingly
+        // Put RFC files first as the preferred order for MIBs whose imports don't decide it.
+        // RFC dependencies USUALLY tend to be in numerical order, though this just sorts lexicographically.
         File[] rfcList = new File[mibDirList.length];
         File[] otherList = new File[mibDirList.length];
 
@@ -136,7 +160,7 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
             }
         }
         
-        Arrays.sort(rfcList, 0, rfcCnt); // RFC dependencies USUALLY tend to be in numerical order, though this just sorts lexicographically
+        Arrays.sort(rfcList, 0, rfcCnt);
 
         for (int i = 0; i < rfcCnt; i++)
         {
@@ -150,28 +174,71 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
             j++;
         }
 
-        // this uses the lost children list on a global level between files
-        if (lostChildren == null)
-            lostChildren = new ArrayList<LostChildNode>();
+        List<ParsedMib> validMibs = this.readMibs(mibDirList);
         
-        // loop through all files in the mib directory and add them to the tree
-        for (File mibFile : mibDirList)
+        if (mibCache != null)
         {
             try
             {
-                this.addMibToTree(mibFile);
-                currentMibRoot = null;
+                mibCache.save();
             }
-            catch (InvalidMibFormatException e)
+            catch (IOException e)
             {
                 System.out.println(e.getMessage());
             }
         }
+
+        // this uses the lost children list on a global level between files
+        if (lostChildren == null)
+            lostChildren = new ArrayList<LostChildNode>();
+        
+        // Add the MIBs to the tree after the MIBs they import, so that parents are usually 
+        // in the tree before their children and few nodes end up as lost children.
+        for (ParsedMib parsedMib : MibImportOrder.sort(validMibs))
+        {
+            this.addParsedMib(parsedMib);
+            currentMibRoot = null;
+        }
         
         this.addLostChildren();  
     }
 
 
+    /**
+     * Reads MIB files in parallel, since reading doesn't touch the tree.  Invalid files are 
+     * reported and left out.
+     * 
+     * @param mibFiles the files to read
+     * @return the MIBs read from the valid files, in the order of the files
+     */
+    private List<ParsedMib> readMibs(File[] mibFiles)
+    {
+        ParsedMib[] parsedMibs = new ParsedMib[mibFiles.length];
+        InvalidMibFormatException[] errors = new InvalidMibFormatException[mibFiles.length];
+        
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            pool.invoke(new ParseTask(mibFiles, 0, mibFiles.length, parsedMibs, errors));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        
+        List<ParsedMib> validMibs = new ArrayList<ParsedMib>(parsedMibs.length);
+        for (int i = 0; i < parsedMibs.length; i++)
+        {
+            if (errors[i] != null)
+                System.out.println(errors[i].getMessage());
+            else if (parsedMibs[i] != null)
+                validMibs.add(parsedMibs[i]);
+        }
+        
+        return validMibs;
+    }
+
+
     /**
      * Adds a single MIB file to the MIB tree.
      * 
@@ -188,10 +255,18 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
         // instead of across files.
         if (lostChildren == null)
             lostChildren = new ArrayList<LostChildNode>();
-         
-        this.addMibToTree(mibFile);
         
-        this.addLostChildren();
+        insertedNodes = new ArrayList<MibTreeNode>();
+        try
+        {
+            this.addParsedMib(this.parseMib(mibFile));
+            
+            this.addLostChildren();
+        }
+        finally
+        {
+            this.fireNodesInserted();
+        }
         
         if (currentMibRoot != null)
         	mibAddedEvent.raise(new MibAddedEventInfo(currentMibRoot));
@@ -201,15 +276,399 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
     
     
     /**
-     * Parses and validates a MIB file and adds its elements to the MIB tree model.
-     * This method should be implemented by subclasses and it is where the actual
-     * structure of the MIB file is handled.
+     * Brings the MIB tree up to date with files that have been created, changed or deleted 
+     * since they were added, by preparing a reload and applying it at once.
+     * <br><br>
+     * Like the other methods that change the tree, this must be called on the thread that 
+     * owns the tree model.  To keep the reading of the files off that thread, call 
+     * {@link #prepareReload} on another thread and only {@link #applyReload} on it.
      * 
-     * @param mibFile the File to add to the MIB Tree
+     * @param mibFiles the files that have changed
+     */
+    public void reloadMibFiles(Collection<File> mibFiles)
+    {
+        this.applyReload(this.prepareReload(mibFiles));
+    }
+    
+    /**
+     * Reads the MIB files that have been created, changed or deleted, along with every loaded 
+     * MIB that imports them, directly or indirectly, and every loaded MIB sharing a node that 
+     * one of them defined.  The files are read in parallel and the 
+     * tree isn't touched, so this can be called on any thread, but the reload should be 
+     * applied before the next one is prepared, since which MIBs are read depends on the 
+     * MIBs in the tree.
+     * 
+     * @param mibFiles the files that have changed
+     * @return the MIBs to apply to the tree with {@link #applyReload}
+     */
+    public MibReload prepareReload(Collection<File> mibFiles)
+    {
+        // Read the changed files that still exist.
+        Set<File> changedFiles = new LinkedHashSet<File>();
+        Set<String> affectedMibNames = new HashSet<String>();
+        Set<String> removedNames = new HashSet<String>();
+        List<File> existingFiles = new ArrayList<File>();
+        for (File mibFile : mibFiles)
+        {
+            File file = mibFile.getAbsoluteFile();
+            if (!changedFiles.add(file))
+                continue;
+            
+            ParsedMib oldMib = loadedMibs.get(file);
+            if (oldMib != null)
+            {
+                affectedMibNames.add(oldMib.getMibName());
+                this.addDefinedNames(oldMib, removedNames);
+            }
+            
+            if (file.isFile())
+                existingFiles.add(file);
+            else if (mibCache != null)
+                mibCache.remove(file);
+        }
+        
+        List<ParsedMib> changedMibs = this.readMibs(existingFiles.toArray(new File[existingFiles.size()]));
+        for (ParsedMib changedMib : changedMibs)
+            affectedMibNames.add(changedMib.getMibName());
+        
+        // The MIBs importing a changed MIB may hang objects from it, so they are read again too.
+        // So are the MIBs sharing a node that is removed with an old MIB, since their definition 
+        // goes with the node, and they may have to add their own.
+        Set<File> dependentFiles = new LinkedHashSet<File>();
+        boolean foundDependent = true;
+        while (foundDependent)
+        {
+            foundDependent = false;
+            for (Map.Entry<File, ParsedMib> loaded : loadedMibs.entrySet())
+            {
+                File file = loaded.getKey();
+                ParsedMib loadedMib = loaded.getValue();
+                
+                if (changedFiles.contains(file) || dependentFiles.contains(file) 
+                        || (Collections.disjoint(loadedMib.getImportedMibs(), affectedMibNames) 
+                            && !this.sharesNames(loadedMib, removedNames)))
+                    continue;
+                
+                dependentFiles.add(file);
+                affectedMibNames.add(loadedMib.getMibName());
+                this.addDefinedNames(loadedMib, removedNames);
+                foundDependent = true;
+            }
+        }
+        
+        List<ParsedMib> newMibs = new ArrayList<ParsedMib>(changedMibs);
+        newMibs.addAll(this.readMibs(dependentFiles.toArray(new File[dependentFiles.size()])));
+        
+        return new MibReload(changedFiles, dependentFiles, changedMibs, newMibs);
+    }
+    
+    /**
+     * Adds the names of the nodes a loaded MIB added to the tree, rather than shared.
+     */
+    private void addDefinedNames(ParsedMib parsedMib, Set<String> names)
+    {
+        for (ParsedMib.Definition definition : parsedMib.getDefinitions())
+        {
+            MibObjectType mibObject = definition.getMibObject();
+            if (!sharedObjects.contains(mibObject))
+                names.add(mibObject.getName());
+        }
+    }
+    
+    /**
+     * Checks whether a loaded MIB shares the node of any of the given names.
+     */
+    private boolean sharesNames(ParsedMib parsedMib, Set<String> names)
+    {
+        for (ParsedMib.Definition definition : parsedMib.getDefinitions())
+        {
+            MibObjectType mibObject = definition.getMibObject();
+            if (sharedObjects.contains(mibObject) && names.contains(mibObject.getName()))
+                return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Applies a reload prepared by {@link #prepareReload} to the tree.  The old versions of 
+     * the MIBs read for the reload are taken out of the tree and the new ones are added back 
+     * in the order of their imports.  The tree model is told about each node removed and 
+     * inserted instead of being reloaded, and a MIB added event is raised for each of the 
+     * changed files that was added.
+     * <br><br>
+     * Like the other methods that change the tree, this must be called on the thread that 
+     * owns the tree model.
+     * 
+     * @param reload the MIBs read for the reload
+     */
+    public void applyReload(MibReload reload)
+    {
+        if (lostChildren == null)
+            lostChildren = new ArrayList<LostChildNode>();
+        
+        // Take the old versions out of the tree.
+        List<ParsedMib> oldMibs = new ArrayList<ParsedMib>();
+        for (File file : reload.getChangedFiles())
+        {
+            if (loadedMibs.containsKey(file))
+                oldMibs.add(loadedMibs.remove(file));
+        }
+        
+        for (File file : reload.getDependentFiles())
+        {
+            if (loadedMibs.containsKey(file))
+                oldMibs.add(loadedMibs.remove(file));
+        }
+        
+        List<LostChildNode> orphans = this.removeParsedMibs(oldMibs);
+        
+        // Add the new versions.
+        List<ParsedMib> changedMibs = reload.getChangedMibs();
+        List<MibTreeNode> addedRoots = new ArrayList<MibTreeNode>();
+        insertedNodes = new ArrayList<MibTreeNode>();
+        try
+        {
+            for (ParsedMib parsedMib : MibImportOrder.sort(reload.getNewMibs()))
+            {
+                currentMibRoot = null;
+                this.addParsedMib(parsedMib);
+                
+                if (currentMibRoot != null && changedMibs.contains(parsedMib))
+                    addedRoots.add(currentMibRoot);
+            }
+            
+            currentMibRoot = null;
+            this.addLostChildren();
+            
+            // Put back the nodes of other MIBs that hung from the removed nodes, if their parents returned.
+            for (LostChildNode orphan : orphans)
+            {
+                MibTreeNode orphanNode = orphan.getNode();
+                MibObjectIdentifier orphanObject = (MibObjectIdentifier)orphanNode.getUserObject();
+                
+                if (nameIndex.contains(orphan.getParentName()) && !nameIndex.contains(orphanObject.getName()))
+                {
+                    nameIndex.getNode(orphan.getParentName()).add(orphanNode);
+                    this.indexSubtree(orphanNode, true);
+                    insertedNodes.add(orphanNode);
+                }
+            }
+        }
+        finally
+        {
+            this.fireNodesInserted();
+        }
+        
+        if (mibCache != null)
+        {
+            try
+            {
+                mibCache.save();
+            }
+            catch (IOException e)
+            {
+                System.out.println(e.getMessage());
+            }
+        }
+        
+        for (MibTreeNode addedRoot : addedRoots)
+            mibAddedEvent.raise(new MibAddedEventInfo(addedRoot));
+    }
+    
+    /**
+     * Removes the nodes defined by MIBs from the tree and the name index.  Nodes defined by 
+     * other MIBs that hang from the removed nodes are taken out of the tree as well and 
+     * returned, so they can be put back if their parents are added again.
+     * 
+     * @param parsedMibs the MIBs to remove
+     * @return the detached nodes of other MIBs and the names of their parents
+     */
+    private List<LostChildNode> removeParsedMibs(List<ParsedMib> parsedMibs)
+    {
+        Set<MibTreeNode> removedNodes = new LinkedHashSet<MibTreeNode>();
+        for (ParsedMib parsedMib : parsedMibs)
+        {
+            for (ParsedMib.Definition definition : parsedMib.getDefinitions())
+            {
+                MibObjectType mibObject = definition.getMibObject();
+                MibTreeNode node = this.findDefinedNode(mibObject);
+                
+                // A definition that duplicated a name from another MIB only left a record in the index.
+                if (node != null && node.getUserObject() == mibObject)
+                    removedNodes.add(node);
+                else if (node != null)
+                    nameIndex.removeDefinition(mibObject.getMibName(), mibObject.getName(), node);
+                
+                sharedObjects.remove(mibObject);
+            }
+        }
+        
+        DefaultTreeModel treeModel = (DefaultTreeModel)mibTreeModel;
+        List<LostChildNode> orphans = new ArrayList<LostChildNode>();
+        for (MibTreeNode node : removedNodes)
+        {
+            String nodeName = ((MibObjectIdentifier)node.getUserObject()).getName();
+            for (int i = node.getChildCount() - 1; i >= 0; i--)
+            {
+                MibTreeNode child = (MibTreeNode)node.getChildAt(i);
+                if (!removedNodes.contains(child))
+                {
+                    this.removeNode(treeModel, child);
+                    this.indexSubtree(child, false);
+                    orphans.add(new LostChildNode(child, nodeName));
+                }
+            }
+        }
+        
+        for (MibTreeNode node : removedNodes)
+        {
+            // Only the highest removed nodes are still in the tree by now.
+            if (node.getParent() != null && !removedNodes.contains(node.getParent()))
+                this.removeNode(treeModel, node);
+            
+            nameIndex.remove(node);
+        }
+        
+        return orphans;
+    }
+    
+    /**
+     * Finds the node a MIB object's definition resolves to, which is the node qualified by its 
+     * MIB, since the bare name may belong to another MIB's node.
+     */
+    private MibTreeNode findDefinedNode(MibObjectIdentifier mibObject)
+    {
+        String mibName = mibObject.getMibName();
+        if (mibName == null || mibName.equals(""))
+            return nameIndex.getNode(mibObject.getName());
+        
+        return nameIndex.getNode(mibName, mibObject.getName());
+    }
+    
+    private void removeNode(DefaultTreeModel treeModel, MibTreeNode node)
+    {
+        if (node.getParent() != null)
+            treeModel.removeNodeFromParent(node);
+    }
+    
+    /**
+     * Adds or removes every node under and including a node to or from the name index.
+     */
+    private void indexSubtree(MibTreeNode node, boolean add)
+    {
+        Enumeration<?> subtree = node.preorderEnumeration();
+        while (subtree.hasMoreElements())
+        {
+            MibTreeNode subtreeNode = (MibTreeNode)subtree.nextElement();
+            if (add)
+                nameIndex.add(subtreeNode);
+            else
+                nameIndex.remove(subtreeNode);
+        }
+    }
+    
+    /**
+     * Tells the tree model about the nodes inserted since tracking started, and stops tracking.
+     * Each group of nodes is reported once under the parent it was inserted into.
+     */
+    private void fireNodesInserted()
+    {
+        List<MibTreeNode> nodes = insertedNodes;
+        insertedNodes = null;
+        
+        if (nodes == null || nodes.isEmpty())
+            return;
+        
+        Set<MibTreeNode> inserted = new HashSet<MibTreeNode>(nodes);
+        Map<MibTreeNode, List<Integer>> insertedChildren = new LinkedHashMap<MibTreeNode, List<Integer>>();
+        for (MibTreeNode node : nodes)
+        {
+            MibTreeNode parent = (MibTreeNode)node.getParent();
+            if (parent == null || inserted.contains(parent))
+                continue;
+            
+            List<Integer> childIndices = insertedChildren.get(parent);
+            if (childIndices == null)
+            {
+                childIndices = new ArrayList<Integer>();
+                insertedChildren.put(parent, childIndices);
+            }
+            
+            childIndices.add(parent.getIndex(node));
+        }
+        
+        DefaultTreeModel treeModel = (DefaultTreeModel)mibTreeModel;
+        for (Map.Entry<MibTreeNode, List<Integer>> entry : insertedChildren.entrySet())
+        {
+            List<Integer> childIndices = entry.getValue();
+            Collections.sort(childIndices);
+            
+            int[] indices = new int[childIndices.size()];
+            for (int i = 0; i < indices.length; i++)
+                indices[i] = childIndices.get(i);
+            
+            treeModel.nodesWereInserted(entry.getKey(), indices);
+        }
+    }
+    
+    
+    /**
+     * Parses and validates a MIB file and returns its elements without adding them to 
+     * the MIB tree model.  This method should be implemented by subclasses and it is where 
+     * the actual structure of the MIB file is handled.  It may be called for several files 
+     * at once, so it must not modify the builder.
+     * 
+     * @param mibFile the File to parse
+     * @return the MIB's name, imports and objects, or null if the file couldn't be read
      * 
      * @throws InvalidMibFormatException if the MIB file is invalid
      */
-    abstract protected void addMibToTree(File mibFile) throws InvalidMibFormatException;
+    abstract protected ParsedMib parseMib(File mibFile) throws InvalidMibFormatException;
+    
+    /**
+     * Adds the objects of a parsed MIB to the tree.  An object already in the tree under the 
+     * same name, parent and id is recorded as a duplicate definition instead of being added again.
+     * 
+     * @param parsedMib the MIB to add
+     */
+    protected void addParsedMib(ParsedMib parsedMib)
+    {
+        if (parsedMib == null)
+            return;
+        
+        loadedMibs.put(parsedMib.getFile().getAbsoluteFile(), parsedMib);
+        
+        for (ParsedMib.Definition definition : parsedMib.getDefinitions())
+        {
+            MibObjectType mibObject = definition.getMibObject();
+            
+            if (!this.addDuplicateDefinition(mibObject, definition.getParentName()))
+            {
+                if (mibObject.getSyntax() != null)
+                    mibObject.setSyntax(mibObject.getSyntax().intern());
+                
+                this.storeDescription(mibObject);
+                this.addMibObject(mibObject, definition.getParentName());
+            }
+        }
+    }
+    
+    private void storeDescription(MibObjectType mibObject)
+    {
+        if (descriptionStore == null)
+            return;
+        
+        try
+        {
+            descriptionStore.storeDescription(mibObject);
+        }
+        catch (IOException e)
+        {
+            // The description just stays on the heap.
+            System.out.println(e.getMessage());
+        }
+    }
     
     /**
      * @see libmib.mibtree.MibTreeBuilder#addMibAddedListener()
@@ -262,6 +721,18 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
     }
     
     
+    /**
+     * Retrieves the index of the names of the nodes in the MIB tree, which can be searched 
+     * by module-qualified name, without regard to case, or by prefix or substring.
+     * 
+     * @return the name index for the MIB tree
+     */
+    public MibNameIndex getNameIndex()
+    {
+        return nameIndex;
+    }
+    
+    
     /* (non-Javadoc)
      * @see libmib.mibtree.MibTreeBuilder#getMibDirectory() 
      */
@@ -278,16 +749,18 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
     protected void addMibObject(MibObjectType newObject, String parentName)
     {
     	MibTreeNode newNode = new MibTreeNode(newObject);
-        String name = newObject.getName();
         
         updateCurrentRoot(newNode);
         
-        // check the HashMap for specified parent node
-        if (nodeMap.containsKey(parentName))
+        // check the name index for specified parent node
+        MibTreeNode parent = this.findParent(newObject.getMibName(), parentName);
+        if (parent != null)
         {
-            MibTreeNode parent = nodeMap.get(parentName); 
             parent.add(newNode);
-            nodeMap.put(name, newNode);
+            nameIndex.add(newNode);
+            
+            if (insertedNodes != null)
+                insertedNodes.add(newNode);
         }
         else
         {
@@ -298,6 +771,101 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
     }
 
 
+    /**
+     * Finds the node a MIB object is to be added under.  The parent as defined by the 
+     * object's own MIB is preferred, since that MIB may place a name elsewhere than the 
+     * first MIB that defined it.
+     * 
+     * @param mibName the name of the MIB defining the object
+     * @param parentName the name of the object's parent
+     * @return the parent node, or null if it isn't in the tree
+     */
+    private MibTreeNode findParent(String mibName, String parentName)
+    {
+        MibTreeNode parent = null;
+        if (mibName != null && !mibName.equals(""))
+            parent = nameIndex.getNode(mibName, parentName);
+        
+        if (parent == null)
+            parent = nameIndex.getNode(parentName);
+        
+        return parent;
+    }
+
+
+    /**
+     * Records that a MIB defines a name that is already in the tree, so that the name 
+     * qualified by that MIB resolves to the existing node.  The node is only shared if it 
+     * has the same parent and id as the MIB's definition; a MIB that places the name 
+     * elsewhere needs a node of its own.
+     * 
+     * @param mibObject the object defined by the MIB
+     * @param parentName the name of the object's parent in the MIB
+     * @return true if the definition now resolves to an existing node, or false if the 
+     *         object must be added to the tree
+     */
+    protected boolean addDuplicateDefinition(MibObjectIdentifier mibObject, String parentName)
+    {
+        String name = mibObject.getName();
+        for (MibTreeNode existingNode : nameIndex.getNodesIgnoreCase(name))
+        {
+            MibObjectIdentifier existingObject = (MibObjectIdentifier)existingNode.getUserObject();
+            MibTreeNode existingParent = (MibTreeNode)existingNode.getParent();
+            
+            if (existingObject.getName().equals(name) 
+                && existingObject.getId() == mibObject.getId()
+                && existingParent != null 
+                && ((MibObjectIdentifier)existingParent.getUserObject()).getName().equals(parentName))
+            {
+                nameIndex.addDefinition(mibObject.getMibName(), name, existingNode);
+                sharedObjects.add(mibObject);
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
+
+    /**
+     * Reads a MIB file from the cache if it is there and unchanged, or parses it and adds 
+     * it to the cache otherwise.
+     */
+    private ParsedMib readMib(File mibFile) throws InvalidMibFormatException
+    {
+        if (mibCache == null)
+            return this.parseMib(mibFile);
+        
+        ParsedMib parsedMib = mibCache.get(mibFile);
+        if (parsedMib == null)
+        {
+            parsedMib = this.parseMib(mibFile);
+            mibCache.put(mibFile, parsedMib);
+        }
+        
+        return parsedMib;
+    }
+    
+	/* (non-Javadoc)
+	 * @see libmib.mibtree.MibTreeBuilder#getMibCache()
+	 */
+	public MibCache getMibCache() { return mibCache; }
+	
+	/* (non-Javadoc)
+	 * @see libmib.mibtree.MibTreeBuilder#setMibCache(libmib.mibtree.MibCache)
+	 */
+	public void setMibCache(MibCache cache) { this.mibCache = cache; }
+	
+	/* (non-Javadoc)
+	 * @see libmib.mibtree.MibTreeBuilder#getDescriptionStore()
+	 */
+	public MibDescriptionStore getDescriptionStore() { return descriptionStore; }
+	
+	/* (non-Javadoc)
+	 * @see libmib.mibtree.MibTreeBuilder#setDescriptionStore(libmib.MibDescriptionStore)
+	 */
+	public void setDescriptionStore(MibDescriptionStore store) { this.descriptionStore = store; }
+	
 	/* (non-Javadoc)
 	 * @see libmib.mibtree.MibTreeBuilder#getFileFilter()
 	 */
@@ -331,14 +899,17 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
             //System.out.print("\n" + lostMibObject.getName() + " --> " + nodeParent);
 
             // test to see if this node already exists in the tree, lost children may have been added later due to duplication
-            if (!nodeMap.containsKey(lostMibObject.getName())) //check the HashMap
+            if (!this.addDuplicateDefinition(lostMibObject, parentName)) //check the name index
             {
-                // check the HashMap for specified parent node
-                if (nodeMap.containsKey(parentName))
+                // check the name index for specified parent node
+                MibTreeNode parent = this.findParent(lostMibObject.getMibName(), parentName);
+                if (parent != null)
                 {
-                    MibTreeNode parent = nodeMap.get(parentName); 
                     parent.add(lostNode);
-                    nodeMap.put(lostMibObject.getName(), lostNode);
+                    nameIndex.add(lostNode);
+                    
+                    if (insertedNodes != null)
+                        insertedNodes.add(lostNode);
                     //System.out.print(":    Added");
                 }
             }
@@ -348,6 +919,51 @@ public abstract class AbstractMibTreeBuilder implements MibTreeBuilder
         lostChildren.clear();  // reset lostChildren
     }
 	
+	/**
+	 * Parses a range of MIB files, splitting it in half until a single file remains.
+	 */
+	private final class ParseTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final File[] mibFiles;
+		private final int start;
+		private final int end;
+		private final ParsedMib[] parsedMibs;
+		private final InvalidMibFormatException[] errors;
+		
+		public ParseTask(File[] mibFiles, int start, int end, ParsedMib[] parsedMibs, InvalidMibFormatException[] errors)
+		{
+			this.mibFiles = mibFiles;
+			this.start = start;
+			this.end = end;
+			this.parsedMibs = parsedMibs;
+			this.errors = errors;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if (end - start > 1)
+			{
+				int middle = (start + end) >>> 1;
+				invokeAll(new ParseTask(mibFiles, start, middle, parsedMibs, errors), 
+						new ParseTask(mibFiles, middle, end, parsedMibs, errors));
+			}
+			else if (end > start)
+			{
+				try
+				{
+					parsedMibs[start] = readMib(mibFiles[start]);
+				}
+				catch (InvalidMibFormatException e)
+				{
+					errors[start] = e;
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Utility class used to represent a node that was created before its
 	 * parent node.
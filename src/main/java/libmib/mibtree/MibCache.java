@@ -0,0 +1,574 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib.mibtree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import utilities.IOUtilities;
+
+import libmib.MibDescriptionStore;
+import libmib.MibObjectType;
+import libmib.MibSyntax;
+import libmib.MibObjectType.Access;
+import libmib.MibObjectType.Status;
+
+/**
+ * A persistent cache of parsed MIB files, so that MIBs which have not changed since they 
+ * were last compiled don't need to be parsed again.  Each file's entry is keyed by its path 
+ * and checked against the file's size, modification time and a checksum of its contents; 
+ * the checksum is only computed when the modification time has changed, so a file that was 
+ * touched or copied without being edited is still found in the cache.
+ * <br><br>
+ * The cache is stored as a compressed binary file.  Entries are kept encoded in memory and 
+ * decoded on each lookup, so every lookup returns new MIB objects that can be added to a 
+ * tree.  Lookups and additions are thread safe.
+ * <br><br>
+ * If a description store is set, the descriptions are moved into it and the entries in 
+ * memory only hold their offsets in the store, so the text isn't kept on the heap twice.  
+ * The descriptions are read back from the store when the cache is saved.
+ */
+public class MibCache
+{
+    private static final int MAGIC = 0x4D494243;   // "MIBC"
+    private static final int FORMAT_VERSION = 1;
+    
+    private static final int INLINE_DESCRIPTION = 0;
+    private static final int STORED_DESCRIPTION = 1;
+    
+    private final File cacheFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private volatile MibDescriptionStore descriptionStore = null;
+    
+    /**
+     * Creates an empty cache that is stored in the given file.
+     * 
+     * @param cacheFile the file the cache is loaded from and saved to
+     */
+    public MibCache(File cacheFile)
+    {
+        if (cacheFile == null)
+            throw new IllegalArgumentException("Cache file cannot be null.");
+        
+        this.cacheFile = cacheFile;
+    }
+    
+    /**
+     * Gets the file the cache is stored in.
+     */
+    public File getCacheFile()
+    {
+        return cacheFile;
+    }
+    
+    /**
+     * Gets the store the descriptions of the entries are kept in, or null if they are 
+     * kept in memory.
+     */
+    public MibDescriptionStore getDescriptionStore()
+    {
+        return descriptionStore;
+    }
+    
+    /**
+     * Sets the store the descriptions of the entries are moved into.  It applies to entries 
+     * loaded or added afterwards, so it should be set before the cache is loaded.  The MIBs 
+     * returned by {@link #get} have their descriptions in the same store.
+     * 
+     * @param store the description store, or null to keep descriptions in memory
+     */
+    public void setDescriptionStore(MibDescriptionStore store)
+    {
+        this.descriptionStore = store;
+    }
+    
+    /**
+     * Loads the cache from its file, replacing any current entries.  A missing, unreadable 
+     * or outdated cache file leaves the cache empty.
+     * 
+     * @return true if the cache file was loaded
+     */
+    public boolean load()
+    {
+        entries.clear();
+        if (!cacheFile.isFile())
+            return false;
+        
+        DataInputStream input = null;
+        try
+        {
+            input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(cacheFile))));
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION)
+                return false;
+            
+            int count = input.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                String path = readString(input);
+                long size = input.readLong();
+                long lastModified = input.readLong();
+                long checksum = input.readLong();
+                
+                byte[] encoding = new byte[input.readInt()];
+                input.readFully(encoding);
+                
+                // Move the descriptions into the store, leaving only their offsets in memory.
+                MibDescriptionStore store = descriptionStore;
+                if (store != null)
+                    encoding = encode(decode(null, encoding, null), store);
+                
+                entries.put(path, new Entry(size, lastModified, checksum, encoding, store));
+            }
+            
+            return true;
+        }
+        catch (IOException e)
+        {
+            entries.clear();
+            return false;
+        }
+        finally
+        {
+            IOUtilities.closeQuietly(input);
+        }
+    }
+    
+    /**
+     * Saves the cache to its file, leaving out entries for files that no longer exist.  The 
+     * cache is written to a temporary file first so a failed save doesn't corrupt the cache.
+     * 
+     * @throws IOException if the cache file could not be written
+     */
+    public void save() throws IOException
+    {
+        List<Map.Entry<String, Entry>> existing = new ArrayList<Map.Entry<String, Entry>>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet())
+        {
+            if (new File(entry.getKey()).isFile())
+                existing.add(entry);
+        }
+        
+        File directory = cacheFile.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Could not create the directory for " + cacheFile.getPath());
+        
+        File temporaryFile = new File(directory, cacheFile.getName() + ".tmp");
+        DataOutputStream output = null;
+        try
+        {
+            output = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile))));
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(existing.size());
+            
+            for (Map.Entry<String, Entry> entry : existing)
+            {
+                Entry value = entry.getValue();
+                
+                // The file holds the text of the descriptions, since the store doesn't outlive the application.
+                byte[] encoding = value.encoding;
+                if (value.store != null)
+                    encoding = encode(decode(null, encoding, value.store), null);
+                
+                writeString(output, entry.getKey());
+                output.writeLong(value.size);
+                output.writeLong(value.lastModified);
+                output.writeLong(value.checksum);
+                output.writeInt(encoding.length);
+                output.write(encoding);
+            }
+            
+            output.close();
+            output = null;
+            
+            Files.move(temporaryFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            if (output != null)
+            {
+                IOUtilities.closeQuietly(output);
+                temporaryFile.delete();
+            }
+        }
+    }
+    
+    /**
+     * Finds a MIB file in the cache.
+     * 
+     * @param mibFile the MIB file
+     * @return a new copy of the parsed MIB, or null if the file is not in the cache or 
+     *         has changed since it was added
+     */
+    public ParsedMib get(File mibFile)
+    {
+        String path = mibFile.getAbsolutePath();
+        Entry entry = entries.get(path);
+        if (entry == null || entry.size != mibFile.length())
+            return null;
+        
+        try
+        {
+            long lastModified = mibFile.lastModified();
+            if (entry.lastModified != lastModified)
+            {
+                if (entry.checksum != checksum(mibFile))
+                    return null;
+                
+                entries.put(path, new Entry(entry.size, lastModified, entry.checksum, entry.encoding, entry.store));
+            }
+            
+            return decode(mibFile, entry.encoding, entry.store);
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * Adds a parsed MIB file to the cache, replacing any earlier entry for the file.
+     * 
+     * @param mibFile the MIB file
+     * @param parsedMib the result of parsing the file
+     */
+    public void put(File mibFile, ParsedMib parsedMib)
+    {
+        if (parsedMib == null)
+            return;
+        
+        try
+        {
+            // Read the file's attributes before its contents so that a change made in 
+            // between is detected the next time.
+            long size = mibFile.length();
+            long lastModified = mibFile.lastModified();
+            long checksum = checksum(mibFile);
+            
+            MibDescriptionStore store = descriptionStore;
+            entries.put(mibFile.getAbsolutePath(), new Entry(size, lastModified, checksum, encode(parsedMib, store), store));
+        }
+        catch (IOException e)
+        {
+            entries.remove(mibFile.getAbsolutePath());
+        }
+    }
+    
+    /**
+     * Removes a MIB file from the cache.
+     */
+    public void remove(File mibFile)
+    {
+        entries.remove(mibFile.getAbsolutePath());
+    }
+    
+    /**
+     * Returns the number of MIB files in the cache.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+    
+    /**
+     * Gets the encoded form of a MIB file kept in memory, or null if it isn't in the cache.
+     */
+    byte[] getEncoding(File mibFile)
+    {
+        Entry entry = entries.get(mibFile.getAbsolutePath());
+        return (entry == null) ? null : entry.encoding;
+    }
+    
+    
+    private static long checksum(File mibFile) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        
+        InputStream input = new FileInputStream(mibFile);
+        try
+        {
+            int count;
+            while ((count = input.read(buffer)) > 0)
+                crc.update(buffer, 0, count);
+        }
+        finally
+        {
+            IOUtilities.closeQuietly(input);
+        }
+        
+        return crc.getValue();
+    }
+    
+    /**
+     * Encodes a parsed MIB.  If a description store is given, descriptions are moved into it 
+     * and only their offsets are encoded; otherwise their text is encoded.
+     */
+    private static byte[] encode(ParsedMib parsedMib, MibDescriptionStore store) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        
+        writeString(output, parsedMib.getMibName());
+        writeStrings(output, parsedMib.getImportedMibs());
+        
+        List<ParsedMib.Definition> definitions = parsedMib.getDefinitions();
+        output.writeInt(definitions.size());
+        for (ParsedMib.Definition definition : definitions)
+        {
+            MibObjectType mibObject = definition.getMibObject();
+            
+            writeString(output, definition.getParentName());
+            writeString(output, mibObject.getName());
+            output.writeInt(mibObject.getId());
+            writeString(output, mibObject.getMibName());
+            output.writeByte(mibObject.getStatus() == null ? -1 : mibObject.getStatus().ordinal());
+            output.writeByte(mibObject.getAccess() == null ? -1 : mibObject.getAccess().ordinal());
+            writeDescription(output, mibObject, store);
+            writeString(output, mibObject.getReference());
+            writeStrings(output, mibObject.getIndices());
+            
+            MibSyntax syntax = mibObject.getSyntax();
+            output.writeBoolean(syntax != null);
+            if (syntax != null)
+            {
+                writeString(output, syntax.getDataType());
+                writeString(output, syntax.getDefaultValue());
+                
+                Map<Integer, String> pairs = syntax.getValuePairs();
+                if (pairs == null)
+                {
+                    output.writeInt(-1);
+                }
+                else
+                {
+                    output.writeInt(pairs.size());
+                    for (Map.Entry<Integer, String> pair : pairs.entrySet())
+                    {
+                        output.writeInt(pair.getKey());
+                        writeString(output, pair.getValue());
+                    }
+                }
+            }
+        }
+        
+        output.flush();
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Decodes a parsed MIB, reading the offsets of descriptions moved into the given store.
+     */
+    private static ParsedMib decode(File mibFile, byte[] encoding, MibDescriptionStore store) throws IOException
+    {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(encoding));
+        
+        ParsedMib parsedMib = new ParsedMib(mibFile, readString(input));
+        for (String importedMib : readStrings(input))
+            parsedMib.addImportedMib(importedMib);
+        
+        int count = input.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            String parentName = readString(input);
+            
+            MibObjectType mibObject = new MibObjectType(readString(input), input.readInt());
+            mibObject.setMibName(readString(input));
+            
+            int status = input.readByte();
+            if (status >= 0)
+                mibObject.setStatus(Status.values()[status]);
+            
+            int access = input.readByte();
+            if (access >= 0)
+                mibObject.setAccess(Access.values()[access]);
+            
+            readDescription(input, mibObject, store);
+            mibObject.setReference(readString(input));
+            
+            List<String> indices = readStrings(input);
+            if (indices != null)
+                mibObject.setIndices(indices);
+            
+            if (input.readBoolean())
+            {
+                MibSyntax syntax = new MibSyntax(readString(input));
+                syntax.setDefaultValue(readString(input));
+                
+                int pairCount = input.readInt();
+                if (pairCount >= 0)
+                {
+                    Map<Integer, String> pairs = new HashMap<Integer, String>();
+                    for (int j = 0; j < pairCount; j++)
+                        pairs.put(input.readInt(), readString(input));
+                    
+                    syntax.setValuePairs(pairs);
+                }
+                
+                mibObject.setSyntax(syntax);
+            }
+            
+            parsedMib.addDefinition(mibObject, parentName);
+        }
+        
+        return parsedMib;
+    }
+    
+    private static void writeDescription(DataOutputStream output, MibObjectType mibObject, MibDescriptionStore store) throws IOException
+    {
+        if (store != null)
+        {
+            if (mibObject.getDescriptionStore() != store)
+            {
+                try
+                {
+                    mibObject.setDescription(mibObject.getDescription());
+                    store.storeDescription(mibObject);
+                }
+                catch (IOException e)
+                {
+                    // The description just stays in the entry.
+                }
+            }
+            
+            if (mibObject.isDescriptionStored())
+            {
+                output.writeByte(STORED_DESCRIPTION);
+                output.writeLong(mibObject.getDescriptionOffset());
+                output.writeInt(mibObject.getDescriptionLength());
+                return;
+            }
+        }
+        
+        output.writeByte(INLINE_DESCRIPTION);
+        writeString(output, mibObject.getDescription());
+    }
+    
+    private static void readDescription(DataInputStream input, MibObjectType mibObject, MibDescriptionStore store) throws IOException
+    {
+        int kind = input.readByte();
+        if (kind == INLINE_DESCRIPTION)
+        {
+            mibObject.setDescription(readString(input));
+        }
+        else if (kind == STORED_DESCRIPTION && store != null)
+        {
+            long offset = input.readLong();
+            mibObject.setDescription(store, offset, input.readInt());
+        }
+        else
+        {
+            throw new IOException("Invalid description in the MIB cache.");
+        }
+    }
+    
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeInt(-1);
+            return;
+        }
+        
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+    
+    private static String readString(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+        if (length < 0)
+            return null;
+        
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void writeStrings(DataOutputStream output, List<String> values) throws IOException
+    {
+        if (values == null)
+        {
+            output.writeInt(-1);
+            return;
+        }
+        
+        output.writeInt(values.size());
+        for (String value : values)
+            writeString(output, value);
+    }
+    
+    private static List<String> readStrings(DataInputStream input) throws IOException
+    {
+        int count = input.readInt();
+        if (count < 0)
+            return null;
+        
+        List<String> values = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+            values.add(readString(input));
+        
+        return values;
+    }
+    
+    /**
+     * The cached form of a MIB file and the attributes of the file it was parsed from.
+     */
+    private static final class Entry
+    {
+        final long size;
+        final long lastModified;
+        final long checksum;
+        final byte[] encoding;
+        final MibDescriptionStore store;    // holds the descriptions the encoding refers to, if any
+        
+        Entry(long size, long lastModified, long checksum, byte[] encoding, MibDescriptionStore store)
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.encoding = encoding;
+            this.store = store;
+        }
+    }
+}
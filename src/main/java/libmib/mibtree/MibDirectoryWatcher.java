@@ -0,0 +1,245 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib.mibtree;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a MIB directory and reloads the MIB files in it that are created, changed or 
+ * deleted while the application runs.  Changes are debounced: once a file changes, the 
+ * watcher waits until the directory has been quiet for a short time and then hands all 
+ * of the changed files to the tree builder at once, so a file being copied or saved in 
+ * several writes is only read once it is complete.
+ * <br><br>
+ * The changed files are read on the watcher's thread by the tree builder's 
+ * {@link MibTreeBuilder#prepareReload}, and only {@link MibTreeBuilder#applyReload} is run 
+ * through the executor given to the watcher, which should run it on the thread that owns 
+ * the tree model, such as the Swing event dispatch thread.
+ */
+public class MibDirectoryWatcher implements Closeable
+{
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+    
+    private final MibTreeBuilder treeBuilder;
+    private final File mibDirectory;
+    private final Executor treeExecutor;
+    private final long debounceMillis;
+    
+    private WatchService watchService;
+    private Thread watchThread;
+    
+    /**
+     * Creates a watcher for a MIB directory.
+     * 
+     * @param builder the tree builder the directory's MIBs were added to
+     * @param directory the directory to watch
+     * @param executor applies the reloads on the thread that owns the tree model
+     */
+    public MibDirectoryWatcher(MibTreeBuilder builder, File directory, Executor executor)
+    {
+        this(builder, directory, executor, DEFAULT_DEBOUNCE_MILLIS);
+    }
+    
+    /**
+     * Creates a watcher for a MIB directory.
+     * 
+     * @param builder the tree builder the directory's MIBs were added to
+     * @param directory the directory to watch
+     * @param executor applies the reloads on the thread that owns the tree model
+     * @param debounceMillis how long the directory must be quiet before changes are reloaded
+     */
+    public MibDirectoryWatcher(MibTreeBuilder builder, File directory, Executor executor, long debounceMillis)
+    {
+        if (debounceMillis < 0)
+            throw new IllegalArgumentException("The debounce time must not be negative.");
+        
+        this.treeBuilder = builder;
+        this.mibDirectory = directory.getAbsoluteFile();
+        this.treeExecutor = executor;
+        this.debounceMillis = debounceMillis;
+    }
+    
+    /**
+     * Starts watching the directory on a background thread.
+     * 
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start() throws IOException
+    {
+        if (watchThread != null)
+            return;
+        
+        watchService = FileSystems.getDefault().newWatchService();
+        try
+        {
+            mibDirectory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, 
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        catch (IOException e)
+        {
+            watchService.close();
+            watchService = null;
+            throw e;
+        }
+        
+        watchThread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                watch();
+            }
+        }, "MIB directory watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+    }
+    
+    /**
+     * Stops watching the directory.  Changes that have not been handed to the tree 
+     * builder yet are dropped.
+     */
+    public synchronized void close() throws IOException
+    {
+        if (watchService == null)
+            return;
+        
+        watchService.close();
+        watchService = null;
+        watchThread = null;
+    }
+    
+    /**
+     * Gets the directory being watched.
+     */
+    public File getMibDirectory()
+    {
+        return mibDirectory;
+    }
+    
+    private void watch()
+    {
+        WatchService service;
+        synchronized (this)
+        {
+            service = watchService;
+        }
+        
+        if (service == null)
+            return;
+        
+        try
+        {
+            while (true)
+            {
+                Set<File> changedFiles = new LinkedHashSet<File>();
+                
+                // Wait for the first change, then keep collecting until the directory is quiet.
+                WatchKey key = service.take();
+                while (key != null)
+                {
+                    collectChanges(key, changedFiles);
+                    key = service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                }
+                
+                if (!changedFiles.isEmpty())
+                    reload(new ArrayList<File>(changedFiles));
+            }
+        }
+        catch (ClosedWatchServiceException e)
+        {
+            // the watcher was closed
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void collectChanges(WatchKey key, Set<File> changedFiles)
+    {
+        FilenameFilter filter = treeBuilder.getFileFilter();
+        
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+            {
+                // Some changes were lost, so every file in the directory is read again.
+                File[] mibFiles = mibDirectory.listFiles(filter);
+                if (mibFiles != null)
+                {
+                    for (File mibFile : mibFiles)
+                        changedFiles.add(mibFile);
+                }
+                
+                continue;
+            }
+            
+            String fileName = ((Path)event.context()).toString();
+            if (filter == null || filter.accept(mibDirectory, fileName))
+                changedFiles.add(new File(mibDirectory, fileName));
+        }
+        
+        key.reset();
+    }
+    
+    private void reload(List<File> changedFiles) throws InterruptedException
+    {
+        // Read the files here, so that the tree's thread only has to apply the changes.
+        final MibReload reload = treeBuilder.prepareReload(changedFiles);
+        
+        FutureTask<Void> apply = new FutureTask<Void>(new Runnable()
+        {
+            public void run()
+            {
+                treeBuilder.applyReload(reload);
+            }
+        }, null);
+        treeExecutor.execute(apply);
+        
+        // The next reload depends on which MIBs are in the tree, so wait until this one is applied.
+        try
+        {
+            apply.get();
+        }
+        catch (ExecutionException e)
+        {
+            System.out.println(e.getCause().getMessage());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib.mibtree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Orders MIBs so that each one comes after the MIBs it imports from, which lets their objects 
+ * be added to a tree after the parents they are defined under.  MIBs that are otherwise 
+ * unordered keep their original relative order, and MIBs that import from each other in a 
+ * cycle are placed in their original order once nothing else is ready.
+ */
+final class MibImportOrder
+{
+    private MibImportOrder() { }
+    
+    /**
+     * Sorts MIBs topologically by their imports.
+     * 
+     * @param mibs the MIBs in their preferred order when imports do not decide
+     * @return a new list with the MIBs in import order
+     */
+    static List<ParsedMib> sort(List<ParsedMib> mibs)
+    {
+        int count = mibs.size();
+        
+        Map<String, List<Integer>> indexesByName = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < count; i++)
+        {
+            String name = mibs.get(i).getMibName();
+            List<Integer> indexes = indexesByName.get(name);
+            if (indexes == null)
+            {
+                indexes = new ArrayList<Integer>(1);
+                indexesByName.put(name, indexes);
+            }
+            
+            indexes.add(i);
+        }
+        
+        // Build the edges from each MIB to the MIBs that import it.
+        int[] importCounts = new int[count];
+        List<List<Integer>> importers = new ArrayList<List<Integer>>(count);
+        for (int i = 0; i < count; i++)
+            importers.add(new ArrayList<Integer>());
+        
+        for (int i = 0; i < count; i++)
+        {
+            Set<Integer> sources = new HashSet<Integer>();
+            for (String sourceName : mibs.get(i).getImportedMibs())
+            {
+                List<Integer> indexes = indexesByName.get(sourceName);
+                if (indexes != null)
+                    sources.addAll(indexes);
+            }
+            
+            sources.remove(i);
+            for (Integer source : sources)
+                importers.get(source).add(i);
+            
+            importCounts[i] = sources.size();
+        }
+        
+        PriorityQueue<Integer> ready = new PriorityQueue<Integer>();
+        for (int i = 0; i < count; i++)
+        {
+            if (importCounts[i] == 0)
+                ready.add(i);
+        }
+        
+        boolean[] placed = new boolean[count];
+        int nextUnplaced = 0;
+        List<ParsedMib> ordered = new ArrayList<ParsedMib>(count);
+        while (ordered.size() < count)
+        {
+            if (ready.isEmpty())
+            {
+                // Only cycles remain, so break one at the earliest MIB left.
+                while (placed[nextUnplaced])
+                    nextUnplaced++;
+                
+                ready.add(nextUnplaced);
+            }
+            
+            int index = ready.poll();
+            if (placed[index])
+                continue;
+            
+            placed[index] = true;
+            ordered.add(mibs.get(index));
+            
+            for (Integer importer : importers.get(index))
+            {
+                if (--importCounts[importer] == 0 && !placed[importer])
+                    ready.add(importer);
+            }
+        }
+        
+        return ordered;
+    }
+}
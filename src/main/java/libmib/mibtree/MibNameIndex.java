@@ -0,0 +1,368 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib.mibtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import libmib.MibObjectIdentifier;
+
+/**
+ * Indexes the nodes of a MIB tree by name.  Each node is found by its module-qualified name 
+ * such as SNMPv2-MIB::sysDescr, or by its bare name, which resolves to the first definition 
+ * added, in constant time.  A case-folded sorted index supports case-insensitive and prefix 
+ * searches in logarithmic time, and an index of the three character sequences in each name 
+ * narrows substring searches to the names that could contain the text.
+ * <br><br>
+ * A module that redefines a descriptor already in the tree under the same parent and id can 
+ * be recorded with {@link #addDefinition} to share the existing node.  A module that places 
+ * the descriptor elsewhere has its own node, found by the qualified name, while the bare 
+ * name keeps resolving to the first.
+ */
+public class MibNameIndex
+{
+    public static final String MODULE_SEPARATOR = "::";
+    
+    private static final int GRAM_LENGTH = 3;
+    
+    private final Map<String, MibTreeNode> nodes = new HashMap<String, MibTreeNode>(2000);
+    private final Map<String, MibTreeNode> qualifiedNodes = new HashMap<String, MibTreeNode>(2000);
+    private final TreeMap<String, List<MibTreeNode>> foldedNodes = new TreeMap<String, List<MibTreeNode>>();
+    private final Map<String, List<String>> gramNames = new HashMap<String, List<String>>(4000);
+    
+    // The qualified names other modules share each node under, so they go when the node does.
+    private final Map<MibTreeNode, List<String>> sharedNames = new HashMap<MibTreeNode, List<String>>();
+    
+    /**
+     * Adds a node to the index under its own name and the name of the module defining it.
+     * 
+     * @param node the node to add, whose user object must be a MibObjectIdentifier
+     */
+    public void add(MibTreeNode node)
+    {
+        MibObjectIdentifier mibObject = (MibObjectIdentifier)node.getUserObject();
+        String name = mibObject.getName();
+        
+        if (!nodes.containsKey(name))
+            nodes.put(name, node);
+        
+        addDefinition(mibObject.getMibName(), name, node);
+        
+        String folded = fold(name);
+        List<MibTreeNode> sameNames = foldedNodes.get(folded);
+        if (sameNames == null)
+        {
+            sameNames = new ArrayList<MibTreeNode>(1);
+            foldedNodes.put(folded, sameNames);
+            indexGrams(folded);
+        }
+        
+        if (!sameNames.contains(node))
+            sameNames.add(node);
+    }
+    
+    /**
+     * Records that a module defines a name, which then resolves to the given node when 
+     * qualified by that module.  The caller must make sure the node matches the module's 
+     * definition.  A module with no name is not recorded.
+     * 
+     * @param mibName the name of the defining module
+     * @param name the name defined by the module
+     * @param node the node representing the definition
+     */
+    public void addDefinition(String mibName, String name, MibTreeNode node)
+    {
+        if (mibName == null || mibName.equals(""))
+            return;
+        
+        String key = mibName + MODULE_SEPARATOR + name;
+        if (qualifiedNodes.containsKey(key))
+            return;
+        
+        qualifiedNodes.put(key, node);
+        
+        if (!mibName.equals(((MibObjectIdentifier)node.getUserObject()).getMibName()))
+        {
+            List<String> shared = sharedNames.get(node);
+            if (shared == null)
+            {
+                shared = new ArrayList<String>(1);
+                sharedNames.put(node, shared);
+            }
+            
+            shared.add(key);
+        }
+    }
+    
+    /**
+     * Removes a node from the index, along with the definitions of other modules sharing it.  
+     * If another node with the same name is still indexed, the bare name resolves to it 
+     * afterwards.
+     * 
+     * @param node the node to remove
+     */
+    public void remove(MibTreeNode node)
+    {
+        MibObjectIdentifier mibObject = (MibObjectIdentifier)node.getUserObject();
+        String name = mibObject.getName();
+        
+        removeDefinition(mibObject.getMibName(), name, node);
+        
+        List<String> shared = sharedNames.remove(node);
+        if (shared != null)
+        {
+            for (String key : shared)
+            {
+                if (qualifiedNodes.get(key) == node)
+                    qualifiedNodes.remove(key);
+            }
+        }
+        
+        String folded = fold(name);
+        List<MibTreeNode> sameNames = foldedNodes.get(folded);
+        if (sameNames != null)
+        {
+            sameNames.remove(node);
+            if (sameNames.isEmpty())
+            {
+                foldedNodes.remove(folded);
+                unindexGrams(folded);
+            }
+        }
+        
+        if (nodes.get(name) == node)
+        {
+            nodes.remove(name);
+            if (sameNames != null)
+            {
+                for (MibTreeNode sameName : sameNames)
+                {
+                    if (name.equals(((MibObjectIdentifier)sameName.getUserObject()).getName()))
+                    {
+                        nodes.put(name, sameName);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes the record of a module defining a name, if it resolves to the given node.
+     * 
+     * @param mibName the name of the defining module
+     * @param name the name defined by the module
+     * @param node the node the definition resolves to
+     */
+    public void removeDefinition(String mibName, String name, MibTreeNode node)
+    {
+        if (mibName == null || mibName.equals(""))
+            return;
+        
+        String key = mibName + MODULE_SEPARATOR + name;
+        if (qualifiedNodes.get(key) != node)
+            return;
+        
+        qualifiedNodes.remove(key);
+        
+        List<String> shared = sharedNames.get(node);
+        if (shared != null && shared.remove(key) && shared.isEmpty())
+            sharedNames.remove(node);
+    }
+    
+    /**
+     * Checks whether a bare name is in the index.
+     */
+    public boolean contains(String name)
+    {
+        return nodes.containsKey(name);
+    }
+    
+    /**
+     * Finds a node by its exact name, which may be qualified by its module as in 
+     * IF-MIB::ifDescr.  A bare name resolves to the first node added with that name.
+     * 
+     * @param name the bare or qualified name
+     * @return the node or null if there is none
+     */
+    public MibTreeNode getNode(String name)
+    {
+        if (name.contains(MODULE_SEPARATOR))
+            return qualifiedNodes.get(name);
+        
+        return nodes.get(name);
+    }
+    
+    /**
+     * Finds a node by its name as defined by a particular module.
+     * 
+     * @param mibName the name of the defining module
+     * @param name the name of the node
+     * @return the node or null if the module does not define the name
+     */
+    public MibTreeNode getNode(String mibName, String name)
+    {
+        return qualifiedNodes.get(mibName + MODULE_SEPARATOR + name);
+    }
+    
+    /**
+     * Finds all nodes with a name, ignoring case.
+     * 
+     * @param name the name to search for
+     * @return the matching nodes in the order they were added, which may be empty
+     */
+    public List<MibTreeNode> getNodesIgnoreCase(String name)
+    {
+        List<MibTreeNode> sameNames = foldedNodes.get(fold(name));
+        if (sameNames == null)
+            return Collections.emptyList();
+        
+        return Collections.unmodifiableList(sameNames);
+    }
+    
+    /**
+     * Finds the nodes whose names start with the given text, ignoring case.
+     * 
+     * @param prefix the text the names start with
+     * @param maximumResults the largest number of nodes to return
+     * @return the matching nodes ordered by name
+     */
+    public List<MibTreeNode> findByPrefix(String prefix, int maximumResults)
+    {
+        String folded = fold(prefix);
+        SortedMap<String, List<MibTreeNode>> matches = foldedNodes.subMap(folded, folded + Character.MAX_VALUE);
+        
+        List<MibTreeNode> results = new ArrayList<MibTreeNode>();
+        for (List<MibTreeNode> sameNames : matches.values())
+        {
+            if (!addResults(results, sameNames, maximumResults))
+                break;
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Finds the nodes whose names contain the given text, ignoring case.
+     * 
+     * @param text the text the names contain
+     * @param maximumResults the largest number of nodes to return
+     * @return the matching nodes ordered by name
+     */
+    public List<MibTreeNode> findBySubstring(String text, int maximumResults)
+    {
+        String folded = fold(text);
+        
+        Iterable<String> candidates = foldedNodes.keySet();
+        if (folded.length() >= GRAM_LENGTH)
+        {
+            // Only names that contain the least common sequence in the text can match.
+            List<String> rarest = null;
+            for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++)
+            {
+                List<String> names = gramNames.get(folded.substring(i, i + GRAM_LENGTH));
+                if (names == null)
+                    return new ArrayList<MibTreeNode>();
+                
+                if (rarest == null || names.size() < rarest.size())
+                    rarest = names;
+            }
+            
+            List<String> sorted = new ArrayList<String>(rarest);
+            Collections.sort(sorted);
+            candidates = sorted;
+        }
+        
+        List<MibTreeNode> results = new ArrayList<MibTreeNode>();
+        for (String name : candidates)
+        {
+            if (name.contains(folded) && !addResults(results, foldedNodes.get(name), maximumResults))
+                break;
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Returns the number of distinct bare names in the index.
+     */
+    public int size()
+    {
+        return nodes.size();
+    }
+    
+    private static boolean addResults(List<MibTreeNode> results, List<MibTreeNode> matches, int maximumResults)
+    {
+        for (MibTreeNode node : matches)
+        {
+            if (results.size() >= maximumResults)
+                return false;
+            
+            results.add(node);
+        }
+        
+        return results.size() < maximumResults;
+    }
+    
+    private void indexGrams(String folded)
+    {
+        Set<String> grams = new HashSet<String>();
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++)
+            grams.add(folded.substring(i, i + GRAM_LENGTH));
+        
+        for (String gram : grams)
+        {
+            List<String> names = gramNames.get(gram);
+            if (names == null)
+            {
+                names = new ArrayList<String>(4);
+                gramNames.put(gram, names);
+            }
+            
+            names.add(folded);
+        }
+    }
+    
+    private void unindexGrams(String folded)
+    {
+        for (int i = 0; i + GRAM_LENGTH <= folded.length(); i++)
+        {
+            String gram = folded.substring(i, i + GRAM_LENGTH);
+            List<String> names = gramNames.get(gram);
+            if (names != null && names.remove(folded) && names.isEmpty())
+                gramNames.remove(gram);
+        }
+    }
+    
+    private static String fold(String name)
+    {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+}
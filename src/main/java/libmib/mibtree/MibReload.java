@@ -0,0 +1,91 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib.mibtree;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The MIB files read for a reload of a MIB tree, waiting to be applied to the tree.  A 
+ * reload is read by {@link MibTreeBuilder#prepareReload} without touching the tree, so 
+ * the files can be parsed away from the thread that owns the tree model, and then applied 
+ * on that thread by {@link MibTreeBuilder#applyReload}.
+ */
+public class MibReload
+{
+    private final Set<File> changedFiles;
+    private final Set<File> dependentFiles;
+    private final List<ParsedMib> changedMibs;
+    private final List<ParsedMib> newMibs;
+    
+    /**
+     * Creates a reload.
+     * 
+     * @param changedFiles the absolute paths of the files that changed
+     * @param dependentFiles the absolute paths of the loaded files that must be read again 
+     *        because of the changed files
+     * @param changedMibs the MIBs read from the changed files that still exist
+     * @param newMibs the MIBs read from the changed and dependent files
+     */
+    MibReload(Set<File> changedFiles, Set<File> dependentFiles, List<ParsedMib> changedMibs, List<ParsedMib> newMibs)
+    {
+        this.changedFiles = changedFiles;
+        this.dependentFiles = dependentFiles;
+        this.changedMibs = changedMibs;
+        this.newMibs = newMibs;
+    }
+    
+    /**
+     * Gets the absolute paths of the files that changed.
+     */
+    public Set<File> getChangedFiles()
+    {
+        return Collections.unmodifiableSet(changedFiles);
+    }
+    
+    /**
+     * Gets the absolute paths of the loaded files that are read again because they depend 
+     * on the changed files.
+     */
+    public Set<File> getDependentFiles()
+    {
+        return Collections.unmodifiableSet(dependentFiles);
+    }
+    
+    /**
+     * Gets the MIBs read from the changed files that still exist.
+     */
+    public List<ParsedMib> getChangedMibs()
+    {
+        return Collections.unmodifiableList(changedMibs);
+    }
+    
+    /**
+     * Gets the MIBs read from both the changed and the dependent files.
+     */
+    public List<ParsedMib> getNewMibs()
+    {
+        return Collections.unmodifiableList(newMibs);
+    }
+}
@@ -23,11 +23,13 @@ package libmib.mibtree;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.Collection;
 
 import javax.swing.tree.TreeModel;
 
 import utilities.events.EventListener;
 
+import libmib.MibDescriptionStore;
 import libmib.format.InvalidMibFormatException;
 
 
@@ -56,11 +58,43 @@ public interface MibTreeBuilder
      */
     public void addMibFile(File mibFile) throws InvalidMibFormatException;
     
+    /**
+     * Brings the MIB tree up to date with MIB files that have been created, changed or 
+     * deleted.  Only the MIBs read from those files and the MIBs importing them are read 
+     * again, and the tree model is told about each node removed and inserted.
+     * 
+     * @param mibFiles the files that have changed
+     */
+    public void reloadMibFiles(Collection<File> mibFiles);
+    
+    /**
+     * Reads the MIB files that have been created, changed or deleted, and the MIBs importing 
+     * them, without touching the tree, so that a reload can be read on any thread.
+     * 
+     * @param mibFiles the files that have changed
+     * @return the MIBs to apply to the tree
+     */
+    public MibReload prepareReload(Collection<File> mibFiles);
+    
+    /**
+     * Applies a reload read by {@link #prepareReload} to the tree, telling the tree model 
+     * about each node removed and inserted.  This must be called on the thread that owns 
+     * the tree model.
+     * 
+     * @param reload the MIBs read for the reload
+     */
+    public void applyReload(MibReload reload);
+    
     /**
      * Retrieves the TreeModel used by the builder.
      */
     public TreeModel getTreeModel();
     
+    /**
+     * Retrieves the index of the names of the nodes in the tree model.
+     */
+    public MibNameIndex getNameIndex();
+    
     /**
      * Gets the format-specific base folder name used by the tree builder.
      * @return the name of the tree builder's MIB directory
@@ -82,6 +116,33 @@ public interface MibTreeBuilder
      */
     public FilenameFilter getFileFilter();
     
+    /**
+     * Sets the cache of parsed MIB files used when adding a directory.  Unchanged files 
+     * are read from the cache instead of being parsed, and the cache is saved once the 
+     * directory has been added.
+     * @param cache the cache to use, or null to parse every file
+     */
+    public void setMibCache(MibCache cache);
+    
+    /**
+     * Gets the cache of parsed MIB files used when adding a directory.
+     * @return the cache, or null if there is none
+     */
+    public MibCache getMibCache();
+    
+    /**
+     * Sets the store that the descriptions of MIB objects are moved to as they are added 
+     * to the tree, so that they are only decoded when they are displayed.
+     * @param store the store to use, or null to keep descriptions on the heap
+     */
+    public void setDescriptionStore(MibDescriptionStore store);
+    
+    /**
+     * Gets the store that the descriptions of MIB objects are moved to.
+     * @return the store, or null if there is none
+     */
+    public MibDescriptionStore getDescriptionStore();
+    
     /**
      * Adds a subscriber to the event fired when a MIB is added to the tree.
      * @param listener
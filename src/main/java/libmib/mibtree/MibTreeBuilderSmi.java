@@ -21,23 +21,25 @@
 
 package libmib.mibtree;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.Collections;
-
-import utilities.IOUtilities;
+import java.util.List;
 
 import static libmib.format.smi.SMIToken.*;
+import libmib.MibImport;
+import libmib.MibModuleIdRevision;
 import libmib.MibObjectType;
 import libmib.MibSyntax;
 import libmib.MibObjectType.Access;
 import libmib.MibObjectType.Status;
 import libmib.format.smi.InvalidSmiMibFormatException;
+import libmib.format.smi.SMILexer;
 import libmib.format.smi.SMIStructureHandler;
 import libmib.format.smi.SMIToken;
+import libmib.format.smi.SMILexer.Token;
+import libmib.format.smi.SMILexer.TokenKind;
 import libmib.format.smi.SMIStructureHandler.HierarchyData;
+import libmib.format.smi.parsers.GeneralMibObjectParser;
 import libmib.format.smi.parsers.SMIParser;
 import libmib.format.smi.parsers.SMIParserFactory;
 
@@ -47,141 +49,95 @@ import libmib.format.smi.parsers.SMIParserFactory;
  * within, extracts relevant data, and inserts it into nodes for use in a tree structure.  
  * Then, it compiles the SMI MIB modules into a DefaultTreeModel. It in no way attempts to 
  * implement the entire SMI syntax, only a small subset. Nodes in the tree are indexed by 
- * a HashMap that maps MIB object names to MIBTreeNodes.
+ * a MibNameIndex that maps MIB object names to MIBTreeNodes.
+ * <br><br>
+ * Each file is read in a single pass over the token stream produced by an SMILexer, so 
+ * definitions are recognized regardless of how they are split across lines.
  */
 public class MibTreeBuilderSmi extends AbstractMibTreeBuilder
 {  
     
     /**
-     * Parses an SMI MIB module text file and adds its elements to the MIB tree model.
+     * Parses an SMI MIB module text file and returns its elements.
      * 
-     * @param mibFile the File to add to the MIB Tree
+     * @param mibFile the File to parse
+     * @return the MIB's name, imports and objects, or null if the file couldn't be read
      * 
      * @throws InvalidSmiMibFormatException if the MIB file is not in a valid format
      */
-    protected void addMibToTree(File mibFile) throws InvalidSmiMibFormatException
+    protected ParsedMib parseMib(File mibFile) throws InvalidSmiMibFormatException
     { 
-    	BufferedReader reader = null;
+    	ParsedMib parsedMib = null;
         try
         {
-            reader = new BufferedReader(new FileReader(mibFile));
-            String line;
+            SMILexer lexer = SMILexer.open(mibFile);
 
             // If the file does not contain the correct MIB 'header', throw an exception.
             // it's game over, man
-            String mibName = SMIStructureHandler.readMibName(reader);
+            String mibName = SMIStructureHandler.readMibName(lexer);
             if (mibName.equals(""))
                 throw new InvalidSmiMibFormatException(mibFile);
             
+            parsedMib = new ParsedMib(mibFile, mibName);
 
-            //System.out.println(mibFile.getName() + ": valid");
-            while ( ((line = reader.readLine()) != null) && !line.trim().equals(MIB_END.token()))
+            Token token;
+            while ( ((token = lexer.peek()) != null) && !token.is(MIB_END))
             {
-                // Strip comments.
-                if (line.contains(COMMENT.token()))
+                // Read the names of the imported MIBs, which decide the order MIBs are added to the tree.
+                if (token.is(IMPORTS))               
                 {
-                    int commentIndex = line.indexOf(COMMENT.token());
-                    line = line.substring(0, commentIndex).trim();
-                }
-                
-                // Ignore empty lines.
-                if (line.trim().equals(""))
-                    continue;
-                    
-                // Skip the 'IMPORTS' section.
-                if (line.contains(IMPORTS.token()))               
-                {
-                    char c = 0;
-                    while ( (c != -1) && (c != ';'))
-                        c = (char)reader.read();
+                    lexer.next();
+                    List<MibImport> imports = SMIParserFactory.<SMIParser<List<MibImport>>>getParser(IMPORTS).parse(lexer);
+                    for (MibImport mibImport : imports)
+                        parsedMib.addImportedMib(mibImport.getSource());
                     
                     continue;
                 }
                 
+                lexer.next();
+                if (token.getKind() != TokenKind.Word)
+                    continue;
                 
                 // Skip 'MACRO' definitions.
-                if (line.contains(MACRO.token()))
+                if (lexer.lookingAt(MACRO))
                 {
-                    while ( (line = reader.readLine()) != null )
-                    {
-                        if (line.trim().equals(MIB_END.token()))
-                            break;
-                    }
+                    lexer.skipPast(MIB_END.token());
                     continue;
                 }
                 
                 // Special case for basic MIB objects consisting of only a name, parent, and OID index.
-                if ( line.contains(OBJECT_ID.token()) && !line.contains(SYNTAX.token()) && !line.contains(",") 
-                        && !line.contains(SOURCE.token()) && !line.trim().startsWith(OBJECT_ID.token()))
+                if (lexer.lookingAt(OBJECT_ID))
                 {
-                    StringBuilder oidDef = new StringBuilder();
-                    oidDef.append(line);
-
-                    // Check whether the entire definition is on this line.
-                    if (oidDef.indexOf("}") < 0) 
-                    {
-                        char c = ' ';  
-                        do
-                        {
-                            c = (char)reader.read();
-                            oidDef.append(c);
-                        } while (c != '}');
-                    }
-                    String oidString = oidDef.toString().replaceAll("\\s+", " ").trim(); //simplify whitespace
+                    lexer.skip(OBJECT_ID);
+                    Token assignment = lexer.peek();
+                    if (assignment == null || !assignment.is("::="))
+                        continue;
                     
-                    if (oidString.contains("::=") && oidString.contains("{"))
+                    lexer.next();
+                    HierarchyData nodeData = SMIStructureHandler.parseHierarchyData(lexer);
+
+                    // make sure parent and index are not empty since some data type definitions can look like OIDs
+                    if ( !nodeData.getParent().equals("") && nodeData.getIndex() != -1 )
                     {
-                        String nodeName = "";    
+                        MibObjectType mibObject = new MibObjectType(token.getText(), nodeData.getIndex());
+                        mibObject.setMibName(mibName);
                         
-                        // Get the mib object name.
-                        int index = oidString.indexOf(OBJECT_ID.token());
-                        nodeName = oidString.substring(0, index).trim();
-                        //System.out.println(nodeName);
-
-                        // Check the HashMap to see if this node already exists in the tree.
-                        if (!nodeMap.containsKey(nodeName)) 
-                        {
-                            String nodeInfo = oidString.substring(index + OBJECT_ID.token().length());
-                            HierarchyData nodeData = SMIStructureHandler.parseHierarchyData(nodeInfo);
-
-                            // make sure parent and index are not empty since some data type definitions can look like OIDs
-                            if ( !nodeName.equals("") && !nodeData.getParent().equals("") && nodeData.getIndex() != -1 )
-                            {
-                                MibObjectType mibObject = new MibObjectType(nodeName, nodeData.getIndex());
-                                mibObject.setMibName(mibName);
-                                
-                                this.addMibObject(mibObject, nodeData.getParent());
-                                
-                            } 
-                        }
-                    }
+                        parsedMib.addDefinition(mibObject, nodeData.getParent());
+                    } 
                 }
                 
                 else
                 {
-                    // Test for object type.
-                    SMIToken objectType = null;
-                    if (line.contains(OBJECT_TYPE.token()))
-                        objectType = OBJECT_TYPE;
-                    else if (line.contains(OBJECT_GROUP.token()))
-                        objectType = OBJECT_GROUP;
-                    else if (line.contains(NOTIF.token()))
-                        objectType = NOTIF;
-                    else if (line.contains(MODULE_COMP.token()))
-                        objectType = MODULE_COMP;
-                    else if (line.contains(MODULE_ID.token()))
-                        objectType = MODULE_ID;
-                    else if (line.contains(NOTIF_GROUP.token()))
-                        objectType = NOTIF_GROUP;
-                                            
-                    // Read other object types.
-                    if ( objectType != null && !line.trim().equalsIgnoreCase(objectType.token()) 
-                            && !line.contains(SOURCE.token()) && !line.contains(",") )
+                    // Test for object type, and read the supported ones.
+                    SMIToken objectType = GeneralMibObjectParser.getObjectType(lexer.peek());
+                    if (objectType != null)
                     {
+                        lexer.next();
+                        
                         MibObjectType mibObject = new MibObjectType();
                         mibObject.setMibName(mibName);
                         
-                        line = readMIBObject(reader, line, mibObject, objectType);
+                        readMIBObject(lexer, token.getText(), mibObject, objectType, parsedMib);
                     }
                 }
                 
@@ -192,119 +148,78 @@ public class MibTreeBuilderSmi extends AbstractMibTreeBuilder
         {
             System.out.println(e.getMessage());
         }
-        finally
-        {
-        	IOUtilities.closeQuietly(reader);
-        }
+        
+        return parsedMib;
     }
     
     
     /**
      * Reads and parses information about a MIB Object from a MIB file, puts it into a 
-     * MIB Object and MibTreeNode, and adds the node to the tree if the parent exists 
-     * and the node does not already exist in the tree.
+     * MIB Object, and adds it to the parsed MIB.  The lexer is positioned just after 
+     * the object's type, and is left just after the object's value.
      * 
-     * @param reader the BufferedReader for the current MIB file
-     * @param line the most recently read line in the file
+     * @param lexer the token stream for the current MIB file
+     * @param nodeName the name of the MIB Object
      * @param mibObject the current MIB Object
      * @param objectType the type of the MIB Object
-     * @return the line in the file that was last read before returning
-     * 
-     * @throws IOException if an error occurs reading a line from the BufferedReader
+     * @param parsedMib the MIB the object belongs to
      */
-    private String readMIBObject(final BufferedReader reader, String line, MibObjectType mibObject, SMIToken objectType) throws IOException
+    private void readMIBObject(final SMILexer lexer, String nodeName, MibObjectType mibObject, SMIToken objectType, 
+    		ParsedMib parsedMib)
     { 
-        // get the node name
-        String nodeName = "";
-        int index = line.indexOf(objectType.token());
-        nodeName = line.substring(0, index).trim();
-        
-        // check the HashMap to see if this node already exists in the tree
-        if (!nodeMap.containsKey(nodeName)) 
-        {
-            // Initialize properties
-            Access nodeAccess = null;
-            Status nodeStatus = null;
-            MibSyntax nodeSyntax = null;
-            StringBuilder nodeDesc = new StringBuilder();
+        // Initialize properties
+        Access nodeAccess = null;
+        Status nodeStatus = null;
+        MibSyntax nodeSyntax = null;
+        StringBuilder nodeDesc = new StringBuilder();
 
-            // read until the end of the object definition, retrieving relevant information
-            line = reader.readLine();
-            while (line != null && !line.trim().startsWith("::="))
-            {
-            	line = line.trim();
-            	
-                // strip comments
-                if (line.contains(COMMENT.token()))
-                {
-                    int commentIndex = line.indexOf(COMMENT.token());
-                    line = line.substring(0, commentIndex).trim();
-                }
-    
-                if (!line.equals(""))
-                {
-                    // SYNTAX
-                    if (line.contains(SYNTAX.token()) && !objectType.equals(MODULE_COMP))
-                    	nodeSyntax = SMIParserFactory.<SMIParser<MibSyntax>>getParser(SYNTAX).parse(reader, line);
-                    
-                    // ACCESS
-                    else if (line.contains(ACCESS.token()) && !objectType.equals(MODULE_COMP))
-                        nodeAccess = SMIParserFactory.<SMIParser<Access>>getParser(ACCESS).parse(reader, line);
-                    
-                    // STATUS
-                    else if (line.contains(STATUS.token()))
-                        nodeStatus = SMIParserFactory.<SMIParser<Status>>getParser(STATUS).parse(reader, line);
-    
-                    // DESCRIPTION
-                    else if (line.contains(DESCRIPTION.token()))
-                        nodeDesc.append(SMIParserFactory.<SMIParser<String>>getParser(DESCRIPTION).parse(reader, line));
+        // read until the end of the object definition, retrieving relevant information
+        Token token;
+        while ((token = lexer.next()) != null && !token.is("::="))
+        {
+            // SYNTAX
+            if (token.is(SYNTAX) && !objectType.equals(MODULE_COMP))
+            	nodeSyntax = SMIParserFactory.<SMIParser<MibSyntax>>getParser(SYNTAX).parse(lexer);
+            
+            // ACCESS
+            else if ((token.is(ACCESS) || token.is(MAX_ACCESS)) && !objectType.equals(MODULE_COMP))
+                nodeAccess = SMIParserFactory.<SMIParser<Access>>getParser(ACCESS).parse(lexer);
+            
+            // STATUS
+            else if (token.is(STATUS))
+                nodeStatus = SMIParserFactory.<SMIParser<Status>>getParser(STATUS).parse(lexer);
 
-                    line = reader.readLine();
-                }
-                else
-                {
-                    line = reader.readLine();
-                }
-            }
-    
-            if (line != null)
-            {
-	            // the line with ::= should be processed here
-	            HierarchyData nodeInfo = SMIStructureHandler.parseHierarchyData(line);
-	            //System.out.println(nodeInfo.getParent() + " " + nodeInfo.getIndex());
-	
-	            // set basic properties
-	            mibObject.setName(nodeName);
-	            mibObject.setId(nodeInfo.getIndex());
-	            
-	            mibObject.setDescription(nodeDesc.toString());
-	            
-	            if (nodeAccess != null)
-	                mibObject.setAccess(nodeAccess);
-	            
-	            if (nodeStatus != null)
-	                mibObject.setStatus(nodeStatus);
-	            
-	            if (nodeSyntax != null) 
-	            {
-	            	// Synchronize because there MAY be  simultaneous access.
-	                if (nodeSyntax.hasValues())
-	                    nodeSyntax.setValuePairs(Collections.synchronizedMap(nodeSyntax.getValuePairs()));
-	                
-	                mibObject.setSyntax(nodeSyntax);
-	            }
-	            
-	            this.addMibObject(mibObject, nodeInfo.getParent());
-            }
+            // DESCRIPTION
+            else if (token.is(DESCRIPTION))
+                nodeDesc.append(SMIParserFactory.<SMIParser<String>>getParser(DESCRIPTION).parse(lexer));
             
+            // REVISION; its description belongs to the revision rather than the object
+            else if (token.is(MODULE_REVISION))
+                SMIParserFactory.<SMIParser<MibModuleIdRevision>>getParser(MODULE_REVISION).parse(lexer);
         }
-        else // if it already exists, read past it's data
-        { 
-            while (line != null && !line.contains("::="))
-                line = reader.readLine();
-        }
 
-        return line;
+        if (token != null)
+        {
+            // the value following ::= should be processed here
+            HierarchyData nodeInfo = SMIStructureHandler.parseHierarchyData(lexer);
+
+            // set basic properties
+            mibObject.setName(nodeName);
+            mibObject.setId(nodeInfo.getIndex());
+            
+            mibObject.setDescription(nodeDesc.toString());
+            
+            if (nodeAccess != null)
+                mibObject.setAccess(nodeAccess);
+            
+            if (nodeStatus != null)
+                mibObject.setStatus(nodeStatus);
+            
+            if (nodeSyntax != null) 
+                mibObject.setSyntax(nodeSyntax);
+            
+            parsedMib.addDefinition(mibObject, nodeInfo.getParent());
+        }
     }
     
     
@@ -21,6 +21,7 @@
 
 package libmib.mibtree;
 
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.AbstractMap;
@@ -34,6 +35,7 @@ import javax.swing.tree.TreeNode;
 import utilities.iteration.adapters.IterableAdapters;
 
 import libmib.MibObjectIdentifier;
+import snmp.datatypes.SnmpObjectIdentifier;
 
 /**
  * This extension of DefaultMutableTreeNode includes some MIB specific methods for searching, 
@@ -43,6 +45,16 @@ public class MibTreeNode extends DefaultMutableTreeNode
 {
     public enum NodeSearchOption { MatchNearestPath, MatchExactPath; }
     
+    private static final int[] NO_IDS = new int[0];
+    private static final MibTreeNode[] NO_NODES = new MibTreeNode[0];
+    
+    // Numeric index of this node's children sorted by id, kept alongside the Swing child list
+    // so that an OID can be followed with a binary search at each level instead of a scan.
+    // When siblings share an id, the first one added is the one indexed, as a scan would find.
+    private int[] childIds = NO_IDS;
+    private MibTreeNode[] indexedChildren = NO_NODES;
+    private int indexedCount = 0;
+    
     /**
      * Constructs a new default MibTreeNode.
      */
@@ -70,13 +82,30 @@ public class MibTreeNode extends DefaultMutableTreeNode
     	String prefix = oidNumeralPath == null ? "" : oidNumeralPath + ".";
     	node.setOidNumeralPath(prefix + newChild.getId());
     	
+    	// A subtree moved under a new parent needs its paths updated too.
+    	if (node.getChildCount() > 0)
+    		node.updateChildPaths();
+    	
     	this.add((MutableTreeNode)node);
     }
     
+    private void updateChildPaths()
+    {
+    	for (int i = 0; i < this.getChildCount(); i++)
+    	{
+    		MibTreeNode child = (MibTreeNode)this.getChildAt(i);
+    		child.setOidNumeralPath(oidNumeralPath + "." + ((MibObjectIdentifier)child.getUserObject()).getId());
+    		
+    		if (child.getChildCount() > 0)
+    			child.updateChildPaths();
+    	}
+    }
+    
     
     /**
      * Searches for a node by it's name starting the search at this node.  A 
-     * breadth first enumeration is used and is quite inefficient.
+     * breadth first enumeration is used and is quite inefficient; a tree builder's 
+     * MibNameIndex should be used to search whole trees.
      * 
      * @param nodeName the name of the node to search for
      * @return the node if it is found or null if it is not
@@ -96,6 +125,42 @@ public class MibTreeNode extends DefaultMutableTreeNode
     }
     
     
+    @Override
+    public void insert(MutableTreeNode newChild, int childIndex)
+    {
+        super.insert(newChild, childIndex);
+        
+        if (newChild instanceof MibTreeNode)
+            indexChild((MibTreeNode)newChild);
+    }
+    
+    @Override
+    public void remove(int childIndex)
+    {
+        TreeNode child = this.getChildAt(childIndex);
+        super.remove(childIndex);
+        
+        if (child instanceof MibTreeNode)
+            unindexChild((MibTreeNode)child);
+    }
+    
+    
+    /**
+     * Returns the child of this node with the given numeric id.
+     * 
+     * @param id the id of the child, relative to this node
+     * @return the child node or null if this node has no child with that id
+     */
+    public MibTreeNode getChildById(long id)
+    {
+        if (id < 0 || id > Integer.MAX_VALUE)
+            return null;
+        
+        int index = Arrays.binarySearch(childIds, 0, indexedCount, (int)id);
+        return index >= 0 ? indexedChildren[index] : null;
+    }
+    
+    
     /**
      * Searches for a node by its OID numeral string path starting at this node.  The search goes 
      * through the children at each successive node until the correct OID has been constructed.
@@ -112,65 +177,154 @@ public class MibTreeNode extends DefaultMutableTreeNode
      * @return the node if it is found or null if it is not
      * @throws NumberFormatException 
      */
-    @SuppressWarnings("unchecked")
 	public MibTreeNode getNodeByOid(String oid, NodeSearchOption matchType) throws NumberFormatException
     {    
-        String[] oidArray = oid.trim().split("\\.");
-
-        int elementIndex = 0; // the current index in oidArray
-        int treeDepth = 0;  // the number of levels the search has advanced into the tree
-
-        StringBuilder constructedOID = new StringBuilder();
-        MibTreeNode node = null;
-        MibTreeNode foundNode = null;
-        MibObjectIdentifier mibObject = null;
-
-        Enumeration children = this.children();
-
-        try
+        String digits = oid.trim();
+        int length = digits.length();
+        
+        // Parse the numerals in place rather than splitting, following the path as each is read.
+        MibTreeNode node = this;
+        int position = 0;
+        while (position < length)
         {
-            boolean oidFound = false;
-            while ((treeDepth < oidArray.length) && !oidFound)
+            long id = 0;
+            int start = position;
+            
+            char c;
+            while (position < length && (c = digits.charAt(position)) != '.')
             {
-                boolean indexFound = false;
-                while (children.hasMoreElements() && !indexFound)
-                {
-                    node = (MibTreeNode)children.nextElement();
-                    mibObject = (MibObjectIdentifier)node.getUserObject();
-    
-                    // Compare the current object's id to the desired next number in the OID.
-                    int id = mibObject.getId();
-                    if (id == Integer.parseInt(oidArray[elementIndex]))
-                    {
-                        indexFound = true;
-                        
-                        if (elementIndex != 0)
-                            constructedOID.append(".");
-                        
-                        constructedOID.append(id);
-                        
-                        children = node.children();
-                        foundNode = node;
-                        elementIndex++;
-                    }
-                }
+                if (c < '0' || c > '9' || id > SnmpObjectIdentifier.MAXIMUM_SUB_IDENTIFIER)
+                    throw new NumberFormatException("Object Identifier: " + oid + " is invalid.");
                 
-                treeDepth++;
-
-                if (constructedOID.toString().equals(oid))
-                    oidFound = true;
+                id = id * 10 + (c - '0');
+                position++;
             }
+            
+            if (position == start || id > SnmpObjectIdentifier.MAXIMUM_SUB_IDENTIFIER)
+                throw new NumberFormatException("Object Identifier: " + oid + " is invalid.");
+            
+            position++;   // skip the dot
+            
+            MibTreeNode child = node.getChildById(id);
+            if (child == null)
+                return nearestMatch(node, matchType);
+            
+            node = child;
+        }
+        
+        return node == this ? null : node;
+    }
+	
+	
+	/**
+     * Searches for a node by its OID starting at this node, following the numeric child index 
+     * one sub-identifier at a time.
+     * 
+     * @param oid the OID of the node to search for
+     * @param matchType indicates whether the nearest node should be returned even though 
+     *        the exact node was not found, that is the node with the longest matching prefix of oid
+     *        
+     * @return the node if it is found or null if it is not
+     * @see #getNodeByOid(String, NodeSearchOption)
+     */
+    public MibTreeNode getNodeByOid(SnmpObjectIdentifier oid, NodeSearchOption matchType)
+    {
+        MibTreeNode node = this;
+        int length = oid.size();
+        for (int i = 0; i < length; i++)
+        {
+            MibTreeNode child = node.getChildById(oid.getSubIdentifier(i));
+            if (child == null)
+                return nearestMatch(node, matchType);
+            
+            node = child;
+        }
+        
+        return node == this ? null : node;
+    }
     
-            if (oidFound || matchType == NodeSearchOption.MatchNearestPath)
-                return foundNode;
-
-            // Return null if the node is not found.
-            return null;
+    
+    /**
+     * Searches for a node by its OID starting at this node, following the numeric child index 
+     * one sub-identifier at a time.
+     * 
+     * @param oid the sub-identifiers of the OID of the node to search for
+     * @param matchType indicates whether the nearest node should be returned even though 
+     *        the exact node was not found, that is the node with the longest matching prefix of oid
+     *        
+     * @return the node if it is found or null if it is not
+     * @see #getNodeByOid(String, NodeSearchOption)
+     */
+    public MibTreeNode getNodeByOid(int[] oid, NodeSearchOption matchType)
+    {
+        MibTreeNode node = this;
+        for (int i = 0; i < oid.length; i++)
+        {
+            MibTreeNode child = node.getChildById(oid[i]);
+            if (child == null)
+                return nearestMatch(node, matchType);
+            
+            node = child;
         }
-        catch (NumberFormatException e)
+        
+        return node == this ? null : node;
+    }
+    
+    private MibTreeNode nearestMatch(MibTreeNode deepestNode, NodeSearchOption matchType)
+    {
+        if (matchType == NodeSearchOption.MatchNearestPath && deepestNode != this)
+            return deepestNode;
+        
+        return null;
+    }
+    
+    private void indexChild(MibTreeNode child)
+    {
+        int id = ((MibObjectIdentifier)child.getUserObject()).getId();
+        
+        int index = Arrays.binarySearch(childIds, 0, indexedCount, id);
+        if (index >= 0)
+            return;   // a sibling already has this id
+        
+        index = -(index + 1);
+        if (indexedCount == childIds.length)
         {
-            throw new NumberFormatException("Object Identifier: " + oid + " is invalid.");
-        }      
+            int newLength = Math.max(4, indexedCount * 2);
+            childIds = Arrays.copyOf(childIds, newLength);
+            indexedChildren = Arrays.copyOf(indexedChildren, newLength);
+        }
+        
+        System.arraycopy(childIds, index, childIds, index + 1, indexedCount - index);
+        System.arraycopy(indexedChildren, index, indexedChildren, index + 1, indexedCount - index);
+        childIds[index] = id;
+        indexedChildren[index] = child;
+        indexedCount++;
+    }
+    
+    private void unindexChild(MibTreeNode child)
+    {
+        int id = ((MibObjectIdentifier)child.getUserObject()).getId();
+        
+        int index = Arrays.binarySearch(childIds, 0, indexedCount, id);
+        if (index < 0 || indexedChildren[index] != child)
+            return;
+        
+        indexedCount--;
+        System.arraycopy(childIds, index + 1, childIds, index, indexedCount - index);
+        System.arraycopy(indexedChildren, index + 1, indexedChildren, index, indexedCount - index);
+        indexedChildren[indexedCount] = null;
+        
+        // Let a remaining sibling with the same id take its place.
+        for (int i = 0; i < this.getChildCount(); i++)
+        {
+            TreeNode sibling = this.getChildAt(i);
+            if (sibling instanceof MibTreeNode 
+            		&& ((MibObjectIdentifier)((MibTreeNode)sibling).getUserObject()).getId() == id)
+            {
+                indexChild((MibTreeNode)sibling);
+                break;
+            }
+        }
     }
     
     
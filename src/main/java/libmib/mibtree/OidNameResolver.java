@@ -0,0 +1,178 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib.mibtree;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import libmib.mibtree.MibTreeNode.NodeSearchOption;
+import snmp.datatypes.SnmpObjectIdentifier;
+import utilities.NullArgumentException;
+
+/**
+ * Resolves numeric OIDs to display names using a MIB tree, for example 1.3.6.1.2.1.1.1.0 
+ * is rendered as system.sysDescr.0.  The nearest node in the tree names the longest known 
+ * prefix of an OID and the remaining sub-identifiers are appended as numerals.
+ * <br><br>
+ * The name prefix of each node that has been resolved is cached in a least recently used 
+ * map, so a walk of a table resolves the name of each column once rather than once per row.
+ * A resolver has no dependency on Swing components other than the tree nodes themselves and 
+ * can be used by batch exporters, but it is not thread safe; each thread should use its own.
+ */
+public class OidNameResolver
+{
+    public static final int DEFAULT_MAXIMUM_CACHED_NODES = 1000;
+    
+    private static final String STD_PREFIX = "iso.org.dod.internet.mgmt.mib-2.";
+    private static final String ENT_PREFIX = "iso.org.dod.internet.private.enterprises.";
+    
+    private final MibTreeNode root;
+    private final int maximumCachedNodes;
+    private final Map<MibTreeNode, String> namePrefixes;
+    private final StringBuilder builder = new StringBuilder();
+    
+    /**
+     * Creates a resolver for the given tree with the default cache size.
+     * 
+     * @param rootNode the root of the MIB tree
+     */
+    public OidNameResolver(MibTreeNode rootNode)
+    {
+        this(rootNode, DEFAULT_MAXIMUM_CACHED_NODES);
+    }
+    
+    /**
+     * Creates a resolver for the given tree.
+     * 
+     * @param rootNode the root of the MIB tree
+     * @param maximumCachedNodes the number of node name prefixes to keep, least recently 
+     *        used first out
+     */
+    public OidNameResolver(MibTreeNode rootNode, int maximumCachedNodes)
+    {
+        if (rootNode == null)
+            throw new NullArgumentException("rootNode");
+        
+        if (maximumCachedNodes < 1)
+            throw new IllegalArgumentException("The maximum number of cached nodes must be at least 1.");
+        
+        this.root = rootNode;
+        this.maximumCachedNodes = maximumCachedNodes;
+        this.namePrefixes = new LinkedHashMap<MibTreeNode, String>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MibTreeNode, String> eldest)
+            {
+                return size() > OidNameResolver.this.maximumCachedNodes;
+            }
+        };
+    }
+    
+    /**
+     * Finds the node naming the longest known prefix of an OID.
+     * 
+     * @param oid the OID to look up
+     * @return the nearest node or null if not even the first sub-identifier is known
+     */
+    public MibTreeNode findNode(SnmpObjectIdentifier oid)
+    {
+        return root.getNodeByOid(oid, NodeSearchOption.MatchNearestPath);
+    }
+    
+    /**
+     * Renders an OID for display using the names of the MIB tree.
+     * 
+     * @param oid the OID to render
+     * @return the display OID, or the numeric OID if no part of it is in the tree
+     */
+    public String getDisplayOid(SnmpObjectIdentifier oid)
+    {
+        return getDisplayOid(findNode(oid), oid);
+    }
+    
+    /**
+     * Renders an OID for display using a node already found with {@link #findNode}, saving a 
+     * second lookup when the caller needs the node as well.
+     * 
+     * @param node the nearest node to the OID, or null if there is none
+     * @param oid the OID to render
+     * @return the display OID, or the numeric OID if node is null
+     */
+    public String getDisplayOid(MibTreeNode node, SnmpObjectIdentifier oid)
+    {
+        if (node == null)
+            return oid.toString();
+        
+        String prefix = getNamePrefix(node);
+        
+        builder.setLength(0);
+        builder.append(prefix);
+        
+        int length = oid.size();
+        for (int i = node.getLevel() - root.getLevel(); i < length; i++)
+        {
+            if (builder.length() > 0)
+                builder.append('.');
+            
+            builder.append(oid.getSubIdentifier(i));
+        }
+        
+        return builder.toString();
+    }
+    
+    /**
+     * Returns the number of node name prefixes currently cached.
+     */
+    public int getCachedNodeCount()
+    {
+        return namePrefixes.size();
+    }
+    
+    /**
+     * Discards all cached name prefixes, which should be done when nodes are renamed or moved.
+     */
+    public void clearCache()
+    {
+        namePrefixes.clear();
+    }
+    
+    private String getNamePrefix(MibTreeNode node)
+    {
+        String prefix = namePrefixes.get(node);
+        if (prefix == null)
+        {
+            prefix = node.getOidNamePath();
+            
+            // Chop off the beginning of the standard paths in the way GetIf displays OID names.
+            if (prefix.startsWith(STD_PREFIX))
+                prefix = prefix.substring(STD_PREFIX.length());
+            else if (prefix.startsWith(ENT_PREFIX))
+                prefix = prefix.substring(ENT_PREFIX.length());
+            
+            namePrefixes.put(node, prefix);
+        }
+        
+        return prefix;
+    }
+}
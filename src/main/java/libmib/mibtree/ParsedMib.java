@@ -0,0 +1,127 @@
+/**
+ * libmib - Java SNMP Management Information Base Library
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package libmib.mibtree;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import libmib.MibObjectType;
+
+/**
+ * The contents of a MIB file as read by a tree builder, before they are added to a MIB tree.
+ * Reading a file into a ParsedMib does not touch the tree, so files can be read in parallel 
+ * and then added to the tree one at a time in the order of their imports.
+ */
+public class ParsedMib
+{
+    private final File file;
+    private final String mibName;
+    private final List<String> importedMibs = new ArrayList<String>();
+    private final List<Definition> definitions = new ArrayList<Definition>();
+    
+    /**
+     * Creates an empty ParsedMib for a file.
+     * 
+     * @param mibFile the file the MIB was read from
+     * @param mibName the name of the MIB module defined in the file
+     */
+    public ParsedMib(File mibFile, String mibName)
+    {
+        this.file = mibFile;
+        this.mibName = mibName;
+    }
+    
+    /**
+     * Gets the file the MIB was read from.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+    
+    /**
+     * Gets the name of the MIB module defined in the file.
+     */
+    public String getMibName()
+    {
+        return mibName;
+    }
+    
+    /**
+     * Records that the MIB imports from another module.
+     * 
+     * @param sourceMibName the name of the imported module
+     */
+    public void addImportedMib(String sourceMibName)
+    {
+        if (sourceMibName != null && !importedMibs.contains(sourceMibName))
+            importedMibs.add(sourceMibName);
+    }
+    
+    /**
+     * Gets the names of the modules the MIB imports from.
+     */
+    public List<String> getImportedMibs()
+    {
+        return Collections.unmodifiableList(importedMibs);
+    }
+    
+    /**
+     * Adds a MIB object defined in the file.
+     * 
+     * @param mibObject the MIB object
+     * @param parentName the name of the MIB object's parent
+     */
+    public void addDefinition(MibObjectType mibObject, String parentName)
+    {
+        definitions.add(new Definition(mibObject, parentName));
+    }
+    
+    /**
+     * Gets the MIB objects defined in the file in the order they were read.
+     */
+    public List<Definition> getDefinitions()
+    {
+        return Collections.unmodifiableList(definitions);
+    }
+    
+    /**
+     * A MIB object and the name of the parent it belongs under.
+     */
+    public static final class Definition
+    {
+        private final MibObjectType mibObject;
+        private final String parentName;
+        
+        private Definition(MibObjectType mibObject, String parentName)
+        {
+            this.mibObject = mibObject;
+            this.parentName = parentName;
+        }
+        
+        public MibObjectType getMibObject() { return mibObject; }
+        
+        public String getParentName() { return parentName; }
+    }
+}
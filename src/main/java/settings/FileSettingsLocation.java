@@ -56,6 +56,15 @@ public class FileSettingsLocation implements SettingsLocation
 		settingsFile = new File(settingsFilePath);
 	}
 
+	/**
+	 * Returns a file in the default settings directory, for data kept alongside the settings.
+	 * @param fileName the name of the file
+	 */
+	public static File getDefaultFile(String fileName)
+	{
+		return new File(SETTINGS_PATH, fileName);
+	}
+
 	/* (non-Javadoc)
 	 * @see settings.SettingsLocation#isAccessible()
 	 */
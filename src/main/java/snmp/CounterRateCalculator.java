@@ -0,0 +1,337 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import snmp.datatypes.SnmpCounter64;
+import snmp.datatypes.SnmpInteger;
+import snmp.datatypes.SnmpObjectIdentifier;
+
+/**
+ * Computes per-second rates from successive polls of Counter32 and Counter64 values, such as 
+ * interface octet counters. The previous sample of each series, one OID on one agent, is 
+ * kept in a table keyed by a primitive long, so that updating a series allocates nothing. 
+ * <br><br>
+ * Deltas are taken modulo 2^32 or 2^64, so a counter that wraps once between polls still 
+ * gives the right rate. A counter that wraps more than once between polls can't be told 
+ * apart from one that wrapped once, so counters should be polled well within their wrap time. 
+ * <br><br>
+ * If the agent's sysUpTime is supplied with each sample, a sample whose uptime does not 
+ * advance in step with the local clock is reported as a discontinuity: the agent has 
+ * restarted and its counters have been reset, so no rate is computed across it.
+ * <br><br>
+ * Instances are not thread-safe.
+ */
+public class CounterRateCalculator
+{
+	/** The outcome of adding a sample to a series. */
+	public enum SampleStatus 
+	{ 
+		/** The series had no earlier sample, so no rate could be computed. */
+		FirstSample, 
+		
+		/** A delta and rate were computed from the previous sample. */
+		Rate, 
+		
+		/** The agent restarted or the sample went back in time, so the series starts over. */
+		Discontinuity;
+	}
+	
+	/** Passed in place of sysUpTime when it is not known. */
+	public static final long UNKNOWN_UPTIME = -1;
+	
+	// sysUpTime counts hundredths of a second.
+	private static final long NANOS_PER_TICK = 10000000L;
+	
+	// The smallest difference between the advance of sysUpTime and the local clock that is 
+	// taken as a restart, in ticks; polls see varying network delays.
+	private static final long MINIMUM_UPTIME_TOLERANCE = 200;
+	
+	private static final double TWO_TO_THE_64 = 18446744073709551616.0;
+	private static final int INITIAL_CAPACITY = 64;
+	
+	// Open-addressed table of series with linear probing; the arrays are parallel.
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private boolean[] used = new boolean[INITIAL_CAPACITY];
+	private long[] counterValues = new long[INITIAL_CAPACITY];
+	private long[] sampleTimes = new long[INITIAL_CAPACITY];
+	private long[] uptimes = new long[INITIAL_CAPACITY];
+	private int size = 0;
+	
+	private final Map<InetSocketAddress, Integer> hostIds = new HashMap<InetSocketAddress, Integer>();
+	private final Map<SnmpObjectIdentifier, Integer> oidIds = new HashMap<SnmpObjectIdentifier, Integer>();
+	
+	// The results of the last update.
+	private long delta;
+	private long elapsedNanos;
+	private double rate;
+	
+	/**
+	 * Gets the key of the series for an OID on an agent. Keys are assigned the first time each 
+	 * agent and OID is seen, so callers polling the same series repeatedly should keep the key 
+	 * rather than looking it up each time.
+	 */
+	public long getSeriesKey(InetSocketAddress host, SnmpObjectIdentifier oid)
+	{
+		return ((long)getId(hostIds, host) << 32) | (getId(oidIds, oid) & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Adds a sample of a Counter32 or Counter64 value to a series.
+	 * @param seriesKey the series, from getSeriesKey or any other unique long
+	 * @param counter the counter value; anything other than an SnmpCounter64 is treated as a 
+	 * 32-bit counter
+	 * @param uptime the agent's sysUpTime in hundredths of a second, or UNKNOWN_UPTIME
+	 * @param sampleTime the System.nanoTime at which the sample was taken
+	 */
+	public SampleStatus update(long seriesKey, SnmpInteger counter, long uptime, long sampleTime)
+	{
+		if (counter instanceof SnmpCounter64)
+			return this.updateCounter64(seriesKey, counter.longValue(), uptime, sampleTime);
+		else
+			return this.updateCounter32(seriesKey, counter.longValue(), uptime, sampleTime);
+	}
+	
+	/**
+	 * Adds a sample of a 32-bit counter to a series.
+	 * @see #update(long, SnmpInteger, long, long)
+	 */
+	public SampleStatus updateCounter32(long seriesKey, long value, long uptime, long sampleTime)
+	{
+		return this.update(seriesKey, value & 0xFFFFFFFFL, 0xFFFFFFFFL, uptime, sampleTime);
+	}
+	
+	/**
+	 * Adds a sample of a 64-bit counter to a series. Values above 2^63 - 1 are passed as 
+	 * negative numbers.
+	 * @see #update(long, SnmpInteger, long, long)
+	 */
+	public SampleStatus updateCounter64(long seriesKey, long value, long uptime, long sampleTime)
+	{
+		return this.update(seriesKey, value, -1L, uptime, sampleTime);
+	}
+	
+	/**
+	 * Gets the increase of the counter computed by the last update that returned Rate. 
+	 * For a Counter64 the delta is unsigned.
+	 */
+	public long getDelta()
+	{
+		return delta;
+	}
+	
+	/**
+	 * Gets the time in nanoseconds between the samples used by the last update that returned Rate.
+	 */
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+	
+	/**
+	 * Gets the increase per second computed by the last update that returned Rate.
+	 */
+	public double getRate()
+	{
+		return rate;
+	}
+	
+	/**
+	 * Forgets the previous sample of a series.
+	 * @return true if the series had a sample
+	 */
+	public boolean remove(long seriesKey)
+	{
+		int slot = findSlot(seriesKey);
+		if (!used[slot])
+			return false;
+		
+		// Move later entries of the probe sequence back so that none is cut off from its key's home slot.
+		int mask = keys.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (used[next])
+		{
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask))
+			{
+				moveEntry(next, hole);
+				hole = next;
+			}
+			
+			next = (next + 1) & mask;
+		}
+		
+		used[hole] = false;
+		size--;
+		return true;
+	}
+	
+	/**
+	 * Gets the number of series with a previous sample.
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Forgets the previous samples of all series.
+	 */
+	public void clear()
+	{
+		Arrays.fill(used, false);
+		size = 0;
+	}
+	
+	private SampleStatus update(long seriesKey, long value, long mask, long uptime, long sampleTime)
+	{
+		int slot = findSlot(seriesKey);
+		if (!used[slot])
+		{
+			if (size + 1 > keys.length * 3 / 4)
+			{
+				grow();
+				slot = findSlot(seriesKey);
+			}
+			
+			used[slot] = true;
+			keys[slot] = seriesKey;
+			size++;
+			
+			store(slot, value, uptime, sampleTime);
+			return SampleStatus.FirstSample;
+		}
+		
+		long elapsed = sampleTime - sampleTimes[slot];
+		boolean restarted = elapsed <= 0 || isUptimeDiscontinuous(uptimes[slot], uptime, elapsed);
+		
+		long previousValue = counterValues[slot];
+		store(slot, value, uptime, sampleTime);
+		
+		if (restarted)
+			return SampleStatus.Discontinuity;
+		
+		delta = (value - previousValue) & mask;
+		elapsedNanos = elapsed;
+		
+		double unsignedDelta = (delta >= 0) ? delta : delta + TWO_TO_THE_64;
+		rate = unsignedDelta * 1e9 / elapsed;
+		
+		return SampleStatus.Rate;
+	}
+	
+	/**
+	 * Checks whether sysUpTime advanced by about as much as the local clock did between two 
+	 * samples. sysUpTime is itself a 32-bit value that wraps after about 497 days.
+	 */
+	private static boolean isUptimeDiscontinuous(long previousUptime, long uptime, long elapsedNanos)
+	{
+		if (previousUptime == UNKNOWN_UPTIME || uptime == UNKNOWN_UPTIME)
+			return false;
+		
+		long uptimeAdvance = (uptime - previousUptime) & 0xFFFFFFFFL;
+		long elapsedTicks = elapsedNanos / NANOS_PER_TICK;
+		long tolerance = Math.max(MINIMUM_UPTIME_TOLERANCE, elapsedTicks / 4);
+		
+		return Math.abs(uptimeAdvance - elapsedTicks) > tolerance;
+	}
+	
+	private void store(int slot, long value, long uptime, long sampleTime)
+	{
+		counterValues[slot] = value;
+		uptimes[slot] = uptime;
+		sampleTimes[slot] = sampleTime;
+	}
+	
+	private void moveEntry(int from, int to)
+	{
+		used[to] = true;
+		keys[to] = keys[from];
+		counterValues[to] = counterValues[from];
+		uptimes[to] = uptimes[from];
+		sampleTimes[to] = sampleTimes[from];
+	}
+	
+	/**
+	 * Finds the slot holding a key, or the empty slot where it would be added.
+	 */
+	private int findSlot(long key)
+	{
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (used[slot] && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		
+		return slot;
+	}
+	
+	private void grow()
+	{
+		long[] oldKeys = keys;
+		boolean[] oldUsed = used;
+		long[] oldValues = counterValues;
+		long[] oldTimes = sampleTimes;
+		long[] oldUptimes = uptimes;
+		
+		int capacity = oldKeys.length * 2;
+		keys = new long[capacity];
+		used = new boolean[capacity];
+		counterValues = new long[capacity];
+		sampleTimes = new long[capacity];
+		uptimes = new long[capacity];
+		
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (!oldUsed[i])
+				continue;
+			
+			int slot = findSlot(oldKeys[i]);
+			used[slot] = true;
+			keys[slot] = oldKeys[i];
+			store(slot, oldValues[i], oldUptimes[i], oldTimes[i]);
+		}
+	}
+	
+	private static int hash(long key)
+	{
+		// Spread the bits so that keys differing only in their high half (the host) don't collide.
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+	
+	private static <T> int getId(Map<T, Integer> ids, T value)
+	{
+		Integer id = ids.get(value);
+		if (id == null)
+		{
+			id = ids.size();
+			ids.put(value, id);
+		}
+		
+		return id;
+	}
+}
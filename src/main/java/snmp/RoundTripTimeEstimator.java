@@ -0,0 +1,112 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+/**
+ * Estimates how long to wait for responses from an agent, from the round-trip times 
+ * of earlier requests. Like TCP's retransmission timer (RFC 6298), it keeps a smoothed 
+ * round-trip time and its mean deviation, and allows the smoothed time plus four times 
+ * the deviation. Only requests that were answered without being retransmitted should be
+ * sampled, since a response to a retransmitted request can't be matched to one transmission.
+ */
+public class RoundTripTimeEstimator
+{
+	/** The timeout used before any round-trip time has been measured, in milliseconds. */
+	public static final int INITIAL_TIMEOUT = 1000;
+	
+	/** The shortest timeout ever used, in milliseconds. */
+	public static final int MINIMUM_TIMEOUT = 100;
+	
+	// Weights of a new sample in the smoothed round-trip time and deviation (1/8 and 1/4).
+	// Both are kept scaled up by the inverse of their weights, so that small differences 
+	// aren't lost to integer division.
+	private static final int SMOOTHING_SHIFT = 3;
+	private static final int DEVIATION_SHIFT = 2;
+	
+	private long scaledRoundTripTime;
+	private long scaledDeviation;
+	private boolean hasSamples = false;
+	
+	/**
+	 * Adds the round-trip time of a request.
+	 * @param roundTripTime the time in milliseconds between sending the request and receiving its response 
+	 */
+	public synchronized void addSample(long roundTripTime)
+	{
+		if (roundTripTime < 0)
+			throw new IllegalArgumentException("Round-trip time must not be negative.");
+		
+		if (!hasSamples)
+		{
+			scaledRoundTripTime = roundTripTime << SMOOTHING_SHIFT;
+			scaledDeviation = (roundTripTime / 2) << DEVIATION_SHIFT;
+			hasSamples = true;
+		}
+		else
+		{
+			long error = roundTripTime - (scaledRoundTripTime >> SMOOTHING_SHIFT);
+			scaledRoundTripTime += error;
+			scaledDeviation += Math.abs(error) - (scaledDeviation >> DEVIATION_SHIFT);
+		}
+	}
+	
+	/**
+	 * Returns true once at least one round-trip time has been added.
+	 */
+	public synchronized boolean hasSamples()
+	{
+		return hasSamples;
+	}
+	
+	/**
+	 * Gets the smoothed round-trip time in milliseconds, or 0 if no samples have been added.
+	 */
+	public synchronized long getSmoothedRoundTripTime()
+	{
+		return scaledRoundTripTime >> SMOOTHING_SHIFT;
+	}
+	
+	/**
+	 * Gets the time to wait for a response to a request that is sent for the first time,
+	 * in milliseconds. Retransmissions should double it each time.
+	 */
+	public synchronized int getTimeout()
+	{
+		if (!hasSamples)
+			return INITIAL_TIMEOUT;
+		
+		// The scaled deviation is four times the deviation.
+		long timeout = (scaledRoundTripTime >> SMOOTHING_SHIFT) + Math.max(1, scaledDeviation);
+		return (int)Math.min(Integer.MAX_VALUE, Math.max(MINIMUM_TIMEOUT, timeout));
+	}
+	
+	/**
+	 * Gets the time to wait for a response to the given attempt at sending a request,
+	 * where the first attempt is 0: the timeout doubled for each retransmission, but
+	 * no longer than maximumTimeout.
+	 */
+	public int getTimeout(int attempt, int maximumTimeout)
+	{
+		long timeout = (long)getTimeout() << Math.min(attempt, 20);
+		return (int)Math.min(maximumTimeout, timeout);
+	}
+}
@@ -0,0 +1,599 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import snmp.datatypes.SnmpBERType;
+import snmp.datatypes.SnmpObject;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.sequence.SnmpMessage;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.datatypes.sequence.pdu.SnmpBasicPDU;
+import snmp.error.ErrorStatus;
+import snmp.error.SnmpBadValueException;
+import snmp.error.SnmpGetException;
+import snmp.error.SnmpRequestException;
+import snmp.error.SnmpSetException;
+
+/**
+ * An SNMP client that sends requests to any number of agents without blocking. All requests 
+ * share one non-blocking datagram channel, serviced by a single selector thread, and responses 
+ * are dispatched to their requests by request ID. Each request returns a future that completes 
+ * with the variable bindings of the response, or exceptionally with the same exceptions that 
+ * SnmpV1Communicator throws, or a SocketTimeoutException if the agent doesn't respond within
+ * the target's timeout. Requests to targets with retries are retransmitted with timeouts
+ * estimated from the round-trip times of each agent, as described for SnmpV1Communicator.
+ * <p>
+ * Futures are completed on the selector thread, so dependent actions that take a long time
+ * should be run with the asynchronous methods of CompletableFuture.
+ */
+public class SnmpAsyncClient
+{
+	private final DatagramChannel channel;
+	private final Selector selector;
+	private final SelectionKey key;
+	private final Thread selectorThread;
+	
+	private final SnmpPacketProcessor packetProcessor = new SnmpPacketProcessor();
+	
+	// Shared by the requesting threads; guarded by itself.
+	private final SnmpMessageFactory messageFactory = new SnmpMessageFactory(new RequestIdGenerator());
+	
+	// Requests waiting to be picked up by the selector thread.
+	private final Queue<PendingRequest> newRequests = new ConcurrentLinkedQueue<PendingRequest>();
+	
+	// Only used by the selector thread.
+	private final Map<Integer, PendingRequest> outstanding = new HashMap<Integer, PendingRequest>();
+	private final PriorityQueue<PendingRequest> deadlines = new PriorityQueue<PendingRequest>();
+	private final Queue<PendingRequest> unsent = new ArrayDeque<PendingRequest>();
+	private final Map<InetSocketAddress, RoundTripTimeEstimator> roundTripTimes = new HashMap<InetSocketAddress, RoundTripTimeEstimator>();
+	private final ByteBuffer sendBuffer = ByteBuffer.allocate(SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE);
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocate(SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE);
+	
+	private volatile boolean closed = false;
+	
+	/**
+	 * Creates a client on an ephemeral local port.
+	 * @throws IOException if the channel can't be opened
+	 */
+	public SnmpAsyncClient() throws IOException
+	{
+		this(new InetSocketAddress(0));
+	}
+	
+	/**
+	 * Creates a client bound to the given local address.
+	 * @throws IOException if the channel can't be opened
+	 */
+	public SnmpAsyncClient(InetSocketAddress localAddress) throws IOException
+	{
+		channel = DatagramChannel.open();
+		channel.configureBlocking(false);
+		channel.bind(localAddress);
+		
+		selector = Selector.open();
+		key = channel.register(selector, SelectionKey.OP_READ);
+		
+		selectorThread = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				processRequests();
+			}
+		}, "SNMP client");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+	}
+	
+	/**
+	 * Retrieves the values of the given OIDs.
+	 * @param target the agent to query
+	 * @param itemIds one or more OIDs in dotted string form
+	 */
+	public CompletableFuture<SnmpVarBindList> get(SnmpTarget target, String ... itemIds)
+	{
+		return this.submit(target, SnmpBERType.SnmpGetRequest, itemIds, null, 0, 0);
+	}
+	
+	/**
+	 * Retrieves the values of the OIDs following the given OIDs.
+	 * @param target the agent to query
+	 * @param itemIds one or more OIDs in dotted string form
+	 */
+	public CompletableFuture<SnmpVarBindList> getNext(SnmpTarget target, String ... itemIds)
+	{
+		return this.submit(target, SnmpBERType.SnmpGetNextRequest, itemIds, null, 0, 0);
+	}
+	
+	/**
+	 * Sets the values of the given OIDs.
+	 * @param target the agent to update
+	 * @param itemIds one or more OIDs in dotted string form
+	 * @param newValues the corresponding values
+	 */
+	public CompletableFuture<SnmpVarBindList> set(SnmpTarget target, String[] itemIds, SnmpObject[] newValues)
+	{
+		if (itemIds.length != newValues.length)
+		{
+			CompletableFuture<SnmpVarBindList> future = new CompletableFuture<SnmpVarBindList>();
+			future.completeExceptionally(new SnmpSetException("OID and value arrays must have same size", 0, ErrorStatus.GeneralError));
+			return future;
+		}
+		
+		return this.submit(target, SnmpBERType.SnmpSetRequest, itemIds, newValues, 0, 0);
+	}
+	
+	/**
+	 * Retrieves the successors of the given OIDs with a GetBulk request, as described for
+	 * SnmpV1Communicator.getBulk. The target must use SNMPv2.
+	 * @param target the agent to query
+	 * @param nonRepeaters the number of leading OIDs for which only a single successor is retrieved
+	 * @param maxRepetitions the number of successors to retrieve for each of the remaining OIDs
+	 * @param itemIds one or more OIDs in dotted string form
+	 */
+	public CompletableFuture<SnmpVarBindList> getBulk(SnmpTarget target, int nonRepeaters, int maxRepetitions, String ... itemIds)
+	{
+		if (target.getVersion() == SnmpVersion.SNMPv1)
+			throw new IllegalStateException("GetBulk requests require SNMPv2.");
+		
+		if (nonRepeaters < 0 || maxRepetitions < 0)
+			throw new IllegalArgumentException("Non-repeaters and max-repetitions must not be negative.");
+		
+		return this.submit(target, SnmpBERType.SnmpV2BulkRequest, itemIds, null, nonRepeaters, maxRepetitions);
+	}
+	
+	/**
+	 * Stops the client. Requests that are still outstanding complete with a ClosedChannelException.
+	 */
+	public void close()
+	{
+		closed = true;
+		selector.wakeup();
+		
+		if (Thread.currentThread() != selectorThread)
+		{
+			try
+			{
+				selectorThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Creates the request message and hands it to the selector thread.
+	 */
+	private CompletableFuture<SnmpVarBindList> submit(SnmpTarget target, SnmpBERType requestType, 
+			String[] itemIds, SnmpObject[] newValues, int nonRepeaters, int maxRepetitions)
+	{
+		CompletableFuture<SnmpVarBindList> future = new CompletableFuture<SnmpVarBindList>();
+		
+		try
+		{
+			PendingRequest request;
+			synchronized (messageFactory)
+			{
+				messageFactory.setVersion(target.getVersion());
+				messageFactory.setCommunity(target.getCommunity());
+				
+				SnmpMessage message;
+				if (requestType == SnmpBERType.SnmpV2BulkRequest)
+				{
+					SnmpObjectIdentifier[] requestedOids = new SnmpObjectIdentifier[itemIds.length];
+					for (int i = 0; i < itemIds.length; i++)
+						requestedOids[i] = new SnmpObjectIdentifier(itemIds[i]);
+					
+					message = messageFactory.createBulkMessage(nonRepeaters, maxRepetitions, requestedOids);
+				}
+				else if (newValues != null)
+				{
+					message = messageFactory.createMessage(requestType, itemIds, newValues);
+				}
+				else
+				{
+					message = messageFactory.createMessage(requestType, itemIds);
+				}
+				
+				request = new PendingRequest(messageFactory.getCurrentRequestId(), target, requestType, itemIds, message, future);
+			}
+			
+			newRequests.add(request);
+			selector.wakeup();
+			
+			// The selector thread may have stopped before it could see the request.
+			if (closed)
+				failAll(newRequests, new ClosedChannelException());
+		}
+		catch (SnmpBadValueException e)
+		{
+			future.completeExceptionally(e);
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * The selector thread's loop: sends new requests, dispatches responses, and expires 
+	 * requests that have not been answered in time.
+	 */
+	private void processRequests()
+	{
+		IOException failure = null;
+		try
+		{
+			while (!closed)
+			{
+				long timeout = millisUntilNextDeadline();
+				if (timeout < 0)
+					selector.select();
+				else if (timeout == 0)
+					selector.selectNow();
+				else
+					selector.select(timeout);
+				
+				selector.selectedKeys().clear();
+				
+				acceptNewRequests();
+				receiveResponses();
+				expireRequests();
+				sendRequests();
+			}
+		}
+		catch (IOException e)
+		{
+			failure = e;
+		}
+		finally
+		{
+			closed = true;
+			try
+			{
+				selector.close();
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				// Nothing more can be done with the channel.
+			}
+			
+			IOException reason = (failure != null) ? failure : new ClosedChannelException();
+			failAll(outstanding.values(), reason);
+			failAll(newRequests, reason);
+			outstanding.clear();
+			unsent.clear();
+			deadlines.clear();
+		}
+	}
+	
+	/**
+	 * Returns the time until the earliest deadline, or -1 if there are no outstanding requests.
+	 */
+	private long millisUntilNextDeadline()
+	{
+		if (!newRequests.isEmpty())
+			return 0;
+		
+		PendingRequest next = deadlines.peek();
+		if (next == null)
+			return -1;
+		
+		return Math.max(0, next.deadline - System.currentTimeMillis());
+	}
+	
+	private void acceptNewRequests()
+	{
+		long now = System.currentTimeMillis();
+		
+		PendingRequest request;
+		while ((request = newRequests.poll()) != null)
+		{
+			request.deadline = now + getAttemptTimeout(request);
+			outstanding.put(request.requestId, request);
+			deadlines.add(request);
+			unsent.add(request);
+		}
+	}
+	
+	/**
+	 * Returns how long to wait for a response to the request's current attempt.
+	 */
+	private int getAttemptTimeout(PendingRequest request)
+	{
+		SnmpTarget target = request.target;
+		
+		// Without retries, the only attempt waits for the whole timeout.
+		if (target.getRetries() == 0)
+			return target.getTimeout();
+		
+		return getRoundTripTimes(target).getTimeout(request.attempt, target.getTimeout());
+	}
+	
+	private RoundTripTimeEstimator getRoundTripTimes(SnmpTarget target)
+	{
+		RoundTripTimeEstimator estimator = roundTripTimes.get(target.getSocketAddress());
+		if (estimator == null)
+		{
+			estimator = new RoundTripTimeEstimator();
+			roundTripTimes.put(target.getSocketAddress(), estimator);
+		}
+		
+		return estimator;
+	}
+	
+	/**
+	 * Sends as many requests as the socket will take, and waits for it to become 
+	 * writable again if some are left.
+	 */
+	private void sendRequests() throws IOException
+	{
+		while (!unsent.isEmpty())
+		{
+			PendingRequest request = unsent.peek();
+			
+			// Skip requests that were cancelled or expired before they could be sent.
+			if (request.future.isDone())
+			{
+				unsent.remove();
+				continue;
+			}
+			
+			sendBuffer.clear();
+			packetProcessor.encodeMessage(request.message, sendBuffer);
+			sendBuffer.flip();
+			
+			try
+			{
+				if (channel.send(sendBuffer, request.target.getSocketAddress()) == 0)
+					break;
+				
+				request.sendTime = System.nanoTime();
+			}
+			catch (ClosedChannelException e)
+			{
+				throw e;
+			}
+			catch (IOException e)
+			{
+				// Failures such as an unreachable network only affect this request.
+				outstanding.remove(request.requestId);
+				request.future.completeExceptionally(e);
+			}
+			
+			unsent.remove();
+		}
+		
+		key.interestOps(unsent.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	}
+	
+	private void receiveResponses() throws IOException
+	{
+		while (true)
+		{
+			receiveBuffer.clear();
+			SocketAddress sender = channel.receive(receiveBuffer);
+			if (sender == null)
+				break;
+			
+			receiveBuffer.flip();
+			try
+			{
+				SnmpBasicPDU receivedPDU = packetProcessor.createMessage(receiveBuffer).getPDU();
+				
+				// Responses to requests that already timed out, and duplicates, are ignored.
+				PendingRequest request = outstanding.remove(receivedPDU.getRequestID());
+				if (request != null)
+				{
+					// The response to a retransmitted request can't be matched to one
+					// attempt, so only first attempts give round-trip times.
+					if (request.attempt == 0)
+						getRoundTripTimes(request.target).addSample((System.nanoTime() - request.sendTime) / 1000000L);
+					
+					try
+					{
+						complete(request, receivedPDU);
+					}
+					catch (SnmpBadValueException e)
+					{
+						request.future.completeExceptionally(e);
+					}
+				}
+			}
+			catch (SnmpBadValueException e)
+			{
+				// Not a valid SNMP response; ignore it.
+			}
+		}
+	}
+	
+	private void expireRequests()
+	{
+		long now = System.currentTimeMillis();
+		
+		while (!deadlines.isEmpty() && deadlines.peek().deadline <= now)
+		{
+			PendingRequest request = deadlines.remove();
+			if (outstanding.get(request.requestId) != request)
+				continue;
+			
+			// Send the request again with the same request ID, so that a late response
+			// to an earlier attempt still answers it.
+			if (request.attempt < request.target.getRetries())
+			{
+				request.attempt++;
+				request.deadline = now + getAttemptTimeout(request);
+				deadlines.add(request);
+				unsent.add(request);
+			}
+			else
+			{
+				outstanding.remove(request.requestId);
+				String errorMessage = String.format("No response from %s to request %d", request.target, request.requestId);
+				request.future.completeExceptionally(new SocketTimeoutException(errorMessage));
+			}
+		}
+	}
+	
+	/**
+	 * Completes a request with the contents of its response, checking them the same way 
+	 * SnmpV1Communicator does.
+	 */
+	private static void complete(PendingRequest request, SnmpBasicPDU receivedPDU)
+		throws SnmpBadValueException
+	{
+		ErrorStatus error = receivedPDU.getErrorStatus();
+		if (error != ErrorStatus.NoError)
+		{
+			request.future.completeExceptionally(createException(request, error, receivedPDU.getErrorIndex()));
+			return;
+		}
+		
+		SnmpVarBindList retrievedVars = new SnmpVarBindList();
+		SnmpSequence varList = receivedPDU.getVarBindList();
+		
+		for (int i = 0; i < varList.size(); i++)
+		{
+			SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(i));
+			SnmpObjectIdentifier newObjectIdentifier = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
+			
+			// Gets and sets must be answered for exactly the requested OIDs.
+			boolean exact = request.requestType == SnmpBERType.SnmpGetRequest || request.requestType == SnmpBERType.SnmpSetRequest;
+			if (exact && (i >= request.itemIds.length || !newObjectIdentifier.toString().equals(request.itemIds[i])))
+			{
+				String expected = (i < request.itemIds.length) ? request.itemIds[i] : "";
+				String errorMessage = String.format(SnmpResources.getString("wrongOIDReceivedErrorMessage"), expected, i, newObjectIdentifier);
+				
+				if (request.requestType == SnmpBERType.SnmpSetRequest)
+					request.future.completeExceptionally(new SnmpSetException(errorMessage, i + 1, ErrorStatus.GeneralError));
+				else
+					request.future.completeExceptionally(new SnmpGetException(errorMessage, i + 1, ErrorStatus.GeneralError));
+				
+				return;
+			}
+			
+			retrievedVars.addSNMPObject(newPair);
+		}
+		
+		request.future.complete(retrievedVars);
+	}
+	
+	/**
+	 * Creates the exception for an error status received in response to a request.
+	 */
+	private static SnmpRequestException createException(PendingRequest request, ErrorStatus error, int errorIndex)
+	{
+		String oid = "";
+		if (errorIndex > 0 && errorIndex <= request.itemIds.length)
+			oid = request.itemIds[errorIndex - 1];
+		else if (request.itemIds.length > 0)
+			oid = request.itemIds[0];
+		
+		String errorFormat;
+		switch (request.requestType)
+		{
+			case SnmpSetRequest:
+				return SnmpV1Communicator.createSetException(error, errorIndex, oid);
+				
+			case SnmpGetNextRequest:
+				errorFormat = SnmpResources.getString("getNextRetrievalErrorMessage");
+				break;
+				
+			case SnmpV2BulkRequest:
+				if (error == ErrorStatus.TooBig)
+					errorFormat = SnmpResources.getString("getBulkTooBigErrorMessage");
+				else
+					errorFormat = SnmpResources.getString("getBulkRetrievalErrorMessage");
+				break;
+				
+			default:
+				errorFormat = SnmpResources.getString("getRetrievalErrorMessage");
+				break;
+		}
+		
+		return new SnmpGetException(String.format(errorFormat, oid), errorIndex, error);
+	}
+	
+	private static void failAll(Iterable<PendingRequest> requests, Throwable reason)
+	{
+		for (PendingRequest request : requests)
+			request.future.completeExceptionally(reason);
+	}
+	
+	private static void failAll(Queue<PendingRequest> requests, Throwable reason)
+	{
+		PendingRequest request;
+		while ((request = requests.poll()) != null)
+			request.future.completeExceptionally(reason);
+	}
+	
+	/**
+	 * A request that has been submitted but not yet answered. Requests are 
+	 * ordered by their deadlines.
+	 */
+	private static class PendingRequest implements Comparable<PendingRequest>
+	{
+		public final int requestId;
+		public final SnmpTarget target;
+		public final SnmpBERType requestType;
+		public final String[] itemIds;
+		public final SnmpMessage message;
+		public final CompletableFuture<SnmpVarBindList> future;
+		public long deadline;
+		public long sendTime;
+		public int attempt = 0;
+		
+		public PendingRequest(int requestId, SnmpTarget target, SnmpBERType requestType, String[] itemIds, 
+				SnmpMessage message, CompletableFuture<SnmpVarBindList> future)
+		{
+			this.requestId = requestId;
+			this.target = target;
+			this.requestType = requestType;
+			this.itemIds = itemIds;
+			this.message = message;
+			this.future = future;
+		}
+		
+		public int compareTo(PendingRequest other)
+		{
+			return Long.compare(deadline, other.deadline);
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of reusable buffers for receiving datagrams, so that receive loops don't allocate
+ * a new array for every message. Buffers come in a few fixed sizes up to the largest UDP 
+ * payload; a buffer is borrowed for a receive and released once the message has been decoded, 
+ * since decoded messages don't refer to the buffer. Each size keeps a limited number of idle 
+ * buffers, and buffers released beyond that are left to the garbage collector.
+ * <p>
+ * Heap buffers suit decoding, which reads a buffer's array in place. Direct buffers save a copy 
+ * when a channel reads into them but have to be copied out to be decoded.
+ */
+public final class SnmpBufferPool
+{
+	/** The buffer sizes, from the minimum an SNMP entity must accept up to the largest UDP payload. */
+	private static final int[] BUFFER_SIZES = { 512, 2048, 8192, SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE };
+	
+	/** The bytes kept in idle buffers of each size by the shared pool. */
+	private static final int SHARED_IDLE_BYTES = 4 * 1024 * 1024;
+	
+	private static final SnmpBufferPool sharedPool = new SnmpBufferPool(false, SHARED_IDLE_BYTES);
+	
+	private final boolean direct;
+	private final SizeClass[] sizeClasses;
+	private final AtomicLong allocatedCount = new AtomicLong();
+	
+	/**
+	 * Creates a pool.
+	 * @param direct true for direct buffers, false for heap buffers
+	 * @param maximumIdleBytes the bytes that may be kept in idle buffers of each size; 
+	 * at least one buffer of each size is always kept
+	 */
+	public SnmpBufferPool(boolean direct, int maximumIdleBytes)
+	{
+		if (maximumIdleBytes < 0)
+			throw new IllegalArgumentException("The idle size cannot be negative.");
+		
+		this.direct = direct;
+		
+		sizeClasses = new SizeClass[BUFFER_SIZES.length];
+		for (int i = 0; i < BUFFER_SIZES.length; i++)
+			sizeClasses[i] = new SizeClass(BUFFER_SIZES[i], Math.max(1, maximumIdleBytes / BUFFER_SIZES[i]));
+	}
+	
+	/**
+	 * Returns the pool of heap buffers shared by the receivers in this package.
+	 */
+	public static SnmpBufferPool getSharedPool()
+	{
+		return sharedPool;
+	}
+	
+	/**
+	 * Borrows a buffer that can hold any datagram.
+	 */
+	public ByteBuffer borrow()
+	{
+		return borrow(SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE);
+	}
+	
+	/**
+	 * Borrows a cleared buffer with at least the given capacity.
+	 * @throws IllegalArgumentException if the capacity is larger than a UDP payload can be
+	 */
+	public ByteBuffer borrow(int minimumCapacity)
+	{
+		for (SizeClass sizeClass : sizeClasses)
+		{
+			if (sizeClass.size >= minimumCapacity)
+			{
+				ByteBuffer buffer = sizeClass.take();
+				if (buffer == null)
+				{
+					allocatedCount.incrementAndGet();
+					buffer = direct ? ByteBuffer.allocateDirect(sizeClass.size) : ByteBuffer.allocate(sizeClass.size);
+				}
+				
+				buffer.clear();
+				return buffer;
+			}
+		}
+		
+		throw new IllegalArgumentException("No buffer is larger than " + SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE + " bytes.");
+	}
+	
+	/**
+	 * Returns a borrowed buffer to the pool. The buffer must not be used afterwards.
+	 * Buffers that didn't come from a pool are ignored.
+	 */
+	public void release(ByteBuffer buffer)
+	{
+		if (buffer == null || buffer.isDirect() != direct)
+			return;
+		
+		for (SizeClass sizeClass : sizeClasses)
+		{
+			if (sizeClass.size == buffer.capacity())
+			{
+				sizeClass.put(buffer);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of idle buffers in the pool.
+	 */
+	public int getIdleCount()
+	{
+		int count = 0;
+		for (SizeClass sizeClass : sizeClasses)
+			count += sizeClass.getIdleCount();
+		
+		return count;
+	}
+	
+	/**
+	 * Returns the number of buffers the pool has allocated, which stops growing once 
+	 * the pool holds enough buffers for the receivers using it.
+	 */
+	public long getAllocatedCount()
+	{
+		return allocatedCount.get();
+	}
+	
+	/**
+	 * The idle buffers of one size, kept in a stack so that recently used buffers are reused first.
+	 */
+	private static final class SizeClass
+	{
+		final int size;
+		private final ByteBuffer[] idle;
+		private int idleCount = 0;
+		
+		SizeClass(int size, int maximumIdle)
+		{
+			this.size = size;
+			this.idle = new ByteBuffer[maximumIdle];
+		}
+		
+		synchronized ByteBuffer take()
+		{
+			if (idleCount == 0)
+				return null;
+			
+			ByteBuffer buffer = idle[--idleCount];
+			idle[idleCount] = null;
+			return buffer;
+		}
+		
+		synchronized void put(ByteBuffer buffer)
+		{
+			if (idleCount < idle.length)
+				idle[idleCount++] = buffer;
+		}
+		
+		synchronized int getIdleCount()
+		{
+			return idleCount;
+		}
+	}
+}
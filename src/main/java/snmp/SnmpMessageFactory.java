@@ -29,6 +29,7 @@ import snmp.datatypes.sequence.SnmpMessage;
 import snmp.datatypes.sequence.SnmpSequence;
 import snmp.datatypes.sequence.SnmpVariablePair;
 import snmp.datatypes.sequence.pdu.SnmpBasicPDU;
+import snmp.datatypes.sequence.pdu.SnmpV2BulkRequestPDU;
 import snmp.error.ErrorStatus;
 import snmp.error.SnmpBadValueException;
 import utilities.iteration.InspectableIterator;
@@ -208,5 +209,30 @@ public class SnmpMessageFactory
     	SnmpMessage message = new SnmpMessage(version, community, pdu);	
     	return message;
 	}
+    
+    /**
+     * Constructs an SNMPv2 GetBulk request message with SNMP nulls.
+     * @param nonRepeaters the number of leading OIDs for which only a single successor is requested
+     * @param maxRepetitions the number of successors requested for each of the remaining OIDs
+     * @param requestedOids the OIDs to start from
+     * 
+     * @return
+     * @throws SnmpBadValueException
+     */
+    public SnmpMessage createBulkMessage(int nonRepeaters, int maxRepetitions, SnmpObjectIdentifier[] requestedOids) 
+    	throws SnmpBadValueException
+    {
+    	SnmpSequence varList = new SnmpSequence();
+
+    	for (int i = 0; i < requestedOids.length; i++)
+    	{
+    	    SnmpVariablePair nextPair = new SnmpVariablePair(requestedOids[i], new SnmpNull());
+    	    varList.addSNMPObject(nextPair);
+    	}
+
+    	SnmpV2BulkRequestPDU pdu = new SnmpV2BulkRequestPDU(requestIdIterator.next(), nonRepeaters, maxRepetitions, varList);
+    	SnmpMessage message = new SnmpMessage(version, community, pdu);
+    	return message;
+    }
 
 }
@@ -23,8 +23,10 @@ package snmp;
 
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 
 import snmp.datatypes.SnmpBERCodec;
+import snmp.datatypes.SnmpTLV;
 import snmp.datatypes.sequence.SnmpMessage;
 import snmp.error.SnmpBadValueException;
 
@@ -46,6 +48,39 @@ public class SnmpPacketProcessor
     	return new DatagramPacket(messageEncoding, messageEncoding.length, address, port);
     }
     
+    /**
+     * Creates an outgoing datagram packet from an SNMP message, encoding the message
+     * into the given reusable buffer instead of a newly allocated array. The packet
+     * refers to the buffer's backing array, so it must be sent before the buffer is
+     * reused.
+     * @param message an SNMP message
+     * @param address the destination IP address
+     * @param port the destination port
+     * @param buffer an array-backed buffer that receives the encoding
+     * @return an encoded outgoing datagram packet
+     * @throws java.nio.BufferOverflowException if the message does not fit in the buffer
+     */
+    public DatagramPacket createPacket(SnmpMessage message, InetAddress address, int port, ByteBuffer buffer)
+    {
+    	buffer.clear();
+    	encodeMessage(message, buffer);
+    	buffer.flip();
+    	
+    	return new DatagramPacket(buffer.array(), buffer.arrayOffset(), buffer.limit(), address, port);
+    }
+    
+    /**
+     * Writes the BER encoding of an SNMP message into a buffer at its current position
+     * in a single pass.
+     * @param message an SNMP message
+     * @param buffer the buffer that receives the encoding
+     * @throws java.nio.BufferOverflowException if the message does not fit in the buffer
+     */
+    public void encodeMessage(SnmpMessage message, ByteBuffer buffer)
+    {
+    	message.encode(buffer);
+    }
+    
     /**
      * Creates an SNMP message from an incoming datagram packet.
      * @param packet a received datagram packet
@@ -54,7 +89,40 @@ public class SnmpPacketProcessor
      */
     public SnmpMessage createMessage(DatagramPacket packet) throws SnmpBadValueException
     {
-    	byte[] encodedMessage = packet.getData();
-    	return new SnmpMessage(SnmpBERCodec.extractNextTLV(encodedMessage,0).value);
+    	return createMessage(packet.getData(), packet.getOffset(), packet.getLength());
+    }
+    
+    /**
+     * Creates an SNMP message from the remaining bytes of a buffer. The message is decoded
+     * in place when the buffer is backed by an accessible array. The buffer's position
+     * is not changed.
+     * @param buffer a buffer holding a received message
+     * @return a decoded SNMP message
+     * @throws SnmpBadValueException
+     */
+    public SnmpMessage createMessage(ByteBuffer buffer) throws SnmpBadValueException
+    {
+    	if (buffer.hasArray())
+    		return createMessage(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    	
+    	// direct or read-only buffers have to be copied out once
+    	byte[] encodedMessage = new byte[buffer.remaining()];
+    	buffer.duplicate().get(encodedMessage);
+    	return createMessage(encodedMessage, 0, encodedMessage.length);
+    }
+    
+    /**
+     * Creates an SNMP message from a slice of a byte array. Nested values are decoded
+     * directly from the array, so no intermediate copies are made.
+     * @param data the array holding the encoded message
+     * @param offset the index of the first byte of the message
+     * @param length the number of valid bytes available
+     * @return a decoded SNMP message
+     * @throws SnmpBadValueException
+     */
+    public SnmpMessage createMessage(byte[] data, int offset, int length) throws SnmpBadValueException
+    {
+    	SnmpTLV messageTLV = SnmpBERCodec.readNextTLV(data, offset, offset + length);
+    	return new SnmpMessage(data, messageTLV.valueOffset, messageTLV.valueLength);
     }
 }
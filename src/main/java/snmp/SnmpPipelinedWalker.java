@@ -0,0 +1,457 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import snmp.datatypes.SnmpBERType;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.SnmpV2ExceptionValue;
+import snmp.datatypes.sequence.SnmpMessage;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.datatypes.sequence.pdu.SnmpBasicPDU;
+import snmp.error.ErrorStatus;
+import snmp.error.SnmpBadValueException;
+import snmp.error.SnmpGetException;
+
+/**
+ * Walks MIB subtrees with several GetNext requests outstanding at once. A subtree is split into 
+ * independent walks, one for each of its children (the columns, for a table entry), which proceed
+ * concurrently over a single socket. Responses are matched to their walks by request ID, and the 
+ * results are merged back into OID order. On a high-latency link this retrieves values up to 
+ * window-size times faster than the strict request/response cycle of SnmpV1Communicator.
+ * <p>
+ * Like SnmpV1Communicator, each request that isn't answered in time is retransmitted with the same 
+ * request ID, waiting for a time estimated from the round-trip times of earlier requests and twice
+ * as long for each retransmission, so that a lost datagram doesn't end the walk.
+ */
+public class SnmpPipelinedWalker
+{
+	/** The default number of requests kept outstanding. */
+	public static final int DEFAULT_WINDOW_SIZE = 8;
+	
+	/** The default number of times an unanswered request is retransmitted. */
+	public static final int DEFAULT_RETRIES = 3;
+	
+	private final DatagramSocket socket;
+	private final InetAddress hostAddress;
+	private int port = SnmpV1Communicator.DEFAULT_SNMP_PORT;
+	private int timeout = 15000;    //15 seconds
+	private int retries = DEFAULT_RETRIES;
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+	
+	private final RoundTripTimeEstimator roundTripTimes = new RoundTripTimeEstimator();
+	private final SnmpBufferPool bufferPool = SnmpBufferPool.getSharedPool();
+	
+	private final SnmpPacketProcessor packetProcessor = new SnmpPacketProcessor();
+	private final SnmpMessageFactory messageFactory;
+	private final ByteBuffer sendBuffer = ByteBuffer.allocate(SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE);
+	
+	/**
+	 * Creates a walker that communicates with the given host using the given version and 
+	 * community name. The default SNMP port is used and it has a default timeout of 15 seconds.
+	 */
+	public SnmpPipelinedWalker(SnmpVersion version, InetAddress hostAddress, String community)
+		throws SocketException
+	{
+		this(new DatagramSocket(), version, hostAddress, community);
+	}
+	
+	/**
+	 * Creates a walker that communicates with the given host over the given socket.
+	 */
+	public SnmpPipelinedWalker(DatagramSocket socket, SnmpVersion version, InetAddress hostAddress, String community)
+		throws SocketException
+	{
+		this.socket = socket;
+		this.hostAddress = hostAddress;
+		
+		messageFactory = new SnmpMessageFactory(new RequestIdGenerator(), version, community);
+	}
+	
+	/**
+	 * Sets the longest time to wait for a response to any one attempt at sending a request, in
+	 * milliseconds. If a request is still unanswered after all retries, the walk fails with a 
+	 * SocketTimeoutException. The timeout must be greater than zero.
+	 */
+	public void setTimeout(int socketTimeout) throws SocketException
+	{
+		if (socketTimeout <= 0)
+			throw new IllegalArgumentException("Timeout must be greater than zero.");
+		
+		timeout = socketTimeout;
+	}
+	
+	/**
+	 * Sets how many times a request is retransmitted when no response arrives in time. With 
+	 * no retries, each request waits for the whole timeout. The number must not be negative.
+	 */
+	public void setRetries(int retries)
+	{
+		if (retries < 0)
+			throw new IllegalArgumentException("Retries must not be negative.");
+		
+		this.retries = retries;
+	}
+	
+	/**
+	 * Gets the number of times a request is retransmitted.
+	 */
+	public int getRetries()
+	{
+		return retries;
+	}
+	
+	/**
+	 * Sets the port of the agent. The port number must not be negative.
+	 */
+	public void setPort(int newPort)
+	{
+		if (newPort < 0)
+			throw new IllegalArgumentException("Port number must not be negative.");
+		
+		port = newPort;
+	}
+	
+	/**
+	 * Sets the maximum number of requests outstanding at once. A window of 1 is 
+	 * equivalent to walking with SnmpV1Communicator.
+	 */
+	public void setWindowSize(int windowSize)
+	{
+		if (windowSize < 1)
+			throw new IllegalArgumentException("Window size must be at least 1.");
+		
+		this.windowSize = windowSize;
+	}
+	
+	/**
+	 * Gets the maximum number of requests outstanding at once.
+	 */
+	public int getWindowSize()
+	{
+		return windowSize;
+	}
+	
+	/**
+	 * Closes the walker's socket.
+	 */
+	public void close()
+	{
+		socket.close();
+	}
+	
+	/**
+	 * Retrieves all MIB variable values whose OIDs start with the supplied baseId, in OID order.
+	 * The children of the base OID are discovered as the walk proceeds, and each is walked 
+	 * independently. The walk of each child ends at the first OID outside of it, at the end 
+	 * of the agent's MIB view, or if the agent stops returning increasing OIDs.
+	 * 
+	 * @throws IOException Thrown when a request is still unanswered after all retries.
+	 * @throws SnmpBadValueException
+	 * @throws SnmpGetException Thrown if the agent reports an error other than the end of its MIB view
+	 */
+	public SnmpVarBindList retrieveMIBTable(String baseId)
+		throws IOException, SnmpBadValueException, SnmpGetException
+	{
+		SnmpObjectIdentifier baseOid = new SnmpObjectIdentifier(baseId);
+		return this.walk(Collections.singletonList(new Walk(baseOid, true)));
+	}
+	
+	/**
+	 * Retrieves all MIB variable values whose OIDs start with one of the supplied baseIds, 
+	 * such as the columns of a table, walking each of them independently. The base OIDs must 
+	 * not overlap. The values are returned in OID order, that is, column by column.
+	 * 
+	 * @throws IOException Thrown when a request is still unanswered after all retries.
+	 * @throws SnmpBadValueException
+	 * @throws SnmpGetException Thrown if the agent reports an error other than the end of its MIB view
+	 */
+	public SnmpVarBindList retrieveMIBColumns(String ... baseIds)
+		throws IOException, SnmpBadValueException, SnmpGetException
+	{
+		List<Walk> walks = new ArrayList<Walk>(baseIds.length);
+		for (String baseId : baseIds)
+			walks.add(new Walk(new SnmpObjectIdentifier(baseId), false));
+		
+		return this.walk(walks);
+	}
+	
+	/**
+	 * Runs the given walks to completion, keeping up to windowSize requests outstanding.
+	 */
+	private SnmpVarBindList walk(List<Walk> initialWalks)
+		throws IOException, SnmpBadValueException, SnmpGetException
+	{
+		// The walks that collect values, and those waiting for their next request to be sent.
+		List<Walk> walks = new ArrayList<Walk>();
+		Queue<Walk> ready = new ArrayDeque<Walk>();
+		Map<Integer, OutstandingRequest> outstanding = new HashMap<Integer, OutstandingRequest>();
+		
+		for (Walk walk : initialWalks)
+		{
+			if (!walk.discovery)
+				walks.add(walk);
+			ready.add(walk);
+		}
+		
+		ByteBuffer receiveBuffer = bufferPool.borrow();
+		DatagramPacket inPacket = new DatagramPacket(receiveBuffer.array(), receiveBuffer.arrayOffset(), receiveBuffer.capacity());
+		try
+		{
+			while (!ready.isEmpty() || !outstanding.isEmpty())
+			{
+				while (!ready.isEmpty() && outstanding.size() < windowSize)
+				{
+					Walk walk = ready.remove();
+					SnmpMessage message = messageFactory.createMessage(SnmpBERType.SnmpGetNextRequest, walk.requestedOid);
+					
+					DatagramPacket outPacket = packetProcessor.createPacket(message, hostAddress, port, sendBuffer);
+					OutstandingRequest request = new OutstandingRequest(walk, outPacket);
+					outstanding.put(messageFactory.getCurrentRequestId(), request);
+					this.send(request, 0);
+				}
+				
+				SnmpBasicPDU receivedPDU = this.receive(inPacket, outstanding);
+				if (receivedPDU == null)
+					continue;
+				
+				// Ignore responses to requests that aren't outstanding, such as duplicates.
+				OutstandingRequest request = outstanding.remove(receivedPDU.getRequestID());
+				if (request == null)
+					continue;
+				
+				// The response to a retransmitted request can't be matched to one
+				// attempt, so only first attempts give round-trip times.
+				if (request.attempt == 0)
+					roundTripTimes.addSample((System.nanoTime() - request.sendTime) / 1000000L);
+				
+				Walk walk = request.walk;
+				
+				// SNMPv1 agents report the end of their MIB view as noSuchName; any other error is a failure.
+				ErrorStatus error = receivedPDU.getErrorStatus();
+				if (error == ErrorStatus.NoSuchName)
+					continue;
+				
+				if (error != ErrorStatus.NoError)
+				{
+					String errorMessage = String.format(SnmpResources.getString("getNextRetrievalErrorMessage"), walk.requestedOid);
+					throw new SnmpGetException(errorMessage, receivedPDU.getErrorIndex(), error);
+				}
+				
+				SnmpSequence varList = receivedPDU.getVarBindList();
+				if (varList.size() == 0)
+					continue;
+				
+				SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(0));
+				SnmpObjectIdentifier nextOid = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
+				
+				if (newPair.getSNMPObjectAt(1) instanceof SnmpV2ExceptionValue)
+					continue;
+				
+				if (!walk.baseOid.isPrefixOf(nextOid) || nextOid.compareTo(walk.requestedOid) <= 0)
+					continue;
+				
+				if (walk.discovery)
+				{
+					// The response starts the next child of the base OID. Walk that child, 
+					// and look for the one after it past the end of the child's subtree.
+					SnmpObjectIdentifier childOid = childOf(walk.baseOid, nextOid);
+					Walk childWalk = new Walk(childOid, false);
+					childWalk.addResult(newPair, nextOid);
+					walks.add(childWalk);
+					ready.add(childWalk);
+					
+					walk.requestedOid = lastOidIn(childOid);
+				}
+				else
+				{
+					walk.addResult(newPair, nextOid);
+				}
+				
+				ready.add(walk);
+			}
+		}
+		finally
+		{
+			bufferPool.release(receiveBuffer);
+		}
+		
+		// The walks cover disjoint subtrees, so ordering them by their 
+		// base OIDs puts all of the results in OID order.
+		Collections.sort(walks);
+		
+		SnmpVarBindList retrievedVars = new SnmpVarBindList();
+		for (Walk walk : walks)
+		{
+			for (SnmpSequence pair : walk.results)
+				retrievedVars.addSNMPObject(pair);
+		}
+		
+		return retrievedVars;
+	}
+	
+	/**
+	 * Sends or resends a request and sets when to give up waiting for the response to this attempt.
+	 */
+	private void send(OutstandingRequest request, int attempt) throws IOException
+	{
+		// Without retries, the only attempt waits for the whole timeout.
+		int attemptTimeout = (retries == 0) ? timeout : roundTripTimes.getTimeout(attempt, timeout);
+		
+		request.attempt = attempt;
+		request.sendTime = System.nanoTime();
+		request.deadline = request.sendTime + attemptTimeout * 1000000L;
+		socket.send(request.packet);
+	}
+	
+	/**
+	 * Waits for the next response until the earliest deadline of the outstanding requests, and
+	 * resends the requests whose deadlines have passed if none arrives.
+	 * 
+	 * @return the response, or null if requests were resent instead
+	 * @throws SocketTimeoutException if a request is still unanswered after all retries
+	 */
+	private SnmpBasicPDU receive(DatagramPacket inPacket, Map<Integer, OutstandingRequest> outstanding)
+		throws IOException, SnmpBadValueException
+	{
+		long deadline = Long.MAX_VALUE;
+		for (OutstandingRequest request : outstanding.values())
+			deadline = Math.min(deadline, request.deadline);
+		
+		long now = System.nanoTime();
+		long remaining = (deadline - now) / 1000000L;
+		if (remaining > 0)
+		{
+			try
+			{
+				socket.setSoTimeout((int)Math.min(Integer.MAX_VALUE, remaining));
+				inPacket.setLength(inPacket.getData().length - inPacket.getOffset());
+				socket.receive(inPacket);
+				
+				return packetProcessor.createMessage(inPacket).getPDU();
+			}
+			catch (SocketTimeoutException e)
+			{
+				now = System.nanoTime();
+			}
+		}
+		
+		for (OutstandingRequest request : outstanding.values())
+		{
+			if (request.deadline - now > 0)
+				continue;
+			
+			if (request.attempt >= retries)
+				throw new SocketTimeoutException("Receive timed out");
+			
+			this.send(request, request.attempt + 1);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns the child of baseOid whose subtree contains oid.
+	 */
+	private static SnmpObjectIdentifier childOf(SnmpObjectIdentifier baseOid, SnmpObjectIdentifier oid)
+	{
+		return oid.getPrefix(baseOid.size() + 1);
+	}
+	
+	/**
+	 * Returns an OID that follows every OID in the subtree of baseOid that an agent could return.
+	 * Within a subtree, an OID ending with the largest component value comes after all others, 
+	 * so a GetNext for it returns the first OID past the subtree.
+	 */
+	private static SnmpObjectIdentifier lastOidIn(SnmpObjectIdentifier baseOid)
+		throws SnmpBadValueException
+	{
+		return baseOid.getChild(SnmpObjectIdentifier.MAXIMUM_SUB_IDENTIFIER);
+	}
+	
+	/**
+	 * A request waiting for its response: the walk it continues, its encoding, and its current attempt.
+	 */
+	private static class OutstandingRequest
+	{
+		public final Walk walk;
+		public final DatagramPacket packet;
+		public int attempt;
+		public long sendTime;
+		public long deadline;
+		
+		public OutstandingRequest(Walk walk, DatagramPacket sentPacket)
+		{
+			this.walk = walk;
+			
+			// The send buffer is reused for the next request, so keep a copy for retransmissions.
+			byte[] encoding = new byte[sentPacket.getLength()];
+			System.arraycopy(sentPacket.getData(), sentPacket.getOffset(), encoding, 0, encoding.length);
+			this.packet = new DatagramPacket(encoding, encoding.length, sentPacket.getAddress(), sentPacket.getPort());
+		}
+	}
+	
+	/**
+	 * The state of a walk over one subtree. A discovery walk finds the children of its subtree
+	 * rather than collecting values.
+	 */
+	private static class Walk implements Comparable<Walk>
+	{
+		public final SnmpObjectIdentifier baseOid;
+		public final boolean discovery;
+		public final List<SnmpSequence> results = new ArrayList<SnmpSequence>();
+		public SnmpObjectIdentifier requestedOid;
+		
+		public Walk(SnmpObjectIdentifier baseOid, boolean discovery)
+		{
+			this.baseOid = baseOid;
+			this.discovery = discovery;
+			this.requestedOid = baseOid;
+		}
+		
+		public void addResult(SnmpSequence pair, SnmpObjectIdentifier oid)
+		{
+			results.add(pair);
+			requestedOid = oid;
+		}
+		
+		public int compareTo(Walk other)
+		{
+			return baseOid.compareTo(other.baseOid);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import snmp.datatypes.sequence.SnmpVarBindList;
+
+/**
+ * Receives the outcome of each request made by an SnmpPoller. The poller calls these methods 
+ * from its worker threads as soon as each request completes, so implementations must be 
+ * thread-safe and should return quickly.
+ */
+public interface SnmpPollResultSink
+{
+	/**
+	 * Handles the values returned by an agent.
+	 * @param target the agent that was polled
+	 * @param varBinds the OIDs and values received
+	 */
+	public void resultReceived(SnmpTarget target, SnmpVarBindList varBinds);
+	
+	/**
+	 * Handles a request that could not be completed, such as one that timed out or was 
+	 * answered with an error.
+	 * @param target the agent that was polled
+	 * @param reason the exception describing the failure
+	 */
+	public void pollFailed(SnmpTarget target, Throwable reason);
+}
@@ -0,0 +1,362 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.error.SnmpBadValueException;
+import snmp.error.SnmpGetException;
+
+/**
+ * Polls agents repeatedly at fixed intervals without a user interface. Each scheduled poll 
+ * retrieves a set of OIDs from one agent with Get requests made by its own SnmpV1Communicator, 
+ * and hands the results to an SnmpPollResultSink.
+ * <br><br>
+ * The first run of each poll is delayed by a random part of its interval, so that polls 
+ * scheduled together don't all send their requests at the same moment. After that, runs are 
+ * due at whole multiples of the interval from the first, however long each run takes, so the 
+ * schedule does not drift. A run that is still in progress when the next is due is not 
+ * followed by a burst of late runs: the runs it overlapped are skipped and counted as overruns.
+ */
+public class SnmpPollScheduler
+{
+	/** The default number of polls that may run at once. */
+	public static final int DEFAULT_THREAD_COUNT = 4;
+	
+	private static final AtomicInteger SCHEDULER_COUNT = new AtomicInteger();
+	
+	private final ScheduledThreadPoolExecutor executor;
+	private final List<ScheduledPoll> polls = new ArrayList<ScheduledPoll>();
+	
+	/**
+	 * Creates a scheduler that runs up to DEFAULT_THREAD_COUNT polls at once.
+	 */
+	public SnmpPollScheduler()
+	{
+		this(DEFAULT_THREAD_COUNT);
+	}
+	
+	/**
+	 * Creates a scheduler.
+	 * @param threadCount the number of polls that may run at once; must be greater than zero
+	 */
+	public SnmpPollScheduler(int threadCount)
+	{
+		if (threadCount <= 0)
+			throw new IllegalArgumentException("Thread count must be greater than zero.");
+		
+		final String threadName = "SNMP poll scheduler " + SCHEDULER_COUNT.incrementAndGet() + "-";
+		executor = new ScheduledThreadPoolExecutor(threadCount, new ThreadFactory()
+		{
+			private final AtomicInteger threadCount = new AtomicInteger();
+			
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, threadName + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+	}
+	
+	/**
+	 * Starts polling an agent, with the first run at a random time within the first interval.
+	 * @param target the agent to poll
+	 * @param itemIds one or more OIDs in dotted string form
+	 * @param interval the time between runs in milliseconds; must be greater than zero
+	 * @param sink receives the result of each run
+	 * @return the scheduled poll, which can be used to stop it
+	 * @throws SocketException if the poll's socket can't be created
+	 */
+	public ScheduledPoll schedule(SnmpTarget target, String[] itemIds, long interval, SnmpPollResultSink sink)
+		throws SocketException
+	{
+		if (interval <= 0)
+			throw new IllegalArgumentException("Interval must be greater than zero.");
+		
+		return this.schedule(target, itemIds, interval, ThreadLocalRandom.current().nextLong(interval), sink);
+	}
+	
+	/**
+	 * Starts polling an agent.
+	 * @param target the agent to poll
+	 * @param itemIds one or more OIDs in dotted string form
+	 * @param interval the time between runs in milliseconds; must be greater than zero
+	 * @param initialDelay the time until the first run in milliseconds; must not be negative
+	 * @param sink receives the result of each run
+	 * @return the scheduled poll, which can be used to stop it
+	 * @throws SocketException if the poll's socket can't be created
+	 */
+	public ScheduledPoll schedule(SnmpTarget target, String[] itemIds, long interval, long initialDelay, 
+			SnmpPollResultSink sink) throws SocketException
+	{
+		if (interval <= 0)
+			throw new IllegalArgumentException("Interval must be greater than zero.");
+		
+		if (initialDelay < 0)
+			throw new IllegalArgumentException("Initial delay must not be negative.");
+		
+		SnmpV1Communicator communicator = new SnmpV1Communicator(target.getVersion(), 
+				target.getSocketAddress().getAddress(), target.getCommunity());
+		communicator.setPort(target.getSocketAddress().getPort());
+		communicator.setTimeout(target.getTimeout());
+		communicator.setRetries(target.getRetries());
+		
+		ScheduledPoll poll = new ScheduledPoll(target, itemIds, communicator, 
+				TimeUnit.MILLISECONDS.toNanos(interval), sink);
+		
+		synchronized (polls)
+		{
+			if (executor.isShutdown())
+			{
+				communicator.closeConnection();
+				throw new IllegalStateException("The scheduler has been closed.");
+			}
+			
+			polls.add(poll);
+			poll.start(TimeUnit.MILLISECONDS.toNanos(initialDelay));
+		}
+		
+		return poll;
+	}
+	
+	/**
+	 * Stops all polls. Runs that are in progress are allowed to finish.
+	 */
+	public void close()
+	{
+		synchronized (polls)
+		{
+			executor.shutdown();
+			
+			for (ScheduledPoll poll : polls)
+				poll.cancel();
+			
+			polls.clear();
+		}
+	}
+	
+	/**
+	 * A poll of one agent that runs at a fixed interval until it is cancelled.
+	 */
+	public final class ScheduledPoll
+	{
+		private final SnmpTarget target;
+		private final String[] itemIds;
+		private final SnmpV1Communicator communicator;
+		private final long interval;
+		private final SnmpPollResultSink sink;
+		
+		// The System.nanoTime at which the next run is due.
+		private long nextRunTime;
+		private ScheduledFuture<?> future;
+		private boolean running = false;
+		private boolean cancelled = false;
+		
+		private final AtomicInteger runCount = new AtomicInteger();
+		private final AtomicInteger overrunCount = new AtomicInteger();
+		
+		private final Runnable task = new Runnable()
+		{
+			public void run()
+			{
+				runOnce();
+			}
+		};
+		
+		private ScheduledPoll(SnmpTarget target, String[] itemIds, SnmpV1Communicator communicator, 
+				long interval, SnmpPollResultSink sink)
+		{
+			this.target = target;
+			this.itemIds = itemIds;
+			this.communicator = communicator;
+			this.interval = interval;
+			this.sink = sink;
+		}
+		
+		/**
+		 * Gets the agent that is polled.
+		 */
+		public SnmpTarget getTarget()
+		{
+			return target;
+		}
+		
+		/**
+		 * Gets the time between runs in milliseconds.
+		 */
+		public long getInterval()
+		{
+			return TimeUnit.NANOSECONDS.toMillis(interval);
+		}
+		
+		/**
+		 * Gets the number of runs that have completed.
+		 */
+		public int getRunCount()
+		{
+			return runCount.get();
+		}
+		
+		/**
+		 * Gets the number of runs that were skipped because an earlier run was still in progress 
+		 * when they were due.
+		 */
+		public int getOverrunCount()
+		{
+			return overrunCount.get();
+		}
+		
+		/**
+		 * Stops the poll. A run that is in progress is allowed to finish, but its result is 
+		 * still handed to the sink.
+		 */
+		public synchronized void cancel()
+		{
+			if (cancelled)
+				return;
+			
+			cancelled = true;
+			
+			if (future != null)
+				future.cancel(false);
+			
+			if (!running)
+				closeCommunicator();
+		}
+		
+		/**
+		 * Gets whether the poll has been stopped.
+		 */
+		public synchronized boolean isCancelled()
+		{
+			return cancelled;
+		}
+		
+		private void runOnce()
+		{
+			synchronized (this)
+			{
+				if (cancelled)
+					return;
+				
+				running = true;
+			}
+			
+			// Whatever happens, the next run must be scheduled, or the poll would stop without a word.
+			try
+			{
+				SnmpVarBindList varBinds = null;
+				Exception failure = null;
+				try
+				{
+					varBinds = communicator.getMIBEntry(itemIds);
+				}
+				catch (IOException e)
+				{
+					failure = e;
+				}
+				catch (SnmpBadValueException e)
+				{
+					failure = e;
+				}
+				catch (SnmpGetException e)
+				{
+					failure = e;
+				}
+				catch (RuntimeException e)
+				{
+					// Such as from a malformed response; report it like any other failed run.
+					failure = e;
+				}
+				
+				runCount.incrementAndGet();
+				
+				if (failure == null)
+					sink.resultReceived(target, varBinds);
+				else
+					sink.pollFailed(target, failure);
+			}
+			finally
+			{
+				scheduleNextRun();
+			}
+		}
+		
+		private synchronized void start(long initialDelay)
+		{
+			nextRunTime = System.nanoTime() + initialDelay;
+			future = executor.schedule(task, initialDelay, TimeUnit.NANOSECONDS);
+		}
+		
+		/**
+		 * Schedules the first run that is due after now. Runs are due at whole intervals after 
+		 * the first, so the delay is measured from when this run was due rather than from when 
+		 * it finished.
+		 */
+		private synchronized void scheduleNextRun()
+		{
+			running = false;
+			
+			if (cancelled || executor.isShutdown())
+			{
+				closeCommunicator();
+				return;
+			}
+			
+			long now = System.nanoTime();
+			nextRunTime += interval;
+			
+			if (now - nextRunTime > 0)
+			{
+				long skippedRuns = (now - nextRunTime) / interval + 1;
+				nextRunTime += skippedRuns * interval;
+				overrunCount.addAndGet((int)skippedRuns);
+			}
+			
+			future = executor.schedule(task, nextRunTime - now, TimeUnit.NANOSECONDS);
+		}
+		
+		private void closeCommunicator()
+		{
+			try
+			{
+				communicator.closeConnection();
+			}
+			catch (SocketException e)
+			{
+				// The socket is being discarded anyway.
+			}
+		}
+	}
+}
@@ -0,0 +1,288 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import snmp.datatypes.sequence.SnmpVarBindList;
+
+/**
+ * Polls many agents in parallel without a user interface. Each poll is a Get request for a 
+ * set of OIDs, made through a single shared SnmpAsyncClient, so only one socket is used no 
+ * matter how many agents are polled. 
+ * <br><br>
+ * Polls run on a fixed number of worker threads, which caps the number of requests that are 
+ * outstanding at once. Requests to each agent are also spaced out so that the agent receives 
+ * no more than a given number of requests per second, which keeps fragile embedded agents 
+ * from being overwhelmed. Results are handed to an SnmpPollResultSink as soon as each request 
+ * completes.
+ */
+public class SnmpPoller
+{
+	/** The default number of requests that may be outstanding at once. */
+	public static final int DEFAULT_MAXIMUM_CONCURRENCY = 16;
+	
+	private static final AtomicInteger POLLER_COUNT = new AtomicInteger();
+	
+	private final SnmpAsyncClient client;
+	private final boolean ownsClient;
+	private final ScheduledThreadPoolExecutor executor;
+	private final int maximumConcurrency;
+	private final int maximumRequestRate;
+	
+	// The minimum time between the starts of two requests to the same agent, in nanoseconds.
+	private final long requestInterval;
+	
+	// The earliest time, from System.nanoTime, that each agent may be sent its next request.
+	private final Map<InetSocketAddress, Long> nextRequestTimes = new HashMap<InetSocketAddress, Long>();
+	
+	private final Set<PollJob> pendingJobs = Collections.synchronizedSet(new HashSet<PollJob>());
+	
+	/**
+	 * Creates a poller with its own client.
+	 * @param maximumConcurrency the number of requests that may be outstanding at once; must be 
+	 * greater than zero
+	 * @param maximumRequestRate the number of requests per second that may be sent to any one 
+	 * agent, or 0 for no limit
+	 * @throws IOException if the client's channel can't be opened
+	 */
+	public SnmpPoller(int maximumConcurrency, int maximumRequestRate) throws IOException
+	{
+		this(new SnmpAsyncClient(), true, maximumConcurrency, maximumRequestRate);
+	}
+	
+	/**
+	 * Creates a poller that sends its requests through the given client. The client is 
+	 * not closed when the poller is.
+	 * @param client the client used for all requests
+	 * @param maximumConcurrency the number of requests that may be outstanding at once; must be 
+	 * greater than zero
+	 * @param maximumRequestRate the number of requests per second that may be sent to any one 
+	 * agent, or 0 for no limit
+	 */
+	public SnmpPoller(SnmpAsyncClient client, int maximumConcurrency, int maximumRequestRate)
+	{
+		this(client, false, maximumConcurrency, maximumRequestRate);
+	}
+	
+	private SnmpPoller(SnmpAsyncClient client, boolean ownsClient, int maximumConcurrency, int maximumRequestRate)
+	{
+		if (maximumConcurrency <= 0)
+		{
+			if (ownsClient)
+				client.close();
+			
+			throw new IllegalArgumentException("Maximum concurrency must be greater than zero.");
+		}
+		
+		if (maximumRequestRate < 0)
+		{
+			if (ownsClient)
+				client.close();
+			
+			throw new IllegalArgumentException("Maximum request rate must not be negative.");
+		}
+		
+		this.client = client;
+		this.ownsClient = ownsClient;
+		this.maximumConcurrency = maximumConcurrency;
+		this.maximumRequestRate = maximumRequestRate;
+		this.requestInterval = (maximumRequestRate == 0) ? 0 : TimeUnit.SECONDS.toNanos(1) / maximumRequestRate;
+		
+		final String threadName = "SNMP poller " + POLLER_COUNT.incrementAndGet() + "-";
+		executor = new ScheduledThreadPoolExecutor(maximumConcurrency, new ThreadFactory()
+		{
+			private final AtomicInteger threadCount = new AtomicInteger();
+			
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, threadName + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Gets the number of requests that may be outstanding at once.
+	 */
+	public int getMaximumConcurrency()
+	{
+		return maximumConcurrency;
+	}
+	
+	/**
+	 * Gets the number of requests per second that may be sent to any one agent, or 0 if 
+	 * there is no limit.
+	 */
+	public int getMaximumRequestRate()
+	{
+		return maximumRequestRate;
+	}
+	
+	/**
+	 * Retrieves the values of the given OIDs from an agent.
+	 * @param target the agent to poll
+	 * @param itemIds one or more OIDs in dotted string form
+	 * @param sink receives the result
+	 * @return a future that completes once the result has been handed to the sink, or that is 
+	 * cancelled if the poller is closed first
+	 */
+	public CompletableFuture<Void> poll(SnmpTarget target, String[] itemIds, SnmpPollResultSink sink)
+	{
+		PollJob job = new PollJob(target, itemIds, sink);
+		pendingJobs.add(job);
+		executor.execute(job);
+		
+		return job.done;
+	}
+	
+	/**
+	 * Retrieves the values of the given OIDs from each of a list of agents.
+	 * @param targets the agents to poll
+	 * @param itemIds one or more OIDs in dotted string form
+	 * @param sink receives each agent's result
+	 * @return a future that completes once every result has been handed to the sink
+	 */
+	public CompletableFuture<Void> poll(List<SnmpTarget> targets, String[] itemIds, SnmpPollResultSink sink)
+	{
+		List<CompletableFuture<Void>> polls = new ArrayList<CompletableFuture<Void>>(targets.size());
+		for (SnmpTarget target : targets)
+			polls.add(this.poll(target, itemIds, sink));
+		
+		return CompletableFuture.allOf(polls.toArray(new CompletableFuture<?>[polls.size()]));
+	}
+	
+	/**
+	 * Stops the poller. Polls that have not yet been started are cancelled, and those in 
+	 * progress are reported to their sinks as failed if the poller owns its client.
+	 */
+	public void close()
+	{
+		executor.shutdownNow();
+		
+		if (ownsClient)
+			client.close();
+		
+		synchronized (pendingJobs)
+		{
+			for (PollJob job : pendingJobs)
+				job.done.cancel(false);
+			
+			pendingJobs.clear();
+		}
+	}
+	
+	/**
+	 * Reserves the next request slot for an agent.
+	 * @return the number of nanoseconds until the slot begins
+	 */
+	private long reserveRequestTime(InetSocketAddress address)
+	{
+		if (requestInterval == 0)
+			return 0;
+		
+		synchronized (nextRequestTimes)
+		{
+			long now = System.nanoTime();
+			Long nextRequestTime = nextRequestTimes.get(address);
+			
+			long requestTime = now;
+			if (nextRequestTime != null && nextRequestTime - now > 0)
+				requestTime = nextRequestTime;
+			
+			nextRequestTimes.put(address, requestTime + requestInterval);
+			return requestTime - now;
+		}
+	}
+	
+	/**
+	 * A single poll of one agent. The first time it runs it reserves a request slot for its 
+	 * agent; if the slot is in the future, it reschedules itself instead of holding a worker 
+	 * thread while it waits.
+	 */
+	private class PollJob implements Runnable
+	{
+		public final SnmpTarget target;
+		public final String[] itemIds;
+		public final SnmpPollResultSink sink;
+		public final CompletableFuture<Void> done = new CompletableFuture<Void>();
+		private boolean scheduled = false;
+		
+		public PollJob(SnmpTarget target, String[] itemIds, SnmpPollResultSink sink)
+		{
+			this.target = target;
+			this.itemIds = itemIds;
+			this.sink = sink;
+		}
+		
+		public void run()
+		{
+			if (!scheduled)
+			{
+				scheduled = true;
+				
+				long delay = reserveRequestTime(target.getSocketAddress());
+				if (delay > 0)
+				{
+					executor.schedule(this, delay, TimeUnit.NANOSECONDS);
+					return;
+				}
+			}
+			
+			try
+			{
+				SnmpVarBindList varBinds = client.get(target, itemIds).get();
+				sink.resultReceived(target, varBinds);
+			}
+			catch (ExecutionException e)
+			{
+				sink.pollFailed(target, e.getCause());
+			}
+			catch (InterruptedException e)
+			{
+				// The poller is being closed.
+				done.cancel(false);
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				pendingJobs.remove(this);
+				done.complete(null);
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * The parameters needed to send requests to an SNMP agent: its address and port, the
+ * SNMP version and community it uses, how long to wait for its responses, and how often 
+ * to retransmit requests that are not answered.
+ */
+public final class SnmpTarget
+{
+	/** The default request timeout, in milliseconds. */
+	public static final int DEFAULT_TIMEOUT = 15000;
+	
+	private final InetSocketAddress address;
+	private final SnmpVersion version;
+	private final String community;
+	private final int timeout;
+	private final int retries;
+	
+	/**
+	 * Creates a target using the default SNMP port and timeout.
+	 */
+	public SnmpTarget(InetAddress address, SnmpVersion version, String community)
+	{
+		this(address, SnmpV1Communicator.DEFAULT_SNMP_PORT, version, community, DEFAULT_TIMEOUT);
+	}
+	
+	/**
+	 * Creates a target.
+	 * @param address the agent's address
+	 * @param port the agent's port
+	 * @param version the SNMP version the agent uses
+	 * @param community the community string
+	 * @param timeout the request timeout in milliseconds; must be greater than zero
+	 */
+	public SnmpTarget(InetAddress address, int port, SnmpVersion version, String community, int timeout)
+	{
+		this(address, port, version, community, timeout, 0);
+	}
+	
+	/**
+	 * Creates a target whose requests are retransmitted if they are not answered in time.
+	 * @param address the agent's address
+	 * @param port the agent's port
+	 * @param version the SNMP version the agent uses
+	 * @param community the community string
+	 * @param timeout the longest time in milliseconds to wait for a response to any one attempt; 
+	 * must be greater than zero
+	 * @param retries the number of retransmissions; must not be negative
+	 * @see SnmpV1Communicator#setRetries(int)
+	 */
+	public SnmpTarget(InetAddress address, int port, SnmpVersion version, String community, int timeout, int retries)
+	{
+		if (timeout <= 0)
+			throw new IllegalArgumentException("Timeout must be greater than zero.");
+		
+		if (retries < 0)
+			throw new IllegalArgumentException("Retries must not be negative.");
+		
+		this.address = new InetSocketAddress(address, port);
+		this.version = version;
+		this.community = community;
+		this.timeout = timeout;
+		this.retries = retries;
+	}
+	
+	/**
+	 * Gets the agent's address and port.
+	 */
+	public InetSocketAddress getSocketAddress()
+	{
+		return address;
+	}
+	
+	/**
+	 * Gets the SNMP version used for requests.
+	 */
+	public SnmpVersion getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * Gets the community string used for requests.
+	 */
+	public String getCommunity()
+	{
+		return community;
+	}
+	
+	/**
+	 * Gets the timeout in milliseconds for requests.
+	 */
+	public int getTimeout()
+	{
+		return timeout;
+	}
+	
+	/**
+	 * Gets the number of times an unanswered request is retransmitted.
+	 */
+	public int getRetries()
+	{
+		return retries;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return address.getAddress().getHostAddress() + ":" + address.getPort();
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import snmp.datatypes.SnmpObject;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.pdu.SnmpPDU;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
+
+/**
+ * Holds back repeats of the same trap, such as the linkDown traps of a flapping link, so that 
+ * the trap listeners of a SnmpTrapReceiver see each trap once however often it arrives.
+ * <p>
+ * Traps are the same when they come from the same address with the same enterprise OID and 
+ * generic and specific trap, or the same snmpTrapOID, and the same key variable bindings. By 
+ * default every variable binding is a key except the sysUpTime and snmpTrapOID that begin an 
+ * SNMPv2 trap; addKeyVarBind limits the keys to bindings below the given OIDs, such as ifIndex.
+ * <p>
+ * The first of a series of traps is passed on. Repeats are counted and held back as long as each 
+ * arrives within the window of the one before, so a steady storm stays suppressed. Once a trap 
+ * has not been seen for a whole window, the repeat listeners are told how often it was received. 
+ * At most a fixed number of traps are remembered; when that many are being counted, the trap 
+ * heard from least recently is reported early and forgotten.
+ * <p>
+ * Each trap is remembered by a 64-bit hash of its key, so memory use doesn't depend on the size
+ * of the traps. Two different traps could in principle share a hash, and then the second would 
+ * be counted as a repeat of the first.
+ */
+public class SnmpTrapDeduplicator
+{
+	/** The default time a trap has to be quiet before its repeats are reported. */
+	public static final long DEFAULT_WINDOW_MILLIS = 10000;
+	
+	/** The default number of traps remembered at once. */
+	public static final int DEFAULT_CAPACITY = 10000;
+	
+	// FNV-1a 64-bit hash parameters.
+	private static final long HASH_OFFSET = 0xcbf29ce484222325L;
+	private static final long HASH_PRIME = 0x100000001b3L;
+	
+	private final long windowMillis;
+	private final int capacity;
+	
+	private final List<SnmpObjectIdentifier> keyVarBinds = new CopyOnWriteArrayList<SnmpObjectIdentifier>();
+	private final List<SnmpTrapRepeatListener> repeatListeners = new CopyOnWriteArrayList<SnmpTrapRepeatListener>();
+	
+	// Counted traps by hash, in order of when each was last received; guarded by this.
+	private final Map<Long, RepeatedTrap> traps;
+	
+	private final AtomicLong suppressedCount = new AtomicLong();
+	
+	private final SnmpBufferPool bufferPool = SnmpBufferPool.getSharedPool();
+	
+	/**
+	 * Creates a deduplicator with the default window and capacity.
+	 */
+	public SnmpTrapDeduplicator()
+	{
+		this(DEFAULT_WINDOW_MILLIS, DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a deduplicator.
+	 * @param windowMillis how long after the last repeat of a trap further repeats are still held back
+	 * @param capacity the largest number of traps remembered at once
+	 */
+	public SnmpTrapDeduplicator(long windowMillis, int capacity)
+	{
+		if (windowMillis <= 0)
+			throw new IllegalArgumentException("The window must be greater than zero.");
+		
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity must be at least 1.");
+		
+		this.windowMillis = windowMillis;
+		this.capacity = capacity;
+		this.traps = new LinkedHashMap<Long, RepeatedTrap>(16, 0.75f, true);
+	}
+	
+	/**
+	 * Gets how long after the last repeat of a trap further repeats are still held back.
+	 */
+	public long getWindowMillis()
+	{
+		return windowMillis;
+	}
+	
+	/**
+	 * Makes the variable bindings at or below the given OID part of what identifies a trap. Once 
+	 * any have been added, other bindings are ignored when comparing traps.
+	 * @param oidPrefix the OID of the bindings, or of a table column holding them
+	 */
+	public void addKeyVarBind(SnmpObjectIdentifier oidPrefix)
+	{
+		keyVarBinds.add(oidPrefix);
+	}
+	
+	public void addRepeatListener(SnmpTrapRepeatListener listener)
+	{
+		// See if listener already added; if so, ignore.
+		if (!repeatListeners.contains(listener))
+			repeatListeners.add(listener);
+	}
+	
+	public void removeRepeatListener(SnmpTrapRepeatListener listener)
+	{
+		repeatListeners.remove(listener);
+	}
+	
+	/**
+	 * Returns the number of traps held back as repeats.
+	 */
+	public long getSuppressedCount()
+	{
+		return suppressedCount.get();
+	}
+	
+	/**
+	 * Returns the number of traps currently remembered.
+	 */
+	public synchronized int size()
+	{
+		return traps.size();
+	}
+	
+	/**
+	 * Records a received SNMPv1 trap.
+	 * @return true if the trap should be passed on, false if it repeats a recent trap
+	 */
+	public boolean offer(InetAddress source, SnmpV1TrapPDU trapPDU)
+	{
+		return offer(source, trapPDU, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Records a received SNMPv2 trap.
+	 * @return true if the trap should be passed on, false if it repeats a recent trap
+	 */
+	public boolean offer(InetAddress source, SnmpV2TrapPDU trapPDU)
+	{
+		return offer(source, trapPDU, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Reports and forgets the traps that have been quiet for a whole window. Traps are also 
+	 * expired whenever one is offered, but this should be called regularly so that repeats 
+	 * are reported when traps stop arriving.
+	 */
+	public void expire()
+	{
+		expire(System.currentTimeMillis());
+	}
+	
+	boolean offer(InetAddress source, SnmpV1TrapPDU trapPDU, long now)
+	{
+		ByteBuffer buffer = bufferPool.borrow();
+		try
+		{
+			buffer.put(source.getAddress());
+			trapPDU.getEnterpriseOID().encode(buffer);
+			buffer.putInt(trapPDU.getGenericTrap().ordinal());
+			buffer.putInt(trapPDU.getSpecificTrap());
+			putKeyVarBinds(trapPDU.getVarBindList(), 0, buffer);
+			
+			return offer(hash(buffer), source, trapPDU, now);
+		}
+		finally
+		{
+			bufferPool.release(buffer);
+		}
+	}
+	
+	boolean offer(InetAddress source, SnmpV2TrapPDU trapPDU, long now)
+	{
+		ByteBuffer buffer = bufferPool.borrow();
+		try
+		{
+			buffer.put(source.getAddress());
+			trapPDU.getSNMPTrapOID().encode(buffer);
+			
+			// The first two bindings are sysUpTime and snmpTrapOID.
+			putKeyVarBinds(trapPDU.getVarBindList(), 2, buffer);
+			
+			return offer(hash(buffer), source, trapPDU, now);
+		}
+		finally
+		{
+			bufferPool.release(buffer);
+		}
+	}
+	
+	void expire(long now)
+	{
+		List<RepeatedTrap> expired = new ArrayList<RepeatedTrap>();
+		synchronized (this)
+		{
+			Iterator<RepeatedTrap> iterator = traps.values().iterator();
+			while (iterator.hasNext())
+			{
+				RepeatedTrap trap = iterator.next();
+				if (now - trap.lastReceived < windowMillis)
+					break;
+				
+				iterator.remove();
+				expired.add(trap);
+			}
+		}
+		
+		report(expired);
+	}
+	
+	private boolean offer(long hash, InetAddress source, SnmpPDU trapPDU, long now)
+	{
+		expire(now);
+		
+		RepeatedTrap evicted = null;
+		synchronized (this)
+		{
+			RepeatedTrap trap = traps.get(hash);
+			if (trap != null)
+			{
+				trap.count++;
+				trap.lastReceived = now;
+				suppressedCount.incrementAndGet();
+				return false;
+			}
+			
+			if (traps.size() >= capacity)
+			{
+				Iterator<RepeatedTrap> eldest = traps.values().iterator();
+				evicted = eldest.next();
+				eldest.remove();
+			}
+			
+			traps.put(hash, new RepeatedTrap(source, trapPDU, now));
+		}
+		
+		if (evicted != null)
+			report(Collections.singletonList(evicted));
+		
+		return true;
+	}
+	
+	/**
+	 * Tells the repeat listeners about the forgotten traps that were repeated.
+	 */
+	private void report(List<RepeatedTrap> forgotten)
+	{
+		for (RepeatedTrap trap : forgotten)
+		{
+			if (trap.count > 1)
+			{
+				for (SnmpTrapRepeatListener listener : repeatListeners)
+					listener.processRepeatedTrap(trap.source, trap.trapPDU, trap.count);
+			}
+		}
+	}
+	
+	/**
+	 * Writes the key variable bindings from the given index on into the buffer.
+	 */
+	private void putKeyVarBinds(SnmpSequence varBindList, int first, ByteBuffer buffer)
+	{
+		for (int i = first; i < varBindList.size(); i++)
+		{
+			SnmpSequence pair = (SnmpSequence)varBindList.getSNMPObjectAt(i);
+			SnmpObjectIdentifier oid = (SnmpObjectIdentifier)pair.getSNMPObjectAt(0);
+			
+			if (isKeyVarBind(oid))
+			{
+				SnmpObject value = pair.getSNMPObjectAt(1);
+				if (buffer.remaining() < oid.getEncodedLength() + value.getEncodedLength())
+					return;
+				
+				oid.encode(buffer);
+				value.encode(buffer);
+			}
+		}
+	}
+	
+	private boolean isKeyVarBind(SnmpObjectIdentifier oid)
+	{
+		if (keyVarBinds.isEmpty())
+			return true;
+		
+		for (SnmpObjectIdentifier prefix : keyVarBinds)
+		{
+			if (prefix.isPrefixOf(oid))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Hashes the bytes written to the buffer.
+	 */
+	private static long hash(ByteBuffer buffer)
+	{
+		long hash = HASH_OFFSET;
+		for (int i = 0; i < buffer.position(); i++)
+		{
+			hash ^= buffer.get(i) & 0xFF;
+			hash *= HASH_PRIME;
+		}
+		
+		return hash;
+	}
+	
+	/**
+	 * A trap being counted.
+	 */
+	private static final class RepeatedTrap
+	{
+		final InetAddress source;
+		final SnmpPDU trapPDU;
+		int count = 1;
+		long lastReceived;
+		
+		RepeatedTrap(InetAddress source, SnmpPDU trapPDU, long lastReceived)
+		{
+			this.source = source;
+			this.trapPDU = trapPDU;
+			this.lastReceived = lastReceived;
+		}
+	}
+}
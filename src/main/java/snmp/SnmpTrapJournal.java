@@ -0,0 +1,762 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+import snmp.datatypes.sequence.SnmpMessage;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
+import snmp.error.SnmpBadValueException;
+import utilities.IOUtilities;
+
+/**
+ * An append-only journal of received traps, kept in a directory of memory-mapped segment files.
+ * Each entry holds the raw BER encoding of the message with the time it was received and the 
+ * address it came from, so traps can be replayed to listeners later, such as after an outage 
+ * of whatever the listeners pass them to.
+ * <p>
+ * Appending an entry only copies it into the mapping of the current segment and never waits for 
+ * the disk, so bursts of traps are absorbed at memory speed; the operating system writes the pages 
+ * out in the background. syncIfDue, called after each burst, forces them to disk once a number of 
+ * entries have been appended or a length of time has passed, whichever comes first, so a crash of 
+ * the machine loses at most the entries since. When a segment is full, appending moves on to the 
+ * next one, which syncIfDue creates ahead of time, and the full one is forced to disk and closed 
+ * by the next sync. Old segments are deleted once the journal is larger than its size limit or 
+ * they are older than its age limit.
+ * <p>
+ * Each segment starts with a header, followed by entries of the form:
+ * <pre>
+ *   int    length of the entry after the checksum
+ *   int    CRC-32 of the entry after the checksum
+ *   long   receive time in milliseconds since the epoch
+ *   byte   address length, 4 or 16
+ *   bytes  address
+ *   short  port
+ *   bytes  message
+ * </pre>
+ * A length of 0 marks the end of the entries. The pages of a mapping can reach the disk in any 
+ * order, so after a crash an entry's length may have been written while the rest of it wasn't. 
+ * An entry whose checksum doesn't match is therefore taken as the end of its segment, both when 
+ * reading and when appending to the segment again.
+ */
+public class SnmpTrapJournal implements Closeable, Iterable<SnmpTrapJournal.Entry>
+{
+	/** The default size of each segment file. */
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+	
+	/** The default number of entries appended between forcing the journal to disk. */
+	public static final int DEFAULT_SYNC_ENTRIES = 1000;
+	
+	/** The default time between forcing appended entries to disk. */
+	public static final long DEFAULT_SYNC_MILLIS = 1000;
+	
+	private static final int MAGIC = 0x534E4A31;    // "SNJ1"
+	private static final int HEADER_SIZE = 8;
+	
+	// The fixed part of an entry: length, checksum, time, address length and port.
+	private static final int ENTRY_OVERHEAD = 4 + 4 + 8 + 1 + 2;
+	private static final int LARGEST_ENTRY = ENTRY_OVERHEAD + 16 + SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE;
+	
+	private static final String SEGMENT_PREFIX = "traps-";
+	private static final String SEGMENT_SUFFIX = ".journal";
+	
+	private final File directory;
+	private final int segmentSize;
+	
+	// Segments in order, the last being the one appended to; guarded by this.
+	private final List<File> segments = new ArrayList<File>();
+	private long segmentNumber;
+	private FileChannel channel;
+	private MappedByteBuffer mapping;
+	private long lastReceiveTime = 0;
+	
+	// Segments appended past but not yet forced to disk, and the one to append to next, if created.
+	private final List<SegmentFile> fullSegments = new ArrayList<SegmentFile>();
+	private SegmentFile nextSegment = null;
+	
+	private int syncEntries = DEFAULT_SYNC_ENTRIES;
+	private long syncMillis = DEFAULT_SYNC_MILLIS;
+	private int unsyncedEntries = 0;
+	private long lastSyncTime = System.currentTimeMillis();
+	
+	private long maximumBytes = Long.MAX_VALUE;
+	private long maximumAgeMillis = Long.MAX_VALUE;
+	private long lastRetentionTime = System.currentTimeMillis();
+	
+	/**
+	 * Opens the journal in the given directory with the default segment size, creating 
+	 * the directory if needed. New entries are appended after those already there.
+	 * @throws IOException if the directory or its last segment can't be opened
+	 */
+	public SnmpTrapJournal(File directory) throws IOException
+	{
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+	
+	/**
+	 * Opens the journal in the given directory, creating the directory if needed. New entries 
+	 * are appended after those already there.
+	 * @param directory the directory holding the segment files
+	 * @param segmentSize the size of each segment file, which must hold at least one message of 
+	 * the largest size
+	 * @throws IOException if the directory or its last segment can't be opened
+	 */
+	public SnmpTrapJournal(File directory, int segmentSize) throws IOException
+	{
+		if (segmentSize < HEADER_SIZE + LARGEST_ENTRY)
+			throw new IllegalArgumentException("Segments must hold at least one message of the largest size.");
+		
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Cannot create the journal directory " + directory + ".");
+		
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		
+		File[] files = directory.listFiles(new FileFilter()
+		{
+			public boolean accept(File file)
+			{
+				return file.isFile() && file.getName().startsWith(SEGMENT_PREFIX) && file.getName().endsWith(SEGMENT_SUFFIX);
+			}
+		});
+		
+		// The fixed-width numbers in the names sort in the order the segments were created.
+		Arrays.sort(files);
+		segments.addAll(Arrays.asList(files));
+		
+		if (segments.isEmpty())
+		{
+			startSegment(createSegment(1), 1);
+		}
+		else
+		{
+			File last = segments.get(segments.size() - 1);
+			openSegment(last, parseSegmentNumber(last));
+		}
+	}
+	
+	/**
+	 * Gets the directory holding the segment files.
+	 */
+	public File getDirectory()
+	{
+		return directory;
+	}
+	
+	/**
+	 * Sets when syncIfDue forces appended entries to disk: once the given number of entries have 
+	 * been appended since the last sync, or the given time after it. Appending never forces entries 
+	 * itself, so syncIfDue should be called after each burst and at least that often.
+	 */
+	public synchronized void setSyncPolicy(int entries, long millis)
+	{
+		if (entries < 1 || millis < 0)
+			throw new IllegalArgumentException("Entries must be at least 1 and the time cannot be negative.");
+		
+		this.syncEntries = entries;
+		this.syncMillis = millis;
+	}
+	
+	/**
+	 * Sets how much history is kept. Whenever full segments are finished, the oldest segments are 
+	 * deleted while the journal is larger than maximumBytes, and any whose last entry is older than 
+	 * maximumAgeMillis. Since segments age without new ones being started, the limits are also 
+	 * checked by syncIfDue, as often as the sync time allows. The segment being appended to is 
+	 * always kept. Use Long.MAX_VALUE for no limit.
+	 */
+	public synchronized void setRetention(long maximumBytes, long maximumAgeMillis)
+	{
+		if (maximumBytes < 0 || maximumAgeMillis < 0)
+			throw new IllegalArgumentException("Limits cannot be negative.");
+		
+		this.maximumBytes = maximumBytes;
+		this.maximumAgeMillis = maximumAgeMillis;
+		
+		// Full segments only carry the time of their last entry once they are finished.
+		finishFullSegments();
+		applyRetention(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Appends a received message. The entry isn't forced to disk; see syncIfDue.
+	 * @param message the encoded message, from its position to its limit; the position isn't changed
+	 * @param source the address the message came from
+	 * @param receiveTime when the message was received, in milliseconds since the epoch
+	 * @throws IOException if a new segment can't be started
+	 */
+	public synchronized void append(ByteBuffer message, InetSocketAddress source, long receiveTime) throws IOException
+	{
+		if (mapping == null)
+			throw new IOException("The trap journal is closed.");
+		
+		if (message.remaining() > SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE)
+			throw new IllegalArgumentException("The message is larger than a datagram can be.");
+		
+		byte[] address = source.getAddress().getAddress();
+		int length = ENTRY_OVERHEAD - 8 + address.length + message.remaining();
+		
+		// Keep room for the zero length that ends the entries.
+		if (mapping.remaining() < 8 + length + 4)
+			rollSegment();
+		
+		int start = mapping.position();
+		mapping.position(start + 8);
+		mapping.putLong(receiveTime);
+		mapping.put((byte)address.length);
+		mapping.put(address);
+		mapping.putShort((short)source.getPort());
+		mapping.put(message.duplicate());
+		
+		// An entry appended after a torn one may be shorter, so end the entries explicitly.
+		mapping.putInt(mapping.position(), 0);
+		mapping.putInt(start + 4, checksum(mapping, start + 8, length));
+		mapping.putInt(start, length);
+		
+		lastReceiveTime = receiveTime;
+		unsyncedEntries++;
+	}
+	
+	/**
+	 * Forces the appended entries to disk if enough have been appended, or enough time has 
+	 * passed, since the last sync, or if a segment has been filled. Once the current segment is 
+	 * half full, the next one is also created, so that appending doesn't have to when it moves on.
+	 */
+	public synchronized void syncIfDue()
+	{
+		long now = System.currentTimeMillis();
+		if (!fullSegments.isEmpty() || unsyncedEntries >= syncEntries || 
+				(unsyncedEntries > 0 && now - lastSyncTime >= syncMillis))
+			sync();
+		
+		if (maximumAgeMillis != Long.MAX_VALUE && now - lastRetentionTime >= syncMillis)
+			applyRetention(now);
+		
+		if (mapping != null && nextSegment == null && mapping.position() > segmentSize / 2)
+			prepareNextSegment();
+	}
+	
+	/**
+	 * Forces the appended entries to disk, and closes the segments that have been filled.
+	 */
+	public synchronized void sync()
+	{
+		if (mapping != null)
+			mapping.force();
+		
+		unsyncedEntries = 0;
+		lastSyncTime = System.currentTimeMillis();
+		
+		if (!fullSegments.isEmpty())
+		{
+			finishFullSegments();
+			applyRetention(lastSyncTime);
+		}
+	}
+	
+	/**
+	 * Returns the total size of the segment files.
+	 */
+	public synchronized long size()
+	{
+		long size = 0;
+		for (File segment : segments)
+			size += segment.length();
+		
+		return size;
+	}
+	
+	/**
+	 * Returns the number of segment files.
+	 */
+	public synchronized int getSegmentCount()
+	{
+		return segments.size();
+	}
+	
+	/**
+	 * Returns an iterator over the entries in the order they were appended, as far as they had 
+	 * been appended when the iterator was created. Iterators are not affected by later appends, 
+	 * although segments deleted by the retention limits during iteration may be skipped.
+	 * @throws UncheckedIOException if a segment can't be read
+	 */
+	public Iterator<Entry> iterator()
+	{
+		return iterator(0);
+	}
+	
+	/**
+	 * Returns an iterator over the entries received at or after the given time.
+	 */
+	public synchronized Iterator<Entry> iterator(long fromTime)
+	{
+		List<File> files = new ArrayList<File>(segments);
+		int end = (mapping == null) ? -1 : mapping.position();
+		return new EntryIterator(files, end, fromTime);
+	}
+	
+	/**
+	 * Passes the traps received at or after the given time to the listeners, in the order they
+	 * were received. Entries that aren't traps or can't be decoded are skipped.
+	 * @param fromTime the time of the first entry to replay, in milliseconds since the epoch
+	 * @param v1Listener receives the SNMPv1 traps, or null to skip them
+	 * @param v2Listener receives the SNMPv2 traps, or null to skip them
+	 * @return the number of traps passed to a listener
+	 */
+	public long replay(long fromTime, SnmpV1TrapListener v1Listener, SnmpV2TrapListener v2Listener)
+	{
+		long count = 0;
+		
+		Iterator<Entry> entries = iterator(fromTime);
+		while (entries.hasNext())
+		{
+			try
+			{
+				Object pdu = entries.next().getMessage().getPDUAsObject();
+				
+				if (pdu instanceof SnmpV1TrapPDU && v1Listener != null)
+				{
+					v1Listener.processv1Trap((SnmpV1TrapPDU)pdu);
+					count++;
+				}
+				else if (pdu instanceof SnmpV2TrapPDU && v2Listener != null)
+				{
+					v2Listener.processv2Trap((SnmpV2TrapPDU)pdu);
+					count++;
+				}
+			}
+			catch (SnmpBadValueException e)
+			{
+				// Not a valid message; skip it as the receiver would have.
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Forces the appended entries to disk and closes the journal.
+	 */
+	public synchronized void close() throws IOException
+	{
+		if (mapping == null)
+			return;
+		
+		finishSegment();
+		mapping = null;
+		
+		// The next segment holds no entries yet.
+		if (nextSegment != null)
+		{
+			IOUtilities.closeQuietly(nextSegment.channel);
+			nextSegment.file.delete();
+			nextSegment = null;
+		}
+	}
+	
+	/**
+	 * Creates and maps a new segment with the given number.
+	 */
+	private SegmentFile createSegment(long number) throws IOException
+	{
+		File file = new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+		FileChannel segmentChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			MappedByteBuffer segmentMapping = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			segmentMapping.putInt(MAGIC);
+			segmentMapping.putInt(segmentSize);
+			return new SegmentFile(file, segmentChannel, segmentMapping);
+		}
+		catch (IOException e)
+		{
+			IOUtilities.closeQuietly(segmentChannel);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Creates the segment to append to once the current one is full, and forces its header to 
+	 * disk, so that it can be reopened after a crash.
+	 */
+	private void prepareNextSegment()
+	{
+		try
+		{
+			nextSegment = createSegment(segmentNumber + 1);
+			nextSegment.mapping.force();
+		}
+		catch (IOException e)
+		{
+			// Appending creates the segment instead, and reports the problem if it persists.
+		}
+	}
+	
+	/**
+	 * Makes the given segment the one appended to.
+	 */
+	private void startSegment(SegmentFile segment, long number)
+	{
+		channel = segment.channel;
+		mapping = segment.mapping;
+		segmentNumber = number;
+		segments.add(segment.file);
+	}
+	
+	/**
+	 * Moves on to the next segment, creating it if syncIfDue hasn't. The full segment is left 
+	 * for the next sync to force to disk and close.
+	 */
+	private void rollSegment() throws IOException
+	{
+		SegmentFile next = (nextSegment != null) ? nextSegment : createSegment(segmentNumber + 1);
+		nextSegment = null;
+		
+		SegmentFile full = new SegmentFile(segments.get(segments.size() - 1), channel, mapping);
+		full.lastReceiveTime = lastReceiveTime;
+		fullSegments.add(full);
+		
+		startSegment(next, segmentNumber + 1);
+	}
+	
+	/**
+	 * Opens an existing segment to append to it after its last entry.
+	 */
+	private void openSegment(File file, long number) throws IOException
+	{
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+		
+		int size = (int)Math.min(channel.size(), Integer.MAX_VALUE);
+		mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		if (size < HEADER_SIZE || mapping.getInt(0) != MAGIC)
+		{
+			IOUtilities.closeQuietly(channel);
+			mapping = null;
+			throw new IOException(file + " is not a trap journal segment.");
+		}
+		
+		// Append after the last whole entry; a torn entry is overwritten.
+		mapping.position(HEADER_SIZE);
+		while (mapping.remaining() >= 8)
+		{
+			int start = mapping.position();
+			int length = mapping.getInt(start);
+			if (length <= 0 || length > mapping.remaining() - 8 
+					|| mapping.getInt(start + 4) != checksum(mapping, start + 8, length))
+				break;
+			
+			lastReceiveTime = mapping.getLong(start + 8);
+			mapping.position(start + 8 + length);
+		}
+		
+		segmentNumber = number;
+	}
+	
+	/**
+	 * Forces the current segment to disk and closes it, stamping the file with the time of its 
+	 * last entry for the age limit.
+	 */
+	private void finishSegment() throws IOException
+	{
+		sync();
+		channel.close();
+		
+		if (lastReceiveTime > 0)
+			segments.get(segments.size() - 1).setLastModified(lastReceiveTime);
+	}
+	
+	/**
+	 * Forces the full segments to disk and closes them, stamping each file with the time of its 
+	 * last entry for the age limit.
+	 */
+	private void finishFullSegments()
+	{
+		for (SegmentFile full : fullSegments)
+		{
+			full.mapping.force();
+			IOUtilities.closeQuietly(full.channel);
+			
+			if (full.lastReceiveTime > 0)
+				full.file.setLastModified(full.lastReceiveTime);
+		}
+		
+		fullSegments.clear();
+	}
+	
+	/**
+	 * Deletes the oldest finished segments that exceed the size or age limit.
+	 */
+	private void applyRetention(long now)
+	{
+		lastRetentionTime = now;
+		long size = size();
+		
+		while (segments.size() > 1)
+		{
+			File oldest = segments.get(0);
+			boolean tooLarge = size > maximumBytes;
+			boolean tooOld = now - oldest.lastModified() > maximumAgeMillis;
+			if (!tooLarge && !tooOld)
+				break;
+			
+			size -= oldest.length();
+			if (!oldest.delete())
+				break;
+			
+			segments.remove(0);
+		}
+	}
+	
+	/**
+	 * Computes the checksum of part of a buffer without moving its position.
+	 */
+	private static int checksum(ByteBuffer buffer, int offset, int length)
+	{
+		ByteBuffer part = buffer.duplicate();
+		part.limit(offset + length);
+		part.position(offset);
+		
+		CRC32 crc = new CRC32();
+		crc.update(part);
+		return (int)crc.getValue();
+	}
+	
+	private static long parseSegmentNumber(File file)
+	{
+		String name = file.getName();
+		try
+		{
+			return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+	
+	/**
+	 * A segment file with its open channel and mapping.
+	 */
+	private static final class SegmentFile
+	{
+		final File file;
+		final FileChannel channel;
+		final MappedByteBuffer mapping;
+		long lastReceiveTime = 0;
+		
+		SegmentFile(File file, FileChannel channel, MappedByteBuffer mapping)
+		{
+			this.file = file;
+			this.channel = channel;
+			this.mapping = mapping;
+		}
+	}
+	
+	/**
+	 * An entry of the journal.
+	 */
+	public static final class Entry
+	{
+		private final long receiveTime;
+		private final InetSocketAddress source;
+		private final ByteBuffer message;
+		
+		Entry(long receiveTime, InetSocketAddress source, ByteBuffer message)
+		{
+			this.receiveTime = receiveTime;
+			this.source = source;
+			this.message = message;
+		}
+		
+		/**
+		 * Gets the time the message was received, in milliseconds since the epoch.
+		 */
+		public long getReceiveTime()
+		{
+			return receiveTime;
+		}
+		
+		/**
+		 * Gets the address the message came from.
+		 */
+		public InetSocketAddress getSource()
+		{
+			return source;
+		}
+		
+		/**
+		 * Gets the encoded message as a read-only buffer.
+		 */
+		public ByteBuffer getEncoding()
+		{
+			return message.duplicate();
+		}
+		
+		/**
+		 * Decodes the message.
+		 */
+		public SnmpMessage getMessage() throws SnmpBadValueException
+		{
+			return new SnmpPacketProcessor().createMessage(message);
+		}
+	}
+	
+	/**
+	 * Reads the entries of a list of segments through read-only mappings.
+	 */
+	private static final class EntryIterator implements Iterator<Entry>
+	{
+		private final List<File> files;
+		private final int lastSegmentEnd;
+		private final long fromTime;
+		
+		private int fileIndex = 0;
+		private ByteBuffer segment = null;
+		private Entry next = null;
+		
+		EntryIterator(List<File> files, int lastSegmentEnd, long fromTime)
+		{
+			this.files = files;
+			this.lastSegmentEnd = lastSegmentEnd;
+			this.fromTime = fromTime;
+		}
+		
+		public boolean hasNext()
+		{
+			while (next == null)
+			{
+				if (segment == null || segment.remaining() < 8)
+				{
+					if (fileIndex >= files.size())
+						return false;
+					
+					segment = mapSegment(fileIndex++);
+					continue;
+				}
+				
+				// A torn entry ends the segment, as it does for appending.
+				int length = segment.getInt();
+				int crc = segment.getInt();
+				if (length <= 0 || length > segment.remaining() 
+						|| crc != checksum(segment, segment.position(), length))
+				{
+					segment = null;
+					continue;
+				}
+				
+				ByteBuffer entry = segment.slice();
+				entry.limit(length);
+				segment.position(segment.position() + length);
+				
+				long receiveTime = entry.getLong();
+				if (receiveTime >= fromTime)
+					next = readEntry(receiveTime, entry);
+			}
+			
+			return true;
+		}
+		
+		public Entry next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			
+			Entry entry = next;
+			next = null;
+			return entry;
+		}
+		
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+		
+		private static Entry readEntry(long receiveTime, ByteBuffer entry)
+		{
+			byte[] address = new byte[entry.get()];
+			entry.get(address);
+			int port = entry.getShort() & 0xFFFF;
+			
+			try
+			{
+				InetSocketAddress source = new InetSocketAddress(InetAddress.getByAddress(address), port);
+				return new Entry(receiveTime, source, entry.slice().asReadOnlyBuffer());
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Maps a segment, or returns null if it has been deleted since the iterator was created.
+		 */
+		private ByteBuffer mapSegment(int index)
+		{
+			File file = files.get(index);
+			FileChannel segmentChannel = null;
+			try
+			{
+				segmentChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				
+				long size = segmentChannel.size();
+				if (index == files.size() - 1 && lastSegmentEnd >= 0)
+					size = Math.min(size, lastSegmentEnd);
+				
+				MappedByteBuffer mapped = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				if (size < HEADER_SIZE || mapped.getInt(0) != MAGIC)
+					return null;
+				
+				mapped.position(HEADER_SIZE);
+				return mapped;
+			}
+			catch (java.nio.file.NoSuchFileException e)
+			{
+				return null;
+			}
+			catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+			finally
+			{
+				IOUtilities.closeQuietly(segmentChannel);
+			}
+		}
+	}
+}
@@ -22,11 +22,24 @@
 
 package snmp;
 
-import java.io.*;
-import java.net.*;
-import java.util.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
-import snmp.datatypes.SnmpBERCodec;
 import snmp.datatypes.sequence.SnmpMessage;
 import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
 import snmp.datatypes.sequence.pdu.SnmpV2InformRequestPDU;
@@ -47,21 +60,52 @@ import snmp.error.SnmpBadValueException;
  * 	method, and are registered/unregistered with this class through its addv1TrapListener/removev1TrapListener,
  *  addv2TrapListener/removev2TrapListener, or addv2InformRequestListener/removev2InformRequestListener
  *  methods.
+ *  <p>
+ *  By default each message is decoded and passed to the listeners on the receiving thread, so a slow
+ *  listener holds up the socket. A receiver created with worker threads instead only reads datagrams on 
+ *  the receiving thread and hands them to a bounded queue, from which the workers decode them and call 
+ *  the listeners. Listeners may then be called from several threads at once. When a storm of traps fills 
+ *  the queue, further datagrams are dropped and counted rather than left to overflow the socket.
+ *  <p>
+ *  A journal can be set to keep every received datagram, including any later dropped or held back
+ *  as repeats, so that traps can be replayed to listeners afterwards.
+ *  <p>
+ *  A router can be set to pass traps only to the listeners of the SnmpTrapRules they match.
  */
 public class SnmpTrapReceiver implements Runnable
 {    
-    // Largest size for datagram packet payload; based on
-    // RFC 1157, need to handle messages of at least 484 bytes.
-    private int receiveBufferSize = 512;
+    /** The receive buffer requested from the operating system, enough to hold a burst of several thousand traps. */
+    public static final int DEFAULT_SOCKET_RECEIVE_BUFFER_SIZE = 4 * 1024 * 1024;
     
-    private DatagramSocket dSocket;
+    // The longest the receiving thread waits before expiring repeated traps.
+    private static final long EXPIRY_INTERVAL_MILLIS = 1000;
+    
+    // Only kept for getReceiveBufferSize; datagrams are always received in full.
+    private int receiveBufferSize = SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE;
+    
+    private final DatagramChannel channel;
+    private final Selector selector;
     private Thread receiveThread;
     
-    private List<SnmpV1TrapListener> v1TrapListeners;
-    private List<SnmpV2TrapListener> v2TrapListeners;
-    private List<SnmpV2InformRequestListener> v2InformRequestListeners;
+    // Datagrams waiting for a worker; null when messages are processed on the receiving thread.
+    private final BlockingQueue<ReceivedDatagram> receivedDatagrams;
+    private final Thread[] workerThreads;
+    
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    
+    private final List<SnmpV1TrapListener> v1TrapListeners;
+    private final List<SnmpV2TrapListener> v2TrapListeners;
+    private final List<SnmpV2InformRequestListener> v2InformRequestListeners;
     private PrintWriter errorLogger;
     
+    private volatile SnmpTrapDeduplicator deduplicator;
+    private volatile SnmpTrapJournal journal;
+    private volatile SnmpTrapRouter router;
+    
+    private final SnmpPacketProcessor packetProcessor = new SnmpPacketProcessor();
+    private final SnmpBufferPool bufferPool = SnmpBufferPool.getSharedPool();
+    
 
     /**
      *  Constructs a new trap receiver object to receive traps from remote SNMP hosts.
@@ -81,11 +125,55 @@ public class SnmpTrapReceiver implements Runnable
      */
     public SnmpTrapReceiver(PrintWriter errorReceiver) throws SocketException
     {
-        dSocket = new DatagramSocket(SnmpTrapSender.SNMP_TRAP_PORT);
+        this(new InetSocketAddress(SnmpTrapSender.SNMP_TRAP_PORT), 0, 0, errorReceiver);
+    }
+    
+    
+    /**
+     *  Constructs a new trap receiver on the given local address that decodes messages and calls
+     *  the listeners on a pool of worker threads.
+     *  
+     *  @param localAddress the address to receive on; port 162 is the standard trap port
+     *  @param workerCount the number of worker threads, or 0 to process messages on the receiving thread
+     *  @param queueCapacity the number of datagrams that can wait for a worker before more are dropped
+     *  @param errorReceiver receives error messages
+     */
+    public SnmpTrapReceiver(InetSocketAddress localAddress, int workerCount, int queueCapacity, PrintWriter errorReceiver) 
+        throws SocketException
+    {
+        if (workerCount < 0)
+            throw new IllegalArgumentException("The number of workers cannot be negative.");
         
-        v1TrapListeners = new Vector<SnmpV1TrapListener>();
-        v2TrapListeners = new Vector<SnmpV2TrapListener>();
-        v2InformRequestListeners = new Vector<SnmpV2InformRequestListener>();
+        if (workerCount > 0 && queueCapacity < 1)
+            throw new IllegalArgumentException("The queue must hold at least one datagram.");
+        
+        try
+        {
+            channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, DEFAULT_SOCKET_RECEIVE_BUFFER_SIZE);
+            channel.bind(localAddress);
+            channel.configureBlocking(false);
+            
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        }
+        catch (SocketException e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            SocketException socketException = new SocketException(e.getMessage());
+            socketException.initCause(e);
+            throw socketException;
+        }
+        
+        v1TrapListeners = new CopyOnWriteArrayList<SnmpV1TrapListener>();
+        v2TrapListeners = new CopyOnWriteArrayList<SnmpV2TrapListener>();
+        v2InformRequestListeners = new CopyOnWriteArrayList<SnmpV2InformRequestListener>();
+        
+        receivedDatagrams = (workerCount > 0) ? new ArrayBlockingQueue<ReceivedDatagram>(queueCapacity) : null;
+        workerThreads = new Thread[workerCount];
         
         receiveThread = new Thread(this);
         
@@ -142,108 +230,354 @@ public class SnmpTrapReceiver implements Runnable
     {
         v2InformRequestListeners.remove(listener);
     }
+    
+    
+    /**
+     *  Sets the stage that holds back repeated traps before they reach the trap listeners, 
+     *  or null to pass on every trap. Inform requests are always passed on.
+     */
+    public void setDeduplicator(SnmpTrapDeduplicator deduplicator)
+    {
+        this.deduplicator = deduplicator;
+        
+        // Wake the receiving thread so that it starts expiring repeats.
+        selector.wakeup();
+    }
+    
+    
+    /**
+     *  Gets the stage that holds back repeated traps, or null if there is none.
+     */
+    public SnmpTrapDeduplicator getDeduplicator()
+    {
+        return deduplicator;
+    }
+    
+    
+    /**
+     *  Sets the journal that every received datagram is appended to, before it is queued or
+     *  decoded, or null to keep none. The receiver doesn't close the journal.
+     */
+    public void setJournal(SnmpTrapJournal journal)
+    {
+        this.journal = journal;
+        
+        // Wake the receiving thread so that it starts syncing the journal.
+        selector.wakeup();
+    }
+    
+    
+    /**
+     *  Gets the journal received datagrams are appended to, or null if there is none.
+     */
+    public SnmpTrapJournal getJournal()
+    {
+        return journal;
+    }
+    
+    
+    /**
+     *  Sets the router that passes traps to the listeners of the rules they match, or null for 
+     *  none. The listeners registered with the receiver itself still see every trap.
+     */
+    public void setRouter(SnmpTrapRouter router)
+    {
+        this.router = router;
+    }
+    
+    
+    /**
+     *  Gets the router traps are passed to, or null if there is none.
+     */
+    public SnmpTrapRouter getRouter()
+    {
+        return router;
+    }
 
     
     /**
      *  Starts listening for trap and inform messages.
      */
-    public void startReceiving()
+    public synchronized void startReceiving()
     {
         // if receiveThread not already running, start it
         if (!receiveThread.isAlive())
         {
-            receiveThread = new Thread(this);
+            receiveThread = new Thread(this, "SNMP trap receiver");
             receiveThread.start();
         }
+        
+        for (int i = 0; i < workerThreads.length; i++)
+        {
+            if (workerThreads[i] == null || !workerThreads[i].isAlive())
+            {
+                workerThreads[i] = new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        processReceivedDatagrams();
+                    }
+                }, "SNMP trap worker " + (i + 1));
+                workerThreads[i].start();
+            }
+        }
     }
     
     
     /**
-     *  Stops listening for trap and inform messages.
+     *  Stops listening for trap and inform messages. Datagrams still waiting in the queue are 
+     *  processed when receiving starts again.
      */
-    public void stopReceiving() throws SocketException
+    public synchronized void stopReceiving() throws SocketException
     {
         // interrupt receive thread so it will die a natural death
         receiveThread.interrupt();
+        
+        for (Thread worker : workerThreads)
+        {
+            if (worker != null)
+                worker.interrupt();
+        }
+    }
+    
+    
+    /**
+     *  Stops listening and releases the socket. The receiver can't be used afterwards.
+     */
+    public void close() throws IOException
+    {
+        stopReceiving();
+        selector.close();
+        channel.close();
     }
 
     
     /**
      *  The run() method for the trap interface's listener. Just waits for trap or inform messages to
      *  come in on port 162, then dispatches the received PDUs to each of the registered 
-     *  listeners by calling their processTrap() or processInform() methods.
+     *  listeners by calling their processTrap() or processInform() methods, or queues them
+     *  for the worker threads to do so.
      */
     public void run()
     {
-        while (!receiveThread.isInterrupted())
+        ByteBuffer buffer = bufferPool.borrow();
+        
+        try
         {
-            try
+            while (!Thread.currentThread().isInterrupted())
             {
-                DatagramPacket inPacket = new DatagramPacket(new byte[receiveBufferSize], receiveBufferSize);
-                dSocket.receive(inPacket);
-                
-                byte[] encodedMessage = inPacket.getData();
-                SnmpMessage receivedMessage = new SnmpMessage(SnmpBERCodec.extractNextTLV(encodedMessage,0).value);
-                Object receivedPDU = receivedMessage.getPDUAsObject();
-                
-                if ( !(receivedPDU instanceof SnmpV1TrapPDU) && 
-                	 !(receivedPDU instanceof SnmpV2TrapPDU) && 
-                	 !(receivedPDU instanceof SnmpV2InformRequestPDU) )
+                try
                 {
-                    	throw new SnmpBadValueException("PDU received that's not a v1 or v2 trap or inform request; message payload of type " 
-                    			+ receivedPDU.getClass().toString());
+                    SnmpTrapDeduplicator currentDeduplicator = deduplicator;
+                    SnmpTrapJournal currentJournal = journal;
+                    if (currentDeduplicator != null)
+                        selector.select(Math.min(EXPIRY_INTERVAL_MILLIS, currentDeduplicator.getWindowMillis()));
+                    else if (currentJournal != null)
+                        selector.select(EXPIRY_INTERVAL_MILLIS);
+                    else
+                        selector.select();
+                    
+                    selector.selectedKeys().clear();
+                    
+                    InetSocketAddress sender;
+                    while (!Thread.currentThread().isInterrupted() && (sender = receiveDatagram(buffer)) != null)
+                    {
+                        if (currentJournal != null)
+                            appendToJournal(currentJournal, buffer, sender);
+                        
+                        receivedCount.incrementAndGet();
+                        
+                        if (receivedDatagrams == null)
+                            processDatagram(buffer, sender);
+                        else
+                            queueDatagram(buffer, sender);
+                    }
+                    
+                    // Report traps that have stopped repeating even when no more arrive.
+                    if (currentDeduplicator != null)
+                        currentDeduplicator.expire();
+                    
+                    // Likewise force journalled datagrams to disk when the burst is over.
+                    if (currentJournal != null)
+                        currentJournal.syncIfDue();
                 }
-                
-                // pass the received trap PDU to the processTrap or procesv2Trap method of any listeners
-                if (receivedPDU instanceof SnmpV1TrapPDU)
+                catch (ClosedChannelException e)
                 {
-                    for (SnmpV1TrapListener listener : v1TrapListeners)
-                        listener.processv1Trap((SnmpV1TrapPDU)receivedPDU);
+                    break;
                 }
-                else if (receivedPDU instanceof SnmpV2TrapPDU)
-                {                 
-                    for (SnmpV2TrapListener listener : v2TrapListeners)
-                        listener.processv2Trap((SnmpV2TrapPDU)receivedPDU);
+                catch (ClosedSelectorException e)
+                {
+                    break;
                 }
-                else if (receivedPDU instanceof SnmpV2InformRequestPDU)
-                {                  
-                    for (SnmpV2InformRequestListener listener : v2InformRequestListeners)
-                        listener.processv2InformRequest((SnmpV2InformRequestPDU)receivedPDU);
+                catch (IOException e)
+                {
+                    // just report the problem
+                    errorLogger.println("IOException during request processing: " + e.toString());
+                    errorLogger.flush();
                 }
-                
             }
-            catch (IOException e)
+        }
+        finally
+        {
+            bufferPool.release(buffer);
+        }
+    }
+    
+    
+    /**
+     *  Reads the next waiting datagram into the buffer, ready to be decoded.
+     *  
+     *  @return the sender, or null if no datagram is waiting
+     */
+    private InetSocketAddress receiveDatagram(ByteBuffer buffer) throws IOException
+    {
+        buffer.clear();
+        SocketAddress sender = channel.receive(buffer);
+        buffer.flip();
+        return (InetSocketAddress)sender;
+    }
+    
+    
+    /**
+     *  Appends a received datagram to the journal, reporting rather than throwing a failure 
+     *  so that the datagram is still processed.
+     */
+    private void appendToJournal(SnmpTrapJournal currentJournal, ByteBuffer buffer, InetSocketAddress sender)
+    {
+        try
+        {
+            currentJournal.append(buffer, sender, System.currentTimeMillis());
+        }
+        catch (IOException e)
+        {
+            errorLogger.println("IOException while journalling a received datagram: " + e.toString());
+            errorLogger.flush();
+        }
+    }
+    
+    
+    /**
+     *  Copies a received datagram into a buffer just large enough for it and queues that for 
+     *  the workers, or drops it if the queue is full. The receiving buffer can then be reused.
+     */
+    private void queueDatagram(ByteBuffer buffer, InetSocketAddress sender)
+    {
+        ByteBuffer queuedBuffer = bufferPool.borrow(buffer.remaining());
+        queuedBuffer.put(buffer);
+        queuedBuffer.flip();
+        
+        if (!receivedDatagrams.offer(new ReceivedDatagram(queuedBuffer, sender)))
+        {
+            droppedCount.incrementAndGet();
+            bufferPool.release(queuedBuffer);
+        }
+    }
+    
+    
+    /**
+     *  The loop of each worker thread: decodes and dispatches queued datagrams until interrupted.
+     */
+    private void processReceivedDatagrams()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
             {
-                // just report the problem
-                errorLogger.println("IOException during request processing: " + e.toString());
-                errorLogger.flush();
+                ReceivedDatagram datagram = receivedDatagrams.take();
+                try
+                {
+                    processDatagram(datagram.data, datagram.sender);
+                }
+                finally
+                {
+                    bufferPool.release(datagram.data);
+                }
             }
-            catch (SnmpBadValueException e)
+        }
+        catch (InterruptedException e)
+        {
+            // Receiving has been stopped.
+        }
+    }
+    
+    
+    /**
+     *  Decodes a received datagram and passes its PDU to the listeners, unless it repeats a recent
+     *  trap, reporting any problem to the error receiver.
+     */
+    private void processDatagram(ByteBuffer data, InetSocketAddress sender)
+    {
+        try
+        {
+            SnmpMessage receivedMessage = packetProcessor.createMessage(data);
+            Object receivedPDU = receivedMessage.getPDUAsObject();
+            
+            if ( !(receivedPDU instanceof SnmpV1TrapPDU) && 
+            	 !(receivedPDU instanceof SnmpV2TrapPDU) && 
+            	 !(receivedPDU instanceof SnmpV2InformRequestPDU) )
             {
-                // just report the problem
-                errorLogger.println("SNMPBadValueException during request processing: " + e.toString());
-                errorLogger.flush();
+                	throw new SnmpBadValueException("PDU received that's not a v1 or v2 trap or inform request; message payload of type " 
+                			+ receivedPDU.getClass().toString());
             }
-            catch (Exception e)
+            
+            SnmpTrapDeduplicator currentDeduplicator = deduplicator;
+            if (currentDeduplicator != null)
             {
-                // just report the problem
-                errorLogger.println("Exception during request processing: " + e.toString());
-                errorLogger.flush();
+                if (receivedPDU instanceof SnmpV1TrapPDU && !currentDeduplicator.offer(sender.getAddress(), (SnmpV1TrapPDU)receivedPDU))
+                    return;
+                
+                if (receivedPDU instanceof SnmpV2TrapPDU && !currentDeduplicator.offer(sender.getAddress(), (SnmpV2TrapPDU)receivedPDU))
+                    return;
             }
             
-        }
+            SnmpTrapRouter currentRouter = router;
+            
+            // pass the received trap PDU to the processTrap or procesv2Trap method of any listeners
+            if (receivedPDU instanceof SnmpV1TrapPDU)
+            {
+                for (SnmpV1TrapListener listener : v1TrapListeners)
+                    listener.processv1Trap((SnmpV1TrapPDU)receivedPDU);
+                
+                if (currentRouter != null)
+                    currentRouter.route(sender.getAddress(), receivedMessage.getCommunityName(), (SnmpV1TrapPDU)receivedPDU);
+            }
+            else if (receivedPDU instanceof SnmpV2TrapPDU)
+            {                 
+                for (SnmpV2TrapListener listener : v2TrapListeners)
+                    listener.processv2Trap((SnmpV2TrapPDU)receivedPDU);
                 
+                if (currentRouter != null)
+                    currentRouter.route(sender.getAddress(), receivedMessage.getCommunityName(), (SnmpV2TrapPDU)receivedPDU);
+            }
+            else if (receivedPDU instanceof SnmpV2InformRequestPDU)
+            {                  
+                for (SnmpV2InformRequestListener listener : v2InformRequestListeners)
+                    listener.processv2InformRequest((SnmpV2InformRequestPDU)receivedPDU);
+            }
+        }
+        catch (SnmpBadValueException e)
+        {
+            // just report the problem
+            errorLogger.println("SNMPBadValueException during request processing: " + e.toString());
+            errorLogger.flush();
+        }
+        catch (Exception e)
+        {
+            // just report the problem
+            errorLogger.println("Exception during request processing: " + e.toString());
+            errorLogger.flush();
+        }
     }
       
     
     /**
-     *  Sets the size of the buffer used to receive response packets. RFC 1157 stipulates that an SNMP
-     *  implementation must be able to receive packets of at least 484 bytes, so if you try to set the
-     *  size to a value less than this, the receive buffer size will be set to 484 bytes. In addition,
-     *  the maximum size of a UDP packet payload is 65535 bytes, so setting the buffer to a larger size
-     *  will just waste memory. The default value is 512 bytes. The value may need to be increased if
-     *  get-requests are issued for multiple OIDs.
+     *  Formerly set the size of the buffer used to receive packets, which cut short larger messages. 
+     *  Datagrams are now received into pooled buffers that hold the largest UDP payload, so this only 
+     *  changes the value returned by getReceiveBufferSize.
+     *  
+     *  @deprecated messages are no longer truncated, so there is nothing to configure
      */
+    @Deprecated
     public void setReceiveBufferSize(int receiveBufferSize)
     {
     	this.receiveBufferSize = (receiveBufferSize >= 484) ? receiveBufferSize : 484;
@@ -252,10 +586,87 @@ public class SnmpTrapReceiver implements Runnable
     
     /**
      *  Returns the current size of the buffer used to receive response packets. 
+     *  
+     *  @deprecated messages are no longer truncated, so there is nothing to configure
      */
+    @Deprecated
     public int getReceiveBufferSize()
     {
         return receiveBufferSize;
     }
     
-}
\ No newline at end of file
+    
+    /**
+     *  Asks the operating system for a socket receive buffer (SO_RCVBUF) of the given size, which 
+     *  holds datagrams that have arrived but not yet been read. The default is 
+     *  DEFAULT_SOCKET_RECEIVE_BUFFER_SIZE. The operating system may grant less than was asked for; on 
+     *  Linux the limit is net.core.rmem_max.
+     */
+    public void setSocketReceiveBufferSize(int size) throws IOException
+    {
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, size);
+    }
+    
+    
+    /**
+     *  Returns the size of the socket receive buffer the operating system actually granted.
+     */
+    public int getSocketReceiveBufferSize() throws IOException
+    {
+        return channel.getOption(StandardSocketOptions.SO_RCVBUF);
+    }
+    
+    
+    /**
+     *  Returns the local address the receiver is bound to.
+     */
+    public InetSocketAddress getLocalAddress() throws IOException
+    {
+        return (InetSocketAddress)channel.getLocalAddress();
+    }
+    
+    
+    /**
+     *  Returns the number of datagrams read from the socket, including dropped ones.
+     */
+    public long getReceivedCount()
+    {
+        return receivedCount.get();
+    }
+    
+    
+    /**
+     *  Returns the number of datagrams dropped because the queue of datagrams waiting 
+     *  for a worker was full.
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }
+    
+    
+    /**
+     *  Returns the number of datagrams waiting for a worker.
+     */
+    public int getQueueDepth()
+    {
+        return (receivedDatagrams == null) ? 0 : receivedDatagrams.size();
+    }
+    
+    
+    /**
+     *  A received datagram waiting in the queue, with the address it came from.
+     */
+    private static final class ReceivedDatagram
+    {
+        final ByteBuffer data;
+        final InetSocketAddress sender;
+        
+        ReceivedDatagram(ByteBuffer data, InetSocketAddress sender)
+        {
+            this.data = data;
+            this.sender = sender;
+        }
+    }
+    
+}
@@ -0,0 +1,41 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.net.InetAddress;
+
+import snmp.datatypes.sequence.pdu.SnmpPDU;
+
+/**
+ * A listener for the repeats that a SnmpTrapDeduplicator held back from the trap listeners.
+ */
+public interface SnmpTrapRepeatListener
+{
+	/**
+	 * Called once a trap has stopped repeating, or has been forgotten to make room for others.
+	 * @param source the address the trap came from
+	 * @param trapPDU the first of the traps, which was passed on to the trap listeners; 
+	 * either an SnmpV1TrapPDU or an SnmpV2TrapPDU
+	 * @param count the number of times the trap was received, including the first
+	 */
+	public void processRepeatedTrap(InetAddress source, SnmpPDU trapPDU, int count);
+}
@@ -0,0 +1,538 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
+
+/**
+ * Routes traps to the listeners of the SnmpTrapRules they match, so that each listener only 
+ * sees the traps it's interested in instead of filtering every trap itself.
+ * <p>
+ * The rules are compiled into a decision tree with a level for each kind of condition: a trie 
+ * of enterprise OIDs or snmpTrapOIDs, the generic and specific trap, a binary trie of source 
+ * address prefixes, the community, and a trie of variable binding OIDs. A trap follows every 
+ * branch it matches at each level, so the work of matching it depends on the length of its OIDs
+ * and address and on the rules it matches, but not on how many rules there are.
+ * <p>
+ * Routing is thread-safe; changing the rules compiles a new tree, which traps being routed at 
+ * the time don't see.
+ */
+public class SnmpTrapRouter
+{
+	// The wildcard values of the generic and specific trap level.
+	private static final int ANY_GENERIC = -1;
+	private static final long ANY_SPECIFIC = 1L << 32;
+	
+	// The rules in the order they were added; guarded by this.
+	private final List<SnmpTrapRule> rules = new ArrayList<SnmpTrapRule>();
+	
+	private volatile CompiledRules compiled = new CompiledRules(Collections.<SnmpTrapRule>emptyList());
+	
+	/**
+	 * Adds a rule, unless it has already been added. Traps matching several rules are passed 
+	 * to their listeners in the order the rules were added.
+	 */
+	public synchronized void addRule(SnmpTrapRule rule)
+	{
+		// See if rule already added; if so, ignore.
+		if (!rules.contains(rule))
+		{
+			rules.add(rule);
+			recompile();
+		}
+	}
+	
+	public synchronized void removeRule(SnmpTrapRule rule)
+	{
+		if (rules.remove(rule))
+			recompile();
+	}
+	
+	public synchronized List<SnmpTrapRule> getRules()
+	{
+		return Collections.unmodifiableList(new ArrayList<SnmpTrapRule>(rules));
+	}
+	
+	/**
+	 * Compiles the rules again, such as after the conditions of a rule already added were changed.
+	 */
+	public synchronized void recompile()
+	{
+		compiled = new CompiledRules(rules);
+	}
+	
+	
+	/**
+	 * Returns the rules an SNMPv1 trap matches, in the order they were added.
+	 */
+	public List<SnmpTrapRule> match(InetAddress source, String community, SnmpV1TrapPDU trapPDU)
+	{
+		return compiled.match(source, community, trapPDU);
+	}
+	
+	/**
+	 * Returns the rules an SNMPv2 trap matches, in the order they were added.
+	 */
+	public List<SnmpTrapRule> match(InetAddress source, String community, SnmpV2TrapPDU trapPDU)
+	{
+		return compiled.match(source, community, trapPDU);
+	}
+	
+	/**
+	 * Passes an SNMPv1 trap to the listeners of the rules it matches. A listener of several of 
+	 * the rules receives it once.
+	 * @return whether the trap matched any rule
+	 */
+	public boolean route(InetAddress source, String community, SnmpV1TrapPDU trapPDU)
+	{
+		List<SnmpTrapRule> matched = match(source, community, trapPDU);
+		if (matched.size() == 1)
+		{
+			for (SnmpV1TrapListener listener : matched.get(0).getV1TrapListeners())
+				listener.processv1Trap(trapPDU);
+		}
+		else if (matched.size() > 1)
+		{
+			Set<SnmpV1TrapListener> listeners = new LinkedHashSet<SnmpV1TrapListener>();
+			for (SnmpTrapRule rule : matched)
+				listeners.addAll(rule.getV1TrapListeners());
+			
+			for (SnmpV1TrapListener listener : listeners)
+				listener.processv1Trap(trapPDU);
+		}
+		
+		return !matched.isEmpty();
+	}
+	
+	/**
+	 * Passes an SNMPv2 trap to the listeners of the rules it matches. A listener of several of 
+	 * the rules receives it once.
+	 * @return whether the trap matched any rule
+	 */
+	public boolean route(InetAddress source, String community, SnmpV2TrapPDU trapPDU)
+	{
+		List<SnmpTrapRule> matched = match(source, community, trapPDU);
+		if (matched.size() == 1)
+		{
+			for (SnmpV2TrapListener listener : matched.get(0).getV2TrapListeners())
+				listener.processv2Trap(trapPDU);
+		}
+		else if (matched.size() > 1)
+		{
+			Set<SnmpV2TrapListener> listeners = new LinkedHashSet<SnmpV2TrapListener>();
+			for (SnmpTrapRule rule : matched)
+				listeners.addAll(rule.getV2TrapListeners());
+			
+			for (SnmpV2TrapListener listener : listeners)
+				listener.processv2Trap(trapPDU);
+		}
+		
+		return !matched.isEmpty();
+	}
+	
+	
+	/**
+	 * The decision tree of a fixed set of rules. Each level of the tree is a node holding the 
+	 * branches of the next level, with the rules that have no condition of that kind taking the 
+	 * wildcard branch.
+	 */
+	private static final class CompiledRules
+	{
+		private final OidTrie<TrapTypeNode> v1Rules = new OidTrie<TrapTypeNode>();
+		private final OidTrie<SourceNode> v2Rules = new OidTrie<SourceNode>();
+		
+		// The order each rule was added in, to sort matches by.
+		private final Map<SnmpTrapRule, Integer> order = new IdentityHashMap<SnmpTrapRule, Integer>();
+		private final Comparator<SnmpTrapRule> byOrder = new Comparator<SnmpTrapRule>()
+		{
+			public int compare(SnmpTrapRule a, SnmpTrapRule b)
+			{
+				return order.get(a).compareTo(order.get(b));
+			}
+		};
+		
+		CompiledRules(List<SnmpTrapRule> rules)
+		{
+			for (SnmpTrapRule rule : rules)
+			{
+				order.put(rule, order.size());
+				
+				// A rule with no trap identity is entered at the root of both tries.
+				if (!rule.isV2Rule())
+				{
+					OidTrie.Node<TrapTypeNode> node = v1Rules.getNode(rule.getEnterprise());
+					if (node.value == null)
+						node.value = new TrapTypeNode();
+					
+					node.value.add(rule);
+				}
+				
+				if (!rule.isV1Rule())
+				{
+					OidTrie.Node<SourceNode> node = v2Rules.getNode(rule.getSnmpTrapOID());
+					if (node.value == null)
+						node.value = new SourceNode();
+					
+					node.value.add(rule);
+				}
+			}
+		}
+		
+		List<SnmpTrapRule> match(InetAddress source, String community, SnmpV1TrapPDU trapPDU)
+		{
+			List<TrapTypeNode> typeNodes = new ArrayList<TrapTypeNode>();
+			v1Rules.collect(trapPDU.getEnterpriseOID(), typeNodes);
+			
+			List<SourceNode> sourceNodes = new ArrayList<SourceNode>();
+			for (TrapTypeNode typeNode : typeNodes)
+				typeNode.collect(trapPDU.getGenericTrap().ordinal(), trapPDU.getSpecificTrap(), sourceNodes);
+			
+			return matchSources(sourceNodes, source, community, trapPDU.getVarBindList(), 0);
+		}
+		
+		List<SnmpTrapRule> match(InetAddress source, String community, SnmpV2TrapPDU trapPDU)
+		{
+			List<SourceNode> sourceNodes = new ArrayList<SourceNode>();
+			v2Rules.collect(trapPDU.getSNMPTrapOID(), sourceNodes);
+			
+			// The first two bindings are sysUpTime and snmpTrapOID.
+			return matchSources(sourceNodes, source, community, trapPDU.getVarBindList(), 2);
+		}
+		
+		private List<SnmpTrapRule> matchSources(List<SourceNode> sourceNodes, InetAddress source, String community, 
+				SnmpSequence varBindList, int firstVarBind)
+		{
+			if (sourceNodes.isEmpty())
+				return Collections.emptyList();
+			
+			byte[] address = source.getAddress();
+			List<CommunityNode> communityNodes = new ArrayList<CommunityNode>();
+			for (SourceNode sourceNode : sourceNodes)
+				sourceNode.collect(address, communityNodes);
+			
+			List<VarBindNode> varBindNodes = new ArrayList<VarBindNode>();
+			for (CommunityNode communityNode : communityNodes)
+				communityNode.collect(community, varBindNodes);
+			
+			// A rule with several source ranges or variable binding OIDs can be reached more than once.
+			Set<SnmpTrapRule> matched = Collections.newSetFromMap(new IdentityHashMap<SnmpTrapRule, Boolean>());
+			for (VarBindNode varBindNode : varBindNodes)
+				varBindNode.collect(varBindList, firstVarBind, matched);
+			
+			List<SnmpTrapRule> sorted = new ArrayList<SnmpTrapRule>(matched);
+			Collections.sort(sorted, byOrder);
+			return sorted;
+		}
+	}
+	
+	/**
+	 * The generic and specific trap level, keyed by both with either possibly a wildcard.
+	 */
+	private static final class TrapTypeNode
+	{
+		private final Map<Long, SourceNode> branches = new HashMap<Long, SourceNode>();
+		
+		void add(SnmpTrapRule rule)
+		{
+			int generic = (rule.getGenericTrap() == null) ? ANY_GENERIC : rule.getGenericTrap().ordinal();
+			long specific = (rule.getSpecificTrap() == null) ? ANY_SPECIFIC : (rule.getSpecificTrap().intValue() & 0xFFFFFFFFL);
+			
+			Long key = key(generic, specific);
+			SourceNode branch = branches.get(key);
+			if (branch == null)
+			{
+				branch = new SourceNode();
+				branches.put(key, branch);
+			}
+			
+			branch.add(rule);
+		}
+		
+		void collect(int generic, int specific, List<SourceNode> found)
+		{
+			long specificKey = specific & 0xFFFFFFFFL;
+			collect(key(generic, specificKey), found);
+			collect(key(generic, ANY_SPECIFIC), found);
+			collect(key(ANY_GENERIC, specificKey), found);
+			collect(key(ANY_GENERIC, ANY_SPECIFIC), found);
+		}
+		
+		private void collect(Long key, List<SourceNode> found)
+		{
+			SourceNode branch = branches.get(key);
+			if (branch != null)
+				found.add(branch);
+		}
+		
+		private static Long key(int generic, long specific)
+		{
+			return Long.valueOf(((long)generic << 33) | specific);
+		}
+	}
+	
+	/**
+	 * The source address level: a binary trie of prefixes for each address family.
+	 */
+	private static final class SourceNode
+	{
+		private final CommunityNode anySource = new CommunityNode();
+		private final BitTrie<CommunityNode> ipv4 = new BitTrie<CommunityNode>();
+		private final BitTrie<CommunityNode> ipv6 = new BitTrie<CommunityNode>();
+		
+		void add(SnmpTrapRule rule)
+		{
+			if (rule.getSourceRanges().isEmpty())
+			{
+				anySource.add(rule);
+				return;
+			}
+			
+			for (SnmpTrapRule.AddressRange range : rule.getSourceRanges())
+			{
+				BitTrie<CommunityNode> trie = (range.network.length == 4) ? ipv4 : ipv6;
+				BitTrie.Node<CommunityNode> node = trie.getNode(range.network, range.prefixLength);
+				if (node.value == null)
+					node.value = new CommunityNode();
+				
+				node.value.add(rule);
+			}
+		}
+		
+		void collect(byte[] address, List<CommunityNode> found)
+		{
+			found.add(anySource);
+			((address.length == 4) ? ipv4 : ipv6).collect(address, found);
+		}
+	}
+	
+	/**
+	 * The community level, keyed by the community name.
+	 */
+	private static final class CommunityNode
+	{
+		private final VarBindNode anyCommunity = new VarBindNode();
+		private final Map<String, VarBindNode> branches = new HashMap<String, VarBindNode>();
+		
+		void add(SnmpTrapRule rule)
+		{
+			if (rule.getCommunity() == null)
+			{
+				anyCommunity.add(rule);
+				return;
+			}
+			
+			VarBindNode branch = branches.get(rule.getCommunity());
+			if (branch == null)
+			{
+				branch = new VarBindNode();
+				branches.put(rule.getCommunity(), branch);
+			}
+			
+			branch.add(rule);
+		}
+		
+		void collect(String community, List<VarBindNode> found)
+		{
+			found.add(anyCommunity);
+			
+			VarBindNode branch = branches.get(community);
+			if (branch != null)
+				found.add(branch);
+		}
+	}
+	
+	/**
+	 * The last level: the rules without a variable binding condition, and a trie of the 
+	 * variable binding OIDs of the rest.
+	 */
+	private static final class VarBindNode
+	{
+		private final List<SnmpTrapRule> anyVarBinds = new ArrayList<SnmpTrapRule>();
+		private final OidTrie<List<SnmpTrapRule>> varBindRules = new OidTrie<List<SnmpTrapRule>>();
+		private boolean hasVarBindRules = false;
+		
+		void add(SnmpTrapRule rule)
+		{
+			List<SnmpObjectIdentifier> prefixes = rule.getVarBindPrefixes();
+			if (prefixes.isEmpty())
+			{
+				anyVarBinds.add(rule);
+				return;
+			}
+			
+			for (SnmpObjectIdentifier prefix : prefixes)
+			{
+				OidTrie.Node<List<SnmpTrapRule>> node = varBindRules.getNode(prefix);
+				if (node.value == null)
+					node.value = new ArrayList<SnmpTrapRule>();
+				
+				node.value.add(rule);
+			}
+			
+			hasVarBindRules = true;
+		}
+		
+		void collect(SnmpSequence varBindList, int firstVarBind, Set<SnmpTrapRule> matched)
+		{
+			matched.addAll(anyVarBinds);
+			if (!hasVarBindRules)
+				return;
+			
+			List<List<SnmpTrapRule>> found = new ArrayList<List<SnmpTrapRule>>();
+			for (int i = firstVarBind; i < varBindList.size(); i++)
+			{
+				SnmpSequence pair = (SnmpSequence)varBindList.getSNMPObjectAt(i);
+				varBindRules.collect((SnmpObjectIdentifier)pair.getSNMPObjectAt(0), found);
+			}
+			
+			for (List<SnmpTrapRule> rules : found)
+				matched.addAll(rules);
+		}
+	}
+	
+	/**
+	 * A trie of OIDs, one level per sub-identifier.
+	 */
+	private static final class OidTrie<T>
+	{
+		static final class Node<T>
+		{
+			final Map<Integer, Node<T>> children = new HashMap<Integer, Node<T>>();
+			T value;
+		}
+		
+		private final Node<T> root = new Node<T>();
+		
+		/**
+		 * Gets the node of an OID, creating it if needed; a null OID gets the root.
+		 */
+		Node<T> getNode(SnmpObjectIdentifier oid)
+		{
+			Node<T> node = root;
+			int size = (oid == null) ? 0 : oid.size();
+			for (int i = 0; i < size; i++)
+			{
+				Integer arc = Integer.valueOf((int)oid.getSubIdentifier(i));
+				Node<T> child = node.children.get(arc);
+				if (child == null)
+				{
+					child = new Node<T>();
+					node.children.put(arc, child);
+				}
+				
+				node = child;
+			}
+			
+			return node;
+		}
+		
+		/**
+		 * Adds the values of the nodes of an OID and its prefixes.
+		 */
+		void collect(SnmpObjectIdentifier oid, List<? super T> found)
+		{
+			Node<T> node = root;
+			for (int i = 0; node != null; i++)
+			{
+				if (node.value != null)
+					found.add(node.value);
+				
+				if (i == oid.size())
+					break;
+				
+				node = node.children.get(Integer.valueOf((int)oid.getSubIdentifier(i)));
+			}
+		}
+	}
+	
+	/**
+	 * A binary trie of address prefixes, one level per bit.
+	 */
+	private static final class BitTrie<T>
+	{
+		static final class Node<T>
+		{
+			Node<T> zero;
+			Node<T> one;
+			T value;
+		}
+		
+		private final Node<T> root = new Node<T>();
+		
+		/**
+		 * Gets the node of the given leading bits of an address, creating it if needed.
+		 */
+		Node<T> getNode(byte[] address, int prefixLength)
+		{
+			Node<T> node = root;
+			for (int bit = 0; bit < prefixLength; bit++)
+			{
+				if (SnmpTrapRule.AddressRange.getBit(address, bit) == 0)
+				{
+					if (node.zero == null)
+						node.zero = new Node<T>();
+					node = node.zero;
+				}
+				else
+				{
+					if (node.one == null)
+						node.one = new Node<T>();
+					node = node.one;
+				}
+			}
+			
+			return node;
+		}
+		
+		/**
+		 * Adds the values of the nodes of every prefix of an address.
+		 */
+		void collect(byte[] address, List<? super T> found)
+		{
+			Node<T> node = root;
+			for (int bit = 0; node != null; bit++)
+			{
+				if (node.value != null)
+					found.add(node.value);
+				
+				if (bit == address.length * 8)
+					break;
+				
+				node = (SnmpTrapRule.AddressRange.getBit(address, bit) == 0) ? node.zero : node.one;
+			}
+		}
+	}
+}
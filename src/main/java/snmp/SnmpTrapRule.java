@@ -0,0 +1,365 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU.GenericTrapType;
+import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
+
+/**
+ * A routing rule for a SnmpTrapRouter: a set of conditions on a trap, and the listeners that 
+ * receive the traps meeting all of them. Conditions that aren't set match any trap.
+ * <p>
+ * The SNMPv1 conditions are the enterprise OID, which matches the trap's enterprise and any OID 
+ * below it, and the generic and specific trap. The SNMPv2 condition is the snmpTrapOID, which 
+ * likewise matches the OIDs below it. A rule with either kind only matches traps of that version, 
+ * so a rule can't have both. The source ranges, community and variable binding OIDs apply to 
+ * both versions; a trap meets the source condition if it comes from any of the ranges, and the 
+ * variable binding condition if any of its bindings is at or below any of the OIDs.
+ * <p>
+ * A router compiles the conditions of its rules when a rule is added; after changing the 
+ * conditions of a rule that has been added, call the router's recompile method.
+ */
+public class SnmpTrapRule
+{
+	private final String name;
+	
+	private SnmpObjectIdentifier enterprise = null;
+	private GenericTrapType genericTrap = null;
+	private Integer specificTrap = null;
+	private SnmpObjectIdentifier snmpTrapOID = null;
+	private String community = null;
+	private final List<AddressRange> sourceRanges = new CopyOnWriteArrayList<AddressRange>();
+	private final List<SnmpObjectIdentifier> varBindPrefixes = new CopyOnWriteArrayList<SnmpObjectIdentifier>();
+	
+	private final List<SnmpV1TrapListener> v1TrapListeners = new CopyOnWriteArrayList<SnmpV1TrapListener>();
+	private final List<SnmpV2TrapListener> v2TrapListeners = new CopyOnWriteArrayList<SnmpV2TrapListener>();
+	
+	/**
+	 * Creates a rule with no conditions, which matches every trap.
+	 * @param name a name for the rule, used in messages
+	 */
+	public SnmpTrapRule(String name)
+	{
+		if (name == null)
+			throw new IllegalArgumentException("A rule must have a name.");
+		
+		this.name = name;
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * Matches SNMPv1 traps whose enterprise is the given OID or below it, or any enterprise if null.
+	 */
+	public void setEnterprise(SnmpObjectIdentifier enterprise)
+	{
+		checkNoV2Condition(enterprise);
+		this.enterprise = enterprise;
+	}
+	
+	public SnmpObjectIdentifier getEnterprise()
+	{
+		return enterprise;
+	}
+	
+	/**
+	 * Matches SNMPv1 traps of the given generic type, or any if null.
+	 */
+	public void setGenericTrap(GenericTrapType genericTrap)
+	{
+		checkNoV2Condition(genericTrap);
+		this.genericTrap = genericTrap;
+	}
+	
+	public GenericTrapType getGenericTrap()
+	{
+		return genericTrap;
+	}
+	
+	/**
+	 * Matches SNMPv1 traps with the given specific trap number, or any if null.
+	 */
+	public void setSpecificTrap(Integer specificTrap)
+	{
+		checkNoV2Condition(specificTrap);
+		this.specificTrap = specificTrap;
+	}
+	
+	public Integer getSpecificTrap()
+	{
+		return specificTrap;
+	}
+	
+	/**
+	 * Matches SNMPv2 traps whose snmpTrapOID is the given OID or below it, or any if null.
+	 */
+	public void setSnmpTrapOID(SnmpObjectIdentifier snmpTrapOID)
+	{
+		if (snmpTrapOID != null && isV1Rule())
+			throw new IllegalArgumentException("A rule with SNMPv1 conditions cannot have an snmpTrapOID.");
+		
+		this.snmpTrapOID = snmpTrapOID;
+	}
+	
+	public SnmpObjectIdentifier getSnmpTrapOID()
+	{
+		return snmpTrapOID;
+	}
+	
+	/**
+	 * Matches traps sent with the given community name, or any if null.
+	 */
+	public void setCommunity(String community)
+	{
+		this.community = community;
+	}
+	
+	public String getCommunity()
+	{
+		return community;
+	}
+	
+	/**
+	 * Adds a range of source addresses, such as 10.1.0.0 with a prefix length of 16. Once a range 
+	 * has been added, only traps from the added ranges match.
+	 * @param network an address in the range
+	 * @param prefixLength the number of leading bits of the address that addresses in the range share
+	 */
+	public void addSourceRange(InetAddress network, int prefixLength)
+	{
+		byte[] address = network.getAddress();
+		if (prefixLength < 0 || prefixLength > address.length * 8)
+			throw new IllegalArgumentException("The prefix length must be between 0 and " + (address.length * 8) + ".");
+		
+		sourceRanges.add(new AddressRange(address, prefixLength));
+	}
+	
+	/**
+	 * Adds a single source address.
+	 */
+	public void addSource(InetAddress source)
+	{
+		addSourceRange(source, source.getAddress().length * 8);
+	}
+	
+	/**
+	 * Adds a variable binding OID. Once one has been added, only traps with a variable binding at
+	 * or below one of the added OIDs match. The sysUpTime and snmpTrapOID that begin an SNMPv2 
+	 * trap aren't considered.
+	 */
+	public void addVarBindPrefix(SnmpObjectIdentifier prefix)
+	{
+		if (prefix == null)
+			throw new IllegalArgumentException("The variable binding OID cannot be null.");
+		
+		varBindPrefixes.add(prefix);
+	}
+	
+	public List<SnmpObjectIdentifier> getVarBindPrefixes()
+	{
+		return Collections.unmodifiableList(new ArrayList<SnmpObjectIdentifier>(varBindPrefixes));
+	}
+	
+	/**
+	 * Returns whether the rule only matches SNMPv1 traps.
+	 */
+	public boolean isV1Rule()
+	{
+		return enterprise != null || genericTrap != null || specificTrap != null;
+	}
+	
+	/**
+	 * Returns whether the rule only matches SNMPv2 traps.
+	 */
+	public boolean isV2Rule()
+	{
+		return snmpTrapOID != null;
+	}
+	
+	
+	public void addV1TrapListener(SnmpV1TrapListener listener)
+	{
+		// See if listener already added; if so, ignore.
+		if (!v1TrapListeners.contains(listener))
+			v1TrapListeners.add(listener);
+	}
+	
+	public void removeV1TrapListener(SnmpV1TrapListener listener)
+	{
+		v1TrapListeners.remove(listener);
+	}
+	
+	public void addV2TrapListener(SnmpV2TrapListener listener)
+	{
+		// See if listener already added; if so, ignore.
+		if (!v2TrapListeners.contains(listener))
+			v2TrapListeners.add(listener);
+	}
+	
+	public void removeV2TrapListener(SnmpV2TrapListener listener)
+	{
+		v2TrapListeners.remove(listener);
+	}
+	
+	List<SnmpV1TrapListener> getV1TrapListeners()
+	{
+		return v1TrapListeners;
+	}
+	
+	List<SnmpV2TrapListener> getV2TrapListeners()
+	{
+		return v2TrapListeners;
+	}
+	
+	List<AddressRange> getSourceRanges()
+	{
+		return sourceRanges;
+	}
+	
+	
+	/**
+	 * Returns whether an SNMPv1 trap meets all of the rule's conditions, by checking each in turn.
+	 */
+	public boolean matches(InetAddress source, String trapCommunity, SnmpV1TrapPDU trapPDU)
+	{
+		if (isV2Rule())
+			return false;
+		
+		if (enterprise != null && !enterprise.isPrefixOf(trapPDU.getEnterpriseOID()))
+			return false;
+		
+		if (genericTrap != null && genericTrap != trapPDU.getGenericTrap())
+			return false;
+		
+		if (specificTrap != null && specificTrap.intValue() != trapPDU.getSpecificTrap())
+			return false;
+		
+		return matchesCommon(source, trapCommunity, trapPDU.getVarBindList(), 0);
+	}
+	
+	/**
+	 * Returns whether an SNMPv2 trap meets all of the rule's conditions, by checking each in turn.
+	 */
+	public boolean matches(InetAddress source, String trapCommunity, SnmpV2TrapPDU trapPDU)
+	{
+		if (isV1Rule())
+			return false;
+		
+		if (snmpTrapOID != null && !snmpTrapOID.isPrefixOf(trapPDU.getSNMPTrapOID()))
+			return false;
+		
+		return matchesCommon(source, trapCommunity, trapPDU.getVarBindList(), 2);
+	}
+	
+	private boolean matchesCommon(InetAddress source, String trapCommunity, SnmpSequence varBindList, int firstVarBind)
+	{
+		if (community != null && !community.equals(trapCommunity))
+			return false;
+		
+		if (!sourceRanges.isEmpty())
+		{
+			byte[] address = source.getAddress();
+			boolean inRange = false;
+			for (AddressRange range : sourceRanges)
+				inRange |= range.contains(address);
+			
+			if (!inRange)
+				return false;
+		}
+		
+		if (!varBindPrefixes.isEmpty())
+		{
+			for (int i = firstVarBind; i < varBindList.size(); i++)
+			{
+				SnmpObjectIdentifier oid = (SnmpObjectIdentifier)((SnmpSequence)varBindList.getSNMPObjectAt(i)).getSNMPObjectAt(0);
+				for (SnmpObjectIdentifier prefix : varBindPrefixes)
+				{
+					if (prefix.isPrefixOf(oid))
+						return true;
+				}
+			}
+			
+			return false;
+		}
+		
+		return true;
+	}
+	
+	private void checkNoV2Condition(Object v1Condition)
+	{
+		if (v1Condition != null && isV2Rule())
+			throw new IllegalArgumentException("A rule with an snmpTrapOID cannot have SNMPv1 conditions.");
+	}
+	
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+	
+	
+	/**
+	 * A range of IPv4 or IPv6 addresses sharing a prefix.
+	 */
+	static final class AddressRange
+	{
+		final byte[] network;
+		final int prefixLength;
+		
+		AddressRange(byte[] network, int prefixLength)
+		{
+			this.network = network;
+			this.prefixLength = prefixLength;
+		}
+		
+		boolean contains(byte[] address)
+		{
+			if (address.length != network.length)
+				return false;
+			
+			for (int bit = 0; bit < prefixLength; bit++)
+			{
+				if (getBit(address, bit) != getBit(network, bit))
+					return false;
+			}
+			
+			return true;
+		}
+		
+		static int getBit(byte[] address, int bit)
+		{
+			return (address[bit >> 3] >> (7 - (bit & 7))) & 1;
+		}
+	}
+}
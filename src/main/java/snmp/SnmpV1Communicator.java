@@ -24,10 +24,12 @@ package snmp;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 
 import snmp.datatypes.SnmpBERType;
 import snmp.datatypes.SnmpObject;
 import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.SnmpV2ExceptionValue;
 import snmp.datatypes.sequence.SnmpMessage;
 import snmp.datatypes.sequence.SnmpSequence;
 import snmp.datatypes.sequence.SnmpVarBindList;
@@ -54,13 +56,46 @@ public class SnmpV1Communicator
      */
     public static final int MINIMUM_BUFFER_SIZE= 484;
 
-    private int receiveBufferSize = 512;
+    /** 
+     * The largest payload a UDP datagram can carry over IPv4. 
+     */
+    public static final int MAXIMUM_DATAGRAM_SIZE = 65507;
+    
+    /** 
+     * The largest number of repetitions requested by a GetBulk subtree walk. 
+     */
+    public static final int MAXIMUM_REPETITIONS = 100;
+    
+    /** 
+     * The response size GetBulk subtree walks aim for by default: the UDP payload of a 
+     * standard 1500-byte Ethernet frame, so that responses aren't fragmented.
+     */
+    public static final int DEFAULT_BULK_RESPONSE_SIZE = 1472;
+    
+    // Rough sizes used to estimate how many variable bindings fit into a response:
+    // the message and PDU headers, and what each binding adds beyond its base OID
+    // (index sub-identifiers, the value, and the sequence headers).
+    private static final int ESTIMATED_MESSAGE_OVERHEAD = 64;
+    private static final int ESTIMATED_BINDING_OVERHEAD = 40;
+
+    private int receiveBufferSize = DEFAULT_BULK_RESPONSE_SIZE;
+    private int timeout = 15000;    //15 seconds
+    private int retries = 0;
     private int port;
     private InetAddress hostAddress;
     private DatagramSocket dSocket;
+    private SnmpVersion version;
     
     private SnmpPacketProcessor packetProcessor;
     private SnmpMessageFactory messageFactory;
+    
+    // Requests are encoded into this buffer and sent from it directly.
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(MAXIMUM_DATAGRAM_SIZE);
+    
+    // Responses are received into buffers borrowed from this pool for each request.
+    private final SnmpBufferPool bufferPool = SnmpBufferPool.getSharedPool();
+    
+    private final RoundTripTimeEstimator roundTripTimes = new RoundTripTimeEstimator();
 
     /**
      *  Constructs a new communication object to communicate with the specified host using the
@@ -83,9 +118,10 @@ public class SnmpV1Communicator
     {
         this.hostAddress = hostAddress;
         this.port = SnmpV1Communicator.DEFAULT_SNMP_PORT;
+        this.version = version;
 
         dSocket = socket;
-        dSocket.setSoTimeout(15000);    //15 seconds
+        dSocket.setSoTimeout(timeout);
         
         packetProcessor = new SnmpPacketProcessor();
         
@@ -97,7 +133,8 @@ public class SnmpV1Communicator
     
     /**
      *  Permits setting timeout value for underlying datagram socket (in milliseconds).
-     *  The timeout must be greater than zero.
+     *  The timeout must be greater than zero. Without retries, this is how long a request
+     *  waits for its response; with retries, it is the longest any one attempt waits.
      */
     public void setTimeout(int socketTimeout) throws SocketException
     {
@@ -106,6 +143,43 @@ public class SnmpV1Communicator
             throw new IllegalArgumentException("Timeout must be greater than zero.");
         
         dSocket.setSoTimeout(socketTimeout);
+        timeout = socketTimeout;
+    }
+    
+    
+    /**
+     *  Sets how many times a request is retransmitted when no response arrives in time, before 
+     *  a SocketTimeoutException is thrown. The default is 0. With retries, the first attempt waits 
+     *  for a time estimated from the round-trip times of earlier requests to the host, and each 
+     *  retransmission waits twice as long as the one before, up to the timeout. A retransmitted
+     *  request keeps its request ID, so a late response to any attempt answers it, and further
+     *  duplicates are discarded. The number of retries must not be negative.
+     */
+    public void setRetries(int retries)
+    {
+        if (retries < 0)
+            throw new IllegalArgumentException("Retries must not be negative.");
+        
+        this.retries = retries;
+    }
+    
+    
+    /**
+     *  Gets the number of times a request is retransmitted.
+     */
+    public int getRetries()
+    {
+        return retries;
+    }
+    
+    
+    /**
+     *  Gets the smoothed round-trip time of requests to the host in milliseconds,
+     *  or 0 if none have been measured yet.
+     */
+    public long getRoundTripTime()
+    {
+        return roundTripTimes.getSmoothedRoundTripTime();
     }
     
     
@@ -123,12 +197,11 @@ public class SnmpV1Communicator
     
     
     /**
-     *  Sets the size of the buffer used to receive response packets. RFC 1157 stipulates that an SNMP
-     *  implementation must be able to receive packets of at least 484 bytes, so if you try to set the
-     *  size to a value less than this, the receive buffer size will be set to 484 bytes. In addition,
-     *  the maximum size of a UDP packet payload is 65535 bytes, so setting the buffer to a larger size
-     *  will just waste memory. The default value is 512 bytes. The value may need to be increased if
-     *  get-requests are issued for multiple OIDs.
+     *  Sets the size of the responses that GetBulk subtree walks aim for when they choose how many
+     *  repetitions to request. RFC 1157 stipulates that an SNMP implementation must be able to receive 
+     *  packets of at least 484 bytes, so if you try to set the size to a value less than this, it will be 
+     *  set to 484 bytes. The default value is 1472 bytes. Responses themselves are always received in 
+     *  full, up to the largest UDP payload, whatever this size is.
      */
     public void setReceiveBufferSize(int receiveBufferSize)
     {
@@ -137,7 +210,7 @@ public class SnmpV1Communicator
 
 
     /**
-     *  Gets the current size of the buffer used to receive response packets.
+     *  Gets the size of the responses that GetBulk subtree walks aim for.
      */
     public int getReceiveBufferSize()
     {
@@ -214,56 +287,40 @@ public class SnmpV1Communicator
         SnmpVarBindList retrievedVars = new SnmpVarBindList();
         
         SnmpMessage message = messageFactory.createMessage(getRequestType, itemIds);
-        DatagramPacket outPacket = packetProcessor.createPacket(message, hostAddress, port);
-        dSocket.send(outPacket);
+        SnmpBasicPDU receivedPDU = this.sendRequest(message, false);
 
-        while (true)    // wait until receive reply for requestID & OID (or error)
+        // Check error status; if retrieval problem, throw SNMPGetException.
+        if (receivedPDU.getErrorStatus() != ErrorStatus.NoError)
         {
-            DatagramPacket inPacket = new DatagramPacket(new byte[receiveBufferSize], receiveBufferSize);
-            dSocket.receive(inPacket);
-
-            SnmpMessage receivedMessage = packetProcessor.createMessage(inPacket);
-            SnmpBasicPDU receivedPDU = receivedMessage.getPDU();
-
-            // Check request identifier; if incorrect, just ignore packet and continue waiting.
-            if (receivedPDU.getRequestID() == messageFactory.getCurrentRequestId())
-            {
-                // Check error status; if retrieval problem, throw SNMPGetException.
-                if (receivedPDU.getErrorStatus() != ErrorStatus.NoError)
-                {
-                    // Determine error index.
-                    int errorIndex = receivedPDU.getErrorIndex();
-                    
-                    String errorFormat;
-                    if (getRequestType == SnmpBERType.SnmpGetNextRequest)
-                    	errorFormat = SnmpResources.getString("getNextRetrievalErrorMessage");
-                    else
-                    	errorFormat = SnmpResources.getString("getRetrievalErrorMessage");
-  
-                    String errorMessage = String.format(errorFormat, itemIds[errorIndex - 1]);
-                    throw new SnmpGetException(errorMessage, errorIndex, receivedPDU.getErrorStatus());
-                }
-
-                // Copy data from retrieved sequence to variable-bind list.
-                SnmpSequence varList = receivedPDU.getVarBindList();
-
-                for (int i = 0; i < varList.size(); i++)
-                {
-                    SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(i));
-                    SnmpObjectIdentifier newObjectIdentifier = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
+            // Determine error index.
+            int errorIndex = receivedPDU.getErrorIndex();
+            
+            String errorFormat;
+            if (getRequestType == SnmpBERType.SnmpGetNextRequest)
+            	errorFormat = SnmpResources.getString("getNextRetrievalErrorMessage");
+            else
+            	errorFormat = SnmpResources.getString("getRetrievalErrorMessage");
+
+            String errorMessage = String.format(errorFormat, getErrorItem(itemIds, errorIndex));
+            throw new SnmpGetException(errorMessage, errorIndex, receivedPDU.getErrorStatus());
+        }
 
-                    if (getRequestType == SnmpBERType.SnmpGetRequest && !(newObjectIdentifier.toString().equals(itemIds[i])))
-                    {
-                        // wrong OID; throw GetException
-                    	String errorMessage = String.format(SnmpResources.getString("wrongOIDReceivedErrorMessage"), itemIds[i], i, newObjectIdentifier);
-                        throw new SnmpGetException(errorMessage, i + 1, ErrorStatus.GeneralError);
-                    }
+        // Copy data from retrieved sequence to variable-bind list.
+        SnmpSequence varList = receivedPDU.getVarBindList();
 
-                    retrievedVars.addSNMPObject(newPair);
-                }
+        for (int i = 0; i < varList.size(); i++)
+        {
+            SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(i));
+            SnmpObjectIdentifier newObjectIdentifier = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
 
-                break;
+            if (getRequestType == SnmpBERType.SnmpGetRequest && !(newObjectIdentifier.toString().equals(itemIds[i])))
+            {
+                // wrong OID; throw GetException
+            	String errorMessage = String.format(SnmpResources.getString("wrongOIDReceivedErrorMessage"), itemIds[i], i, newObjectIdentifier);
+                throw new SnmpGetException(errorMessage, i + 1, ErrorStatus.GeneralError);
             }
+
+            retrievedVars.addSNMPObject(newPair);
         }
 
         return retrievedVars;
@@ -306,51 +363,34 @@ public class SnmpV1Communicator
         SnmpVarBindList retrievedVars = new SnmpVarBindList();
 
         SnmpMessage message = messageFactory.createMessage(SnmpBERType.SnmpSetRequest, itemIds, newValues);
+        SnmpBasicPDU receivedPDU = this.sendRequest(message, false);
 
-        DatagramPacket outPacket = packetProcessor.createPacket(message, hostAddress, port);
-        dSocket.send(outPacket);
-
-        while (true)    // wait until receive reply for correct OID (or error)
+        // Check error status; if retrieval problem, throw SNMPSetException.
+    	ErrorStatus error = receivedPDU.getErrorStatus();
+        if (error != ErrorStatus.NoError)
         {
-            DatagramPacket inPacket = new DatagramPacket(new byte[receiveBufferSize], receiveBufferSize);
-            dSocket.receive(inPacket);
-
-            SnmpMessage receivedMessage = packetProcessor.createMessage(inPacket);
-            SnmpBasicPDU receivedPDU = receivedMessage.getPDU();
-
-            // Check request identifier; if incorrect, just ignore packet and continue waiting.
-            if (receivedPDU.getRequestID() == messageFactory.getCurrentRequestId())
-            {
-                // Check error status; if retrieval problem, throw SNMPSetException.
-            	ErrorStatus error = receivedPDU.getErrorStatus();
-                if (error != ErrorStatus.NoError)
-                {
-                    int errorIndex = receivedPDU.getErrorIndex();
-                    handleSetError(error, errorIndex, itemIds[errorIndex - 1]);
-                }
-
-                // Copy data from retrieved sequence to var bind list.
-                SnmpSequence varList = receivedPDU.getVarBindList();
+            int errorIndex = receivedPDU.getErrorIndex();
+            throw createSetException(error, errorIndex, getErrorItem(itemIds, errorIndex));
+        }
 
-                for (int i = 0; i < varList.size(); i++)
-                {
-                    SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(i));
+        // Copy data from retrieved sequence to var bind list.
+        SnmpSequence varList = receivedPDU.getVarBindList();
 
-                    SnmpObjectIdentifier newObjectIdentifier = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
-                    //SNMPObject receivedValue = newPair.getSNMPObjectAt(1);
+        for (int i = 0; i < varList.size(); i++)
+        {
+            SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(i));
 
-                    if (newObjectIdentifier.toString().equals(itemIds[i]))
-                    {
-                        retrievedVars.addSNMPObject(newPair);
-                    }
-                    else      // wrong OID; throw exception
-                    {
-                    	String errorMessage = String.format(SnmpResources.getString("wrongOIDReceivedErrorMessage"), itemIds[i], i, newObjectIdentifier);
-                        throw new SnmpSetException(errorMessage, i + 1, ErrorStatus.GeneralError);
-                    }
-                }
+            SnmpObjectIdentifier newObjectIdentifier = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
+            //SNMPObject receivedValue = newPair.getSNMPObjectAt(1);
 
-                break;
+            if (newObjectIdentifier.toString().equals(itemIds[i]))
+            {
+                retrievedVars.addSNMPObject(newPair);
+            }
+            else      // wrong OID; throw exception
+            {
+            	String errorMessage = String.format(SnmpResources.getString("wrongOIDReceivedErrorMessage"), itemIds[i], i, newObjectIdentifier);
+                throw new SnmpSetException(errorMessage, i + 1, ErrorStatus.GeneralError);
             }
         }
 
@@ -358,13 +398,12 @@ public class SnmpV1Communicator
     }
 
     /**
-     * Handles errors received while performing an SNMP Set operation.
+     * Creates the exception for an error received while performing an SNMP Set operation.
      * @param error
      * @param errorIndex
      * @param oid
      */
-    private static void handleSetError(ErrorStatus error, int errorIndex, String oid)
-    	throws SnmpSetException
+    static SnmpSetException createSetException(ErrorStatus error, int errorIndex, String oid)
     {
     	String errorMessage = null;
     	switch (error)
@@ -390,7 +429,7 @@ public class SnmpV1Communicator
             	break;
         }
     	
-    	throw new SnmpSetException(errorMessage, errorIndex, error);
+    	return new SnmpSetException(errorMessage, errorIndex, error);
     }
     
     
@@ -411,25 +450,17 @@ public class SnmpV1Communicator
         // received.
         SnmpVarBindList retrievedVars = new SnmpVarBindList();
 
-        SnmpObjectIdentifier requestedOid = new SnmpObjectIdentifier(baseId);
+        SnmpObjectIdentifier baseOid = new SnmpObjectIdentifier(baseId);
+        SnmpObjectIdentifier requestedOid = baseOid;
 
         ErrorStatus errorStatus = ErrorStatus.NoError;
         while (errorStatus == ErrorStatus.NoError)
         {
             SnmpMessage message = messageFactory.createMessage(SnmpBERType.SnmpGetNextRequest, requestedOid);
-
-            DatagramPacket outPacket = packetProcessor.createPacket(message, hostAddress, port);
-            dSocket.send(outPacket);
-
-            DatagramPacket inPacket = new DatagramPacket(new byte[receiveBufferSize], receiveBufferSize);
-            dSocket.receive(inPacket);
-
-            SnmpMessage receivedMessage = packetProcessor.createMessage(inPacket);
-            SnmpBasicPDU receivedPDU = receivedMessage.getPDU();
+            SnmpBasicPDU receivedPDU = this.sendRequest(message, false);
             errorStatus = receivedPDU.getErrorStatus();
 
-            // Check request identifier; if incorrect, just ignore packet and continue waiting.
-            if (receivedPDU.getRequestID() == messageFactory.getCurrentRequestId() && errorStatus == ErrorStatus.NoError)
+            if (errorStatus == ErrorStatus.NoError)
             {
                 // Check error status; if retrieval problem, just break - could be there are no additional OIDs.
                 //if (receivedPDU.getErrorStatus() != 0)
@@ -439,9 +470,13 @@ public class SnmpV1Communicator
                 SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(0));
                 SnmpObjectIdentifier nextOid = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
 
-                // Now see if retrieved ID starts with table base; if not, done with table - break.
-                String newOIDString = nextOid.toString();
-                if (!newOIDString.startsWith(baseId))
+                // Now see if retrieved ID is in the table's subtree; if not, done with table - break.
+                if (!baseOid.isPrefixOf(nextOid))
+                    break;
+
+                // SNMPv2 agents return the requested OID with an endOfMibView exception past 
+                // the end of their MIB view; stop on that or any other OID that doesn't advance.
+                if (newPair.getSNMPObjectAt(1) instanceof SnmpV2ExceptionValue || nextOid.compareTo(requestedOid) <= 0)
                     break;
 
                 retrievedVars.addSNMPObject(newPair);
@@ -479,72 +514,60 @@ public class SnmpV1Communicator
         ErrorStatus errorStatus = ErrorStatus.NoError;
         int errorIndex = 0;
 
-        SnmpObjectIdentifier[] requestedObjectIdentifiers = new SnmpObjectIdentifier[baseIds.length];
+        SnmpObjectIdentifier[] baseObjectIdentifiers = new SnmpObjectIdentifier[baseIds.length];
         for (int i = 0; i < baseIds.length; i++)
-        	requestedObjectIdentifiers[i] = new SnmpObjectIdentifier(baseIds[i]);
+        	baseObjectIdentifiers[i] = new SnmpObjectIdentifier(baseIds[i]);
+        
+        SnmpObjectIdentifier[] requestedObjectIdentifiers = baseObjectIdentifiers.clone();
 
         retrievalLoop:
         while (errorStatus == ErrorStatus.NoError)
         {           
             SnmpMessage message = messageFactory.createMessage(SnmpBERType.SnmpGetNextRequest, errorStatus, errorIndex, requestedObjectIdentifiers);
+            SnmpBasicPDU receivedPDU = this.sendRequest(message, false);
 
-            DatagramPacket outPacket = packetProcessor.createPacket(message, hostAddress, port);
-            dSocket.send(outPacket);
-
-            DatagramPacket inPacket = new DatagramPacket(new byte[receiveBufferSize], receiveBufferSize);
-            dSocket.receive(inPacket);
-
-            SnmpMessage receivedMessage = packetProcessor.createMessage(inPacket);
-            SnmpBasicPDU receivedPDU = receivedMessage.getPDU();
-
-            // Check request identifier; if incorrect, just ignore packet and continue waiting.
-            if (receivedPDU.getRequestID() == messageFactory.getCurrentRequestId())
+            // Check error status; if retrieval problem for error index 1, just break - assume there are no additional OIDs.
+            // to retrieve. If index is other than 1, throw an exception.
+            if (receivedPDU.getErrorStatus() != ErrorStatus.NoError)
             {
-                // Check error status; if retrieval problem for error index 1, just break - assume there are no additional OIDs.
-                // to retrieve. If index is other than 1, throw an exception.
-                if (receivedPDU.getErrorStatus() != ErrorStatus.NoError)
-                {
-                    int retrievedErrorIndex = receivedPDU.getErrorIndex();
+                int retrievedErrorIndex = receivedPDU.getErrorIndex();
 
-                    if (retrievedErrorIndex == 1)
-                        break retrievalLoop;
+                if (retrievedErrorIndex == 1)
+                    break retrievalLoop;
                     
-                    String errorMessage = String.format(SnmpResources.getString("getNextRetrievalErrorMessage"), 
-                		requestedObjectIdentifiers[retrievedErrorIndex - 1]);
-                    throw new SnmpGetException(errorMessage, retrievedErrorIndex, receivedPDU.getErrorStatus());
-                }
-
-                // Copy data from retrieved sequence to variable-bind list.
-                SnmpSequence varList = receivedPDU.getVarBindList();
+                String errorMessage = String.format(SnmpResources.getString("getNextRetrievalErrorMessage"), 
+            		requestedObjectIdentifiers[retrievedErrorIndex - 1]);
+                throw new SnmpGetException(errorMessage, retrievedErrorIndex, receivedPDU.getErrorStatus());
+            }
 
-                // Check that the right number of variables were in reply; if not, throw GetException.
-                if (varList.size() != requestedObjectIdentifiers.length)
-                    throw new SnmpGetException(SnmpResources.getString("getIncompleteRowErrorMessage"), 0, ErrorStatus.GeneralError);
+            // Copy data from retrieved sequence to variable-bind list.
+            SnmpSequence varList = receivedPDU.getVarBindList();
 
-                // Copy the retrieved variable pairs into retrievedVars.
-                for (int i = 0; i < varList.size(); i++)
-                {
-                    SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(i));
-                    SnmpObjectIdentifier newObjectIdentifier = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
+            // Check that the right number of variables were in reply; if not, throw GetException.
+            if (varList.size() != requestedObjectIdentifiers.length)
+                throw new SnmpGetException(SnmpResources.getString("getIncompleteRowErrorMessage"), 0, ErrorStatus.GeneralError);
 
-                    // Now see if retrieved OID starts with table base; if not, done with table - break.
-                    String newOIDString = newObjectIdentifier.toString();
-                    if (!newOIDString.startsWith(baseIds[i]))
-                    {
-                        // It's the first element of the row; just break.
-                        if (i == 0) 
-                            break retrievalLoop;    
-
-                        // It's a subsequent row element; throw exception.
-                        throw new SnmpGetException(SnmpResources.getString("getIncompleteRowErrorMessage"), i + 1, ErrorStatus.GeneralError);
-                    }
+            // Copy the retrieved variable pairs into retrievedVars.
+            for (int i = 0; i < varList.size(); i++)
+            {
+                SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(i));
+                SnmpObjectIdentifier newObjectIdentifier = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
 
-                    retrievedVars.addSNMPObject(newPair);
+                // Now see if retrieved OID is in the column's subtree; if not, done with table - break.
+                if (!baseObjectIdentifiers[i].isPrefixOf(newObjectIdentifier))
+                {
+                    // It's the first element of the row; just break.
+                    if (i == 0) 
+                        break retrievalLoop;    
 
-                    // Set requested identifiers array to current identifiers to do get-next for next row.
-                    requestedObjectIdentifiers[i] = newObjectIdentifier;
+                    // It's a subsequent row element; throw exception.
+                    throw new SnmpGetException(SnmpResources.getString("getIncompleteRowErrorMessage"), i + 1, ErrorStatus.GeneralError);
                 }
 
+                retrievedVars.addSNMPObject(newPair);
+
+                // Set requested identifiers array to current identifiers to do get-next for next row.
+                requestedObjectIdentifiers[i] = newObjectIdentifier;
             }
         }
 
@@ -552,6 +575,185 @@ public class SnmpV1Communicator
     }
     
     
+    /**
+     *  Retrieves the successors of the object identifiers given in itemIds with a single SNMPv2 GetBulk
+     *  request. The first nonRepeaters OIDs are treated as in a GetNext request; for each of the remaining 
+     *  OIDs, up to maxRepetitions successive values are retrieved. The variable bindings are returned in 
+     *  the order the agent sent them, which interleaves the repeated OIDs, and may include endOfMibView 
+     *  exception values.
+     *  
+     *  @param nonRepeaters the number of leading OIDs for which only a single successor is retrieved
+     *  @param maxRepetitions the number of successors to retrieve for each of the remaining OIDs
+     *  @param itemIds one or more OIDs in dotted string form
+     *  @throws IOException when a timeout is experienced while waiting for response to request.
+     *  @throws SnmpBadValueException
+     *  @throws SnmpGetException Thrown if the values can't be retrieved; an error status of TooBig means the 
+     *  response did not fit into the agent's maximum message size or into the receive buffer.
+     */
+    public SnmpVarBindList getBulk(int nonRepeaters, int maxRepetitions, String ... itemIds)
+        throws IOException, SnmpBadValueException, SnmpGetException
+    {
+        SnmpObjectIdentifier[] requestedOids = new SnmpObjectIdentifier[itemIds.length];
+        for (int i = 0; i < itemIds.length; i++)
+            requestedOids[i] = new SnmpObjectIdentifier(itemIds[i]);
+        
+        return this.getBulk(nonRepeaters, maxRepetitions, requestedOids);
+    }
+    
+    
+    /**
+     *  Sends a GetBulk request for the given OIDs and waits for the matching response.
+     *  
+     *  @throws IOException when a timeout is experienced while waiting for response to request.
+     *  @throws SnmpBadValueException
+     *  @throws SnmpGetException Thrown if the values can't be retrieved
+     */
+    private SnmpVarBindList getBulk(int nonRepeaters, int maxRepetitions, SnmpObjectIdentifier[] requestedOids)
+        throws IOException, SnmpBadValueException, SnmpGetException
+    {
+        // GetBulk was introduced with SNMPv2; a v1 agent would just drop the request.
+        if (version == SnmpVersion.SNMPv1)
+            throw new IllegalStateException("GetBulk requests require SNMPv2.");
+        
+        if (nonRepeaters < 0 || maxRepetitions < 0)
+            throw new IllegalArgumentException("Non-repeaters and max-repetitions must not be negative.");
+        
+        SnmpVarBindList retrievedVars = new SnmpVarBindList();
+        
+        SnmpMessage message = messageFactory.createBulkMessage(nonRepeaters, maxRepetitions, requestedOids);
+        SnmpBasicPDU receivedPDU = this.sendRequest(message, true);
+        
+        // A datagram that fills the whole buffer has most likely been cut short by the socket.
+        // Report it the same way as an agent reporting a response exceeding its own limit.
+        ErrorStatus error = (receivedPDU == null) ? ErrorStatus.TooBig : receivedPDU.getErrorStatus();
+        if (error == ErrorStatus.TooBig)
+        {
+            String errorMessage = String.format(SnmpResources.getString("getBulkTooBigErrorMessage"), requestedOids[0]);
+            throw new SnmpGetException(errorMessage, 0, error);
+        }
+        else if (error != ErrorStatus.NoError)
+        {
+            int errorIndex = receivedPDU.getErrorIndex();
+            SnmpObjectIdentifier failedOid = (errorIndex > 0 && errorIndex <= requestedOids.length) 
+                    ? requestedOids[errorIndex - 1] : requestedOids[0];
+            
+            String errorMessage = String.format(SnmpResources.getString("getBulkRetrievalErrorMessage"), failedOid);
+            throw new SnmpGetException(errorMessage, errorIndex, error);
+        }
+        
+        // Copy data from retrieved sequence to variable-bind list.
+        SnmpSequence varList = receivedPDU.getVarBindList();
+        for (int i = 0; i < varList.size(); i++)
+            retrievedVars.addSNMPObject(varList.getSNMPObjectAt(i));
+        
+        return retrievedVars;
+    }
+    
+    
+    /**
+     *  Retrieves all MIB variable values whose OIDs start with the supplied baseId, like retrieveMIBTable,
+     *  but using SNMPv2 GetBulk requests so that many values are returned for each request. The number of 
+     *  repetitions requested is chosen to fill a response of the receive buffer size, using the size of 
+     *  the values returned so far, so it grows again once the values get smaller. When a response turns 
+     *  out to be too big, the repetitions are halved, and if the request was sized from values already 
+     *  returned the walk aims for smaller responses from then on, since the agent can't send responses 
+     *  of that size. The walk ends at the first OID outside the subtree, at the end of the 
+     *  agent's MIB view, or if the agent stops returning increasing OIDs.
+     *  
+     *  @throws IOException Thrown when timeout experienced while waiting for response to request.
+     *  @throws SnmpBadValueException
+     *  @throws SnmpGetException Thrown if the agent reports an error other than TooBig, or even a single 
+     *  value does not fit into a response
+     */
+    public SnmpVarBindList retrieveMIBTableBulk(String baseId)
+        throws IOException, SnmpBadValueException, SnmpGetException
+    {
+        SnmpVarBindList retrievedVars = new SnmpVarBindList();
+        
+        SnmpObjectIdentifier baseOid = new SnmpObjectIdentifier(baseId);
+        
+        SnmpObjectIdentifier requestedOid = baseOid;
+        int responseSize = receiveBufferSize;
+        int bindingSize = baseOid.getEncodedLength() + ESTIMATED_BINDING_OVERHEAD;
+        int maxRepetitions = estimateMaxRepetitions(responseSize, bindingSize);
+        boolean sizeMeasured = false;
+        
+        while (true)
+        {
+            SnmpVarBindList varList;
+            try
+            {
+                varList = this.getBulk(0, maxRepetitions, new SnmpObjectIdentifier[] { requestedOid });
+            }
+            catch (SnmpGetException e)
+            {
+                // Ask for fewer values if the response didn't fit; give up if even one doesn't.
+                if (e.errorStatus != ErrorStatus.TooBig || maxRepetitions == 1)
+                    throw e;
+                
+                // If the request was sized from the values just returned, the agent can't send a response
+                // of the size aimed for, so aim a quarter lower. Otherwise the values may simply be larger 
+                // than estimated, such as in the next column of a table.
+                if (sizeMeasured)
+                    responseSize = Math.min(responseSize, ESTIMATED_MESSAGE_OVERHEAD + maxRepetitions * bindingSize) * 3 / 4;
+                
+                maxRepetitions = Math.max(1, maxRepetitions / 2);
+                sizeMeasured = false;
+                continue;
+            }
+            
+            if (varList.size() == 0)
+                break;
+            
+            // Size the next request from the values actually returned.
+            bindingSize = Math.max(1, varList.getEncodedLength() / varList.size());
+            maxRepetitions = estimateMaxRepetitions(responseSize, bindingSize);
+            sizeMeasured = true;
+            
+            for (int i = 0; i < varList.size(); i++)
+            {
+                SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(i));
+                SnmpObjectIdentifier nextOid = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
+                
+                if (newPair.getSNMPObjectAt(1) instanceof SnmpV2ExceptionValue)
+                    return retrievedVars;
+                
+                if (!baseOid.isPrefixOf(nextOid) || nextOid.compareTo(requestedOid) <= 0)
+                    return retrievedVars;
+                
+                retrievedVars.addSNMPObject(newPair);
+                requestedOid = nextOid;
+            }
+        }
+        
+        return retrievedVars;
+    }
+    
+    
+    /**
+     *  Returns the OID an error index points at. Agents give an index of 0 for errors that aren't 
+     *  caused by one binding, such as tooBig and genErr, so the first OID is returned for those.
+     */
+    private static String getErrorItem(String[] itemIds, int errorIndex)
+    {
+        if (errorIndex > 0 && errorIndex <= itemIds.length)
+            return itemIds[errorIndex - 1];
+        
+        return (itemIds.length > 0) ? itemIds[0] : "";
+    }
+    
+    
+    /**
+     *  Estimates how many variable bindings of the given size fit into a response of the given size.
+     */
+    private static int estimateMaxRepetitions(int responseSize, int bindingSize)
+    {
+        int repetitions = (responseSize - ESTIMATED_MESSAGE_OVERHEAD) / bindingSize;
+        
+        return Math.max(1, Math.min(MAXIMUM_REPETITIONS, repetitions));
+    }
+    
+    
     /**
      *  Retrieves all MIB variable values subsequent to the starting object identifier
      *  given in startID (in dotted-integer notation). Return as SNMPVarBindList object.
@@ -568,21 +770,15 @@ public class SnmpV1Communicator
         SnmpVarBindList retrievedVars = new SnmpVarBindList();
 
         SnmpObjectIdentifier requestedOid = new SnmpObjectIdentifier(startID);
-        SnmpMessage message = messageFactory.createMessage(SnmpBERType.SnmpGetNextRequest, requestedOid);
-        
-        DatagramPacket outPacket = packetProcessor.createPacket(message, hostAddress, port);
-        dSocket.send(outPacket);
 
         ErrorStatus errorStatus = ErrorStatus.NoError;
         while (errorStatus == ErrorStatus.NoError)
         {
-            DatagramPacket inPacket = new DatagramPacket(new byte[receiveBufferSize], receiveBufferSize);
-            dSocket.receive(inPacket);
-
-            SnmpMessage receivedMessage = packetProcessor.createMessage(inPacket);
-            errorStatus = receivedMessage.getPDU().getErrorStatus();
+            SnmpMessage message = messageFactory.createMessage(SnmpBERType.SnmpGetNextRequest, requestedOid);
+            SnmpBasicPDU receivedPDU = this.sendRequest(message, false);
+            errorStatus = receivedPDU.getErrorStatus();
 
-            SnmpSequence varList = receivedMessage.getPDU().getVarBindList();
+            SnmpSequence varList = receivedPDU.getVarBindList();
             SnmpSequence newPair = (SnmpSequence)(varList.getSNMPObjectAt(0));
             SnmpObjectIdentifier nextOid = (SnmpObjectIdentifier)(newPair.getSNMPObjectAt(0));
 
@@ -592,14 +788,97 @@ public class SnmpV1Communicator
                 break;
 
             requestedOid = nextOid;
-
-            // Construct and send next packet.
-            message = messageFactory.createMessage(SnmpBERType.SnmpGetNextRequest, requestedOid);
-            outPacket = packetProcessor.createPacket(message, hostAddress, port);
-            dSocket.send(outPacket);
         }
 
         return retrievedVars;
     }
+    
+    
+    /**
+     *  Sends a request to the host and waits for the response with the same request ID. If none 
+     *  arrives in time, the request is retransmitted up to the configured number of retries. 
+     *  Responses to earlier requests, such as late duplicates of a retransmitted request, are ignored.
+     *  
+     *  @param message the request
+     *  @param allowTruncated if true, null is returned when the response fills the whole receive 
+     *  buffer and so has probably been truncated; otherwise such a response is decoded as usual
+     *  @throws SocketTimeoutException when no response arrives after all retries
+     *  @throws IOException
+     *  @throws SnmpBadValueException
+     */
+    private SnmpBasicPDU sendRequest(SnmpMessage message, boolean allowTruncated)
+        throws IOException, SnmpBadValueException
+    {
+        int requestId = messageFactory.getCurrentRequestId();
+        DatagramPacket outPacket = packetProcessor.createPacket(message, hostAddress, port, sendBuffer);
+        
+        ByteBuffer receiveBuffer = bufferPool.borrow();
+        DatagramPacket inPacket = new DatagramPacket(receiveBuffer.array(), receiveBuffer.arrayOffset(), receiveBuffer.capacity());
+        
+        try
+        {
+            return this.sendRequest(outPacket, inPacket, requestId, allowTruncated);
+        }
+        finally
+        {
+            bufferPool.release(receiveBuffer);
+        }
+    }
+    
+    
+    /**
+     *  Sends a request packet and receives responses into the given packet until one answers it.
+     */
+    private SnmpBasicPDU sendRequest(DatagramPacket outPacket, DatagramPacket inPacket, int requestId, boolean allowTruncated)
+        throws IOException, SnmpBadValueException
+    {
+        int bufferLength = inPacket.getLength();
+        
+        for (int attempt = 0; ; attempt++)
+        {
+            // Without retries, the only attempt waits for the whole timeout.
+            int attemptTimeout = (retries == 0) ? timeout : roundTripTimes.getTimeout(attempt, timeout);
+            
+            long sendTime = System.nanoTime();
+            long deadline = sendTime + attemptTimeout * 1000000L;
+            dSocket.send(outPacket);
+            
+            try
+            {
+                while (true)    // wait until receive reply for requestID
+                {
+                    long remaining = (deadline - System.nanoTime()) / 1000000L;
+                    if (remaining <= 0)
+                        throw new SocketTimeoutException("Receive timed out");
+                    
+                    dSocket.setSoTimeout((int)remaining);
+                    
+                    inPacket.setLength(bufferLength);
+                    dSocket.receive(inPacket);
+                    
+                    if (allowTruncated && inPacket.getLength() >= bufferLength)
+                        return null;
+                    
+                    SnmpBasicPDU receivedPDU = packetProcessor.createMessage(inPacket).getPDU();
+                    
+                    // Check request identifier; if incorrect, just ignore packet and continue waiting.
+                    if (receivedPDU.getRequestID() == requestId)
+                    {
+                        // The response to a retransmitted request can't be matched to one
+                        // attempt, so only first attempts give round-trip times.
+                        if (attempt == 0)
+                            roundTripTimes.addSample((System.nanoTime() - sendTime) / 1000000L);
+                        
+                        return receivedPDU;
+                    }
+                }
+            }
+            catch (SocketTimeoutException e)
+            {
+                if (attempt >= retries)
+                    throw e;
+            }
+        }
+    }
 
 }
\ No newline at end of file
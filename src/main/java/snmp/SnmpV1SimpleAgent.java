@@ -28,11 +28,11 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Vector;
 
-import snmp.datatypes.SnmpBERCodec;
 import snmp.datatypes.SnmpBERType;
 import snmp.datatypes.SnmpObject;
 import snmp.datatypes.SnmpObjectIdentifier;
@@ -57,9 +57,11 @@ import snmp.error.ErrorStatus;
  */
 public class SnmpV1SimpleAgent implements Runnable
 {
-    // largest size for datagram packet payload; based on
-    // RFC 1157, need to handle messages of at least 484 bytes
-    public int receiveBufferSize = 512;
+    /**
+     *  @deprecated requests are always received in full, whatever this size is
+     */
+    @Deprecated
+    public int receiveBufferSize = SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE;
     
     private SnmpVersion version = SnmpVersion.SNMPv1;
     
@@ -69,6 +71,10 @@ public class SnmpV1SimpleAgent implements Runnable
     
     private PrintWriter errorLogger;
     
+    private SnmpPacketProcessor packetProcessor = new SnmpPacketProcessor();
+    private final ByteBuffer sendBuffer = ByteBuffer.allocate(SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE);
+    private final SnmpBufferPool bufferPool = SnmpBufferPool.getSharedPool();
+    
     private SnmpSequence requestedVarList;
     private SnmpSequence responseVarList;
     private Hashtable<SnmpObjectIdentifier,SnmpObject> variablePairs;
@@ -175,11 +181,16 @@ public class SnmpV1SimpleAgent implements Runnable
      */
     public void run()
     {
+        DatagramPacket inPacket = new DatagramPacket(new byte[0], 0);
+        
         while (!receiveThread.isInterrupted())
         {   
+            // Each request is received into a pooled buffer, released once the response has been sent.
+            ByteBuffer receiveBuffer = bufferPool.borrow();
+            
             try
             {
-                DatagramPacket inPacket = new DatagramPacket(new byte[receiveBufferSize], receiveBufferSize);
+                inPacket.setData(receiveBuffer.array(), receiveBuffer.arrayOffset(), receiveBuffer.capacity());
                 dSocket.receive(inPacket);
                 
                 // Extract remote sender information.
@@ -187,8 +198,7 @@ public class SnmpV1SimpleAgent implements Runnable
                 int requesterPort = inPacket.getPort();
                 
                 // Extract request data.
-                byte[] encodedMessage = inPacket.getData();
-                SnmpMessage receivedMessage = new SnmpMessage(SnmpBERCodec.extractNextTLV(encodedMessage,0).value);
+                SnmpMessage receivedMessage = packetProcessor.createMessage(inPacket);
                 String communityName = receivedMessage.getCommunityName();
                 SnmpBasicPDU receivedPDU = receivedMessage.getPDU();
                 SnmpBERType requestPDUType = receivedPDU.getPDUType();
@@ -240,9 +250,7 @@ public class SnmpV1SimpleAgent implements Runnable
                 // Construct and send response.
                 SnmpBasicPDU pdu = new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, requestID, errorStatus, errorIndex, responseVarList);
                 SnmpMessage message = new SnmpMessage(version, communityName, pdu);
-                byte[] messageEncoding = message.encode();
-                
-                DatagramPacket outPacket = new DatagramPacket(messageEncoding, messageEncoding.length, requesterAddress, requesterPort);
+                DatagramPacket outPacket = packetProcessor.createPacket(message, requesterAddress, requesterPort, sendBuffer);
                 dSocket.send(outPacket);
             }
             catch (IOException e)
@@ -263,6 +271,10 @@ public class SnmpV1SimpleAgent implements Runnable
                 errorLogger.println("Exception during request processing: " + e.toString());
                 errorLogger.flush();
             }
+            finally
+            {
+                bufferPool.release(receiveBuffer);
+            }
         
         }
                 
@@ -337,13 +349,13 @@ public class SnmpV1SimpleAgent implements Runnable
     
 
     /**
-     *  Sets the size of the buffer used to receive response packets. RFC 1157 stipulates that an SNMP
-     *  implementation must be able to receive packets of at least 484 bytes, so if you try to set the
-     *  size to a value less than this, the receive buffer size will be set to 484 bytes. In addition,
-     *  the maximum size of a UDP packet payload is 65535 bytes, so setting the buffer to a larger size
-     *  will just waste memory. The default value is 512 bytes. The value may need to be increased if
-     *  get-requests are issued for multiple OIDs.
+     *  Formerly set the size of the buffer used to receive requests, which cut short larger messages. 
+     *  Requests are now received into pooled buffers that hold the largest UDP payload, so this only 
+     *  changes the value returned by getReceiveBufferSize.
+     *  
+     *  @deprecated requests are always received in full, whatever this size is
      */
+    @Deprecated
     public void setReceiveBufferSize(int receiveBufferSize)
     {
     	this.receiveBufferSize = Math.max(484, receiveBufferSize);
@@ -352,7 +364,10 @@ public class SnmpV1SimpleAgent implements Runnable
     
     /**
      *  Returns the current size of the buffer used to receive response packets. 
+     *  
+     *  @deprecated requests are always received in full, whatever this size is
      */
+    @Deprecated
     public int getReceiveBufferSize()
     {
         return receiveBufferSize;
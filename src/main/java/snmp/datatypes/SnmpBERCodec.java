@@ -22,12 +22,14 @@
 
 package snmp.datatypes;
 
-import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import snmp.SnmpResources;
 import snmp.datatypes.sequence.SnmpSequence;
 import snmp.datatypes.sequence.pdu.SnmpBasicPDU;
 import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV2BulkRequestPDU;
 import snmp.datatypes.sequence.pdu.SnmpV2InformRequestPDU;
 import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
 import snmp.error.SnmpBadValueException;
@@ -42,7 +44,8 @@ public final class SnmpBERCodec
 {    
     /** 
      *  Extracts an SNMP object given its type, length, and value triple as an SNMP TLV object.
-     *  Called by SNMP Object subclass constructors.
+     *  Called by SNMP Object subclass constructors. The object is decoded directly from the 
+     *  slice of the TLV's encoding that holds the value.
      *  
      *  @throws SnmpBadValueException Indicates byte array in value field is not interpretable for
      *  the specified SNMP object type.
@@ -50,59 +53,72 @@ public final class SnmpBERCodec
     public static SnmpObject decode(SnmpTLV tlv)
         throws SnmpBadValueException
     {
+        byte[] enc = tlv.encoding;
+        int offset = tlv.valueOffset;
+        int length = tlv.valueLength;
+        
         switch (tlv.tag)
         {
             case SnmpInteger:
-                return new SnmpInteger(tlv.value);
+                return new SnmpInteger(enc, offset, length);
             
             case SnmpSequence:
-                return new SnmpSequence(tlv.value);
+                return new SnmpSequence(enc, offset, length);
             
             case SnmpObjectIdentifier:
-                return new SnmpObjectIdentifier(tlv.value);
+                return new SnmpObjectIdentifier(enc, offset, length);
             
             case SnmpOctetString:
-                return new SnmpOctetString(tlv.value);
+                return new SnmpOctetString(enc, offset, length);
             
             case SnmpBitString:
-                return new SnmpBitString(tlv.value);
+                return new SnmpBitString(enc, offset, length);
             
             case SnmpIpAddress:
-                return new SnmpIpAddress(tlv.value);
+                return new SnmpIpAddress(enc, offset, length);
             
             case SnmpCounter32:
-                return new SnmpCounter32(tlv.value);
+                return new SnmpCounter32(enc, offset, length);
             
             case SnmpGauge32:
-                return new SnmpGauge32(tlv.value);
+                return new SnmpGauge32(enc, offset, length);
             
             case SnmpTimeTicks:
-                return new SnmpTimeTicks(tlv.value);
+                return new SnmpTimeTicks(enc, offset, length);
             
             case SnmpNsapAddress:
-                return new SnmpNSAPAddress(tlv.value);
+                return new SnmpNSAPAddress(enc, offset, length);
             
             case SnmpCounter64:
-                return new SnmpCounter64(tlv.value);
+                return new SnmpCounter64(enc, offset, length);
             
             case SnmpUInteger32:
-                return new SnmpUInteger32(tlv.value);
+                return new SnmpUInteger32(enc, offset, length);
                 
             // Fall through
             case SnmpGetRequest:
             case SnmpGetNextRequest:
             case SnmpGetResponse:
             case SnmpSetRequest:
-                return new SnmpBasicPDU(tlv.value, tlv.tag);
+                return new SnmpBasicPDU(enc, offset, length, tlv.tag);
+            
+            case SnmpV2BulkRequest:
+                return new SnmpV2BulkRequestPDU(enc, offset, length);
             
             case SnmpTrap:
-                return new SnmpV1TrapPDU(tlv.value);
+                return new SnmpV1TrapPDU(enc, offset, length);
             
             case SnmpV2Trap:
-                return new SnmpV2TrapPDU(tlv.value);
+                return new SnmpV2TrapPDU(enc, offset, length);
             
             case SnmpV2InformRequest:
-                return new SnmpV2InformRequestPDU(tlv.value);
+                return new SnmpV2InformRequestPDU(enc, offset, length);
+            
+            // Fall through
+            case SnmpNoSuchObject:
+            case SnmpNoSuchInstance:
+            case SnmpEndOfMibView:
+                return new SnmpV2ExceptionValue(tlv.tag);
             
             // Fall through
             case SnmpNull: 
@@ -110,19 +126,37 @@ public final class SnmpBERCodec
                 return new SnmpNull();
             
             default:
-                return new SnmpUnknownObject(tlv.value);
+                return new SnmpUnknownObject(enc, offset, length);
         }
     }
     
     
     /** 
      *  Extracts the type, length and value of the SNMP object whose BER encoding begins at the
-     *  specified position in the given byte array.
+     *  specified position in the given byte array. The value is copied into the TLV's value 
+     *  array; use readNextTLV to avoid the copy.
      *  
      *  @throws SnmpBadValueException if there is any problem with TLV extraction.
      */
     public static SnmpTLV extractNextTLV(byte[] enc, int position)
         throws SnmpBadValueException
+    {
+        SnmpTLV nextTLV = readNextTLV(enc, position, enc.length);
+        nextTLV.value = Arrays.copyOfRange(enc, nextTLV.valueOffset, nextTLV.valueOffset + nextTLV.valueLength);
+        return nextTLV;
+    }
+    
+    
+    /** 
+     *  Reads the type and length of the SNMP object whose BER encoding begins at the
+     *  specified position in the given byte array, without copying its value. The returned 
+     *  TLV refers to the value as an offset and length within enc. The encoding must 
+     *  end at or before limit.
+     *  
+     *  @throws SnmpBadValueException if there is any problem with TLV extraction.
+     */
+    public static SnmpTLV readNextTLV(byte[] enc, int position, int limit)
+        throws SnmpBadValueException
     {
         SnmpTLV nextTLV = new SnmpTLV();
         int currentPos = position;
@@ -152,6 +186,9 @@ public final class SnmpBERCodec
             }
             */
             
+            if (limit > enc.length)
+                throw new IndexOutOfBoundsException();
+            
             // single byte tag; extract value
             try
             {
@@ -167,11 +204,9 @@ public final class SnmpBERCodec
             
             int dataLength;
             
-            int unsignedValue = enc[currentPos];
-            if (unsignedValue < 0)
-                unsignedValue += 256;
+            int unsignedValue = enc[currentPos] & 0xFF;
                 
-            if ((unsignedValue / 128) < 1)
+            if (unsignedValue < 128)
             {
                 // single byte length; extract value
                 dataLength = unsignedValue;
@@ -179,30 +214,34 @@ public final class SnmpBERCodec
             else
             {
                 // multiple byte length; first byte's value (minus first bit) is # of length bytes
-                int numBytes = (unsignedValue % 128);
+                int numBytes = unsignedValue & 0x7F;
+                
+                // lengths that don't fit in an int can't be valid for a datagram
+                if (numBytes > 4)
+                    throw new IndexOutOfBoundsException();
                 
                 dataLength = 0;
                 
                 for (int i = 0; i < numBytes; i++)
                 {
                     currentPos++;
-                    unsignedValue = enc[currentPos];
-                    if (unsignedValue < 0)
-                        unsignedValue += 256;
-                    dataLength = dataLength * 256 + unsignedValue;
+                    dataLength = (dataLength << 8) | (enc[currentPos] & 0xFF);
                 }
             }
             
             currentPos++;    // now at start of data
             
+            // make sure the data lies entirely within the available encoding
+            if (dataLength < 0 || dataLength > limit - currentPos)
+                throw new IndexOutOfBoundsException();
+            
             // set total length
             nextTLV.length = currentPos - position + dataLength;
             
-            // extract data portion
-            
-            ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-            outBytes.write(enc, currentPos, dataLength);
-            nextTLV.value = outBytes.toByteArray();
+            // describe data portion
+            nextTLV.encoding = enc;
+            nextTLV.valueOffset = currentPos;
+            nextTLV.valueLength = dataLength;
                     
             return nextTLV;
         
@@ -226,42 +265,51 @@ public final class SnmpBERCodec
      */
     public static byte[] encodeLength(int length)
     {
-        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-        
+        byte[] encoding = new byte[getLengthOfLength(length)];
+        encodeLength(length, ByteBuffer.wrap(encoding));
+        return encoding;
+    }
+    
+    
+    /** 
+     *  Writes a length as a BER byte sequence into the given buffer at its current position.
+     */
+    public static void encodeLength(int length, ByteBuffer buffer)
+    {
         // see if can be represented in single byte
         // don't forget the first bit is the "long field test" bit!!
         if (length < 128)
         {
-            byte[] len = {(byte)length};
-            outBytes.write(len, 0, 1);
+            buffer.put((byte)length);
         }
         else
         {
             // too big for one byte
-            // see how many are needed:
-            int numBytes = 0;
-            int temp = length;
-            while (temp > 0)
-            {
-                ++numBytes;
-                temp = (int)Math.floor(temp / 256);
-            }
+            int numBytes = getLengthOfLength(length) - 1;
             
-            byte num = (byte)numBytes;
-            num += 128;        // set the "long format" bit
-            outBytes.write(num);
+            // set the "long format" bit
+            buffer.put((byte)(numBytes | 0x80));
             
-            byte[] len = new byte[numBytes];
             for (int i = numBytes - 1; i >= 0; --i)
-            {
-                len[i] = (byte)(length % 256);
-                length = (int)Math.floor(length / 256);
-            }
-            outBytes.write(len, 0, numBytes);
-            
+                buffer.put((byte)(length >>> (8 * i)));
         }
+    }
+    
+    
+    /** 
+     *  Returns the number of bytes needed to BER encode the given length.
+     */
+    public static int getLengthOfLength(int length)
+    {
+        if (length < 128)
+            return 1;
+        
+        // one byte for the count of length bytes, followed by the length bytes themselves
+        int numBytes = 0;
+        for (int temp = length; temp > 0; temp >>>= 8)
+            ++numBytes;
         
-        return outBytes.toByteArray();
+        return numBytes + 1;
     }
     
-}
\ No newline at end of file
+}
@@ -51,6 +51,11 @@ public enum SnmpBERType
     SnmpNsapAddress((byte)0x45),
     SnmpCounter64((byte)0x46),
     SnmpUInteger32((byte)0x47),
+    
+    // SNMPv2 variable binding exceptions
+    SnmpNoSuchObject((byte)0x80),
+    SnmpNoSuchInstance((byte)0x81),
+    SnmpEndOfMibView((byte)0x82),
 
     // BER PDU Message types
     SnmpGetRequest((byte)0xA0),
@@ -58,4 +58,14 @@ public class SnmpBitString extends SnmpOctetString
         decode(encoding);
     }
     
+    
+    /**
+     *  Creates a bit string from a slice of a retrieved BER encoding.
+     */
+    public SnmpBitString(byte[] encoding, int offset, int length)
+    {
+    	tag = SnmpBERType.SnmpBitString;
+        decode(encoding, offset, length);
+    }
+    
 }
\ No newline at end of file
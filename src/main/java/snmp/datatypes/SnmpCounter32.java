@@ -22,7 +22,7 @@
 
 package snmp.datatypes;
 
-import java.math.*;
+import java.math.BigInteger;
 
 import snmp.error.SnmpBadValueException;
 
@@ -37,7 +37,7 @@ import snmp.error.SnmpBadValueException;
 public class SnmpCounter32 extends SnmpInteger
 {
     // maximum value is 2^32 - 1
-    private static BigInteger maxValue = new BigInteger("4294967295");
+    private static final long MAX_VALUE = 0xFFFFFFFFL;
     
     /** 
      *  Initializes value to 0.
@@ -52,10 +52,7 @@ public class SnmpCounter32 extends SnmpInteger
     {
         tag = SnmpBERType.SnmpCounter32;
         
-        value = new BigInteger(Long.valueOf(newValue).toString());
-        
-        // wrap if value > maxValue
-        value = value.mod(maxValue);
+        setLongValue(newValue);
     }
     
     
@@ -72,14 +69,27 @@ public class SnmpCounter32 extends SnmpInteger
         tag = SnmpBERType.SnmpCounter32;
         
         decodeValue(encodedValue);
+    }
+    
+    
+    /** 
+     *  Initializes from the BER encoding held in a slice of a larger array, usually the
+     *  buffer of a received packet.
+     *  
+     *  @throws SnmpBadValueException Indicates an invalid BER encoding supplied. Shouldn't
+     *  occur in normal operation, i.e., when valid responses are received from devices.
+     */
+    public SnmpCounter32(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        tag = SnmpBERType.SnmpCounter32;
         
-        // wrap if value > maxValue
-        value = value.mod(maxValue);
+        decodeValue(encoding, offset, length);
     }
     
     
     /** 
-     *  Sets the value with an instance of java.lang.Integer or
+     *  Sets the value with an instance of java.lang.Integer, java.lang.Long or
      *  java.lang.BigInteger. The value of the constructed SNMPCounter32 object is the
      *  supplied value mod 2^32.
      *  
@@ -89,22 +99,30 @@ public class SnmpCounter32 extends SnmpInteger
     public void setValue(Object newValue)
         throws SnmpBadValueException
     {
-        if (newValue instanceof BigInteger)
-        {
-            value = (BigInteger)newValue;
-            value = value.mod(maxValue);    // wrap when value exceeds 2^32
-        }
-        else if (newValue instanceof Integer)
-        {
-            value = new BigInteger(newValue.toString());
-            value = value.mod(maxValue);    // wrap when value exceeds 2^32
-        }
-        else if (newValue instanceof String)
-        {
-            value = new BigInteger((String)newValue);
-            value = value.mod(maxValue);    // wrap when value exceeds 2^32
-        }
-        else
+        if (!isIntegerValue(newValue))
             throw new SnmpBadValueException(" Counter32: bad object supplied to set value ");
+        
+        setIntegerValue(newValue);
+    }
+    
+    
+    @Override
+    protected void setLongValue(long newValue)
+    {
+        super.setLongValue(newValue & MAX_VALUE);    // wrap when value exceeds 2^32 - 1
+    }
+    
+    
+    @Override
+    protected void setUnsignedLongValue(long newValue)
+    {
+        setLongValue(newValue);
+    }
+    
+    
+    @Override
+    protected void setBigIntegerValue(BigInteger newValue)
+    {
+        setLongValue(newValue.longValue());
     }
 }
\ No newline at end of file
@@ -22,7 +22,7 @@
 
 package snmp.datatypes;
 
-import java.math.*;
+import java.math.BigInteger;
 
 import snmp.error.SnmpBadValueException;
 
@@ -30,14 +30,12 @@ import snmp.error.SnmpBadValueException;
  *  Defines a 64-bit counter, whose value wraps if initialized with a larger
  *  value. For an indicator which "pegs" at its maximum value if initialized with
  *  a larger value, use SNMPGauge32; for a counter with a smaller range, use SNMPCounter32.
+ *  The value is held in a long that is read as unsigned, so no BigInteger is needed for it.
  *  @see snmp.datatypes.SnmpGauge32
  *  @see snmp.datatypes.SnmpCounter32
  */
 public class SnmpCounter64 extends SnmpInteger
 {
-    // maximum value is 2^64 - 1; using approximation!!
-    private static BigInteger maxValue = new BigInteger("18446744070000000000");
-    
     /** 
      *  Initializes value to 0.
      */
@@ -51,17 +49,14 @@ public class SnmpCounter64 extends SnmpInteger
     {
         tag = SnmpBERType.SnmpCounter64;
         
-        value = new BigInteger(Long.valueOf(newValue).toString());
-        
-        // wrap if value > maxValue
-        value = value.mod(maxValue);
+        setLongValue(newValue);
     }
     
     
     /** 
      *  Initializes from the BER encoding, usually received in a response from 
      *  an SNMP device responding to an SNMPGetRequest.
-     * 
+     *  
      *  @throws SnmpBadValueException Indicates an invalid BER encoding supplied. Shouldn't
      *  occur in normal operation, i.e., when valid responses are received from devices.
      */
@@ -71,39 +66,60 @@ public class SnmpCounter64 extends SnmpInteger
         tag = SnmpBERType.SnmpCounter64;
         
         decodeValue(encodedValue);
+    }
+    
+    
+    /** 
+     *  Initializes from the BER encoding held in a slice of a larger array, usually the
+     *  buffer of a received packet.
+     *  
+     *  @throws SnmpBadValueException Indicates an invalid BER encoding supplied. Shouldn't
+     *  occur in normal operation, i.e., when valid responses are received from devices.
+     */
+    public SnmpCounter64(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        tag = SnmpBERType.SnmpCounter64;
         
-        // wrap if value > maxValue
-        value = value.mod(maxValue);
+        decodeValue(encoding, offset, length);
     }
     
     
     /** 
-     *  Sets the value with an instance of java.lang.Integer or
+     *  Sets the value with an instance of java.lang.Integer, java.lang.Long or
      *  java.lang.BigInteger. The value of the constructed SNMPCounter64 object is the
      *  supplied value mod 2^64.
      *  
      *  @throws SnmpBadValueException Indicates an incorrect object type supplied.
-    */
+     */
     @Override
     public void setValue(Object newValue)
         throws SnmpBadValueException
     {
-        if (newValue instanceof BigInteger)
-        {
-            value = (BigInteger)newValue;
-            value = value.mod(maxValue);    // wrap when value exceeds 2^64
-        }
-        else if (newValue instanceof Integer)
-        {
-            value = new BigInteger(newValue.toString());
-            value = value.mod(maxValue);    // wrap when value exceeds 2^64
-        }
-        else if (newValue instanceof String)
-        {
-            value = new BigInteger((String)newValue);
-            value = value.mod(maxValue);    // wrap when value exceeds 2^64
-        }
-        else
+        if (!isIntegerValue(newValue))
             throw new SnmpBadValueException(" Counter64: bad object supplied to set value ");
+        
+        setIntegerValue(newValue);
+    }
+    
+    
+    @Override
+    protected void setUnsignedLongValue(long newValue)
+    {
+        setLongValue(newValue);
+    }
+    
+    
+    @Override
+    protected void setBigIntegerValue(BigInteger newValue)
+    {
+        setLongValue(newValue.longValue());    // wrap when value exceeds 2^64 - 1
+    }
+    
+    
+    @Override
+    protected boolean isUnsigned()
+    {
+        return true;
     }
 }
\ No newline at end of file
@@ -22,7 +22,7 @@
 
 package snmp.datatypes;
 
-import java.math.*;
+import java.math.BigInteger;
 
 import snmp.error.SnmpBadValueException;
 
@@ -36,8 +36,8 @@ import snmp.error.SnmpBadValueException;
  */
 public class SnmpGauge32 extends SnmpInteger
 {
-    // maximum value is 2^32 - 1 (hack w/ 4*107...)
-    private static BigInteger maxValue = new BigInteger("4294967295");
+    // maximum value is 2^32 - 1
+    private static final long MAX_VALUE = 0xFFFFFFFFL;
     
     /** 
      *  Initializes value to 0.
@@ -52,10 +52,7 @@ public class SnmpGauge32 extends SnmpInteger
     {
         tag = SnmpBERType.SnmpGauge32;
         
-        value = new BigInteger(Long.valueOf(newValue).toString());
-        
-        // peg if value > maxValue
-        value = value.min(maxValue);
+        setLongValue(newValue);
     }
     
     
@@ -72,40 +69,63 @@ public class SnmpGauge32 extends SnmpInteger
         tag = SnmpBERType.SnmpGauge32;
         
         decodeValue(encodedValue);
+    }
+    
+    
+    /** 
+     *  Initializes from the BER encoding held in a slice of a larger array, usually the
+     *  buffer of a received packet.
+     *  
+     *  @throws SnmpBadValueException Indicates an invalid BER encoding supplied. Shouldn't
+     *  occur in normal operation, i.e., when valid responses are received from devices.
+     */
+    public SnmpGauge32(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        tag = SnmpBERType.SnmpGauge32;
         
-        // peg if value > maxValue
-        value = value.min(maxValue);
+        decodeValue(encoding, offset, length);
     }
     
     
     /** 
-     *  Sets the value with an instance of java.lang.Integer or
+     *  Sets the value with an instance of java.lang.Integer, java.lang.Long or
      *  java.lang.BigInteger. The value of the constructed SNMPGauge32 object is the
-     *  supplied value or 2^32, whichever is less.
-     * 
+     *  supplied value or 2^32 - 1, whichever is less.
+     *  
      *  @throws SnmpBadValueException Indicates an incorrect object type supplied.
      */
     @Override
     public void setValue(Object newValue)
         throws SnmpBadValueException
     {
-        // plateau when value hits maxValue
-        if (newValue instanceof BigInteger)
-        {
-            value = (BigInteger)newValue;
-            value = value.min(maxValue);
-        }
-        else if (newValue instanceof Integer)
-        {
-            value = new BigInteger(newValue.toString());
-            value = value.min(maxValue);
-        }
-        else if (newValue instanceof String)
-        {
-            value = new BigInteger((String)newValue);
-            value = value.min(maxValue);
-        }
-        else
+        if (!isIntegerValue(newValue))
             throw new SnmpBadValueException(" Gauge32: bad object supplied to set value ");
+        
+        setIntegerValue(newValue);
+    }
+    
+    
+    @Override
+    protected void setLongValue(long newValue)
+    {
+        super.setLongValue(Math.min(newValue, MAX_VALUE));    // peg if value > maxValue
+    }
+    
+    
+    @Override
+    protected void setUnsignedLongValue(long newValue)
+    {
+        setLongValue(MAX_VALUE);    // always larger than 2^32 - 1
+    }
+    
+    
+    @Override
+    protected void setBigIntegerValue(BigInteger newValue)
+    {
+        if (newValue.signum() > 0 && newValue.bitLength() > 32)
+            setLongValue(MAX_VALUE);
+        else
+            super.setBigIntegerValue(newValue);
     }
 }
\ No newline at end of file
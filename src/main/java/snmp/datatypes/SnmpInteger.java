@@ -23,23 +23,33 @@
 package snmp.datatypes;
 
 import java.math.*;
-import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import snmp.error.SnmpBadValueException;
 
 
 /** 
- *  Defines an arbitrarily-sized integer value; there is no limit on size due to the use
- *  of Java.lang.BigInteger to store the value internally. For an indicator which "pegs" at its 
- *  maximum value if initialized with a larger value, use SNMPGauge32; for a counter which wraps,
- *  use SNMPCounter32 or SNMPCounter64.
+ *  Defines an arbitrarily-sized integer value. Values that fit in 64 bits, which covers every 
+ *  32- and 64-bit SNMP integer type, are held in a long, and a java.lang.BigInteger is only 
+ *  created when one is asked for; larger values are held in a BigInteger. For an indicator which 
+ *  "pegs" at its maximum value if initialized with a larger value, use SNMPGauge32; for a counter 
+ *  which wraps, use SNMPCounter32 or SNMPCounter64.
  *  @see snmp.datatypes.SnmpCounter32
  *  @see snmp.datatypes.SnmpGauge32
  *  @see snmp.datatypes.SnmpCounter64
  */
 public class SnmpInteger extends SnmpObject
 {
-    protected BigInteger value;
+    private static final BigInteger TWO_TO_THE_64 = BigInteger.ONE.shiftLeft(64);
+    
+    // The value when it fits in a long; unsigned types read it as an unsigned long.
+    protected long value;
+    
+    // The value when it doesn't fit in a long, and otherwise the value as last returned by getValue.
+    private BigInteger bigValue;
+    private boolean isLarge = false;
+    
     protected SnmpBERType tag = SnmpBERType.SnmpInteger;
     
     /** 
@@ -53,13 +63,13 @@ public class SnmpInteger extends SnmpObject
 
     public SnmpInteger(long value)
     {
-        this.value = new BigInteger(Long.valueOf(value).toString());
+        this.value = value;
     }
     
     
     public SnmpInteger(BigInteger value)
     {
-        this.value = value;
+        setBigIntegerValue(value);
     }
     
     
@@ -76,6 +86,20 @@ public class SnmpInteger extends SnmpObject
         decodeValue(encodedValue);
     }    
     
+    
+    /** 
+     *  Initializes from the BER encoding held in a slice of a larger array, usually the
+     *  buffer of a received packet.
+     *  
+     *  @throws SnmpBadValueException Indicates an invalid BER encoding supplied. Shouldn't
+     *  occur in normal operation, i.e., when valid responses are received from devices.
+     */
+    public SnmpInteger(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        decodeValue(encoding, offset, length);
+    }
+    
 
     /** 
      *  Returns a java.lang.BigInteger object with the current value.
@@ -83,29 +107,116 @@ public class SnmpInteger extends SnmpObject
     @Override
     public Object getValue()
     {
-        return value;
+        if (bigValue == null)
+        {
+            bigValue = BigInteger.valueOf(value);
+            if (isUnsigned() && value < 0)
+                bigValue = bigValue.add(TWO_TO_THE_64);
+        }
+        
+        return bigValue;
+    }
+    
+    
+    /** 
+     *  Returns the low 64 bits of the value, so that Counter64 values above 2^63 - 1 
+     *  are returned as negative numbers whose unsigned interpretation is the value.
+     */
+    public long longValue()
+    {
+        return isLarge ? bigValue.longValue() : value;
     }
     
     
     /** 
-     *  Sets the value with an instance of java.lang.Integer or
-     *  java.lang.BigInteger.
+     *  Sets the value with an instance of java.lang.Integer, java.lang.Long or
+     *  java.lang.BigInteger, or a String holding a decimal number.
      *  
      *  @throws SnmpBadValueException Indicates an incorrect object type supplied.
      */
     @Override
     public void setValue(Object newValue)
         throws SnmpBadValueException
+    {
+        if (!isIntegerValue(newValue))
+            throw new SnmpBadValueException(" Integer: bad object supplied to set value ");
+        
+        setIntegerValue(newValue);
+    }
+    
+    
+    /** 
+     *  Checks whether an object is of a type accepted by setValue.
+     */
+    protected static boolean isIntegerValue(Object newValue)
+    {
+        return newValue instanceof BigInteger || newValue instanceof Integer 
+            || newValue instanceof Long || newValue instanceof String;
+    }
+    
+    
+    /** 
+     *  Sets the value from an object accepted by isIntegerValue, through setLongValue or 
+     *  setBigIntegerValue.
+     */
+    protected void setIntegerValue(Object newValue)
     {
         if (newValue instanceof BigInteger)
-            value = (BigInteger)newValue;
-        else if (newValue instanceof Integer)
-            value = new BigInteger(((Integer)newValue).toString());
+            setBigIntegerValue((BigInteger)newValue);
         else if (newValue instanceof String)
-            value = new BigInteger((String)newValue);
+            setBigIntegerValue(new BigInteger((String)newValue));
         else
-            
-            throw new SnmpBadValueException(" Integer: bad object supplied to set value ");
+            setLongValue(((Number)newValue).longValue());
+    }
+    
+    
+    /** 
+     *  Sets the value. Subclasses with a limited range override this to wrap or peg the value.
+     */
+    protected void setLongValue(long newValue)
+    {
+        value = newValue;
+        bigValue = null;
+        isLarge = false;
+    }
+    
+    
+    /** 
+     *  Sets the value from the unsigned interpretation of a long, as decoded from a 9-byte 
+     *  encoding. Unsigned 64-bit types override this to store the value without a BigInteger.
+     */
+    protected void setUnsignedLongValue(long newValue)
+    {
+        if (newValue >= 0)
+            setLongValue(newValue);
+        else
+            setBigIntegerValue(BigInteger.valueOf(newValue).add(TWO_TO_THE_64));
+    }
+    
+    
+    /** 
+     *  Sets the value. Subclasses with a limited range override this to wrap or peg the value.
+     */
+    protected void setBigIntegerValue(BigInteger newValue)
+    {
+        if (newValue.bitLength() < 64)
+        {
+            setLongValue(newValue.longValue());
+        }
+        else
+        {
+            bigValue = newValue;
+            isLarge = true;
+        }
+    }
+    
+    
+    /** 
+     *  Returns true if the value is held as an unsigned 64-bit quantity, as for Counter64.
+     */
+    protected boolean isUnsigned()
+    {
+        return false;
     }
     
     
@@ -115,21 +226,65 @@ public class SnmpInteger extends SnmpObject
     @Override
     public byte[] encode()
     {
-        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-        
-        // write contents    
-        // boy, was THIS easy! Love that Java!
-        byte[] data = value.toByteArray();
-        
-        // calculate encoding for length of data
-        byte[] len = SnmpBERCodec.encodeLength(data.length);
+        byte[] encoding = new byte[getEncodedLength()];
+        encode(ByteBuffer.wrap(encoding));
+        return encoding;
+    }
+    
+    
+    /** 
+     *  Writes the full BER encoding (type, length, value) of the SNMPInteger subclass
+     *  into the given buffer.
+     */
+    @Override
+    public void encode(ByteBuffer buffer)
+    {
+        int dataLength = getValueLength();
         
         // encode T,L,V info
-        outBytes.write(tag.getByte());
-        outBytes.write(len, 0, len.length);
-        outBytes.write(data, 0, data.length);
+        buffer.put(tag.getByte());
+        SnmpBERCodec.encodeLength(dataLength, buffer);
+        
+        if (isLarge)
+        {
+            buffer.put(bigValue.toByteArray());
+        }
+        else
+        {
+            // write the minimal two's complement representation, most significant byte first;
+            // an unsigned value with its top bit set gets a leading zero byte
+            if (dataLength > 8)
+                buffer.put((byte)0);
+            
+            for (int i = Math.min(dataLength, 8) - 1; i >= 0; --i)
+                buffer.put((byte)(value >> (8 * i)));
+        }
+    }
+    
+    
+    @Override
+    public int getEncodedLength()
+    {
+        int dataLength = getValueLength();
+        return 1 + SnmpBERCodec.getLengthOfLength(dataLength) + dataLength;
+    }
+    
     
-        return outBytes.toByteArray();
+    /** 
+     *  Returns the number of bytes in the minimal two's complement encoding of the value,
+     *  which is the same as the length of getValue().toByteArray().
+     */
+    private int getValueLength()
+    {
+        if (isLarge)
+            return bigValue.bitLength() / 8 + 1;
+        
+        if (isUnsigned() && value < 0)
+            return 9;
+        
+        // the number of bits needed besides the sign bit
+        int bitLength = 64 - Long.numberOfLeadingZeros(value ^ (value >> 63));
+        return bitLength / 8 + 1;
     }
     
     
@@ -142,26 +297,87 @@ public class SnmpInteger extends SnmpObject
      */
     public void decodeValue(byte[] encodedValue) throws SnmpBadValueException
     {
-        try
+        decodeValue(encodedValue, 0, encodedValue.length);
+    }
+    
+    
+    /** 
+     *  Extracts a value from the BER encoding of the value held in a slice of a larger array.
+     *  Values of up to 8 bytes, and 9-byte values with a leading zero such as large Counter64 
+     *  values, are accumulated directly into a long without an intermediate copy.
+     *  
+     *  @throws SnmpBadValueException Indicates an invalid BER encoding supplied. Shouldn't
+     *  occur in normal operation, i.e., when valid responses are received from devices.
+     */
+    public void decodeValue(byte[] encoding, int offset, int length) throws SnmpBadValueException
+    {
+        if (length <= 0)
+            throw new SnmpBadValueException(" Integer: bad BER encoding supplied to set value ");
+        
+        if (length <= 8)
         {
-            value = new BigInteger(encodedValue);
+            // two's complement: the first byte carries the sign
+            long decoded = encoding[offset];
+            for (int i = 1; i < length; i++)
+                decoded = (decoded << 8) | (encoding[offset + i] & 0xFF);
+            
+            setLongValue(decoded);
         }
-        catch (NumberFormatException e)
+        else if (length == 9 && encoding[offset] == 0)
         {
-            throw new SnmpBadValueException(" Integer: bad BER encoding supplied to set value ");
+            long decoded = 0;
+            for (int i = 1; i < length; i++)
+                decoded = (decoded << 8) | (encoding[offset + i] & 0xFF);
+            
+            setUnsignedLongValue(decoded);
+        }
+        else
+        {
+            setBigIntegerValue(new BigInteger(Arrays.copyOfRange(encoding, offset, offset + length)));
         }
     }
     
+    
+    @Override
+    public boolean equals(Object other)
+    {
+        if (this == other)
+            return true;
+        
+        if (other == null || !this.getClass().equals(other.getClass()))
+            return false;
+        
+        SnmpInteger otherInteger = (SnmpInteger)other;
+        if (isLarge || otherInteger.isLarge)
+            return isLarge == otherInteger.isLarge && bigValue.equals(otherInteger.bigValue);
+        
+        return value == otherInteger.value;
+    }
+    
+    
+    @Override
+    public int hashCode()
+    {
+        return isLarge ? bigValue.hashCode() : Long.hashCode(value);
+    }
+    
+    
     @Override
     public String toString()
     {
-        return value.toString();
+        if (isLarge)
+            return bigValue.toString();
+        
+        return isUnsigned() ? Long.toUnsignedString(value) : Long.toString(value);
     }
     
 
     public String toString(int radix)
     {
-        return value.toString(radix);
+        if (isLarge)
+            return bigValue.toString(radix);
+        
+        return isUnsigned() ? Long.toUnsignedString(value, radix) : Long.toString(value, radix);
     }
     
 }
\ No newline at end of file
@@ -92,6 +92,24 @@ public class SnmpIpAddress extends SnmpOctetString
     }
     
     
+    /** 
+     *  Initializes from the BER encoding held in a slice of a larger array, usually the
+     *  buffer of a received packet.
+     *  
+     *  @throws SnmpBadValueException Indicates an invalid slice supplied: must have length 4.
+     */
+    public SnmpIpAddress(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        tag = SnmpBERType.SnmpIpAddress;
+        
+        if (length == 4)
+            data = Arrays.copyOfRange(encoding, offset, offset + length);
+        else        // wrong size
+            throw new SnmpBadValueException(" IPAddress: bad BER encoding supplied to set value ");
+    }
+    
+    
     /** 
      *  Sets the value from a byte array containing the address.
      *  
@@ -75,6 +75,23 @@ public class SnmpNSAPAddress extends SnmpOctetString
     }
     
     
+    /** 
+     *  Initializes from the BER encoding held in a slice of a larger array, usually the
+     *  buffer of a received packet.
+     *  
+     *  @throws SnmpBadValueException Indicates an invalid slice supplied: must have length 6.
+     */
+    public SnmpNSAPAddress(byte[] encoding, int offset, int length)  throws SnmpBadValueException
+    {
+        tag = SnmpBERType.SnmpNsapAddress;
+        
+        if (length == 6)
+            data = Arrays.copyOfRange(encoding, offset, offset + length);
+        else        // wrong size
+            throw new SnmpBadValueException(" NSAPAddress: bad BER encoding supplied to set value ");
+    }
+    
+    
     /** 
      * Sets the value from a byte array containing the address.
      *  
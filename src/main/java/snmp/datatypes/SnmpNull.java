@@ -22,6 +22,8 @@
 
 package snmp.datatypes;
 
+import java.nio.ByteBuffer;
+
 import snmp.error.SnmpBadValueException;
 
 
@@ -73,6 +75,24 @@ public class SnmpNull extends SnmpObject
     }
     
     
+    /**
+     *  Writes the BER encoding for a null object into the given buffer.
+     */
+    @Override
+    public void encode(ByteBuffer buffer)
+    {
+        buffer.put(SnmpBERType.SnmpNull.getByte());
+        buffer.put((byte)0);
+    }
+    
+    
+    @Override
+    public int getEncodedLength()
+    {
+        return 2;
+    }
+    
+    
     /**
      *  Checks just that both are instances of SNMPNull (no embedded value to check).
      */
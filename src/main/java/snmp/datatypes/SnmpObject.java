@@ -22,6 +22,8 @@
 
 package snmp.datatypes;
 
+import java.nio.ByteBuffer;
+
 import snmp.error.SnmpBadValueException;
 
 
@@ -58,6 +60,31 @@ public abstract class SnmpObject
     public abstract byte[] encode();
     
     
+    /** 
+     *  Writes the BER byte encoding (type, length, value) of an SNMP object into the
+     *  given buffer at its current position. Subclasses override this to write their
+     *  encoding directly; the default implementation copies the result of encode().
+     *  
+     *  @throws java.nio.BufferOverflowException if the buffer does not have enough
+     *  space remaining for the encoding.
+     */
+    public void encode(ByteBuffer buffer)
+    {
+        buffer.put(encode());
+    }
+    
+    
+    /** 
+     *  Returns the number of bytes in the BER encoding (type, length, value) of an SNMP
+     *  object, so that space can be reserved before encoding. Subclasses override this 
+     *  to compute the length without encoding; the default implementation encodes.
+     */
+    public int getEncodedLength()
+    {
+        return encode().length;
+    }
+    
+    
     /**
      *  Compares two SNMPObject subclass objects by checking their values for equality.
      */
@@ -22,19 +22,30 @@
 
 package snmp.datatypes;
 
-import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
+import utilities.Interner;
+
 import snmp.error.SnmpBadValueException;
-import utilities.Strings;
 
 /**
  *  Class representing ASN.1 object identifiers. These are unbounded sequences (arrays) of
- *  natural numbers, written as dot-separated strings.
+ *  natural numbers, written as dot-separated strings. SNMP limits each component to 32 bits 
+ *  (RFC 2578), so components are held as unsigned values in an int array, and the hash code 
+ *  is cached. Identifiers are ordered component by component, the order of an agent's MIB view.
  */
-public class SnmpObjectIdentifier extends SnmpObject
+public class SnmpObjectIdentifier extends SnmpObject 
+                                  implements Comparable<SnmpObjectIdentifier>
 {
-    private long[] digits;    // array of longs
+    /** The largest value of a component. */
+    public static final long MAXIMUM_SUB_IDENTIFIER = 0xFFFFFFFFL;
+    
+    private static final Interner<SnmpObjectIdentifier> internedIdentifiers = new Interner<SnmpObjectIdentifier>(65536);
+    
+    private int[] digits;    // components, read as unsigned
+    private int hash = 0;    // 0 until computed
+    private boolean isInterned = false;
 
     protected SnmpBERType tag = SnmpBERType.SnmpObjectIdentifier;
 
@@ -43,7 +54,7 @@ public class SnmpObjectIdentifier extends SnmpObject
      */
     public SnmpObjectIdentifier()
     {
-        digits = new long[0];
+        digits = new int[0];
     }
 
     
@@ -56,7 +67,7 @@ public class SnmpObjectIdentifier extends SnmpObject
     public SnmpObjectIdentifier(String digitString)
         throws SnmpBadValueException
     {
-        this.digits = SnmpObjectIdentifier.parseObjectIdentifier(digitString);
+        this.digits = SnmpObjectIdentifier.parseDigits(digitString);
     }
 
 
@@ -69,17 +80,7 @@ public class SnmpObjectIdentifier extends SnmpObject
     public SnmpObjectIdentifier(int[] digits)
         throws SnmpBadValueException
     {
-        long[] longDigits = new long[digits.length];
-
-        for (int i = 0; i < digits.length; i++)
-        {
-            if (digits[i] < 0)
-                throw new SnmpBadValueException("Negative value supplied for SNMPObjectIdentifier.");
-
-            longDigits[i] = digits[i];
-        }
-
-        this.digits = longDigits;
+        this.digits = SnmpObjectIdentifier.copyDigits(digits);
     }
 
     
@@ -87,19 +88,12 @@ public class SnmpObjectIdentifier extends SnmpObject
      *  Creates a new object identifier from the supplied array of nonegative
      *  long values.
      *  
-     *  @throws SnmpBadValueException Negative value(s) supplied.
+     *  @throws SnmpBadValueException Negative value(s) or values larger than 32 bits supplied.
      */
     public SnmpObjectIdentifier(long[] newDigits)
         throws SnmpBadValueException
     {
-    	this.digits = new long[newDigits.length];
-        for (int i = 0; i < newDigits.length; i++)
-        {
-            if (newDigits[i] < 0)
-                throw new SnmpBadValueException("Negative value supplied for SNMPObjectIdentifier.");
-            
-            this.digits[i] = newDigits[i];
-        }
+        this.digits = SnmpObjectIdentifier.copyDigits(newDigits);
     }
 
 
@@ -113,17 +107,35 @@ public class SnmpObjectIdentifier extends SnmpObject
     public SnmpObjectIdentifier(byte[] encoding)
         throws SnmpBadValueException
     {
-        extractFromBEREncoding(encoding);
+        extractFromBEREncoding(encoding, 0, encoding.length);
     }
 
 
     /**
-     *  Returns array of integers corresponding to components of identifier.
+     *  Initializes from the BER encoding held in a slice of a larger array, usually the
+     *  buffer of a received packet.
+     *  
+     *  @throws SnmpBadValueException Indicates an invalid BER encoding supplied. Shouldn't
+     *  occur in normal operation, i.e., when valid responses are received from devices.
+     */
+    public SnmpObjectIdentifier(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        extractFromBEREncoding(encoding, offset, length);
+    }
+
+
+    /**
+     *  Returns a new array of longs corresponding to components of identifier.
      */
     @Override
     public Object getValue()
     {
-        return digits;
+        long[] longDigits = new long[digits.length];
+        for (int i = 0; i < digits.length; i++)
+            longDigits[i] = digits[i] & MAXIMUM_SUB_IDENTIFIER;
+        
+        return longDigits;
     }
 
 
@@ -132,46 +144,94 @@ public class SnmpObjectIdentifier extends SnmpObject
      *  a String containing a dot-separated sequence of nonegative values.
      *  
      *  @throws SnmpBadValueException Indicates an incorrect object type supplied, or negative array
-     *  elements, or an incorrectly formatted String.
+     *  elements, or an incorrectly formatted String, or an interned identifier.
      */
     @Override
     public void setValue(Object newDigits)
         throws SnmpBadValueException
     {
+        if (isInterned)
+            throw new SnmpBadValueException(" Object Identifier: an interned identifier can't be changed ");
+        
         if (newDigits instanceof long[])
-        {
-        	long[] longDigits = (long[])newDigits;
-        	
-        	this.digits = new long[longDigits.length];
-            for (int i = 0; i < longDigits.length; i++)
-            {
-                if (longDigits[i] < 0)
-                    throw new SnmpBadValueException("Negative value supplied for SNMPObjectIdentifier.");
-                
-                this.digits[i] = longDigits[i];
-            }
-        }
+            this.digits = SnmpObjectIdentifier.copyDigits((long[])newDigits);
         else if (newDigits instanceof int[])
-        {
-        	int[] intDigits = (int[])newDigits;
-        	
-        	this.digits = new long[intDigits.length];
-            for (int i = 0; i < intDigits.length; i++)
-            {
-                if (intDigits[i] < 0)
-                    throw new SnmpBadValueException("Negative value supplied for SNMPObjectIdentifier.");
-
-                this.digits[i] = intDigits[i];
-            }
-        }
+            this.digits = SnmpObjectIdentifier.copyDigits((int[])newDigits);
         else if (newDigits instanceof String)
-        {
-        	this.digits = SnmpObjectIdentifier.parseObjectIdentifier((String)newDigits);
-        }
+            this.digits = SnmpObjectIdentifier.parseDigits((String)newDigits);
         else
-        {
             throw new SnmpBadValueException(" Object Identifier: bad object supplied to set value ");
-        }
+        
+        hash = 0;
+    }
+    
+    
+    /**
+     *  Returns the number of components.
+     */
+    public int size()
+    {
+        return digits.length;
+    }
+    
+    
+    /**
+     *  Returns the component at the given index.
+     */
+    public long getSubIdentifier(int index)
+    {
+        return digits[index] & MAXIMUM_SUB_IDENTIFIER;
+    }
+    
+    
+    /**
+     *  Returns the identifier made up of the first length components of this one.
+     */
+    public SnmpObjectIdentifier getPrefix(int length)
+    {
+        if (length < 0 || length > digits.length)
+            throw new IllegalArgumentException("Prefix length out of range.");
+        
+        return SnmpObjectIdentifier.wrap(Arrays.copyOf(digits, length));
+    }
+    
+    
+    /**
+     *  Returns the identifier of a child of this one, with the given value appended.
+     *  
+     *  @throws SnmpBadValueException The value is negative or larger than 32 bits.
+     */
+    public SnmpObjectIdentifier getChild(long subIdentifier)
+        throws SnmpBadValueException
+    {
+        int[] childDigits = Arrays.copyOf(digits, digits.length + 1);
+        childDigits[digits.length] = SnmpObjectIdentifier.checkDigit(subIdentifier);
+        return SnmpObjectIdentifier.wrap(childDigits);
+    }
+    
+    
+    /**
+     *  Returns a canonical identifier equal to this one, so that identifiers that are seen 
+     *  repeatedly, such as the columns of a table that is polled often, can share one instance.
+     *  Interned identifiers can't be changed with setValue. Once many identifiers have been 
+     *  interned, further ones are returned as they are.
+     */
+    public SnmpObjectIdentifier intern()
+    {
+        if (isInterned)
+            return this;
+        
+        SnmpObjectIdentifier interned = internedIdentifiers.get(this);
+        if (interned != null)
+            return interned;
+        
+        if (internedIdentifiers.isFull())
+            return this;
+        
+        SnmpObjectIdentifier candidate = SnmpObjectIdentifier.wrap(digits);
+        candidate.isInterned = true;
+        
+        return internedIdentifiers.add(candidate);
     }
 
 
@@ -181,76 +241,100 @@ public class SnmpObjectIdentifier extends SnmpObject
     @Override
     public byte[] encode()
     {
-        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-
-        // write contents of array of values
-        byte[] data = encodeArray();
-
-        // calculate encoding for length of data
-        byte[] len = SnmpBERCodec.encodeLength(data.length);
-
-        // encode T,L,V info
-        outBytes.write(tag.getByte());
-        outBytes.write(len, 0, len.length);
-        outBytes.write(data, 0, data.length);
-
-        return outBytes.toByteArray();
+        byte[] encoding = new byte[getEncodedLength()];
+        encode(ByteBuffer.wrap(encoding));
+        return encoding;
     }
 
 
-    private byte[] encodeArray()
+    /**
+     *  Writes the BER encoding for this object identifier into the given buffer.
+     */
+    @Override
+    public void encode(ByteBuffer buffer)
     {
-        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        // encode T,L,V info
+        buffer.put(tag.getByte());
+        SnmpBERCodec.encodeLength(getValueLength(), buffer);
 
         int numElements = digits.length;
 
-        // encode first two identifier digits as one byte, using the 40*x + y rule;
+        // encode first two identifier digits as one value, using the 40*x + y rule;
         // of course, if only one element, just use 40*x; if none, do nothing
         if (numElements >= 2)
-            outBytes.write((byte)(40*digits[0] + digits[1]));
+            encodeValue(40 * getSubIdentifier(0) + getSubIdentifier(1), buffer);
         else if (numElements ==1)
-            outBytes.write((byte)(40*digits[0]));
+            encodeValue(40 * getSubIdentifier(0), buffer);
+
+        for (int i = 2; i < numElements; ++i)
+            encodeValue(getSubIdentifier(i), buffer);
+    }
 
 
+    @Override
+    public int getEncodedLength()
+    {
+        int dataLength = getValueLength();
+        return 1 + SnmpBERCodec.getLengthOfLength(dataLength) + dataLength;
+    }
+
+
+    /**
+     *  Returns the number of bytes needed to encode the array of values.
+     */
+    private int getValueLength()
+    {
+        int numElements = digits.length;
+        if (numElements == 0)
+            return 0;
+
+        // the first two identifier digits share one value
+        long first = 40 * getSubIdentifier(0) + ((numElements >= 2) ? getSubIdentifier(1) : 0);
+        int length = getEncodedValueLength(first);
         for (int i = 2; i < numElements; ++i)
-        {
-            byte[] nextBytes = encodeValue(digits[i]);
-            outBytes.write(nextBytes, 0, nextBytes.length);
-        }
+            length += getEncodedValueLength(getSubIdentifier(i));
 
-        return outBytes.toByteArray();
+        return length;
     }
 
 
-    private byte[] encodeValue(long v)
+    private static int getEncodedValueLength(long v)
     {
         // see how many bytes are needed: each value uses just
         // 7 bits of each byte, with high-order bit functioning as
         // a continuation marker
         int numBytes = 0;
-        long temp = v;
-
         do
         {
             ++numBytes;
-            temp = (long)Math.floor(temp / 128);
+            v >>>= 7;
         }
-        while (temp > 0);
+        while (v > 0);
 
+        return numBytes;
+    }
+
+
+    private static void encodeValue(long v, ByteBuffer buffer)
+    {
+        //.encode higher-order bytes with high bit set
+        for (int shift = 7 * (getEncodedValueLength(v) - 1); shift > 0; shift -= 7)
+            buffer.put((byte)(((v >>> shift) & highBitMask) | bitTest));
 
-        byte[] enc = new byte[numBytes];
         // encode lowest-order byte, without setting high bit
-        enc[numBytes - 1] = (byte)(v % 128);
-        v = (long)Math.floor(v / 128);
+        buffer.put((byte)(v & highBitMask));
+    }
 
-        //.encode other bytes with high bit set
-        for (int i = numBytes - 2; i >= 0; --i)
-        {
-            enc[i] = (byte)((v % 128) + 128);
-            v = (long)Math.floor(v / 128);
-        }
 
-        return enc;
+    /**
+     * Creates an identifier that takes ownership of an array of components that are already 
+     * known to be valid.
+     */
+    private static SnmpObjectIdentifier wrap(int[] digits)
+    {
+        SnmpObjectIdentifier identifier = new SnmpObjectIdentifier();
+        identifier.digits = digits;
+        return identifier;
     }
 
 
@@ -262,40 +346,120 @@ public class SnmpObjectIdentifier extends SnmpObject
     public static long[] parseObjectIdentifier(String digitString)
         throws SnmpBadValueException
     {
-		try
-		{
-			// Matt Hamilton on 1/31/06:
-			// Rewritten to use String's split method instead of StringTokenizer.
-
-			String[] oidArray = digitString.split("\\.");
-
-			long[] returnDigits = new long[oidArray.length];
-
-			for (int i = 0; i < oidArray.length; i++)
-			{
-				returnDigits[i] = Long.parseLong(oidArray[i]);
-				if (returnDigits[i] < 0)
-					throw new SnmpBadValueException(" Object Identifier: values must greater than or equal to zero. ");
-			}
-
-			return returnDigits;
-
-		}
-		catch (NumberFormatException e)
-		{
-			throw new SnmpBadValueException(" Object Identifier: bad string supplied for object identifier value ");
+        return (long[])new SnmpObjectIdentifier(digitString).getValue();
+    }
+    
+    
+    /**
+     * Parses an OID string into its components, without splitting it into substrings.
+     * Trailing dots are ignored.
+     */
+    private static int[] parseDigits(String digitString)
+        throws SnmpBadValueException
+    {
+        int length = digitString.length();
+        while (length > 0 && digitString.charAt(length - 1) == '.')
+            length--;
+        
+        if (length == 0)
+            throw new SnmpBadValueException(" Object Identifier: bad string supplied for object identifier value ");
+        
+        int numDigits = 1;
+        for (int i = 0; i < length; i++)
+        {
+            if (digitString.charAt(i) == '.')
+                numDigits++;
         }
-
+        
+        int[] returnDigits = new int[numDigits];
+        int digitIndex = 0;
+        long value = 0;
+        boolean hasValue = false;
+        
+        for (int i = 0; i <= length; i++)
+        {
+            char c = (i < length) ? digitString.charAt(i) : '.';
+            if (c == '.')
+            {
+                if (!hasValue)
+                    throw new SnmpBadValueException(" Object Identifier: bad string supplied for object identifier value ");
+                
+                returnDigits[digitIndex++] = (int)value;
+                value = 0;
+                hasValue = false;
+            }
+            else if (c >= '0' && c <= '9')
+            {
+                value = value * 10 + (c - '0');
+                if (value > MAXIMUM_SUB_IDENTIFIER)
+                    throw new SnmpBadValueException(" Object Identifier: values must fit in 32 bits. ");
+                
+                hasValue = true;
+            }
+            else if (c == '-')
+            {
+                throw new SnmpBadValueException(" Object Identifier: values must greater than or equal to zero. ");
+            }
+            else
+            {
+                throw new SnmpBadValueException(" Object Identifier: bad string supplied for object identifier value ");
+            }
+        }
+        
+        return returnDigits;
+    }
+    
+    
+    private static int[] copyDigits(long[] newDigits)
+        throws SnmpBadValueException
+    {
+        int[] intDigits = new int[newDigits.length];
+        for (int i = 0; i < newDigits.length; i++)
+            intDigits[i] = SnmpObjectIdentifier.checkDigit(newDigits[i]);
+        
+        return intDigits;
+    }
+    
+    
+    private static int[] copyDigits(int[] newDigits)
+        throws SnmpBadValueException
+    {
+        for (int i = 0; i < newDigits.length; i++)
+        {
+            if (newDigits[i] < 0)
+                throw new SnmpBadValueException("Negative value supplied for SNMPObjectIdentifier.");
+        }
+        
+        return newDigits.clone();
+    }
+    
+    
+    private static int checkDigit(long digit)
+        throws SnmpBadValueException
+    {
+        if (digit < 0)
+            throw new SnmpBadValueException("Negative value supplied for SNMPObjectIdentifier.");
+        
+        if (digit > MAXIMUM_SUB_IDENTIFIER)
+            throw new SnmpBadValueException("Value larger than 32 bits supplied for SNMPObjectIdentifier.");
+        
+        return (int)digit;
     }
 
 
-    private void extractFromBEREncoding(byte[] encoding)
+    private void extractFromBEREncoding(byte[] encoding, int offset, int length)
         throws SnmpBadValueException
     {
+        int end = offset + length;
+        
+        // the last byte of a valid encoding always terminates a sub-identifier
+        if (length > 0 && highOrderBitIsSet(encoding[end - 1]))
+            throw new SnmpBadValueException(" Object Identifier: bad BER encoding supplied to set value ");
+        
         // first, compute number of "digits";
         // will just be number of bytes with leading 0's
         int numInts = 0;
-        for (int i = 0; i < encoding.length; i++)
+        for (int i = offset; i < end; i++)
         {
             if (!highOrderBitIsSet(encoding[i]))        //high-order bit not set; count
                 numInts++;
@@ -305,44 +469,40 @@ public class SnmpObjectIdentifier extends SnmpObject
         {
             // create new int array to hold digits; since first value is 40*x + y,
             // need one extra entry in array to hold this.
-            digits = new long[numInts + 1];
-
-            int currentByte = -1;    // will be incremented to 0
+            digits = new int[numInts + 1];
 
-            long value = 0;
-
-            // read in values 'til get leading 0 in byte
-            do
-            {
-                currentByte++;
-                value = value * 128 + (encoding[currentByte] & highBitMask);
-            }
-            while (highOrderBitIsSet(encoding[currentByte]));    // implies high bit set!
-
-            // now handle 40a + b
-            digits[0] = (long)Math.floor(value / 40);
-            digits[1] = value % 40;
-
-            // now read in rest!
-            for (int i = 2; i < numInts + 1; i++)
+            int currentByte = offset;
+            for (int i = 1; i < numInts + 1; i++)
             {
                 // read in values 'til get leading 0 in byte
-                value = 0;
+                long value = 0;
                 do
                 {
-                    currentByte++;
-                    value = value*128 + (encoding[currentByte] & highBitMask);
+                    value = (value << 7) | (encoding[currentByte] & highBitMask);
+                    
+                    // the first value also holds the first component times 40
+                    if (value > MAXIMUM_SUB_IDENTIFIER + 80)
+                        throw new SnmpBadValueException(" Object Identifier: bad BER encoding supplied to set value ");
+                }
+                while (highOrderBitIsSet(encoding[currentByte++]));
+                
+                if (i == 1)
+                {
+                    // now handle 40a + b; only the last arc, 2, can have more than 40 children
+                    long first = Math.min(value / 40, 2);
+                    digits[0] = (int)first;
+                    digits[1] = checkDigit(value - 40 * first);
+                }
+                else
+                {
+                    digits[i] = checkDigit(value);
                 }
-                while (highOrderBitIsSet(encoding[currentByte]));
-
-                digits[i] = value;
             }
-
         }
         else
         {
             // no digits; create empty digit array
-            digits = new long[0];
+            digits = new int[0];
         }
 
     }
@@ -363,6 +523,9 @@ public class SnmpObjectIdentifier extends SnmpObject
     @Override
     public boolean equals(Object other)
     {
+        if (other == this)
+            return true;
+        
         // false if other is null
         if (other == null)
             return false;
@@ -372,36 +535,82 @@ public class SnmpObjectIdentifier extends SnmpObject
             return false;
 
         SnmpObjectIdentifier otherSNMPObject = (SnmpObjectIdentifier)other;
+        
+        if (hash != 0 && otherSNMPObject.hash != 0 && hash != otherSNMPObject.hash)
+            return false;
 
         // see if their embedded arrays are equal
-        if (Arrays.equals((long[])this.getValue(), (long[])otherSNMPObject.getValue()))
-            return true;
-         
-        return false;
+        return Arrays.equals(digits, otherSNMPObject.digits);
     }
 
 
     /**
      *  Generates a hash value so SNMP Object Identifiers can be used in Hashtables.
+     *  The value is computed once and cached.
      */
     @Override
     public int hashCode()
     {
-        int hash = 0;
-
-        // generate a hashcode from the embedded array
-        for (int i = 0; i < digits.length; i++)
+        int h = hash;
+        if (h == 0)
         {
-            hash += (int)(digits[i] ^ (digits[i] >> 32));
-            hash += (hash << 10);
-            hash ^= (hash >> 6);
+            // generate a hashcode from the embedded array
+            for (int i = 0; i < digits.length; i++)
+            {
+                h += digits[i];
+                h += (h << 10);
+                h ^= (h >>> 6);
+            }
+
+            h += (h << 3);
+            h ^= (h >>> 11);
+            h += (h << 15);
+            
+            hash = h;
         }
 
-        hash += (hash << 3);
-        hash ^= (hash >> 11);
-        hash += (hash << 15);
+        return h;
+    }
+
 
-        return hash;
+    /**
+     *  Compares object identifiers component by component, which is the order in which
+     *  an agent's MIB view is traversed by GetNext requests. A prefix precedes all of the
+     *  identifiers that it begins.
+     */
+    public int compareTo(SnmpObjectIdentifier other)
+    {
+        int[] otherDigits = other.digits;
+        
+        int length = Math.min(digits.length, otherDigits.length);
+        for (int i = 0; i < length; i++)
+        {
+            if (digits[i] != otherDigits[i])
+                return Integer.compareUnsigned(digits[i], otherDigits[i]);
+        }
+        
+        return digits.length - otherDigits.length;
+    }
+    
+    
+    /**
+     *  Returns true if this identifier's components begin the other identifier's components, 
+     *  that is, if the other identifier is in the subtree rooted at this one. An identifier
+     *  is a prefix of itself.
+     */
+    public boolean isPrefixOf(SnmpObjectIdentifier other)
+    {
+        int[] otherDigits = other.digits;
+        if (otherDigits.length < digits.length)
+            return false;
+        
+        for (int i = 0; i < digits.length; i++)
+        {
+            if (digits[i] != otherDigits[i])
+                return false;
+        }
+        
+        return true;
     }
 
 
@@ -411,7 +620,16 @@ public class SnmpObjectIdentifier extends SnmpObject
     @Override
     public String toString()
     {
-        return Strings.join(".", digits);
+        StringBuilder digitString = new StringBuilder(digits.length * 4);
+        for (int i = 0; i < digits.length; i++)
+        {
+            if (i > 0)
+                digitString.append('.');
+            
+            digitString.append(digits[i] & MAXIMUM_SUB_IDENTIFIER);
+        }
+        
+        return digitString.toString();
     }
 
 }
\ No newline at end of file
@@ -22,7 +22,7 @@
 
 package snmp.datatypes;
 
-import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import snmp.error.SnmpBadValueException;
@@ -68,6 +68,17 @@ public class SnmpOctetString extends SnmpObject
     }
 
 
+    /**
+     *  Creates an octet string from a slice of a retrieved BER encoding. The bytes
+     *  are copied, so the source array may be reused afterwards.
+     */
+    public SnmpOctetString(byte[] encoding, int offset, int length)
+    {
+    	tag = SnmpBERType.SnmpOctetString;
+        decode(encoding, offset, length);
+    }
+
+
     /**
      *  Returns the array of raw bytes.
      */
@@ -103,17 +114,29 @@ public class SnmpOctetString extends SnmpObject
     @Override
     public byte[] encode()
     {
-        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        byte[] encoding = new byte[getEncodedLength()];
+        encode(ByteBuffer.wrap(encoding));
+        return encoding;
+    }
 
-        // calculate encoding for length of data
-        byte[] len = SnmpBERCodec.encodeLength(data.length);
 
+    /**
+     *  Writes the BER encoding for the octet string into the given buffer.
+     */
+    @Override
+    public void encode(ByteBuffer buffer)
+    {
         // encode T,L,V info
-        outBytes.write(tag.getByte());
-        outBytes.write(len, 0, len.length);
-        outBytes.write(data, 0, data.length);
+        buffer.put(tag.getByte());
+        SnmpBERCodec.encodeLength(data.length, buffer);
+        buffer.put(data);
+    }
+
 
-        return outBytes.toByteArray();
+    @Override
+    public int getEncodedLength()
+    {
+        return 1 + SnmpBERCodec.getLengthOfLength(data.length) + data.length;
     }
 
     /**
@@ -122,11 +145,18 @@ public class SnmpOctetString extends SnmpObject
      */
     protected void decode(byte[] encoding)
     {
-        data = new byte[encoding.length];
-
-        // copy data
-        for (int i = 0; i < encoding.length; i++)
-            data[i] = encoding[i];
+        decode(encoding, 0, encoding.length);
+    }
+    
+    /**
+     * Initializes an octet string with data extracted from a slice of a byte encoding.
+     * @param encoding
+     * @param offset the index of the first byte of data
+     * @param length the number of bytes of data
+     */
+    protected void decode(byte[] encoding, int offset, int length)
+    {
+        data = Arrays.copyOfRange(encoding, offset, offset + length);
     }
 
 
@@ -24,10 +24,17 @@ package snmp.datatypes;
 
 /** 
  *  Utility class holding components of an ASN.1 (type, length, value) triple.
+ *  The value is described as a slice of the encoding it was read from (encoding, 
+ *  valueOffset, valueLength) so that nested structures can be decoded without 
+ *  copying; value is only filled in by SnmpBERCodec.extractNextTLV.
  */
 public final class SnmpTLV
 {
     public SnmpBERType tag;
     public int length;
     public byte[] value;
+    
+    public byte[] encoding;
+    public int valueOffset;
+    public int valueLength;
 }
\ No newline at end of file
@@ -72,6 +72,15 @@ public class SnmpTimeTicks extends SnmpInteger
         tag = SnmpBERType.SnmpTimeTicks;
     }
 
+
+    public SnmpTimeTicks(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        super(encoding, offset, length);
+
+        tag = SnmpBERType.SnmpTimeTicks;
+    }
+
 	/**
      *  Formats the time value into days:hours:minutes:seconds.hundredthsOfASecond
      *  format for readability and display purposes.
@@ -87,7 +96,7 @@ public class SnmpTimeTicks extends SnmpInteger
         // This conversion will not cause a loss of precision because 
         // long values are truncated during SNMPTimeTicks creation. Long
         // is used rather than int as a precaution, however.
-        long hundredths = value.longValue();
+        long hundredths = value;
 
         // Get days
         long time = hundredths / SnmpTimeTicks.HUNDREDTHS_PER_DAY;
@@ -22,7 +22,7 @@
 
 package snmp.datatypes;
 
-import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import snmp.error.SnmpBadValueException;
@@ -47,6 +47,15 @@ public class SnmpUnknownObject extends SnmpObject
     }
     
     
+    /**
+     *  Takes a slice of a byte array and uses it as raw bytes.
+     */
+    public SnmpUnknownObject(byte[] encoding, int offset, int length)
+    {
+        data = Arrays.copyOfRange(encoding, offset, offset + length);
+    }
+    
+    
     /**
      *  Returns a byte array containing the raw bytes supplied.
      */
@@ -77,17 +86,29 @@ public class SnmpUnknownObject extends SnmpObject
     @Override
     public byte[] encode()
     {
-        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-        
-        // calculate encoding for length of data
-        byte[] len = SnmpBERCodec.encodeLength(data.length);
-        
+        byte[] encoding = new byte[getEncodedLength()];
+        encode(ByteBuffer.wrap(encoding));
+        return encoding;
+    }
+    
+    
+    /**
+     *  Writes the BER encoding of the raw bytes into the given buffer.
+     */
+    @Override
+    public void encode(ByteBuffer buffer)
+    {
         // encode T,L,V info
-        outBytes.write(tag.getByte());
-        outBytes.write(len, 0, len.length);
-        outBytes.write(data, 0, data.length);
+        buffer.put(tag.getByte());
+        SnmpBERCodec.encodeLength(data.length, buffer);
+        buffer.put(data);
+    }
+    
     
-        return outBytes.toByteArray();
+    @Override
+    public int getEncodedLength()
+    {
+        return 1 + SnmpBERCodec.getLengthOfLength(data.length) + data.length;
     }
     
     
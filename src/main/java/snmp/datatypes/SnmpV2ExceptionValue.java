@@ -0,0 +1,136 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2004, Jonathan Sevy <jsevy@mcs.drexel.edu>
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp.datatypes;
+
+import java.nio.ByteBuffer;
+
+import snmp.error.SnmpBadValueException;
+
+
+/**
+ *  Represents one of the SNMPv2 exception values, noSuchObject, noSuchInstance or endOfMibView,
+ *  that an agent returns in place of a value in a variable binding (see RFC 1905). The exceptions
+ *  carry no data; they are distinguished only by their tags.
+ */
+public class SnmpV2ExceptionValue extends SnmpObject
+{
+    
+    protected SnmpBERType tag;
+    
+    /**
+     *  Creates an exception value with the given tag, which must be one of SnmpNoSuchObject,
+     *  SnmpNoSuchInstance or SnmpEndOfMibView.
+     */
+    public SnmpV2ExceptionValue(SnmpBERType tag)
+    {
+        switch (tag)
+        {
+            case SnmpNoSuchObject:
+            case SnmpNoSuchInstance:
+            case SnmpEndOfMibView:
+                this.tag = tag;
+                break;
+                
+            default:
+                throw new IllegalArgumentException("Not an SNMPv2 exception type: " + tag);
+        }
+    }
+    
+    
+    /**
+     *  Returns the BER type of the exception.
+     */
+    @Override
+    public Object getValue()
+    {
+        return tag;
+    }
+    
+    
+    /**
+     *  Always throws SNMPBadValueException; exception values can't be changed.
+     */
+    @Override
+    public void setValue(Object o) throws SnmpBadValueException
+    {
+        throw new SnmpBadValueException(" Exception value: attempt to set value ");
+    }
+    
+    
+    /**
+     *  Returns true if the exception indicates that there are no more OIDs to walk.
+     */
+    public boolean isEndOfMibView()
+    {
+        return tag == SnmpBERType.SnmpEndOfMibView;
+    }
+    
+
+    /**
+     *  Returns BER encoding for an exception value: two bytes, tag and length of 0.
+     */
+    @Override
+    public byte[] encode()
+    {
+        byte[] encoding = new byte[2];
+        encoding[0] = tag.getByte();
+        encoding[1] = 0;
+        return encoding;
+    }
+    
+    
+    @Override
+    public void encode(ByteBuffer buffer)
+    {
+        buffer.put(tag.getByte());
+        buffer.put((byte)0);
+    }
+    
+    
+    @Override
+    public int getEncodedLength()
+    {
+        return 2;
+    }
+    
+
+    /**
+     *  Returns the name of the exception as written in RFC 1905.
+     */
+    @Override
+    public String toString()
+    {
+        switch (tag)
+        {
+            case SnmpNoSuchObject:
+                return "noSuchObject";
+                
+            case SnmpNoSuchInstance:
+                return "noSuchInstance";
+                
+            default:
+                return "endOfMibView";
+        }
+    }
+    
+}
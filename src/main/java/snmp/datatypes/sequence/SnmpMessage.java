@@ -30,6 +30,7 @@ import snmp.datatypes.SnmpObject;
 import snmp.datatypes.SnmpOctetString;
 import snmp.datatypes.sequence.pdu.SnmpBasicPDU;
 import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV2BulkRequestPDU;
 import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
 import snmp.error.SnmpBadValueException;
 
@@ -155,6 +156,29 @@ public class SnmpMessage extends SnmpSequence
     }
     
     
+    /**
+     *  Creates an SNMP message with specified version, community, and GetBulk request pdu.
+     *  GetBulk requests are only defined for SNMPv2.
+     */
+    public SnmpMessage(SnmpVersion version, String community, SnmpV2BulkRequestPDU pdu)
+    {
+        super();
+        List<SnmpObject> contents = new Vector<SnmpObject>();
+        contents.add(0, new SnmpInteger(version.ordinal()));
+        contents.add(1, new SnmpOctetString(community));
+        contents.add(2, pdu);
+        
+        try
+        {
+            this.setValue(contents);
+        }
+        catch (SnmpBadValueException e)
+        {
+            // can't happen! all supplied Vector elements are SNMP Object subclasses
+        }
+    }
+    
+    
     /**
      *  Constructs an SNMPMessage from a received ASN.1 byte representation.
      *  
@@ -163,7 +187,21 @@ public class SnmpMessage extends SnmpSequence
     public SnmpMessage(byte[] encoding)
         throws SnmpBadValueException
     {
-        super(encoding);
+        this(encoding, 0, encoding.length);
+    }
+    
+    
+    /**
+     *  Constructs an SNMPMessage from a received ASN.1 byte representation held in a slice
+     *  of a larger array, such as the buffer of a received datagram. The message contents 
+     *  are decoded in place, without intermediate copies of nested values.
+     *  
+     *  @throws SnmpBadValueException Indicates invalid SNMP message encoding supplied.
+     */
+    public SnmpMessage(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        super(encoding, offset, length);
         
         // validate the message: make sure we have the appropriate pieces
         List<SnmpObject> contents = sequence;
@@ -178,7 +216,7 @@ public class SnmpMessage extends SnmpSequence
             throw new SnmpBadValueException("Bad SNMP message: bad community name");
         
         if (!(contents.get(2) instanceof SnmpBasicPDU) && !(contents.get(2) instanceof SnmpV1TrapPDU) 
-                && !(contents.get(2) instanceof SnmpV2TrapPDU))
+                && !(contents.get(2) instanceof SnmpV2TrapPDU) && !(contents.get(2) instanceof SnmpV2BulkRequestPDU))
             throw new SnmpBadValueException("Bad SNMP message: bad PDU");
         
     }
@@ -210,6 +248,21 @@ public class SnmpMessage extends SnmpSequence
     }
     
     
+    /** 
+     *  Returns the PDU contained in the SNMP message as an SNMPv2BulkRequestPDU. The PDU is the 
+     *  third component of the sequence, after the version and community name.
+     */
+    public SnmpV2BulkRequestPDU getBulkRequestPDU() throws SnmpBadValueException
+    {
+        Object pdu = sequence.get(2);
+        
+        if (!(pdu instanceof SnmpV2BulkRequestPDU))
+            throw new SnmpBadValueException("Wrong PDU type in message: expected SNMPv2BulkRequestPDU, have " + pdu.getClass().toString());
+        
+        return (SnmpV2BulkRequestPDU)pdu;
+    }
+    
+    
     /** 
      *  Returns the PDU contained in the SNMP message as an SNMPv1TrapPDU. The PDU is the 
      *  third component of the sequence, after the version and community name.
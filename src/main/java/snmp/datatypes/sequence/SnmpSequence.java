@@ -22,8 +22,8 @@
 
 package snmp.datatypes.sequence;
 
+import java.nio.ByteBuffer;
 import java.util.*;
-import java.io.*;
 
 import snmp.datatypes.SnmpBERCodec;
 import snmp.datatypes.SnmpBERType;
@@ -80,6 +80,19 @@ public class SnmpSequence extends SnmpObject
     }
     
     
+    /**
+     *  Constructs an SNMP sequence from a received ASN.1 byte representation held in a 
+     *  slice of a larger array. Contained objects are decoded in place from the same array.
+     *  
+     *  @throws SnmpBadValueException Indicates invalid SNMP sequence encoding supplied.
+     */
+    public SnmpSequence(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        decode(encoding, offset, length);
+    }
+    
+    
     /**
      *  Returns a Vector containing the SNMPObjects in the sequence.
      */
@@ -178,36 +191,45 @@ public class SnmpSequence extends SnmpObject
     @Override
     public byte[] encode()
     {
-        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-          
-        // recursively write contents of Vector
-        byte[] data = encodeVector();
-        
-        // calculate encoding for length of data
-        byte[] len = SnmpBERCodec.encodeLength(data.length);
-        
-        // encode T,L,V info
-        outBytes.write(tag.getByte());
-        outBytes.write(len, 0, len.length);
-        outBytes.write(data, 0, data.length);
-        
-        return outBytes.toByteArray();
+        byte[] encoding = new byte[getEncodedLength()];
+        encode(ByteBuffer.wrap(encoding));
+        return encoding;
     }
     
     
-    private byte[] encodeVector()
+    /** 
+     *  Writes the BER encoding for the sequence into the given buffer. The length of
+     *  the contents is computed first, so each contained object writes its own encoding
+     *  straight into the buffer rather than into an intermediate array.
+     */
+    @Override
+    public void encode(ByteBuffer buffer)
     {
-        ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+        // encode T,L info
+        buffer.put(tag.getByte());
+        SnmpBERCodec.encodeLength(getContentsLength(), buffer);
         
-        //int numElements = sequence.size();
-        //for (int i = 0; i < numElements; ++i)
-        for (Object item : sequence)
-        {
-            byte[] nextBytes = ((SnmpObject)item).encode();
-            outBytes.write(nextBytes, 0, nextBytes.length);
-        }
+        // recursively write contents of Vector
+        for (SnmpObject item : sequence)
+            item.encode(buffer);
+    }
+    
+    
+    @Override
+    public int getEncodedLength()
+    {
+        int dataLength = getContentsLength();
+        return 1 + SnmpBERCodec.getLengthOfLength(dataLength) + dataLength;
+    }
+    
+    
+    private int getContentsLength()
+    {
+        int length = 0;
+        for (SnmpObject item : sequence)
+            length += item.getEncodedLength();
         
-        return outBytes.toByteArray();
+        return length;
     }
     
 	/**
@@ -217,15 +239,30 @@ public class SnmpSequence extends SnmpObject
 	 */
     protected void decode(byte[] encoding)
         throws SnmpBadValueException
+    {
+        decode(encoding, 0, encoding.length);
+    }
+    
+	/**
+	 * Initializes an SNMP sequence with values extracted from a slice of a byte encoding.
+	 * Each contained object is decoded directly from the same array rather than from a 
+	 * copy of its value.
+	 * @param encoding
+	 * @param offset the index of the first byte of the sequence contents
+	 * @param length the number of bytes of sequence contents
+	 * @throws SnmpBadValueException
+	 */
+    protected void decode(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
     {
         List<SnmpObject> newVector = new Vector<SnmpObject>();
         
-        int totalLength = encoding.length;
-        int position = 0;
+        int limit = offset + length;
+        int position = offset;
         
-        while (position < totalLength)
+        while (position < limit)
         {
-            SnmpTLV nextTLV = SnmpBERCodec.extractNextTLV(encoding, position);
+            SnmpTLV nextTLV = SnmpBERCodec.readNextTLV(encoding, position, limit);
             newVector.add(newVector.size(), SnmpBERCodec.decode(nextTLV));
             position += nextTLV.length;
         }
@@ -80,7 +80,20 @@ public class SnmpAbstractTrapPDU extends SnmpBasicPDU
      */
     public SnmpAbstractTrapPDU(byte[] encoding, SnmpBERType type) throws SnmpBadValueException
     {
-        super(encoding, type);
+        this(encoding, 0, encoding.length, type);
+    }
+    
+    
+    /**
+     *  Creates a new PDU of the specified type from the BER encoding held in a slice 
+     *  of a larger array.
+     *  
+     *  @throws SnmpBadValueException Indicates invalid SNMP PDU encoding supplied 
+     *  in encoding.
+     */
+    public SnmpAbstractTrapPDU(byte[] encoding, int offset, int length, SnmpBERType type) throws SnmpBadValueException
+    {
+        super(encoding, offset, length, type);
         
         // validate the message: make sure the first two components of the varBindList
         // are the appropriate variable pairs
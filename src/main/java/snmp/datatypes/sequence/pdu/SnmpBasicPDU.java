@@ -23,7 +23,6 @@
 package snmp.datatypes.sequence.pdu;
 
 import java.util.*;
-import java.math.*;
 
 import snmp.datatypes.SnmpBERType;
 import snmp.datatypes.SnmpInteger;
@@ -132,9 +131,21 @@ public class SnmpBasicPDU extends SnmpSequence
      *  @throws SnmpBadValueException Indicates invalid SNMP PDU encoding.
      */
     public SnmpBasicPDU(byte[] encoding, SnmpBERType pduType) throws SnmpBadValueException
+    {
+        this(encoding, 0, encoding.length, pduType);
+    }
+    
+    
+    /**
+     *  Creates a new PDU of the specified type from the BER encoding held in a slice 
+     *  of a larger array.
+     *  
+     *  @throws SnmpBadValueException Indicates invalid SNMP PDU encoding.
+     */
+    public SnmpBasicPDU(byte[] encoding, int offset, int length, SnmpBERType pduType) throws SnmpBadValueException
     {
         tag = pduType;
-        decode(encoding);
+        decode(encoding, offset, length);
         
         // validate the message: make sure we have the appropriate pieces
         List<SnmpObject> contents = sequence;
@@ -188,7 +199,7 @@ public class SnmpBasicPDU extends SnmpSequence
      */
     public int getRequestID()
     {
-        return ((BigInteger)((SnmpInteger)(sequence.get(0))).getValue()).intValue();
+        return (int)((SnmpInteger)(sequence.get(0))).longValue();
     }
     
     
@@ -198,7 +209,7 @@ public class SnmpBasicPDU extends SnmpSequence
      */
     public ErrorStatus getErrorStatus()
     {
-        return ErrorStatus.getInstance(((BigInteger)((SnmpInteger)(sequence.get(1))).getValue()).intValue());
+        return ErrorStatus.getInstance((int)((SnmpInteger)(sequence.get(1))).longValue());
     }
     
 
@@ -207,7 +218,7 @@ public class SnmpBasicPDU extends SnmpSequence
      */
     public int getErrorIndex()
     {
-        return ((BigInteger)((SnmpInteger)(sequence.get(2))).getValue()).intValue();
+        return (int)((SnmpInteger)(sequence.get(2))).longValue();
     }
     
 
@@ -23,7 +23,6 @@
 package snmp.datatypes.sequence.pdu;
 
 import java.util.*;
-import java.math.*;
 
 import snmp.datatypes.SnmpBERType;
 import snmp.datatypes.SnmpInteger;
@@ -181,9 +180,20 @@ public class SnmpV1TrapPDU extends SnmpSequence
      *  @throws SnmpBadValueException Indicates invalid SNMP PDU encoding supplied in enc.
      */
     public SnmpV1TrapPDU(byte[] enc) throws SnmpBadValueException
+    {
+        this(enc, 0, enc.length);
+    }
+    
+    
+    /**
+     *  Creates a new PDU from the BER encoding held in a slice of a larger array.
+     *  
+     *  @throws SnmpBadValueException Indicates invalid SNMP PDU encoding supplied in enc.
+     */
+    public SnmpV1TrapPDU(byte[] enc, int offset, int length) throws SnmpBadValueException
     {
         tag = SnmpBERType.SnmpTrap;
-        decode(enc);
+        decode(enc, offset, length);
         
         // validate the message: make sure we have the appropriate pieces
         List<SnmpObject> contents = sequence;
@@ -261,7 +271,7 @@ public class SnmpV1TrapPDU extends SnmpSequence
     public GenericTrapType getGenericTrap()
     {
     	SnmpInteger value = (SnmpInteger)sequence.get(2);
-    	int ordinal = ((BigInteger)value.getValue()).intValue();
+    	int ordinal = (int)value.longValue();
     	return GenericTrapType.getInstance(ordinal);
     }
     
@@ -271,7 +281,7 @@ public class SnmpV1TrapPDU extends SnmpSequence
      */
     public int getSpecificTrap()
     {
-        return ((BigInteger)((SnmpInteger)(sequence.get(3))).getValue()).intValue();
+        return (int)((SnmpInteger)(sequence.get(3))).longValue();
     }
     
     
@@ -280,7 +290,7 @@ public class SnmpV1TrapPDU extends SnmpSequence
      */
     public long getTimestamp()
     {
-        return ((BigInteger)((SnmpTimeTicks)(sequence.get(4))).getValue()).longValue();
+        return ((SnmpTimeTicks)(sequence.get(4))).longValue();
     }
     
 }
\ No newline at end of file
@@ -22,7 +22,6 @@
 
 package snmp.datatypes.sequence.pdu;
 
-import java.math.BigInteger;
 import java.util.List;
 import java.util.Vector;
 
@@ -166,8 +165,22 @@ public class SnmpV2BulkRequestPDU extends SnmpSequence
     public SnmpV2BulkRequestPDU(byte[] enc, SnmpBERType pduType)
         throws SnmpBadValueException
     {
+        this(enc, 0, enc.length);
         tag = pduType;
-        decode(enc);
+    }
+    
+    
+    /**
+     * Creates a new PDU from the BER encoded contents held in a slice of a larger array.
+     * 
+     * @throws SnmpBadValueException
+     *             Indicates invalid SNMP Bulk PDU encoding supplied.
+     */
+    public SnmpV2BulkRequestPDU(byte[] encoding, int offset, int length)
+        throws SnmpBadValueException
+    {
+        tag = SnmpBERType.SnmpV2BulkRequest;
+        decode(encoding, offset, length);
         
         // validate the message: make sure we have the appropriate pieces
         List<SnmpObject> contents = sequence;
@@ -221,7 +234,7 @@ public class SnmpV2BulkRequestPDU extends SnmpSequence
      */
     public int getRequestID()
     {
-        return ((BigInteger)((SnmpInteger)(sequence.get(0))).getValue()).intValue();
+        return (int)((SnmpInteger)(sequence.get(0))).longValue();
     }
     
     
@@ -230,7 +243,7 @@ public class SnmpV2BulkRequestPDU extends SnmpSequence
      */
     public int getNonRepeaters()
     {
-        return ((BigInteger)((SnmpInteger)(sequence.get(1))).getValue()).intValue();
+        return (int)((SnmpInteger)(sequence.get(1))).longValue();
     }
     
     
@@ -239,7 +252,7 @@ public class SnmpV2BulkRequestPDU extends SnmpSequence
      */
     public int getMaxRepetitions()
     {
-        return ((BigInteger)((SnmpInteger)(sequence.get(2))).getValue()).intValue();
+        return (int)((SnmpInteger)(sequence.get(2))).longValue();
     }
     
 
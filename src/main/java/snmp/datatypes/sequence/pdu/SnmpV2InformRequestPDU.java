@@ -181,5 +181,17 @@ public class SnmpV2InformRequestPDU extends SnmpAbstractTrapPDU
     {
         super(encoding, SnmpBERType.SnmpV2InformRequest);
     }
+    
+    
+    /**
+     *  Creates a new PDU from the BER encoding held in a slice of a larger array.
+     *  
+     *  @throws SnmpBadValueException Indicates invalid SNMP PDU 
+     *  encoding.
+     */
+    public SnmpV2InformRequestPDU(byte[] encoding, int offset, int length) throws SnmpBadValueException
+    {
+        super(encoding, offset, length, SnmpBERType.SnmpV2InformRequest);
+    }
 	
 }
\ No newline at end of file
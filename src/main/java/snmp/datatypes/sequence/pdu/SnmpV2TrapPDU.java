@@ -181,5 +181,17 @@ public class SnmpV2TrapPDU extends SnmpAbstractTrapPDU
     {
         super(encoding, SnmpBERType.SnmpV2Trap);
     }
+    
+    
+    /**
+     *  Creates a new PDU from the BER encoding held in a slice of a larger array.
+     *  
+     *  @throws SnmpBadValueException Indicates invalid SNMP PDU 
+     *  encoding.
+     */
+    public SnmpV2TrapPDU(byte[] encoding, int offset, int length) throws SnmpBadValueException
+    {
+        super(encoding, offset, length, SnmpBERType.SnmpV2Trap);
+    }
 
 }
\ No newline at end of file
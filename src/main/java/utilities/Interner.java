@@ -0,0 +1,114 @@
+/**
+ * Utilities
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package utilities;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A pool of canonical instances of immutable values, so that equal values can share one 
+ * instance, as String.intern() does for strings.  The pool is safe to use from several 
+ * threads.  It holds at most a fixed number of values, after which further values are 
+ * not pooled; values are never removed, so a pool that lasts as long as the application 
+ * should only be given values that are likely to be seen again.
+ *
+ * @param <T> the type of the values, which must implement equals and hashCode
+ */
+public final class Interner<T>
+{
+	private final int limit;
+	private final ConcurrentMap<T, T> values = new ConcurrentHashMap<T, T>();
+	
+	/**
+	 * Creates an empty pool.
+	 * 
+	 * @param limit the most values kept in the pool
+	 */
+	public Interner(int limit)
+	{
+		if (limit < 0)
+			throw new IllegalArgumentException("The limit must not be negative.");
+		
+		this.limit = limit;
+	}
+	
+	/**
+	 * Returns the pooled value equal to a value, adding the value itself to the pool if 
+	 * there is none and the pool isn't full.
+	 * 
+	 * @param value the value
+	 * @return the pooled value, or the value itself if it isn't pooled
+	 */
+	public T intern(T value)
+	{
+		T pooled = values.get(value);
+		if (pooled != null)
+			return pooled;
+		
+		if (this.isFull())
+			return value;
+		
+		return this.add(value);
+	}
+	
+	/**
+	 * Finds the pooled value equal to a value.
+	 * 
+	 * @param value the value
+	 * @return the pooled value, or null if there is none
+	 */
+	public T get(T value)
+	{
+		return values.get(value);
+	}
+	
+	/**
+	 * Adds a value to the pool unless an equal value is already there.  Callers that need to 
+	 * make a canonical copy of a value can check {@link #get} and {@link #isFull} first, and 
+	 * only make the copy when it will be added.  Threads adding at once can take the pool 
+	 * slightly past its limit.
+	 * 
+	 * @param value the value to add
+	 * @return the pooled value, which is the given value unless an equal one was already there
+	 */
+	public T add(T value)
+	{
+		T pooled = values.putIfAbsent(value, value);
+		return (pooled != null) ? pooled : value;
+	}
+	
+	/**
+	 * Returns whether the pool has reached its limit.
+	 */
+	public boolean isFull()
+	{
+		return values.size() >= limit;
+	}
+	
+	/**
+	 * Returns the number of values in the pool.
+	 */
+	public int size()
+	{
+		return values.size();
+	}
+}
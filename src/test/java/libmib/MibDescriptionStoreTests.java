@@ -0,0 +1,93 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MibDescriptionStoreTests
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testStoreDescription() throws IOException
+	{
+		MibDescriptionStore store = new MibDescriptionStore(folder.newFile());
+		
+		MibObjectType sysDescr = new MibObjectType("sysDescr", 1);
+		sysDescr.setDescription("A textual description of the entity.<br>caf\u00e9");
+		MibObjectType empty = new MibObjectType("empty", 2);
+		
+		store.storeDescription(sysDescr);
+		store.storeDescription(empty);
+		
+		assertThat(sysDescr.isDescriptionStored(), is(true));
+		assertThat(sysDescr.getDescription(), is("A textual description of the entity.<br>caf\u00e9"));
+		assertThat(empty.isDescriptionStored(), is(false));
+		assertThat(empty.getDescription(), is(""));
+		
+		// Setting a new description takes it back out of the store.
+		sysDescr.setDescription("changed");
+		assertThat(sysDescr.isDescriptionStored(), is(false));
+		assertThat(sysDescr.getDescription(), is("changed"));
+		
+		store.close();
+	}
+	
+	@Test
+	public void testReadAfterGrowing() throws IOException
+	{
+		MibDescriptionStore store = new MibDescriptionStore(folder.newFile());
+		
+		MibObjectType[] objects = new MibObjectType[200];
+		for (int i = 0; i < objects.length; i++)
+		{
+			objects[i] = new MibObjectType("object" + i, i);
+			objects[i].setDescription("Description number " + i);
+			store.storeDescription(objects[i]);
+			
+			// Reading in between appends maps the store before it is complete.
+			assertThat(objects[i / 2].getDescription(), is("Description number " + (i / 2)));
+		}
+		
+		for (int i = 0; i < objects.length; i++)
+			assertThat(objects[i].getDescription(), is("Description number " + i));
+		
+		store.close();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testReadOutsideStore() throws IOException
+	{
+		MibDescriptionStore store = new MibDescriptionStore(folder.newFile());
+		store.append(new byte[] { 'a', 'b' });
+		store.read(1, 5);
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MibSyntaxTests
+{
+	@Test
+	public void testFindValueName()
+	{
+		MibSyntax dense = createSyntax("TruthValue", 1, "true", 2, "false");
+		assertThat(dense.findValueName(1), is("true"));
+		assertThat(dense.findValueName(2), is("false"));
+		assertThat(dense.findValueName(0), is(""));
+		assertThat(dense.findValueName(3), is(""));
+		assertThat(dense.findValueName(Integer.MIN_VALUE), is(""));
+		
+		MibSyntax sparse = createSyntax("INTEGER", -5, "negative", 1000000, "large", Integer.MAX_VALUE, "max");
+		assertThat(sparse.findValueName(-5), is("negative"));
+		assertThat(sparse.findValueName(1000000), is("large"));
+		assertThat(sparse.findValueName(Integer.MAX_VALUE), is("max"));
+		assertThat(sparse.findValueName(7), is(""));
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void testFindValueNameWithoutValues()
+	{
+		new MibSyntax("DisplayString").findValueName(1);
+	}
+	
+	@Test
+	public void testValuePairsAreCopiedInOrder()
+	{
+		Map<Integer, String> pairs = new HashMap<Integer, String>();
+		pairs.put(3, "testing");
+		pairs.put(1, "up");
+		pairs.put(2, "down");
+		
+		MibSyntax syntax = new MibSyntax("INTEGER");
+		syntax.setValuePairs(pairs);
+		pairs.put(4, "unknown");
+		
+		Map<Integer, String> table = syntax.getValuePairs();
+		assertThat(table.size(), is(3));
+		assertThat(table.get(4) == null, is(true));
+		assertThat(table.equals(createSyntax("INTEGER", 1, "up", 2, "down", 3, "testing").getValuePairs()), is(true));
+		
+		List<Integer> values = new ArrayList<Integer>();
+		for (Map.Entry<Integer, String> pair : table.entrySet())
+			values.add(pair.getKey());
+		
+		assertThat(values.toString(), is("[1, 2, 3]"));
+	}
+	
+	@Test
+	public void testIntern()
+	{
+		MibSyntax first = createSyntax("TruthValue", 1, "true", 2, "false");
+		MibSyntax second = createSyntax("TruthValue", 1, "true", 2, "false");
+		MibSyntax defaulted = createSyntax("TruthValue", 1, "true", 2, "false");
+		defaulted.setDefaultValue("false");
+		
+		MibSyntax interned = first.intern();
+		assertThat(interned.isInterned(), is(true));
+		assertThat(first.isInterned(), is(false));
+		assertThat(second.intern() == interned, is(true));
+		assertThat(interned.intern() == interned, is(true));
+		
+		// Different defaults are different syntaxes, but they share the value table.
+		MibSyntax internedDefault = defaulted.intern();
+		assertThat(internedDefault == interned, is(false));
+		assertThat(internedDefault.getDefaultValue(), is("false"));
+		assertThat(internedDefault.getValuePairs() == interned.getValuePairs(), is(true));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testInternedSyntaxCannotChange()
+	{
+		createSyntax("TruthValue", 1, "true", 2, "false").intern().setDefaultValue("true");
+	}
+	
+	private static MibSyntax createSyntax(String dataType, Object... pairs)
+	{
+		Map<Integer, String> valuePairs = new HashMap<Integer, String>();
+		for (int i = 0; i < pairs.length; i += 2)
+			valuePairs.put((Integer)pairs[i], (String)pairs[i + 1]);
+		
+		MibSyntax syntax = new MibSyntax(dataType);
+		syntax.setValuePairs(valuePairs);
+		return syntax;
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib.format.smi;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import libmib.MibImport;
+import libmib.MibObjectExtended;
+import libmib.MibSyntax;
+import libmib.format.smi.SMILexer.Token;
+import libmib.format.smi.SMILexer.TokenKind;
+import libmib.format.smi.SMIStructureHandler.HierarchyData;
+import libmib.format.smi.parsers.GeneralMibObjectParser;
+import libmib.format.smi.parsers.ImportsParser;
+import libmib.format.smi.parsers.SyntaxParser;
+
+public class SMILexerTests
+{
+	@Test
+	public void testTokens()
+	{
+		SMILexer lexer = new SMILexer("ifIndex OBJECT-TYPE -- a comment\r\n"
+				+ "  SYNTAX INTEGER (-1..10) -- inline -- MAX-ACCESS\n"
+				+ "  DESCRIPTION \"spans -- two\nlines\"\n"
+				+ "  ::= { ifEntry 1 }");
+		
+		assertToken(lexer.next(), TokenKind.Word, "ifIndex", 1);
+		assertToken(lexer.next(), TokenKind.Word, "OBJECT-TYPE", 1);
+		assertToken(lexer.next(), TokenKind.Word, "SYNTAX", 2);
+		assertToken(lexer.next(), TokenKind.Word, "INTEGER", 2);
+		assertToken(lexer.next(), TokenKind.Symbol, "(", 2);
+		assertToken(lexer.next(), TokenKind.Number, "-1", 2);
+		assertToken(lexer.next(), TokenKind.Symbol, "..", 2);
+		assertToken(lexer.next(), TokenKind.Number, "10", 2);
+		assertToken(lexer.next(), TokenKind.Symbol, ")", 2);
+		assertToken(lexer.next(), TokenKind.Word, "MAX-ACCESS", 2);
+		assertToken(lexer.next(), TokenKind.Word, "DESCRIPTION", 3);
+		assertToken(lexer.next(), TokenKind.Text, "spans -- two\nlines", 3);
+		assertToken(lexer.next(), TokenKind.Symbol, "::=", 5);
+		assertToken(lexer.next(), TokenKind.Symbol, "{", 5);
+		assertToken(lexer.next(), TokenKind.Word, "ifEntry", 5);
+		assertToken(lexer.next(), TokenKind.Number, "1", 5);
+		assertToken(lexer.next(), TokenKind.Symbol, "}", 5);
+		assertThat(lexer.next() == null, is(true));
+	}
+	
+	@Test
+	public void testLookahead()
+	{
+		SMILexer lexer = new SMILexer("sysName\n    OBJECT\n IDENTIFIER ::= { system 5 }");
+		
+		assertThat(lexer.peek().getText(), is("sysName"));
+		assertThat(lexer.peek(2).getText(), is("IDENTIFIER"));
+		assertThat(lexer.lookingAt(SMIToken.OBJECT_ID), is(false));
+		
+		lexer.next();
+		assertThat(lexer.skip(SMIToken.OBJECT_ID), is(true));
+		assertThat(lexer.next().getText(), is("::="));
+		
+		HierarchyData data = SMIStructureHandler.parseHierarchyData(lexer);
+		assertThat(data.getParent(), is("system"));
+		assertThat(data.getIndex(), is(5));
+		assertThat(lexer.peek() == null, is(true));
+	}
+	
+	@Test
+	public void testStringIsNotKeyword()
+	{
+		Token token = new SMILexer("\"STATUS\"").next();
+		
+		assertThat(token.getKind(), is(TokenKind.Text));
+		assertThat(token.is(SMIToken.STATUS), is(false));
+	}
+	
+	@Test
+	public void testReadMibName()
+	{
+		SMILexer lexer = new SMILexer("-- header\nIF-MIB DEFINITIONS ::= BEGIN\nIMPORTS");
+		
+		assertThat(SMIStructureHandler.readMibName(lexer), is("IF-MIB"));
+		assertThat(lexer.next().getText(), is("IMPORTS"));
+		assertThat(SMIStructureHandler.readMibName(new SMILexer("not a MIB")), is(""));
+	}
+	
+	@Test
+	public void testHierarchyWithNamedElements()
+	{
+		HierarchyData data = SMIStructureHandler.parseHierarchyData(new SMILexer("{ iso org(3) dod(6) 1 }"));
+		assertThat(data.getParent(), is("dod"));
+		assertThat(data.getIndex(), is(1));
+		
+		data = SMIStructureHandler.parseHierarchyData(new SMILexer("{ snmpTraps linkDown }"));
+		assertThat(data.getIndex(), is(-1));
+	}
+	
+	@Test
+	public void testQuotedSection()
+	{
+		SMILexer lexer = new SMILexer("\"  First line\r\n   second line\n  -- dropped\n\n  last  \"");
+		
+		assertThat(SMIStructureHandler.readQuotedSection(lexer), is("First line<br>second line<br><br>last"));
+		assertThat(SMIStructureHandler.readQuotedSection(new SMILexer("STATUS")), is(""));
+	}
+	
+	@Test
+	public void testSyntaxWithValues()
+	{
+		SMILexer lexer = new SMILexer("INTEGER\n  { up(1), -- comment\n down(2),\n testing(3) }\n MAX-ACCESS read-only");
+		
+		MibSyntax syntax = new SyntaxParser().parse(lexer);
+		assertThat(syntax.getDataType(), is("INTEGER"));
+		
+		Map<Integer, String> pairs = syntax.getValuePairs();
+		assertThat(pairs.size(), is(3));
+		assertThat(pairs.get(2), is("down"));
+		assertThat(lexer.next().getText(), is("MAX-ACCESS"));
+	}
+	
+	@Test
+	public void testSyntaxEndsAtLine()
+	{
+		SMILexer lexer = new SMILexer("OCTET STRING  (SIZE (0..\n 255))\n UNITS \"bytes\"");
+		
+		assertThat(new SyntaxParser().parse(lexer).getDataType(), is("OCTET STRING (SIZE (0.. 255))"));
+		assertThat(lexer.next().getText(), is("UNITS"));
+	}
+	
+	@Test
+	public void testImports()
+	{
+		SMILexer lexer = new SMILexer("MODULE-IDENTITY, OBJECT-TYPE\n    FROM SNMPv2-SMI\n"
+				+ "  DisplayString FROM SNMPv2-TC -- comment\n  ; next");
+		
+		List<MibImport> imports = new ImportsParser().parse(lexer);
+		assertThat(imports.size(), is(2));
+		assertThat(imports.get(0).getSource(), is("SNMPv2-SMI"));
+		assertThat(imports.get(0).getImports().size(), is(2));
+		assertThat(imports.get(1).getSource(), is("SNMPv2-TC"));
+		assertThat(imports.get(1).getImports().get(0), is("DisplayString"));
+		assertThat(lexer.next().getText(), is("next"));
+	}
+	
+	@Test
+	public void testGeneralObject()
+	{
+		SMILexer lexer = new SMILexer("ifMIB MODULE-IDENTITY\n"
+				+ "  LAST-UPDATED \"200006140000Z\"\n"
+				+ "  ORGANIZATION \"IETF\"\n"
+				+ "  CONTACT-INFO \"STATUS of contacts\"\n"
+				+ "  DESCRIPTION \"Interfaces\"\n"
+				+ "  REVISION \"199602282155Z\"\n"
+				+ "  DESCRIPTION \"Revised\"\n"
+				+ "  ::= {\n mib-2 31 }");
+		
+		MibObjectExtended mibObject = new GeneralMibObjectParser().parse(lexer);
+		assertThat(mibObject.getName(), is("ifMIB"));
+		assertThat(mibObject.getParent(), is("mib-2"));
+		assertThat(mibObject.getId(), is(31));
+		assertThat(mibObject.getLastUpdated(), is("200006140000Z"));
+		assertThat(mibObject.getContactInfo(), is("STATUS of contacts"));
+		assertThat(mibObject.getDescription(), is("Interfaces"));
+		assertThat(mibObject.getStatus() == null, is(true));
+		assertThat(mibObject.getRevisions().get(0).getRevisionDescription(), is("Revised"));
+	}
+	
+	private static void assertToken(Token token, TokenKind kind, String text, int line)
+	{
+		assertThat(token.getKind(), is(kind));
+		assertThat(token.getText(), is(text));
+		assertThat(token.getLine(), is(line));
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib.mibtree;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import libmib.MibDescriptionStore;
+import libmib.MibObjectType;
+import libmib.MibSyntax;
+import libmib.MibObjectType.Access;
+import libmib.MibObjectType.Status;
+
+public class MibCacheTests
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		File mibFile = createFile("TEST-MIB DEFINITIONS ::= BEGIN END");
+		File cacheFile = new File(folder.getRoot(), "cache.bin");
+		
+		MibCache cache = new MibCache(cacheFile);
+		cache.put(mibFile, createMib(mibFile));
+		cache.save();
+		
+		MibCache loaded = new MibCache(cacheFile);
+		assertThat(loaded.load(), is(true));
+		assertThat(loaded.size(), is(1));
+		
+		ParsedMib parsedMib = loaded.get(mibFile);
+		assertThat(parsedMib.getMibName(), is("TEST-MIB"));
+		assertThat(parsedMib.getImportedMibs(), is(Arrays.asList("SNMPv2-SMI", "SNMPv2-TC")));
+		assertThat(parsedMib.getDefinitions().size(), is(2));
+		
+		ParsedMib.Definition definition = parsedMib.getDefinitions().get(1);
+		MibObjectType mibObject = definition.getMibObject();
+		assertThat(definition.getParentName(), is("testEntry"));
+		assertThat(mibObject.getName(), is("testStatus"));
+		assertThat(mibObject.getId(), is(3));
+		assertThat(mibObject.getMibName(), is("TEST-MIB"));
+		assertThat(mibObject.getStatus(), is(Status.CURRENT));
+		assertThat(mibObject.getAccess(), is(Access.READ_CREATE));
+		assertThat(mibObject.getDescription(), is("The status \u00e9."));
+		assertThat(mibObject.getSyntax().getDataType(), is("INTEGER"));
+		assertThat(mibObject.getSyntax().findValueName(2), is("down"));
+		
+		MibObjectType plainObject = parsedMib.getDefinitions().get(0).getMibObject();
+		assertThat(plainObject.getStatus() == null, is(true));
+		assertThat(plainObject.getSyntax() == null, is(true));
+		
+		// Each lookup creates new objects.
+		assertThat(loaded.get(mibFile).getDefinitions().get(1).getMibObject() == mibObject, is(false));
+	}
+	
+	@Test
+	public void testChangedFileIsNotFound() throws IOException
+	{
+		File mibFile = createFile("TEST-MIB DEFINITIONS ::= BEGIN END");
+		
+		MibCache cache = new MibCache(new File(folder.getRoot(), "cache.bin"));
+		cache.put(mibFile, createMib(mibFile));
+		
+		// Touching the file without changing it keeps the entry.
+		mibFile.setLastModified(mibFile.lastModified() - 10000);
+		assertThat(cache.get(mibFile) == null, is(false));
+		
+		writeFile(mibFile, "TEST-MIB DEFINITIONS ::= BEGIN XX END");
+		assertThat(cache.get(mibFile) == null, is(true));
+		
+		// A change that keeps the size is found by the checksum.
+		cache.put(mibFile, createMib(mibFile));
+		writeFile(mibFile, "TEST-MIB DEFINITIONS ::= BEGIN YY END");
+		mibFile.setLastModified(mibFile.lastModified() - 20000);
+		assertThat(cache.get(mibFile) == null, is(true));
+	}
+	
+	@Test
+	public void testSaveLeavesOutDeletedFiles() throws IOException
+	{
+		File mibFile = createFile("TEST-MIB DEFINITIONS ::= BEGIN END");
+		File cacheFile = new File(folder.getRoot(), "cache.bin");
+		
+		MibCache cache = new MibCache(cacheFile);
+		cache.put(mibFile, createMib(mibFile));
+		mibFile.delete();
+		cache.save();
+		
+		MibCache loaded = new MibCache(cacheFile);
+		assertThat(loaded.load(), is(true));
+		assertThat(loaded.size(), is(0));
+	}
+	
+	@Test
+	public void testInvalidCacheFileIsIgnored() throws IOException
+	{
+		File cacheFile = createFile("not a cache");
+		
+		MibCache cache = new MibCache(cacheFile);
+		assertThat(cache.load(), is(false));
+		assertThat(cache.size(), is(0));
+		
+		assertThat(new MibCache(new File(folder.getRoot(), "missing.bin")).load(), is(false));
+	}
+	
+	@Test
+	public void testDescriptionsStayInStore() throws IOException
+	{
+		String description = "A description that should only be kept in the store.";
+		File mibDirectory = folder.newFolder("mibs");
+		File mibFile = new File(mibDirectory, "TEST-MIB.mib");
+		writeFile(mibFile, "TEST-MIB DEFINITIONS ::= BEGIN\n"
+				+ "testRoot OBJECT IDENTIFIER ::= { dod 99 }\n"
+				+ "testValue OBJECT-TYPE\n"
+				+ "  SYNTAX INTEGER\n"
+				+ "  MAX-ACCESS read-only\n"
+				+ "  STATUS current\n"
+				+ "  DESCRIPTION \"" + description + "\"\n"
+				+ "  ::= { testRoot 1 }\n"
+				+ "END\n");
+		File cacheFile = new File(folder.getRoot(), "cache.bin");
+		
+		MibDescriptionStore store = new MibDescriptionStore(folder.newFile());
+		MibCache cache = new MibCache(cacheFile);
+		cache.setDescriptionStore(store);
+		
+		MibTreeBuilderSmi builder = new MibTreeBuilderSmi();
+		builder.setMibCache(cache);
+		builder.setDescriptionStore(store);
+		builder.addMibDirectory(mibDirectory);
+		
+		MibObjectType testValue = (MibObjectType)builder.getNameIndex().getNode("testValue").getUserObject();
+		assertThat(testValue.isDescriptionStored(), is(true));
+		assertThat(testValue.getDescription(), is(description));
+		assertThat(contains(cache.getEncoding(mibFile), description), is(false));
+		
+		// The descriptions were only appended once, for the tree and the cache together.
+		assertThat(store.size(), is((long)description.length()));
+		
+		// The saved cache holds the text, which goes into the store again when loaded.
+		cache.save();
+		MibDescriptionStore loadedStore = new MibDescriptionStore(folder.newFile());
+		MibCache loaded = new MibCache(cacheFile);
+		loaded.setDescriptionStore(loadedStore);
+		assertThat(loaded.load(), is(true));
+		assertThat(contains(loaded.getEncoding(mibFile), description), is(false));
+		
+		MibObjectType loadedValue = loaded.get(mibFile).getDefinitions().get(1).getMibObject();
+		assertThat(loadedValue.isDescriptionStored(), is(true));
+		assertThat(loadedValue.getDescription(), is(description));
+		
+		// A cache without a store keeps the text.
+		MibCache plain = new MibCache(cacheFile);
+		assertThat(plain.load(), is(true));
+		assertThat(contains(plain.getEncoding(mibFile), description), is(true));
+		assertThat(plain.get(mibFile).getDefinitions().get(1).getMibObject().getDescription(), is(description));
+	}
+	
+	private static boolean contains(byte[] encoding, String text) throws IOException
+	{
+		return new String(encoding, "ISO-8859-1").contains(text);
+	}
+	
+	private File createFile(String contents) throws IOException
+	{
+		File file = folder.newFile();
+		writeFile(file, contents);
+		return file;
+	}
+	
+	private static void writeFile(File file, String contents) throws IOException
+	{
+		FileOutputStream output = new FileOutputStream(file);
+		try
+		{
+			output.write(contents.getBytes("UTF-8"));
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+	
+	private static ParsedMib createMib(File mibFile)
+	{
+		ParsedMib parsedMib = new ParsedMib(mibFile, "TEST-MIB");
+		parsedMib.addImportedMib("SNMPv2-SMI");
+		parsedMib.addImportedMib("SNMPv2-TC");
+		
+		MibObjectType testObjects = new MibObjectType("testObjects", 1);
+		testObjects.setMibName("TEST-MIB");
+		parsedMib.addDefinition(testObjects, "experimental");
+		
+		MibObjectType testStatus = new MibObjectType("testStatus", 3);
+		testStatus.setMibName("TEST-MIB");
+		testStatus.setStatus(Status.CURRENT);
+		testStatus.setAccess(Access.READ_CREATE);
+		testStatus.setDescription("The status \u00e9.");
+		
+		Map<Integer, String> pairs = new HashMap<Integer, String>();
+		pairs.put(1, "up");
+		pairs.put(2, "down");
+		MibSyntax syntax = new MibSyntax("INTEGER");
+		syntax.setValuePairs(pairs);
+		testStatus.setSyntax(syntax);
+		
+		parsedMib.addDefinition(testStatus, "testEntry");
+		return parsedMib;
+	}
+}
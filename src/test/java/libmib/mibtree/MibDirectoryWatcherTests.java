@@ -0,0 +1,316 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package libmib.mibtree;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultTreeModel;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import utilities.events.EventListener;
+
+import libmib.format.smi.InvalidSmiMibFormatException;
+
+public class MibDirectoryWatcherTests
+{
+	private static final String ROOT_MIB = "TEST-ROOT-MIB DEFINITIONS ::= BEGIN\n"
+			+ "testRoot OBJECT IDENTIFIER ::= { dod 99 }\n"
+			+ "testA OBJECT IDENTIFIER ::= { testRoot 1 }\n"
+			+ "END\n";
+	
+	private static final String CHILD_MIB = "TEST-CHILD-MIB DEFINITIONS ::= BEGIN\n"
+			+ "IMPORTS testA FROM TEST-ROOT-MIB;\n"
+			+ "testB OBJECT IDENTIFIER ::= { testA 2 }\n"
+			+ "END\n";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private MibTreeBuilderSmi builder;
+	private File rootFile;
+	private File childFile;
+	private List<String> modelEvents;
+	private List<String> addedMibs;
+	
+	@Before
+	public void setUp() throws IOException
+	{
+		rootFile = new File(folder.getRoot(), "root.mib");
+		childFile = new File(folder.getRoot(), "child.mib");
+		writeFile(rootFile, ROOT_MIB);
+		writeFile(childFile, CHILD_MIB);
+		
+		builder = new MibTreeBuilderSmi();
+		builder.addMibDirectory(folder.getRoot());
+		
+		modelEvents = new ArrayList<String>();
+		((DefaultTreeModel)builder.getTreeModel()).addTreeModelListener(new RecordingListener());
+		
+		addedMibs = new ArrayList<String>();
+		builder.addMibAddedListener(new EventListener<AbstractMibTreeBuilder, MibAddedEventInfo>()
+		{
+			public void handleEvent(AbstractMibTreeBuilder source, MibAddedEventInfo eventInfo)
+			{
+				addedMibs.add(eventInfo.getMibRoot().toString());
+			}
+		});
+	}
+	
+	@Test
+	public void testReloadChangedFileAndDependents() throws IOException
+	{
+		assertThat(builder.getNameIndex().getNode("testB").getOidNumeralPath(), is("1.3.6.99.1.2"));
+		
+		writeFile(rootFile, ROOT_MIB.replace("{ testRoot 1 }", "{ testRoot 5 }"));
+		builder.reloadMibFiles(Arrays.asList(rootFile));
+		
+		MibTreeNode testB = builder.getNameIndex().getNode("testB");
+		assertThat(testB.getOidNumeralPath(), is("1.3.6.99.5.2"));
+		assertThat(builder.getNameIndex().getNode("TEST-CHILD-MIB::testB") == testB, is(true));
+		assertThat(builder.getNameIndex().getNode("dod").getChildCount(), is(1));
+		
+		// The old root subtree is removed and the new one inserted in one piece.
+		assertThat(modelEvents, is(Arrays.asList("removed dod testRoot", "inserted dod testRoot")));
+		assertThat(addedMibs, is(Arrays.asList("testRoot")));
+	}
+	
+	@Test
+	public void testReloadDeletedFile()
+	{
+		childFile.delete();
+		builder.reloadMibFiles(Arrays.asList(childFile));
+		
+		assertThat(builder.getNameIndex().contains("testB"), is(false));
+		assertThat(builder.getNameIndex().getNode("TEST-CHILD-MIB::testB") == null, is(true));
+		assertThat(builder.getNameIndex().getNode("testA").getChildCount(), is(0));
+		assertThat(modelEvents, is(Arrays.asList("removed testA testB")));
+		assertThat(addedMibs.isEmpty(), is(true));
+	}
+	
+	@Test
+	public void testReloadKeepsNodesOfUnrelatedMibs() throws IOException
+	{
+		// This MIB hangs a node from the root MIB without importing it.
+		File otherFile = new File(folder.getRoot(), "other.mib");
+		writeFile(otherFile, "TEST-OTHER-MIB DEFINITIONS ::= BEGIN\n"
+				+ "testOther OBJECT IDENTIFIER ::= { testRoot 7 }\n"
+				+ "testOtherChild OBJECT IDENTIFIER ::= { testOther 1 }\n"
+				+ "END\n");
+		builder.reloadMibFiles(Arrays.asList(otherFile));
+		
+		writeFile(rootFile, ROOT_MIB.replace("{ dod 99 }", "{ dod 98 }"));
+		builder.reloadMibFiles(Arrays.asList(rootFile));
+		
+		assertThat(builder.getNameIndex().getNode("testOtherChild").getOidNumeralPath(), is("1.3.6.98.7.1"));
+		assertThat(builder.getNameIndex().getNode("testB").getOidNumeralPath(), is("1.3.6.98.1.2"));
+	}
+	
+	@Test
+	public void testReloadRereadsMibsSharingRemovedNode() throws IOException
+	{
+		// This MIB defines the root MIB's node again without importing it.
+		File shareFile = new File(folder.getRoot(), "share.mib");
+		writeFile(shareFile, "TEST-SHARE-MIB DEFINITIONS ::= BEGIN\n"
+				+ "testRoot OBJECT IDENTIFIER ::= { dod 99 }\n"
+				+ "END\n");
+		builder.reloadMibFiles(Arrays.asList(shareFile));
+		
+		MibTreeNode testRoot = builder.getNameIndex().getNode("testRoot");
+		assertThat(builder.getNameIndex().getNode("TEST-SHARE-MIB::testRoot") == testRoot, is(true));
+		
+		// Once the root MIB moves its node, the other MIB needs a node of its own.
+		writeFile(rootFile, ROOT_MIB.replace("{ dod 99 }", "{ dod 98 }"));
+		builder.reloadMibFiles(Arrays.asList(rootFile));
+		
+		MibTreeNode sharedRoot = builder.getNameIndex().getNode("TEST-SHARE-MIB::testRoot");
+		assertThat(sharedRoot.getParent() == null, is(false));
+		assertThat(sharedRoot.getOidNumeralPath(), is("1.3.6.99"));
+		assertThat(builder.getNameIndex().getNode("TEST-ROOT-MIB::testRoot").getOidNumeralPath(), is("1.3.6.98"));
+	}
+	
+	@Test
+	public void testReloadDeletedFileKeepsSharedNode() throws IOException
+	{
+		File shareFile = new File(folder.getRoot(), "share.mib");
+		writeFile(shareFile, "TEST-SHARE-MIB DEFINITIONS ::= BEGIN\n"
+				+ "testRoot OBJECT IDENTIFIER ::= { dod 99 }\n"
+				+ "testShared OBJECT IDENTIFIER ::= { testRoot 5 }\n"
+				+ "END\n");
+		builder.reloadMibFiles(Arrays.asList(shareFile));
+		
+		// The node the root MIB added goes, but the other MIB still defines it.
+		rootFile.delete();
+		builder.reloadMibFiles(Arrays.asList(rootFile));
+		
+		MibTreeNode testRoot = builder.getNameIndex().getNode("testRoot");
+		assertThat(testRoot.getOidNumeralPath(), is("1.3.6.99"));
+		assertThat(builder.getNameIndex().getNode("TEST-SHARE-MIB::testRoot") == testRoot, is(true));
+		assertThat(builder.getNameIndex().getNode("TEST-ROOT-MIB::testRoot") == null, is(true));
+		assertThat(builder.getNameIndex().getNode("testShared").getOidNumeralPath(), is("1.3.6.99.5"));
+		assertThat(builder.getNameIndex().getNode("dod").getChildCount(), is(1));
+	}
+	
+	@Test
+	public void testWatcherReloadsNewFile() throws IOException, InterruptedException
+	{
+		final CountDownLatch added = new CountDownLatch(1);
+		builder.addMibAddedListener(new EventListener<AbstractMibTreeBuilder, MibAddedEventInfo>()
+		{
+			public void handleEvent(AbstractMibTreeBuilder source, MibAddedEventInfo eventInfo)
+			{
+				added.countDown();
+			}
+		});
+		
+		MibDirectoryWatcher watcher = new MibDirectoryWatcher(builder, folder.getRoot(), new Executor()
+		{
+			public void execute(Runnable command)
+			{
+				command.run();
+			}
+		}, 50);
+		
+		watcher.start();
+		try
+		{
+			writeFile(new File(folder.getRoot(), "new.mib"), "TEST-NEW-MIB DEFINITIONS ::= BEGIN\n"
+					+ "testNew OBJECT IDENTIFIER ::= { testA 3 }\n"
+					+ "END\n");
+			
+			assertThat(added.await(10, TimeUnit.SECONDS), is(true));
+			assertThat(builder.getNameIndex().getNode("testNew").getOidNumeralPath(), is("1.3.6.99.1.3"));
+		}
+		finally
+		{
+			watcher.close();
+		}
+	}
+	
+	@Test
+	public void testWatcherReadsFilesOffTreeThread() throws Exception
+	{
+		final List<Thread> parseThreads = new Vector<Thread>();
+		MibTreeBuilderSmi threadBuilder = new MibTreeBuilderSmi()
+		{
+			@Override
+			protected ParsedMib parseMib(File mibFile) throws InvalidSmiMibFormatException
+			{
+				parseThreads.add(Thread.currentThread());
+				return super.parseMib(mibFile);
+			}
+		};
+		threadBuilder.addMibDirectory(folder.getRoot());
+		parseThreads.clear();
+		
+		final CountDownLatch added = new CountDownLatch(1);
+		threadBuilder.addMibAddedListener(new EventListener<AbstractMibTreeBuilder, MibAddedEventInfo>()
+		{
+			public void handleEvent(AbstractMibTreeBuilder source, MibAddedEventInfo eventInfo)
+			{
+				added.countDown();
+			}
+		});
+		
+		ExecutorService treeThread = Executors.newSingleThreadExecutor();
+		final Thread[] treeThreadHolder = new Thread[1];
+		treeThread.submit(new Runnable()
+		{
+			public void run()
+			{
+				treeThreadHolder[0] = Thread.currentThread();
+			}
+		}).get();
+		
+		MibDirectoryWatcher watcher = new MibDirectoryWatcher(threadBuilder, folder.getRoot(), treeThread, 50);
+		watcher.start();
+		try
+		{
+			writeFile(new File(folder.getRoot(), "new.mib"), "TEST-NEW-MIB DEFINITIONS ::= BEGIN\n"
+					+ "testNew OBJECT IDENTIFIER ::= { testA 3 }\n"
+					+ "END\n");
+			
+			assertThat(added.await(10, TimeUnit.SECONDS), is(true));
+			assertThat(parseThreads.isEmpty(), is(false));
+			assertThat(parseThreads.contains(treeThreadHolder[0]), is(false));
+		}
+		finally
+		{
+			watcher.close();
+			treeThread.shutdown();
+		}
+	}
+	
+	private final class RecordingListener implements TreeModelListener
+	{
+		public void treeNodesInserted(TreeModelEvent e) { record("inserted", e); }
+		
+		public void treeNodesRemoved(TreeModelEvent e) { record("removed", e); }
+		
+		public void treeNodesChanged(TreeModelEvent e) { record("changed", e); }
+		
+		public void treeStructureChanged(TreeModelEvent e) { record("structure", e); }
+		
+		private void record(String kind, TreeModelEvent e)
+		{
+			StringBuilder event = new StringBuilder(kind);
+			event.append(' ').append(e.getTreePath().getLastPathComponent());
+			
+			for (Object child : e.getChildren())
+				event.append(' ').append(child);
+			
+			modelEvents.add(event.toString());
+		}
+	}
+	
+	private static void writeFile(File file, String contents) throws IOException
+	{
+		FileOutputStream output = new FileOutputStream(file);
+		try
+		{
+			output.write(contents.getBytes("UTF-8"));
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib.mibtree;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MibDuplicateDefinitionTests
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testSameDefinitionSharesNode() throws IOException
+	{
+		writeMib("TEST-A-MIB", "shared OBJECT IDENTIFIER ::= { dod 99 }\n");
+		writeMib("TEST-B-MIB", "shared OBJECT IDENTIFIER ::= { dod 99 }\n");
+		
+		MibNameIndex nameIndex = buildIndex();
+		
+		MibTreeNode shared = nameIndex.getNode("shared");
+		assertThat(nameIndex.getNode("TEST-A-MIB::shared") == shared, is(true));
+		assertThat(nameIndex.getNode("TEST-B-MIB::shared") == shared, is(true));
+		assertThat(nameIndex.getNode("dod").getChildCount(), is(1));
+	}
+	
+	@Test
+	public void testDifferentDefinitionGetsOwnNode() throws IOException
+	{
+		writeMib("TEST-A-MIB", "shared OBJECT IDENTIFIER ::= { dod 99 }\n"
+				+ "childA OBJECT IDENTIFIER ::= { shared 1 }\n");
+		writeMib("TEST-B-MIB", "shared OBJECT IDENTIFIER ::= { dod 98 }\n"
+				+ "childB OBJECT IDENTIFIER ::= { shared 2 }\n");
+		
+		MibNameIndex nameIndex = buildIndex();
+		
+		MibTreeNode sharedA = nameIndex.getNode("TEST-A-MIB::shared");
+		MibTreeNode sharedB = nameIndex.getNode("TEST-B-MIB::shared");
+		assertThat(sharedA == sharedB, is(false));
+		assertThat(sharedA.getOidNumeralPath(), is("1.3.6.99"));
+		assertThat(sharedB.getOidNumeralPath(), is("1.3.6.98"));
+		assertThat(nameIndex.getNode("dod").getChildCount(), is(2));
+		
+		// Each module's children hang from its own definition of the parent.
+		assertThat(nameIndex.getNode("childA").getOidNumeralPath(), is("1.3.6.99.1"));
+		assertThat(nameIndex.getNode("childB").getOidNumeralPath(), is("1.3.6.98.2"));
+	}
+	
+	private MibNameIndex buildIndex()
+	{
+		MibTreeBuilderSmi builder = new MibTreeBuilderSmi();
+		builder.addMibDirectory(folder.getRoot());
+		
+		return builder.getNameIndex();
+	}
+	
+	private void writeMib(String mibName, String definitions) throws IOException
+	{
+		FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), mibName + ".mib"));
+		try
+		{
+			out.write((mibName + " DEFINITIONS ::= BEGIN\n" + definitions + "END\n").getBytes("US-ASCII"));
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib.mibtree;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MibImportOrderTests
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testImportsComeFirst()
+	{
+		List<ParsedMib> mibs = new ArrayList<ParsedMib>();
+		mibs.add(createMib("IF-MIB", "SNMPv2-SMI", "SNMPv2-TC"));
+		mibs.add(createMib("SNMPv2-TC", "SNMPv2-SMI"));
+		mibs.add(createMib("VENDOR-MIB", "IF-MIB", "UNKNOWN-MIB"));
+		mibs.add(createMib("SNMPv2-SMI"));
+		mibs.add(createMib("OTHER-MIB"));
+		
+		assertThat(names(MibImportOrder.sort(mibs)), is("SNMPv2-SMI SNMPv2-TC IF-MIB VENDOR-MIB OTHER-MIB"));
+	}
+	
+	@Test
+	public void testCycleKeepsOriginalOrder()
+	{
+		List<ParsedMib> mibs = new ArrayList<ParsedMib>();
+		mibs.add(createMib("A-MIB", "B-MIB"));
+		mibs.add(createMib("B-MIB", "A-MIB"));
+		mibs.add(createMib("C-MIB", "B-MIB"));
+		mibs.add(createMib("SELF-MIB", "SELF-MIB"));
+		
+		assertThat(names(MibImportOrder.sort(mibs)), is("SELF-MIB A-MIB B-MIB C-MIB"));
+	}
+	
+	@Test
+	public void testUnreadableFileIsSkipped() throws IOException
+	{
+		// A directory can't be read as a MIB file, so parsing it gives no MIB.
+		folder.newFolder("BROKEN-MIB.mib");
+		
+		FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "TEST-MIB.mib"));
+		out.write(("TEST-MIB DEFINITIONS ::= BEGIN\n" + 
+				"testRoot OBJECT IDENTIFIER ::= { dod 99 }\n" + 
+				"END\n").getBytes("US-ASCII"));
+		out.close();
+		
+		MibTreeBuilderSmi builder = new MibTreeBuilderSmi();
+		builder.addMibDirectory(folder.getRoot());
+		
+		assertThat(builder.getNameIndex().contains("testRoot"), is(true));
+	}
+	
+	private static ParsedMib createMib(String name, String... imports)
+	{
+		ParsedMib mib = new ParsedMib(null, name);
+		for (String importedMib : imports)
+			mib.addImportedMib(importedMib);
+		
+		return mib;
+	}
+	
+	private static String names(List<ParsedMib> mibs)
+	{
+		StringBuilder names = new StringBuilder();
+		for (ParsedMib mib : mibs)
+		{
+			if (names.length() > 0)
+				names.append(' ');
+			
+			names.append(mib.getMibName());
+		}
+		
+		return names.toString();
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib.mibtree;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import libmib.MibObjectIdentifier;
+
+public class MibNameIndexTests
+{
+	@Test
+	public void testQualifiedLookup()
+	{
+		MibNameIndex index = new MibNameIndex();
+		MibTreeNode sysDescr = addNode(index, "SNMPv2-MIB", "sysDescr");
+		MibTreeNode ifDescr = addNode(index, "IF-MIB", "ifDescr");
+		
+		assertThat(index.getNode("sysDescr") == sysDescr, is(true));
+		assertThat(index.getNode("SNMPv2-MIB::sysDescr") == sysDescr, is(true));
+		assertThat(index.getNode("IF-MIB", "ifDescr") == ifDescr, is(true));
+		assertThat(index.getNode("IF-MIB::sysDescr") == null, is(true));
+		assertThat(index.getNode("sysdescr") == null, is(true));
+		
+		// A redefinition shares the node already in the tree.
+		index.addDefinition("RFC1213-MIB", "sysDescr", sysDescr);
+		assertThat(index.getNode("RFC1213-MIB::sysDescr") == sysDescr, is(true));
+		assertThat(index.size(), is(2));
+	}
+	
+	@Test
+	public void testCaseInsensitiveLookup()
+	{
+		MibNameIndex index = new MibNameIndex();
+		MibTreeNode first = addNode(index, "A-MIB", "fooBar");
+		MibTreeNode second = addNode(index, "B-MIB", "FooBar");
+		
+		List<MibTreeNode> nodes = index.getNodesIgnoreCase("FOOBAR");
+		assertThat(nodes.size(), is(2));
+		assertThat(nodes.get(0) == first, is(true));
+		assertThat(nodes.get(1) == second, is(true));
+		
+		assertThat(index.getNodesIgnoreCase("foo").isEmpty(), is(true));
+	}
+	
+	@Test
+	public void testPrefixAndSubstringSearch()
+	{
+		MibNameIndex index = new MibNameIndex();
+		addNode(index, "IF-MIB", "ifInOctets");
+		addNode(index, "IF-MIB", "ifOutOctets");
+		addNode(index, "IF-MIB", "ifHCInOctets");
+		addNode(index, "IF-MIB", "ifIndex");
+		addNode(index, "SNMPv2-MIB", "sysName");
+		
+		assertThat(names(index.findByPrefix("IFIN", 10)), is("ifIndex ifInOctets"));
+		assertThat(names(index.findByPrefix("if", 2)), is("ifHCInOctets ifIndex"));
+		assertThat(names(index.findByPrefix("zz", 10)), is(""));
+		
+		assertThat(names(index.findBySubstring("octets", 10)), is("ifHCInOctets ifInOctets ifOutOctets"));
+		assertThat(names(index.findBySubstring("InOct", 1)), is("ifHCInOctets"));
+		assertThat(names(index.findBySubstring("na", 10)), is("sysName"));
+		assertThat(names(index.findBySubstring("xyz", 10)), is(""));
+	}
+	
+	@Test
+	public void testRemoveDropsSharedDefinitions()
+	{
+		MibNameIndex index = new MibNameIndex();
+		MibTreeNode sysDescr = addNode(index, "SNMPv2-MIB", "sysDescr");
+		index.addDefinition("RFC1213-MIB", "sysDescr", sysDescr);
+		index.addDefinition("OTHER-MIB", "sysDescr", sysDescr);
+		
+		index.removeDefinition("OTHER-MIB", "sysDescr", sysDescr);
+		assertThat(index.getNode("OTHER-MIB::sysDescr") == null, is(true));
+		assertThat(index.getNode("RFC1213-MIB::sysDescr") == sysDescr, is(true));
+		
+		// No qualified name is left pointing at a node that is gone.
+		index.remove(sysDescr);
+		assertThat(index.getNode("SNMPv2-MIB::sysDescr") == null, is(true));
+		assertThat(index.getNode("RFC1213-MIB::sysDescr") == null, is(true));
+		assertThat(index.contains("sysDescr"), is(false));
+	}
+	
+	private static MibTreeNode addNode(MibNameIndex index, String mibName, String name)
+	{
+		MibObjectIdentifier mibObject = new MibObjectIdentifier(name, 1);
+		mibObject.setMibName(mibName);
+		
+		MibTreeNode node = new MibTreeNode(mibObject);
+		index.add(node);
+		return node;
+	}
+	
+	private static String names(List<MibTreeNode> nodes)
+	{
+		StringBuilder names = new StringBuilder();
+		for (MibTreeNode node : nodes)
+		{
+			if (names.length() > 0)
+				names.append(' ');
+			
+			names.append(node);
+		}
+		
+		return names.toString();
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib.mibtree;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import libmib.MibObjectIdentifier;
+import libmib.mibtree.MibTreeNode.NodeSearchOption;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.error.SnmpBadValueException;
+
+public class MibTreeNodeTests
+{
+	@Test
+	public void testExactLookup() throws SnmpBadValueException
+	{
+		MibTreeNode root = createTree();
+		
+		assertThat(root.getNodeByOid("1.3.6.1.2.1.1.1", NodeSearchOption.MatchExactPath).toString(), is("sysDescr"));
+		assertThat(root.getNodeByOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.1"), NodeSearchOption.MatchExactPath).toString(), is("sysDescr"));
+		assertThat(root.getNodeByOid(new int[] { 1, 3, 6, 1, 2, 1, 1, 5 }, NodeSearchOption.MatchExactPath).toString(), is("sysName"));
+		
+		assertThat(root.getNodeByOid("1.3.6.1.2.1.1.1.0", NodeSearchOption.MatchExactPath) == null, is(true));
+		assertThat(root.getNodeByOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.9"), NodeSearchOption.MatchExactPath) == null, is(true));
+	}
+	
+	@Test
+	public void testNearestLookup() throws SnmpBadValueException
+	{
+		MibTreeNode root = createTree();
+		
+		assertThat(root.getNodeByOid("1.3.6.1.2.1.1.1.0", NodeSearchOption.MatchNearestPath).toString(), is("sysDescr"));
+		assertThat(root.getNodeByOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.5.0"), NodeSearchOption.MatchNearestPath).toString(), is("sysName"));
+		assertThat(root.getNodeByOid(new int[] { 1, 3, 6, 1, 2, 1, 1, 9, 1 }, NodeSearchOption.MatchNearestPath).toString(), is("system"));
+		assertThat(root.getNodeByOid(new SnmpObjectIdentifier("1.3.6.1.4294967295"), NodeSearchOption.MatchNearestPath).toString(), is("internet"));
+		
+		assertThat(root.getNodeByOid("2.5", NodeSearchOption.MatchNearestPath) == null, is(true));
+	}
+	
+	@Test
+	public void testIndexFollowsChildChanges()
+	{
+		MibTreeNode root = createTree();
+		MibTreeNode system = root.getNodeByOid("1.3.6.1.2.1.1", NodeSearchOption.MatchExactPath);
+		MibTreeNode sysName = system.getChildById(5);
+		
+		MibTreeNode duplicate = new MibTreeNode(new MibObjectIdentifier("sysNameAlias", 5));
+		system.add(duplicate);
+		assertThat(system.getChildById(5) == sysName, is(true));
+		
+		system.remove(sysName);
+		assertThat(system.getChildById(5) == duplicate, is(true));
+		
+		system.remove(duplicate);
+		assertThat(system.getChildById(5) == null, is(true));
+		assertThat(system.getChildById(1).toString(), is("sysDescr"));
+	}
+	
+	@Test(expected = NumberFormatException.class)
+	public void testInvalidOidString()
+	{
+		createTree().getNodeByOid("1.3.six", NodeSearchOption.MatchNearestPath);
+	}
+	
+	private static MibTreeNode createTree()
+	{
+		MibTreeNode root = new MibTreeNode(new MibObjectIdentifier("root", 0));
+		MibTreeNode node = root;
+		
+		String[] names = { "iso", "org", "dod", "internet", "mgmt", "mib-2", "system" };
+		int[] ids = { 1, 3, 6, 1, 2, 1, 1 };
+		for (int i = 0; i < names.length; i++)
+		{
+			// Add some out of order siblings to exercise the sorted index.
+			node.add(new MibTreeNode(new MibObjectIdentifier(names[i] + "Sibling", ids[i] + 10)));
+			
+			MibTreeNode child = new MibTreeNode(new MibObjectIdentifier(names[i], ids[i]));
+			node.add(child);
+			node = child;
+		}
+		
+		node.add(new MibTreeNode(new MibObjectIdentifier("sysName", 5)));
+		node.add(new MibTreeNode(new MibObjectIdentifier("sysDescr", 1)));
+		
+		return root;
+	}
+}
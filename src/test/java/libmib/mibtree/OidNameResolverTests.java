@@ -0,0 +1,93 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+
+package libmib.mibtree;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+import libmib.MibObjectIdentifier;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.error.SnmpBadValueException;
+
+public class OidNameResolverTests
+{
+	@Test
+	public void testDisplayOid() throws SnmpBadValueException
+	{
+		OidNameResolver resolver = new OidNameResolver(createTree());
+		
+		assertThat(resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.1.0")), is("system.sysDescr.0"));
+		assertThat(resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.9.1")), is("system.9.1"));
+		assertThat(resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.4.1.9.1")), is("cisco.1"));
+		assertThat(resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.3.7")), is("iso.org.dod.internet.3.7"));
+		assertThat(resolver.getDisplayOid(new SnmpObjectIdentifier("2.5.4")), is("2.5.4"));
+	}
+	
+	@Test
+	public void testCacheIsBounded() throws SnmpBadValueException
+	{
+		OidNameResolver resolver = new OidNameResolver(createTree(), 2);
+		
+		resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.1.0"));
+		resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.1.1"));
+		assertThat(resolver.getCachedNodeCount(), is(1));
+		
+		resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.5.0"));
+		resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.4.1.9.1"));
+		assertThat(resolver.getCachedNodeCount(), is(2));
+		
+		// An evicted name is rebuilt the same way.
+		assertThat(resolver.getDisplayOid(new SnmpObjectIdentifier("1.3.6.1.2.1.1.1.0")), is("system.sysDescr.0"));
+		
+		resolver.clearCache();
+		assertThat(resolver.getCachedNodeCount(), is(0));
+	}
+	
+	private static MibTreeNode createTree()
+	{
+		MibTreeNode root = new MibTreeNode(new MibObjectIdentifier("root", 0));
+		MibTreeNode internet = addPath(root, new String[] { "iso", "org", "dod", "internet" }, new int[] { 1, 3, 6, 1 });
+		
+		MibTreeNode system = addPath(internet, new String[] { "mgmt", "mib-2", "system" }, new int[] { 2, 1, 1 });
+		system.add(new MibTreeNode(new MibObjectIdentifier("sysDescr", 1)));
+		system.add(new MibTreeNode(new MibObjectIdentifier("sysName", 5)));
+		
+		addPath(internet, new String[] { "private", "enterprises", "cisco" }, new int[] { 4, 1, 9 });
+		
+		return root;
+	}
+	
+	private static MibTreeNode addPath(MibTreeNode node, String[] names, int[] ids)
+	{
+		for (int i = 0; i < names.length; i++)
+		{
+			MibTreeNode child = new MibTreeNode(new MibObjectIdentifier(names[i], ids[i]));
+			node.add(child);
+			node = child;
+		}
+		
+		return node;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.Test;
+
+import snmp.CounterRateCalculator.SampleStatus;
+import snmp.datatypes.SnmpCounter32;
+import snmp.datatypes.SnmpCounter64;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.error.SnmpBadValueException;
+
+public class CounterRateCalculatorTests
+{
+	private static final long SECOND = 1000000000L;
+	private static final long UNKNOWN = CounterRateCalculator.UNKNOWN_UPTIME;
+
+	@Test
+	public void testRate()
+	{
+		CounterRateCalculator calculator = new CounterRateCalculator();
+
+		assertThat(calculator.updateCounter32(1, 1000, UNKNOWN, 0), is(SampleStatus.FirstSample));
+		assertThat(calculator.updateCounter32(1, 6000, UNKNOWN, 10 * SECOND), is(SampleStatus.Rate));
+		assertThat(calculator.getDelta(), is(5000L));
+		assertThat(calculator.getElapsedNanos(), is(10 * SECOND));
+		assertThat(calculator.getRate(), is(500.0));
+	}
+
+	@Test
+	public void testCounter32Wraps()
+	{
+		CounterRateCalculator calculator = new CounterRateCalculator();
+
+		calculator.updateCounter32(1, 0xFFFFFF00L, UNKNOWN, 0);
+		assertThat(calculator.updateCounter32(1, 0x100, UNKNOWN, SECOND), is(SampleStatus.Rate));
+		assertThat(calculator.getDelta(), is(0x200L));
+	}
+
+	@Test
+	public void testCounter64Wraps()
+	{
+		CounterRateCalculator calculator = new CounterRateCalculator();
+
+		calculator.updateCounter64(1, -10, UNKNOWN, 0);
+		assertThat(calculator.updateCounter64(1, 30, UNKNOWN, SECOND), is(SampleStatus.Rate));
+		assertThat(calculator.getDelta(), is(40L));
+
+		// Deltas above 2^63 are unsigned.
+		calculator.updateCounter64(1, Long.MIN_VALUE + 30, UNKNOWN, 2 * SECOND);
+		assertThat(calculator.getRate(), is(9223372036854775808.0));
+	}
+
+	@Test
+	public void testUpdateWithSnmpValues() throws SnmpBadValueException
+	{
+		CounterRateCalculator calculator = new CounterRateCalculator();
+
+		calculator.update(1, new SnmpCounter32(4294967000L), UNKNOWN, 0);
+		calculator.update(1, new SnmpCounter32(100), UNKNOWN, SECOND);
+		assertThat(calculator.getDelta(), is(396L));
+
+		SnmpCounter64 large = new SnmpCounter64();
+		large.setValue(new BigInteger("18000000000000000000"));
+		calculator.update(2, large, UNKNOWN, 0);
+		calculator.update(2, new SnmpCounter64(1000), UNKNOWN, SECOND);
+		assertThat(calculator.getDelta(), is(446744073709552616L));
+	}
+
+	@Test
+	public void testUptimeDiscontinuity()
+	{
+		CounterRateCalculator calculator = new CounterRateCalculator();
+
+		calculator.updateCounter32(1, 5000, 100000, 0);
+		assertThat(calculator.updateCounter32(1, 9000, 106000, 60 * SECOND), is(SampleStatus.Rate));
+
+		// The agent restarted: its uptime went back and its counters were reset.
+		assertThat(calculator.updateCounter32(1, 200, 3000, 120 * SECOND), is(SampleStatus.Discontinuity));
+		assertThat(calculator.updateCounter32(1, 800, 9000, 180 * SECOND), is(SampleStatus.Rate));
+		assertThat(calculator.getDelta(), is(600L));
+
+		// A restart long enough ago that the uptime is higher than before is still noticed.
+		assertThat(calculator.updateCounter32(1, 50, 12000, 480 * SECOND), is(SampleStatus.Discontinuity));
+	}
+
+	@Test
+	public void testUptimeWrapIsNotDiscontinuity()
+	{
+		CounterRateCalculator calculator = new CounterRateCalculator();
+
+		calculator.updateCounter32(1, 5000, 0xFFFFF000L, 0);
+		assertThat(calculator.updateCounter32(1, 6000, 0x00000B00L, 60 * SECOND), is(SampleStatus.Rate));
+	}
+
+	@Test
+	public void testManySeries()
+	{
+		CounterRateCalculator calculator = new CounterRateCalculator();
+
+		for (int i = 0; i < 5000; i++)
+			calculator.updateCounter32(((long)i << 32) | i, i, UNKNOWN, 0);
+		assertThat(calculator.size(), is(5000));
+
+		for (int i = 0; i < 5000; i += 2)
+			assertThat(calculator.remove(((long)i << 32) | i), is(true));
+		assertThat(calculator.size(), is(2500));
+
+		for (int i = 1; i < 5000; i += 2)
+		{
+			assertThat(calculator.updateCounter32(((long)i << 32) | i, i + 100, UNKNOWN, SECOND), is(SampleStatus.Rate));
+			assertThat(calculator.getDelta(), is(100L));
+		}
+
+		assertThat(calculator.updateCounter32(0, 0, UNKNOWN, SECOND), is(SampleStatus.FirstSample));
+	}
+
+	@Test
+	public void testSeriesKeys() throws Exception
+	{
+		CounterRateCalculator calculator = new CounterRateCalculator();
+		InetSocketAddress first = new InetSocketAddress(InetAddress.getLoopbackAddress(), 161);
+		InetSocketAddress second = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1161);
+		SnmpObjectIdentifier inOctets = new SnmpObjectIdentifier("1.3.6.1.2.1.31.1.1.1.6.1");
+
+		long key = calculator.getSeriesKey(first, inOctets);
+		assertThat(calculator.getSeriesKey(first, new SnmpObjectIdentifier("1.3.6.1.2.1.31.1.1.1.6.1")), is(key));
+		assertThat(calculator.getSeriesKey(second, inOctets) == key, is(false));
+		assertThat(calculator.getSeriesKey(first, new SnmpObjectIdentifier("1.3.6.1.2.1.31.1.1.1.6.2")) == key, is(false));
+	}
+}
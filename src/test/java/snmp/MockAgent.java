@@ -0,0 +1,289 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import snmp.datatypes.SnmpBERType;
+import snmp.datatypes.SnmpObject;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.SnmpV2ExceptionValue;
+import snmp.datatypes.sequence.SnmpMessage;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVariablePair;
+import snmp.datatypes.sequence.pdu.SnmpBasicPDU;
+import snmp.datatypes.sequence.pdu.SnmpV2BulkRequestPDU;
+import snmp.error.ErrorStatus;
+import snmp.error.SnmpBadValueException;
+
+/**
+ * A minimal agent on the loopback interface that answers Get, GetNext, GetBulk and Set 
+ * requests from a table of values, so that clients can be tested without a real SNMP agent.
+ */
+public class MockAgent extends Thread
+{
+	/** Bulk requests for more repetitions than this are answered with tooBig. */
+	public volatile int maxRepetitions = Integer.MAX_VALUE;
+	
+	/** Bulk responses encoded in more bytes than this are replaced by tooBig. */
+	public volatile int maxResponseSize = Integer.MAX_VALUE;
+	
+	/** 
+	 * The number of requests collected before they are answered, in reverse order.
+	 * Fewer are answered once no more requests arrive for a short while.
+	 */
+	public volatile int batchSize = 1;
+	
+	/** The version of the agent; SNMPv1 agents report the end of their view as noSuchName. */
+	public volatile SnmpVersion version = SnmpVersion.SNMPv2;
+	
+	/** The number of requests to ignore, as if they were lost, before answering again. */
+	public volatile int dropNext = 0;
+	
+	/** If greater than zero, every dropEvery-th request is ignored. */
+	public volatile int dropEvery = 0;
+	
+	/** 
+	 * If set, Get, GetNext and Set requests are answered with this error status and an 
+	 * error index of 0, as agents do for errors such as tooBig and genErr.
+	 */
+	public volatile ErrorStatus errorStatus = null;
+	
+	/** If true, every response is sent twice. */
+	public volatile boolean duplicateResponses = false;
+	
+	/** The number of requests received, including dropped ones. */
+	public volatile int requestCount = 0;
+	
+	/** The max-repetitions of each bulk request received. */
+	public final List<Integer> repetitions = new Vector<Integer>();
+	
+	/** The number of requests answered together in each batch. */
+	public final List<Integer> batches = new Vector<Integer>();
+	
+	private final DatagramSocket socket;
+	private final TreeMap<SnmpObjectIdentifier, SnmpObject> values = new TreeMap<SnmpObjectIdentifier, SnmpObject>();
+	private final SnmpPacketProcessor processor = new SnmpPacketProcessor();
+	
+	public MockAgent() throws SocketException
+	{
+		socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		socket.setSoTimeout(100);
+		setDaemon(true);
+	}
+	
+	public void put(String oid, SnmpObject value) throws SnmpBadValueException
+	{
+		values.put(new SnmpObjectIdentifier(oid), value);
+	}
+	
+	public int getPort()
+	{
+		return socket.getLocalPort();
+	}
+	
+	public void close()
+	{
+		socket.close();
+	}
+	
+	@Override
+	public void run()
+	{
+		List<DatagramPacket> pending = new ArrayList<DatagramPacket>();
+		try
+		{
+			while (!socket.isClosed())
+			{
+				try
+				{
+					DatagramPacket inPacket = new DatagramPacket(new byte[2048], 2048);
+					socket.receive(inPacket);
+					
+					// Closing the socket can wake a pending receive with an empty datagram.
+					if (socket.isClosed())
+						break;
+					
+					requestCount++;
+					if (dropNext > 0)
+					{
+						dropNext--;
+						continue;
+					}
+					
+					if (dropEvery > 0 && requestCount % dropEvery == 0)
+						continue;
+					
+					pending.add(inPacket);
+					if (pending.size() < batchSize)
+						continue;
+				}
+				catch (SocketTimeoutException e)
+				{
+					if (pending.isEmpty())
+						continue;
+				}
+				
+				batches.add(pending.size());
+				Collections.reverse(pending);
+				for (DatagramPacket inPacket : pending)
+					respond(inPacket);
+				
+				pending.clear();
+			}
+		}
+		catch (IOException e)
+		{
+			// closed
+		}
+		catch (SnmpBadValueException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void respond(DatagramPacket inPacket) throws IOException, SnmpBadValueException
+	{
+		SnmpMessage request = processor.createMessage(inPacket);
+		
+		SnmpBasicPDU response;
+		if (request.getPDUAsObject() instanceof SnmpV2BulkRequestPDU)
+			response = respondToBulk(request.getBulkRequestPDU());
+		else if (errorStatus != null)
+			response = new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, request.getPDU().getRequestID(), errorStatus, 0, 
+					request.getPDU().getVarBindList());
+		else if (request.getPDU().getPDUType() == SnmpBERType.SnmpGetRequest)
+			response = respondToGet(request.getPDU());
+		else if (request.getPDU().getPDUType() == SnmpBERType.SnmpSetRequest)
+			response = respondToSet(request.getPDU());
+		else
+			response = respondToGetNext(request.getPDU());
+		
+		SnmpMessage message = new SnmpMessage(version, "public", response);
+		socket.send(processor.createPacket(message, inPacket.getAddress(), inPacket.getPort()));
+		
+		if (duplicateResponses)
+			socket.send(processor.createPacket(message, inPacket.getAddress(), inPacket.getPort()));
+	}
+	
+	private SnmpBasicPDU respondToGet(SnmpBasicPDU pdu) throws SnmpBadValueException
+	{
+		SnmpSequence varList = new SnmpSequence();
+		
+		SnmpSequence requestedList = pdu.getVarBindList();
+		for (int i = 0; i < requestedList.size(); i++)
+		{
+			SnmpSequence requested = (SnmpSequence)requestedList.getSNMPObjectAt(i);
+			SnmpObjectIdentifier oid = (SnmpObjectIdentifier)requested.getSNMPObjectAt(0);
+			
+			SnmpObject value = values.get(oid);
+			if (value == null)
+				return new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, pdu.getRequestID(), ErrorStatus.NoSuchName, i + 1, requestedList);
+			
+			varList.addSNMPObject(new SnmpVariablePair(oid, value));
+		}
+		
+		return new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, pdu.getRequestID(), ErrorStatus.NoError, 0, varList);
+	}
+	
+	private SnmpBasicPDU respondToSet(SnmpBasicPDU pdu) throws SnmpBadValueException
+	{
+		SnmpSequence requestedList = pdu.getVarBindList();
+		for (int i = 0; i < requestedList.size(); i++)
+		{
+			SnmpSequence requested = (SnmpSequence)requestedList.getSNMPObjectAt(i);
+			values.put((SnmpObjectIdentifier)requested.getSNMPObjectAt(0), requested.getSNMPObjectAt(1));
+		}
+		
+		return new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, pdu.getRequestID(), ErrorStatus.NoError, 0, requestedList);
+	}
+	
+	private SnmpBasicPDU respondToGetNext(SnmpBasicPDU pdu) throws SnmpBadValueException
+	{
+		SnmpSequence varList = new SnmpSequence();
+		
+		SnmpSequence requestedList = pdu.getVarBindList();
+		for (int i = 0; i < requestedList.size(); i++)
+		{
+			SnmpSequence requested = (SnmpSequence)requestedList.getSNMPObjectAt(i);
+			SnmpObjectIdentifier oid = (SnmpObjectIdentifier)requested.getSNMPObjectAt(0);
+			
+			Map.Entry<SnmpObjectIdentifier, SnmpObject> next = values.higherEntry(oid);
+			if (next == null)
+			{
+				if (version == SnmpVersion.SNMPv1)
+					return new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, pdu.getRequestID(), ErrorStatus.NoSuchName, i + 1, requestedList);
+				
+				varList.addSNMPObject(new SnmpVariablePair(oid, new SnmpV2ExceptionValue(SnmpBERType.SnmpEndOfMibView)));
+			}
+			else
+			{
+				varList.addSNMPObject(new SnmpVariablePair(next.getKey(), next.getValue()));
+			}
+		}
+		
+		return new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, pdu.getRequestID(), ErrorStatus.NoError, 0, varList);
+	}
+	
+	private SnmpBasicPDU respondToBulk(SnmpV2BulkRequestPDU pdu) throws SnmpBadValueException
+	{
+		repetitions.add(pdu.getMaxRepetitions());
+		
+		SnmpSequence varList = new SnmpSequence();
+		if (pdu.getMaxRepetitions() > maxRepetitions)
+			return new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, pdu.getRequestID(), ErrorStatus.TooBig, 0, varList);
+		
+		SnmpSequence requested = (SnmpSequence)pdu.getVarBindList().getSNMPObjectAt(0);
+		SnmpObjectIdentifier oid = (SnmpObjectIdentifier)requested.getSNMPObjectAt(0);
+		
+		for (int i = 0; i < pdu.getMaxRepetitions(); i++)
+		{
+			Map.Entry<SnmpObjectIdentifier, SnmpObject> next = values.higherEntry(oid);
+			if (next == null)
+			{
+				varList.addSNMPObject(new SnmpVariablePair(oid, new SnmpV2ExceptionValue(SnmpBERType.SnmpEndOfMibView)));
+			}
+			else
+			{
+				oid = next.getKey();
+				varList.addSNMPObject(new SnmpVariablePair(oid, next.getValue()));
+			}
+		}
+		
+		SnmpBasicPDU response = new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, pdu.getRequestID(), ErrorStatus.NoError, 0, varList);
+		if (new SnmpMessage(version, "public", response).getEncodedLength() > maxResponseSize)
+			return new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, pdu.getRequestID(), ErrorStatus.TooBig, 0, new SnmpSequence());
+		
+		return response;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class RoundTripTimeEstimatorTests
+{
+	@Test
+	public void testInitialTimeout()
+	{
+		RoundTripTimeEstimator estimator = new RoundTripTimeEstimator();
+
+		assertThat(estimator.hasSamples(), is(false));
+		assertThat(estimator.getTimeout(), is(RoundTripTimeEstimator.INITIAL_TIMEOUT));
+	}
+
+	@Test
+	public void testFirstSample()
+	{
+		RoundTripTimeEstimator estimator = new RoundTripTimeEstimator();
+		estimator.addSample(200);
+
+		// 200 + 4 * 100
+		assertThat(estimator.getSmoothedRoundTripTime(), is(200L));
+		assertThat(estimator.getTimeout(), is(600));
+	}
+
+	@Test
+	public void testSmoothing()
+	{
+		RoundTripTimeEstimator estimator = new RoundTripTimeEstimator();
+		estimator.addSample(200);
+		estimator.addSample(280);
+
+		// SRTT = 200 + 80/8, RTTVAR = 100 + (80 - 100)/4
+		assertThat(estimator.getSmoothedRoundTripTime(), is(210L));
+		assertThat(estimator.getTimeout(), is(210 + 4 * 95));
+
+		// Steady round-trip times bring the timeout down towards them.
+		for (int i = 0; i < 100; i++)
+			estimator.addSample(300);
+
+		assertThat(estimator.getSmoothedRoundTripTime(), is(300L));
+		assertThat(estimator.getTimeout() < 310, is(true));
+	}
+
+	@Test
+	public void testMinimumTimeout()
+	{
+		RoundTripTimeEstimator estimator = new RoundTripTimeEstimator();
+		for (int i = 0; i < 10; i++)
+			estimator.addSample(1);
+
+		assertThat(estimator.getTimeout(), is(RoundTripTimeEstimator.MINIMUM_TIMEOUT));
+	}
+
+	@Test
+	public void testBackoff()
+	{
+		RoundTripTimeEstimator estimator = new RoundTripTimeEstimator();
+		estimator.addSample(200);
+
+		assertThat(estimator.getTimeout(0, 5000), is(600));
+		assertThat(estimator.getTimeout(1, 5000), is(1200));
+		assertThat(estimator.getTimeout(2, 5000), is(2400));
+		assertThat(estimator.getTimeout(3, 5000), is(4800));
+		assertThat(estimator.getTimeout(4, 5000), is(5000));
+		assertThat(estimator.getTimeout(40, 5000), is(5000));
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import snmp.datatypes.SnmpObject;
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.error.ErrorStatus;
+import snmp.error.SnmpGetException;
+
+public class SnmpAsyncClientTests
+{
+	private static final String SYS_NAME = "1.3.6.1.2.1.1.5.0";
+	private static final String SYS_LOCATION = "1.3.6.1.2.1.1.6.0";
+
+	private MockAgent first;
+	private MockAgent second;
+	private SnmpAsyncClient client;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		first = createAgent("first");
+		second = createAgent("second");
+		client = new SnmpAsyncClient();
+	}
+
+	@After
+	public void tearDown()
+	{
+		client.close();
+		first.close();
+		second.close();
+	}
+
+	@Test
+	public void testRequestsToSeveralAgents() throws Exception
+	{
+		// Have the agents answer out of order.
+		first.batchSize = 5;
+		second.batchSize = 5;
+
+		List<CompletableFuture<SnmpVarBindList>> firstResults = new ArrayList<CompletableFuture<SnmpVarBindList>>();
+		List<CompletableFuture<SnmpVarBindList>> secondResults = new ArrayList<CompletableFuture<SnmpVarBindList>>();
+		for (int i = 0; i < 10; i++)
+		{
+			firstResults.add(client.getNext(target(first), "1.3.6.1.2.1.1.5"));
+			secondResults.add(client.get(target(second), SYS_NAME));
+		}
+
+		for (CompletableFuture<SnmpVarBindList> result : firstResults)
+			assertThat(valueAt(result.get(5, TimeUnit.SECONDS), 0).toString(), is("first"));
+
+		for (CompletableFuture<SnmpVarBindList> result : secondResults)
+			assertThat(valueAt(result.get(5, TimeUnit.SECONDS), 0).toString(), is("second"));
+	}
+
+	@Test
+	public void testSetAndGet() throws Exception
+	{
+		SnmpTarget target = target(first);
+		client.set(target, new String[] { SYS_LOCATION }, new SnmpObject[] { new SnmpOctetString("rack 4") }).get(5, TimeUnit.SECONDS);
+
+		SnmpVarBindList result = client.get(target, SYS_NAME, SYS_LOCATION).get(5, TimeUnit.SECONDS);
+		assertThat(result.size(), is(2));
+		assertThat(valueAt(result, 1).toString(), is("rack 4"));
+	}
+
+	@Test
+	public void testGetBulk() throws Exception
+	{
+		SnmpVarBindList result = client.getBulk(target(first), 0, 2, "1.3.6.1.2.1.1").get(5, TimeUnit.SECONDS);
+
+		assertThat(result.size(), is(2));
+		assertThat(valueAt(result, 0).toString(), is("first"));
+		assertThat(valueAt(result, 1).toString(), is("lab"));
+	}
+
+	@Test
+	public void testErrorStatus() throws Exception
+	{
+		try
+		{
+			client.get(target(first), "1.3.6.1.2.1.1.7.0").get(5, TimeUnit.SECONDS);
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertThat(e.getCause(), instanceOf(SnmpGetException.class));
+			assertThat(((SnmpGetException)e.getCause()).errorStatus, is(ErrorStatus.NoSuchName));
+		}
+	}
+
+	@Test
+	public void testTimeout() throws Exception
+	{
+		DatagramSocket silent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		try
+		{
+			SnmpTarget target = new SnmpTarget(InetAddress.getLoopbackAddress(), silent.getLocalPort(), SnmpVersion.SNMPv2, "public", 200);
+			CompletableFuture<SnmpVarBindList> result = client.get(target, SYS_NAME);
+
+			// The other requests are not held up.
+			assertThat(valueAt(client.get(target(first), SYS_NAME).get(5, TimeUnit.SECONDS), 0).toString(), is("first"));
+
+			result.get(5, TimeUnit.SECONDS);
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertThat(e.getCause(), instanceOf(SocketTimeoutException.class));
+		}
+		finally
+		{
+			silent.close();
+		}
+	}
+
+	@Test
+	public void testClose() throws Exception
+	{
+		DatagramSocket silent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		try
+		{
+			SnmpTarget target = new SnmpTarget(InetAddress.getLoopbackAddress(), silent.getLocalPort(), SnmpVersion.SNMPv2, "public", 10000);
+			CompletableFuture<SnmpVarBindList> result = client.get(target, SYS_NAME);
+			client.close();
+
+			result.get(5, TimeUnit.SECONDS);
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertThat(e.getCause(), instanceOf(ClosedChannelException.class));
+		}
+		finally
+		{
+			silent.close();
+		}
+
+		CompletableFuture<SnmpVarBindList> afterClose = client.get(target(first), SYS_NAME);
+		assertThat(afterClose.isCompletedExceptionally(), is(true));
+	}
+
+	private static MockAgent createAgent(String name) throws Exception
+	{
+		MockAgent agent = new MockAgent();
+		agent.put(SYS_NAME, new SnmpOctetString(name));
+		agent.put(SYS_LOCATION, new SnmpOctetString("lab"));
+		agent.start();
+		return agent;
+	}
+
+	private static SnmpTarget target(MockAgent agent)
+	{
+		return new SnmpTarget(InetAddress.getLoopbackAddress(), agent.getPort(), SnmpVersion.SNMPv2, "public", 5000);
+	}
+
+	private static SnmpObject valueAt(SnmpVarBindList list, int index)
+	{
+		return ((SnmpSequence)list.getSNMPObjectAt(index)).getSNMPObjectAt(1);
+	}
+}
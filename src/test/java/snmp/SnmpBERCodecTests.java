@@ -0,0 +1,210 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigInteger;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import snmp.datatypes.SnmpBERCodec;
+import snmp.datatypes.SnmpBERType;
+import snmp.datatypes.SnmpCounter64;
+import snmp.datatypes.SnmpInteger;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.SnmpTLV;
+import snmp.datatypes.sequence.SnmpMessage;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVariablePair;
+import snmp.datatypes.sequence.pdu.SnmpBasicPDU;
+import snmp.error.ErrorStatus;
+import snmp.error.SnmpBadValueException;
+
+public class SnmpBERCodecTests
+{
+	@Test
+	public void testDecodeFromPacketSlice() throws SnmpBadValueException
+	{
+		byte[] encoding = createResponse().encode();
+
+		// Surround the message with junk to make sure only the slice is read.
+		byte[] buffer = new byte[encoding.length + 20];
+		Arrays.fill(buffer, (byte)0x30);
+		System.arraycopy(encoding, 0, buffer, 7, encoding.length);
+		DatagramPacket packet = new DatagramPacket(buffer, 7, encoding.length);
+
+		SnmpMessage message = new SnmpPacketProcessor().createMessage(packet);
+		assertResponse(message);
+	}
+
+	@Test
+	public void testDecodeFromByteBuffer() throws SnmpBadValueException
+	{
+		byte[] encoding = createResponse().encode();
+
+		ByteBuffer heap = ByteBuffer.wrap(encoding);
+		assertResponse(new SnmpPacketProcessor().createMessage(heap));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(encoding.length);
+		direct.put(encoding);
+		direct.flip();
+		assertResponse(new SnmpPacketProcessor().createMessage(direct));
+		assertThat(direct.position(), is(0));
+	}
+
+	@Test
+	public void testDecodeMatchesCopyingDecode() throws SnmpBadValueException
+	{
+		byte[] encoding = createResponse().encode();
+
+		SnmpMessage copied = new SnmpMessage(SnmpBERCodec.extractNextTLV(encoding, 0).value);
+		SnmpMessage sliced = new SnmpPacketProcessor().createMessage(encoding, 0, encoding.length);
+
+		assertThat(sliced.toString(), is(copied.toString()));
+	}
+
+	@Test
+	public void testReadNextTLVDoesNotCopy() throws SnmpBadValueException
+	{
+		byte[] encoding = new SnmpOctetString("hello").encode();
+
+		SnmpTLV tlv = SnmpBERCodec.readNextTLV(encoding, 0, encoding.length);
+
+		assertThat(tlv.tag, is(SnmpBERType.SnmpOctetString));
+		assertThat(tlv.encoding == encoding, is(true));
+		assertThat(tlv.valueOffset, is(2));
+		assertThat(tlv.valueLength, is(5));
+		assertThat(tlv.length, is(7));
+		assertThat(tlv.value == null, is(true));
+	}
+
+	@Test(expected = SnmpBadValueException.class)
+	public void testTruncatedEncoding() throws SnmpBadValueException
+	{
+		byte[] encoding = createResponse().encode();
+		new SnmpPacketProcessor().createMessage(encoding, 0, encoding.length - 3);
+	}
+
+	@Test
+	public void testEncodeKnownValues() throws SnmpBadValueException
+	{
+		assertThat(new SnmpInteger(300).encode(), is(new byte[] { 0x02, 0x02, 0x01, 0x2C }));
+		assertThat(new SnmpInteger(-129).encode(), is(new byte[] { 0x02, 0x02, (byte)0xFF, 0x7F }));
+		assertThat(new SnmpInteger(0).encode(), is(new byte[] { 0x02, 0x01, 0x00 }));
+
+		assertThat(new SnmpObjectIdentifier("1.3.6.1.2.1.1.5.0").encode(), 
+				is(new byte[] { 0x06, 0x08, 0x2B, 0x06, 0x01, 0x02, 0x01, 0x01, 0x05, 0x00 }));
+		assertThat(new SnmpObjectIdentifier("1.3.16384").encode(), 
+				is(new byte[] { 0x06, 0x04, 0x2B, (byte)0x81, (byte)0x80, 0x00 }));
+
+		assertThat(SnmpBERCodec.encodeLength(127), is(new byte[] { 0x7F }));
+		assertThat(SnmpBERCodec.encodeLength(200), is(new byte[] { (byte)0x81, (byte)0xC8 }));
+		assertThat(SnmpBERCodec.encodeLength(256), is(new byte[] { (byte)0x82, 0x01, 0x00 }));
+	}
+
+	@Test
+	public void testEncodeIntoBuffer() throws SnmpBadValueException
+	{
+		SnmpMessage message = createResponse();
+		byte[] encoding = message.encode();
+		assertThat(message.getEncodedLength(), is(encoding.length));
+
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		buffer.put((byte)0x55);
+		new SnmpPacketProcessor().encodeMessage(message, buffer);
+
+		assertThat(buffer.position(), is(encoding.length + 1));
+		assertThat(Arrays.copyOfRange(buffer.array(), 1, encoding.length + 1), is(encoding));
+	}
+
+	@Test
+	public void testEncodeLongContents() throws SnmpBadValueException
+	{
+		byte[] data = new byte[300];
+		Arrays.fill(data, (byte)'a');
+
+		SnmpSequence sequence = new SnmpSequence();
+		sequence.addSNMPObject(new SnmpOctetString(data));
+		sequence.addSNMPObject(new SnmpCounter64(5000000000L));
+
+		byte[] encoding = sequence.encode();
+		assertThat(encoding.length, is(sequence.getEncodedLength()));
+
+		SnmpSequence decoded = (SnmpSequence)SnmpBERCodec.decode(SnmpBERCodec.readNextTLV(encoding, 0, encoding.length));
+		assertThat(decoded.getSNMPObjectAt(0).getValue(), is((Object)data));
+		assertThat(decoded.getSNMPObjectAt(1).getValue(), is((Object)BigInteger.valueOf(5000000000L)));
+	}
+
+	@Test
+	public void testCreatePacketFromBuffer() throws SnmpBadValueException
+	{
+		SnmpMessage message = createResponse();
+		byte[] encoding = message.encode();
+
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		buffer.put(new byte[10]);	// leftovers from a previous message are discarded
+		DatagramPacket packet = new SnmpPacketProcessor().createPacket(message, null, 161, buffer);
+
+		assertThat(packet.getLength(), is(encoding.length));
+		assertThat(Arrays.copyOfRange(packet.getData(), packet.getOffset(), packet.getLength()), is(encoding));
+	}
+
+	private static SnmpMessage createResponse() throws SnmpBadValueException
+	{
+		SnmpSequence varList = new SnmpSequence();
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier("1.3.6.1.2.1.1.5.0"), new SnmpOctetString("router")));
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier("1.3.6.1.2.1.31.1.1.1.6.1"), new SnmpCounter64(5000000000L)));
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier("1.3.6.1.2.1.2.2.1.8.1"), new SnmpInteger(-2)));
+
+		SnmpBasicPDU pdu = new SnmpBasicPDU(SnmpBERType.SnmpGetResponse, 42, ErrorStatus.NoError, 0, varList);
+		return new SnmpMessage(SnmpVersion.SNMPv2, "public", pdu);
+	}
+
+	private static void assertResponse(SnmpMessage message) throws SnmpBadValueException
+	{
+		assertThat(message.getCommunityName(), is("public"));
+
+		SnmpBasicPDU pdu = message.getPDU();
+		assertThat(pdu.getRequestID(), is(42));
+		assertThat(pdu.getPDUType(), is(SnmpBERType.SnmpGetResponse));
+
+		SnmpSequence varList = pdu.getVarBindList();
+		assertThat(varList.size(), is(3));
+
+		SnmpSequence pair = (SnmpSequence)varList.getSNMPObjectAt(0);
+		assertThat(pair.getSNMPObjectAt(0).toString(), is("1.3.6.1.2.1.1.5.0"));
+		assertThat(pair.getSNMPObjectAt(1).toString(), is("router"));
+
+		pair = (SnmpSequence)varList.getSNMPObjectAt(1);
+		assertThat(pair.getSNMPObjectAt(0).toString(), is("1.3.6.1.2.1.31.1.1.1.6.1"));
+		assertThat((BigInteger)pair.getSNMPObjectAt(1).getValue(), is(BigInteger.valueOf(5000000000L)));
+
+		pair = (SnmpSequence)varList.getSNMPObjectAt(2);
+		assertThat((BigInteger)pair.getSNMPObjectAt(1).getValue(), is(BigInteger.valueOf(-2)));
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+
+public class SnmpBufferPoolTests
+{
+	@Test
+	public void testBorrowSmallestSize()
+	{
+		SnmpBufferPool pool = new SnmpBufferPool(false, 1 << 20);
+		
+		assertThat(pool.borrow(100).capacity(), is(512));
+		assertThat(pool.borrow(512).capacity(), is(512));
+		assertThat(pool.borrow(513).capacity(), is(2048));
+		assertThat(pool.borrow().capacity(), is(SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE));
+		assertThat(pool.borrow().hasArray(), is(true));
+		assertThat(new SnmpBufferPool(true, 0).borrow().isDirect(), is(true));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testBorrowTooLarge()
+	{
+		new SnmpBufferPool(false, 0).borrow(SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE + 1);
+	}
+	
+	@Test
+	public void testReleasedBuffersAreReused()
+	{
+		SnmpBufferPool pool = new SnmpBufferPool(false, 1 << 20);
+		
+		ByteBuffer buffer = pool.borrow();
+		buffer.put((byte)1).flip();
+		pool.release(buffer);
+		assertThat(pool.getIdleCount(), is(1));
+		
+		// The buffer comes back cleared.
+		ByteBuffer reused = pool.borrow();
+		assertThat(reused == buffer, is(true));
+		assertThat(reused.position(), is(0));
+		assertThat(reused.limit(), is(reused.capacity()));
+		assertThat(pool.getAllocatedCount(), is(1L));
+		
+		// Buffers that didn't come from the pool are ignored.
+		pool.release(ByteBuffer.allocate(100));
+		pool.release(ByteBuffer.allocateDirect(512));
+		assertThat(pool.getIdleCount(), is(0));
+	}
+	
+	@Test
+	public void testIdleBuffersAreLimited()
+	{
+		// Room for two of the largest buffers.
+		SnmpBufferPool pool = new SnmpBufferPool(false, 2 * SnmpV1Communicator.MAXIMUM_DATAGRAM_SIZE);
+		
+		ByteBuffer[] buffers = { pool.borrow(), pool.borrow(), pool.borrow() };
+		for (ByteBuffer buffer : buffers)
+			pool.release(buffer);
+		
+		assertThat(pool.getIdleCount(), is(2));
+		assertThat(pool.getAllocatedCount(), is(3L));
+	}
+	
+	@Test
+	public void testLargeResponseIsNotTruncated() throws Exception
+	{
+		String oid = "1.3.6.1.2.1.1.1.0";
+		byte[] description = new byte[4000];
+		Arrays.fill(description, (byte)'x');
+		
+		MockAgent agent = new MockAgent();
+		agent.put(oid, new SnmpOctetString(description));
+		agent.start();
+		
+		SnmpV1Communicator communicator = new SnmpV1Communicator(SnmpVersion.SNMPv2, InetAddress.getLoopbackAddress(), "public");
+		try
+		{
+			communicator.setPort(agent.getPort());
+			communicator.setTimeout(2000);
+			
+			// Larger than the receive buffer size, which no longer limits what can be received.
+			SnmpVarBindList result = communicator.getMIBEntry(oid);
+			SnmpSequence pair = (SnmpSequence)result.getSNMPObjectAt(0);
+			assertThat((byte[])pair.getSNMPObjectAt(1).getValue(), is(description));
+		}
+		finally
+		{
+			communicator.closeConnection();
+			agent.close();
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import snmp.datatypes.SnmpInteger;
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+
+public class SnmpBulkWalkTests
+{
+	private static final String DESCRIPTION_COLUMN = "1.3.6.1.2.1.2.2.1.2";
+	private static final String TYPE_COLUMN = "1.3.6.1.2.1.2.2.1.3";
+	private static final String IF_TABLE = "1.3.6.1.2.1.2.2";
+	private static final int ROWS = 50;
+
+	private MockAgent agent;
+	private SnmpV1Communicator communicator;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		agent = new MockAgent();
+		for (String column : new String[] { DESCRIPTION_COLUMN, TYPE_COLUMN })
+		{
+			for (int row = 1; row <= ROWS; row++)
+				agent.put(column + "." + row, new SnmpOctetString("value " + row));
+		}
+		agent.start();
+
+		communicator = new SnmpV1Communicator(SnmpVersion.SNMPv2, InetAddress.getLoopbackAddress(), "public");
+		communicator.setPort(agent.getPort());
+		communicator.setTimeout(5000);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		communicator.closeConnection();
+		agent.close();
+	}
+
+	@Test
+	public void testGetBulk() throws Exception
+	{
+		SnmpVarBindList result = communicator.getBulk(0, 3, DESCRIPTION_COLUMN);
+
+		assertThat(result.size(), is(3));
+		assertThat(oidAt(result, 0), is(DESCRIPTION_COLUMN + ".1"));
+		assertThat(oidAt(result, 2), is(DESCRIPTION_COLUMN + ".3"));
+		assertThat(agent.repetitions.get(0), is(3));
+	}
+
+	@Test
+	public void testWalkSubtree() throws Exception
+	{
+		SnmpVarBindList result = communicator.retrieveMIBTableBulk(DESCRIPTION_COLUMN);
+
+		assertThat(result.size(), is(ROWS));
+		for (int i = 0; i < ROWS; i++)
+			assertThat(oidAt(result, i), is(DESCRIPTION_COLUMN + "." + (i + 1)));
+
+		// Many values must have been returned per request.
+		assertThat(agent.repetitions.size() < ROWS / 2, is(true));
+	}
+
+	@Test
+	public void testWalkShrinksOnTooBig() throws Exception
+	{
+		agent.maxRepetitions = 4;
+		SnmpVarBindList result = communicator.retrieveMIBTableBulk(DESCRIPTION_COLUMN);
+
+		assertThat(result.size(), is(ROWS));
+		assertThat(oidAt(result, ROWS - 1), is(DESCRIPTION_COLUMN + "." + ROWS));
+
+		int last = agent.repetitions.get(agent.repetitions.size() - 1);
+		assertThat(last <= 4, is(true));
+		assertThat(agent.repetitions.get(0) > last, is(true));
+	}
+
+	@Test
+	public void testInterfaceTableNeedsFewRequests() throws Exception
+	{
+		// A 48-port ifTable: 22 columns of small values.
+		MockAgent tableAgent = new MockAgent();
+		for (int column = 1; column <= 22; column++)
+		{
+			for (int row = 1; row <= 48; row++)
+				tableAgent.put(IF_TABLE + ".1." + column + "." + row, new SnmpInteger(row * 1000));
+		}
+		tableAgent.maxResponseSize = SnmpV1Communicator.DEFAULT_BULK_RESPONSE_SIZE;
+		tableAgent.start();
+		
+		try
+		{
+			communicator.setPort(tableAgent.getPort());
+			SnmpVarBindList result = communicator.retrieveMIBTableBulk(IF_TABLE);
+			
+			assertThat(result.size(), is(22 * 48));
+			assertThat(tableAgent.repetitions.size() < 36, is(true));
+		}
+		finally
+		{
+			tableAgent.close();
+		}
+	}
+	
+	@Test
+	public void testWalkGrowsBackAfterTooBig() throws Exception
+	{
+		// Long values in one column, then short ones, from an agent with a response size limit.
+		char[] text = new char[200];
+		Arrays.fill(text, 'x');
+		MockAgent tableAgent = new MockAgent();
+		for (int row = 1; row <= 30; row++)
+		{
+			tableAgent.put(IF_TABLE + ".1.2." + row, new SnmpOctetString(new String(text)));
+			tableAgent.put(IF_TABLE + ".1.3." + row, new SnmpInteger(6));
+			tableAgent.put(IF_TABLE + ".1.4." + row, new SnmpInteger(1500));
+		}
+		tableAgent.maxResponseSize = 1472;
+		tableAgent.start();
+		
+		try
+		{
+			communicator.setPort(tableAgent.getPort());
+			SnmpVarBindList result = communicator.retrieveMIBTableBulk(IF_TABLE);
+			assertThat(result.size(), is(90));
+			
+			// After shrinking for the long values, the walk asks for many more of the short ones.
+			int smallest = Integer.MAX_VALUE;
+			for (int repetitions : tableAgent.repetitions)
+				smallest = Math.min(smallest, repetitions);
+			
+			int last = tableAgent.repetitions.get(tableAgent.repetitions.size() - 1);
+			assertThat(smallest < 8, is(true));
+			assertThat(last > 2 * smallest, is(true));
+		}
+		finally
+		{
+			tableAgent.close();
+		}
+	}
+	
+	@Test
+	public void testWalkStopsAtEndOfMibView() throws Exception
+	{
+		SnmpVarBindList result = communicator.retrieveMIBTableBulk(TYPE_COLUMN);
+
+		assertThat(result.size(), is(ROWS));
+		assertThat(oidAt(result, ROWS - 1), is(TYPE_COLUMN + "." + ROWS));
+	}
+
+	@Test
+	public void testWalkStaysInSubtree() throws Exception
+	{
+		// This OID's string begins with the type column's, but it is not in the column.
+		agent.put(TYPE_COLUMN + "0.1", new SnmpOctetString("sibling"));
+
+		SnmpVarBindList result = communicator.retrieveMIBTable(TYPE_COLUMN);
+		assertThat(result.size(), is(ROWS));
+		assertThat(oidAt(result, ROWS - 1), is(TYPE_COLUMN + "." + ROWS));
+
+		result = communicator.retrieveMIBTable(new String[] { DESCRIPTION_COLUMN, TYPE_COLUMN });
+		assertThat(result.size(), is(2 * ROWS));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testGetBulkRequiresV2() throws Exception
+	{
+		SnmpV1Communicator v1Communicator = new SnmpV1Communicator(SnmpVersion.SNMPv1, InetAddress.getLoopbackAddress(), "public");
+		try
+		{
+			v1Communicator.getBulk(0, 10, DESCRIPTION_COLUMN);
+		}
+		finally
+		{
+			v1Communicator.closeConnection();
+		}
+	}
+
+	private static String oidAt(SnmpVarBindList list, int index)
+	{
+		return ((SnmpSequence)list.getSNMPObjectAt(index)).getSNMPObjectAt(0).toString();
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import snmp.datatypes.SnmpCounter32;
+import snmp.datatypes.SnmpCounter64;
+import snmp.datatypes.SnmpGauge32;
+import snmp.datatypes.SnmpInteger;
+import snmp.datatypes.SnmpTimeTicks;
+import snmp.datatypes.SnmpUInteger32;
+import snmp.error.SnmpBadValueException;
+
+public class SnmpIntegerTests
+{
+	private static final BigInteger TWO_TO_THE_64 = BigInteger.ONE.shiftLeft(64);
+
+	@Test
+	public void testRoundTrip() throws SnmpBadValueException
+	{
+		long[] values = { 0, 1, -1, 127, 128, -128, -129, 255, 256, 65535, Integer.MAX_VALUE, Integer.MIN_VALUE, 
+				0xFFFFFFFFL, Long.MAX_VALUE, Long.MIN_VALUE };
+
+		for (long value : values)
+		{
+			SnmpInteger integer = new SnmpInteger(value);
+			byte[] encoding = integer.encode();
+
+			// The encoding is the same minimal two's complement form BigInteger produces.
+			byte[] expected = BigInteger.valueOf(value).toByteArray();
+			assertThat(encoding.length, is(expected.length + 2));
+
+			SnmpInteger decoded = new SnmpInteger(encoding, 2, encoding.length - 2);
+			assertThat(decoded.longValue(), is(value));
+			assertThat((BigInteger)decoded.getValue(), is(BigInteger.valueOf(value)));
+			assertThat(decoded, is(integer));
+			assertThat(decoded.hashCode(), is(integer.hashCode()));
+		}
+	}
+
+	@Test
+	public void testLargeValues() throws SnmpBadValueException
+	{
+		BigInteger large = BigInteger.ONE.shiftLeft(70).negate();
+		SnmpInteger integer = new SnmpInteger(large);
+		assertThat((BigInteger)integer.getValue(), is(large));
+		assertThat(integer.toString(), is(large.toString()));
+
+		byte[] encoding = integer.encode();
+		SnmpInteger decoded = new SnmpInteger(encoding, 2, encoding.length - 2);
+		assertThat((BigInteger)decoded.getValue(), is(large));
+		assertThat(decoded, is(integer));
+
+		// An unsigned 64-bit value above 2^63 - 1 needs a leading zero byte.
+		BigInteger unsigned = TWO_TO_THE_64.subtract(BigInteger.TEN);
+		encoding = new SnmpInteger(unsigned).encode();
+		assertThat(encoding.length, is(11));
+		assertThat((BigInteger)new SnmpInteger(encoding, 2, 9).getValue(), is(unsigned));
+	}
+
+	@Test
+	public void testCounter64IsUnsigned() throws SnmpBadValueException
+	{
+		SnmpCounter64 counter = new SnmpCounter64(-10);
+		BigInteger expected = TWO_TO_THE_64.subtract(BigInteger.TEN);
+
+		assertThat((BigInteger)counter.getValue(), is(expected));
+		assertThat(counter.toString(), is(expected.toString()));
+		assertThat(counter.toString(16), is("fffffffffffffff6"));
+		assertThat(counter.longValue(), is(-10L));
+
+		byte[] encoding = counter.encode();
+		assertThat(encoding.length, is(11));
+		assertThat(encoding[2], is((byte)0));
+
+		SnmpCounter64 decoded = new SnmpCounter64(encoding, 2, 9);
+		assertThat(decoded.longValue(), is(-10L));
+		assertThat(decoded, is(counter));
+
+		counter.setValue(TWO_TO_THE_64.add(BigInteger.valueOf(5)));
+		assertThat(counter.longValue(), is(5L));
+	}
+
+	@Test
+	public void testCounter32Wraps() throws SnmpBadValueException
+	{
+		assertThat(new SnmpCounter32(0xFFFFFFFFL).longValue(), is(0xFFFFFFFFL));
+		assertThat(new SnmpCounter32(0x100000005L).longValue(), is(5L));
+		assertThat(new SnmpCounter32(-1).longValue(), is(0xFFFFFFFFL));
+		assertThat(new SnmpUInteger32(0x100000005L).longValue(), is(5L));
+
+		SnmpCounter32 counter = new SnmpCounter32();
+		counter.setValue("4294967296");
+		assertThat(counter.longValue(), is(0L));
+
+		// Counters that are larger than 2^31 - 1 are encoded with a leading zero byte.
+		byte[] encoding = new SnmpCounter32(0xFFFFFFFFL).encode();
+		assertThat(encoding.length, is(7));
+		assertThat(new SnmpCounter32(encoding, 2, 5).longValue(), is(0xFFFFFFFFL));
+	}
+
+	@Test
+	public void testGauge32Pegs() throws SnmpBadValueException
+	{
+		assertThat(new SnmpGauge32(0x100000005L).longValue(), is(0xFFFFFFFFL));
+		assertThat(new SnmpGauge32(42).longValue(), is(42L));
+
+		SnmpGauge32 gauge = new SnmpGauge32();
+		gauge.setValue(BigInteger.ONE.shiftLeft(80));
+		assertThat(gauge.longValue(), is(0xFFFFFFFFL));
+	}
+
+	@Test
+	public void testTimeTicks() throws SnmpBadValueException
+	{
+		SnmpTimeTicks ticks = new SnmpTimeTicks(0x1000000064L);
+		assertThat(ticks.longValue(), is(100L));
+		assertThat(ticks.toString(), is("0:0:0:1.0"));
+	}
+
+	@Test(expected = SnmpBadValueException.class)
+	public void testBadValue() throws SnmpBadValueException
+	{
+		new SnmpCounter32().setValue(1.5);
+	}
+}
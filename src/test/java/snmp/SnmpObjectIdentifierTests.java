@@ -25,6 +25,8 @@ package snmp;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import snmp.datatypes.SnmpObjectIdentifier;
@@ -45,4 +47,98 @@ public class SnmpObjectIdentifierTests
 		String s = oid.toString();
 		assertThat(s, is("138.14.90.4.62.1"));
 	}
+	
+	@Test
+	public void testOrdering() throws SnmpBadValueException
+	{
+		SnmpObjectIdentifier system = new SnmpObjectIdentifier("1.3.6.1.2.1.1");
+		SnmpObjectIdentifier sysDescr = new SnmpObjectIdentifier("1.3.6.1.2.1.1.1.0");
+		SnmpObjectIdentifier transmission = new SnmpObjectIdentifier("1.3.6.1.2.1.10");
+		SnmpObjectIdentifier large = new SnmpObjectIdentifier("1.3.6.1.2.1.4294967295");
+		
+		SnmpObjectIdentifier[] sorted = { large, transmission, sysDescr, system };
+		Arrays.sort(sorted);
+		assertThat(sorted, is(new SnmpObjectIdentifier[] { system, sysDescr, transmission, large }));
+		
+		// 1.3.6.1.2.1.10 begins with the same characters as 1.3.6.1.2.1.1, but is not in its subtree.
+		assertThat(system.isPrefixOf(sysDescr), is(true));
+		assertThat(system.isPrefixOf(system), is(true));
+		assertThat(system.isPrefixOf(transmission), is(false));
+		assertThat(sysDescr.isPrefixOf(system), is(false));
+	}
+	
+	@Test
+	public void testLargeComponents() throws SnmpBadValueException
+	{
+		SnmpObjectIdentifier oid = new SnmpObjectIdentifier("1.3.4294967295.2147483648");
+		assertThat(oid.toString(), is("1.3.4294967295.2147483648"));
+		assertThat(oid.getSubIdentifier(2), is(4294967295L));
+		assertThat((long[])oid.getValue(), is(new long[] { 1, 3, 4294967295L, 2147483648L }));
+		
+		byte[] encoding = oid.encode();
+		assertThat(new SnmpObjectIdentifier(encoding, 2, encoding.length - 2), is(oid));
+	}
+	
+	@Test
+	public void testFirstArcEncoding() throws SnmpBadValueException
+	{
+		// Under the joint-iso-itu-t arc the second component can exceed 39.
+		SnmpObjectIdentifier oid = new SnmpObjectIdentifier("2.100.3");
+		byte[] encoding = oid.encode();
+		assertThat(encoding, is(new byte[] { 0x06, 0x03, (byte)0x81, 0x34, 0x03 }));
+		assertThat(new SnmpObjectIdentifier(encoding, 2, 3).toString(), is("2.100.3"));
+	}
+	
+	@Test
+	public void testParsing() throws SnmpBadValueException
+	{
+		assertThat(new SnmpObjectIdentifier("1.3.6.").toString(), is("1.3.6"));
+		
+		String[] badStrings = { "", "1..3", ".1.3", "1.-3", "1.3a", "1.4294967296" };
+		for (String badString : badStrings)
+		{
+			try
+			{
+				new SnmpObjectIdentifier(badString);
+				throw new AssertionError(badString);
+			}
+			catch (SnmpBadValueException e) { }
+		}
+	}
+	
+	@Test(expected = SnmpBadValueException.class)
+	public void testComponentTooLarge() throws SnmpBadValueException
+	{
+		new SnmpObjectIdentifier(new long[] { 1, 3, 4294967296L });
+	}
+	
+	@Test
+	public void testPrefixAndChild() throws SnmpBadValueException
+	{
+		SnmpObjectIdentifier oid = new SnmpObjectIdentifier("1.3.6.1.2.1.2.2.1.10.7");
+		
+		assertThat(oid.size(), is(11));
+		assertThat(oid.getPrefix(10).toString(), is("1.3.6.1.2.1.2.2.1.10"));
+		assertThat(oid.getPrefix(10).getChild(7), is(oid));
+		assertThat(oid.getPrefix(10).getChild(7).hashCode(), is(oid.hashCode()));
+	}
+	
+	@Test
+	public void testIntern() throws SnmpBadValueException
+	{
+		SnmpObjectIdentifier first = new SnmpObjectIdentifier("1.3.6.1.2.1.31.1.1.1.6.1").intern();
+		SnmpObjectIdentifier second = new SnmpObjectIdentifier("1.3.6.1.2.1.31.1.1.1.6.1").intern();
+		
+		assertThat(first == second, is(true));
+		assertThat(first.intern() == first, is(true));
+		
+		try
+		{
+			first.setValue("1.3");
+			throw new AssertionError();
+		}
+		catch (SnmpBadValueException e) { }
+		
+		assertThat(second.toString(), is("1.3.6.1.2.1.31.1.1.1.6.1"));
+	}
 }
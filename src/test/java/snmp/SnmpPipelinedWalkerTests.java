@@ -0,0 +1,193 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import snmp.datatypes.SnmpInteger;
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.error.ErrorStatus;
+import snmp.error.SnmpGetException;
+
+public class SnmpPipelinedWalkerTests
+{
+	private static final String ENTRY = "1.3.6.1.2.1.2.2.1";
+	private static final int COLUMNS = 3;
+	private static final int ROWS = 20;
+
+	private MockAgent agent;
+	private SnmpPipelinedWalker walker;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		agent = new MockAgent();
+		agent.put("1.3.6.1.2.1.1.5.0", new SnmpOctetString("before"));
+		for (int column = 1; column <= COLUMNS; column++)
+		{
+			for (int row = 1; row <= ROWS; row++)
+				agent.put(ENTRY + "." + column + "." + row, new SnmpInteger(row));
+		}
+		agent.put("1.3.6.1.2.1.2.3.0", new SnmpOctetString("after"));
+		agent.start();
+
+		walker = new SnmpPipelinedWalker(SnmpVersion.SNMPv2, InetAddress.getLoopbackAddress(), "public");
+		walker.setPort(agent.getPort());
+		walker.setTimeout(5000);
+	}
+
+	@After
+	public void tearDown()
+	{
+		walker.close();
+		agent.close();
+	}
+
+	@Test
+	public void testWalkInOrder() throws Exception
+	{
+		// Answer several requests at a time, in reverse order.
+		agent.batchSize = 4;
+		walker.setWindowSize(4);
+
+		SnmpVarBindList result = walker.retrieveMIBTable(ENTRY);
+		assertResults(result);
+
+		assertThat(Collections.max(agent.batches), is(4));
+	}
+
+	@Test
+	public void testWalkWithoutPipelining() throws Exception
+	{
+		walker.setWindowSize(1);
+
+		SnmpVarBindList result = walker.retrieveMIBTable(ENTRY);
+		assertResults(result);
+
+		assertThat(Collections.max(agent.batches), is(1));
+	}
+
+	@Test
+	public void testWalkColumns() throws Exception
+	{
+		agent.batchSize = 2;
+
+		SnmpVarBindList result = walker.retrieveMIBColumns(ENTRY + ".3", ENTRY + ".1");
+
+		assertThat(result.size(), is(2 * ROWS));
+		assertThat(oidAt(result, 0), is(ENTRY + ".1.1"));
+		assertThat(oidAt(result, ROWS), is(ENTRY + ".3.1"));
+		assertThat(oidAt(result, 2 * ROWS - 1), is(ENTRY + ".3." + ROWS));
+	}
+
+	@Test
+	public void testWalkToEndOfView() throws Exception
+	{
+		agent.version = SnmpVersion.SNMPv1;
+
+		SnmpVarBindList result = walker.retrieveMIBTable("1.3.6.1.2.1.2");
+
+		assertThat(result.size(), is(COLUMNS * ROWS + 1));
+		assertThat(oidAt(result, COLUMNS * ROWS), is("1.3.6.1.2.1.2.3.0"));
+	}
+
+	@Test
+	public void testLostRequestsAreRetransmitted() throws Exception
+	{
+		// A resent request can be dropped again, so allow a few attempts for each.
+		agent.dropEvery = 7;
+		walker.setTimeout(1000);
+		walker.setRetries(4);
+		
+		SnmpVarBindList result = walker.retrieveMIBTable(ENTRY);
+		assertResults(result);
+	}
+	
+	@Test(expected = SocketTimeoutException.class)
+	public void testLostRequestWithoutRetries() throws Exception
+	{
+		agent.dropNext = 1;
+		walker.setTimeout(400);
+		walker.setRetries(0);
+		
+		walker.retrieveMIBTable(ENTRY);
+	}
+	
+	@Test
+	public void testLongValueIsNotTruncated() throws Exception
+	{
+		char[] text = new char[3000];
+		Arrays.fill(text, 'x');
+		agent.put("1.3.6.1.2.1.1.1.0", new SnmpOctetString(new String(text)));
+		
+		SnmpVarBindList result = walker.retrieveMIBTable("1.3.6.1.2.1.1.1");
+		
+		assertThat(result.size(), is(1));
+		assertThat(((SnmpSequence)result.getSNMPObjectAt(0)).getSNMPObjectAt(1).toString(), is(new String(text)));
+	}
+	
+	@Test
+	public void testAgentErrorFailsWalk() throws Exception
+	{
+		agent.errorStatus = ErrorStatus.GeneralError;
+		
+		try
+		{
+			walker.retrieveMIBTable(ENTRY);
+			fail("A walk answered with genErr must not return results.");
+		}
+		catch (SnmpGetException e)
+		{
+			assertThat(e.errorStatus, is(ErrorStatus.GeneralError));
+		}
+	}
+	
+	private static void assertResults(SnmpVarBindList result)
+	{
+		assertThat(result.size(), is(COLUMNS * ROWS));
+
+		int i = 0;
+		for (int column = 1; column <= COLUMNS; column++)
+		{
+			for (int row = 1; row <= ROWS; row++)
+				assertThat(oidAt(result, i++), is(ENTRY + "." + column + "." + row));
+		}
+	}
+
+	private static String oidAt(SnmpVarBindList list, int index)
+	{
+		return ((SnmpSequence)list.getSNMPObjectAt(index)).getSNMPObjectAt(0).toString();
+	}
+}
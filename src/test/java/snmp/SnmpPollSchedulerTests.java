@@ -0,0 +1,200 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import snmp.SnmpPollScheduler.ScheduledPoll;
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.error.ErrorStatus;
+import snmp.error.SnmpGetException;
+
+public class SnmpPollSchedulerTests
+{
+	private static final String SYS_NAME = "1.3.6.1.2.1.1.5.0";
+	private static final String[] ITEM_IDS = { SYS_NAME };
+
+	private MockAgent agent;
+	private SnmpPollScheduler scheduler;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		agent = new MockAgent();
+		agent.put(SYS_NAME, new SnmpOctetString("router"));
+		agent.start();
+		scheduler = new SnmpPollScheduler(2);
+	}
+
+	@After
+	public void tearDown()
+	{
+		scheduler.close();
+		agent.close();
+	}
+
+	@Test
+	public void testRunsDoNotDrift() throws Exception
+	{
+		TimingSink sink = new TimingSink();
+		ScheduledPoll poll = scheduler.schedule(target(), ITEM_IDS, 50, 0, sink);
+
+		sink.await(11);
+		poll.cancel();
+
+		// Each run starts a whole number of intervals after the first, so the time spent 
+		// on the requests themselves doesn't accumulate.
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(sink.times.get(10) - sink.times.get(0));
+		assertThat(elapsed >= 495, is(true));
+		assertThat(elapsed < 540, is(true));
+		assertThat(sink.failures, is(0));
+		assertThat(poll.getOverrunCount(), is(0));
+	}
+
+	@Test
+	public void testOverrunsAreSkipped() throws Exception
+	{
+		// The agent holds each lone request for about 100 ms before answering it.
+		agent.batchSize = 2;
+
+		TimingSink sink = new TimingSink();
+		ScheduledPoll poll = scheduler.schedule(target(), ITEM_IDS, 30, 0, sink);
+
+		sink.await(4);
+		poll.cancel();
+
+		assertThat(poll.getRunCount() >= 4, is(true));
+		assertThat(poll.getOverrunCount() >= 2 * poll.getRunCount() - 2, is(true));
+
+		// The skipped runs are not made up for later.
+		for (int i = 1; i < 4; i++)
+			assertThat(sink.times.get(i) - sink.times.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(60), is(true));
+	}
+
+	@Test
+	public void testJitteredStartIsWithinInterval() throws Exception
+	{
+		TimingSink sink = new TimingSink();
+		long start = System.nanoTime();
+		ScheduledPoll poll = scheduler.schedule(target(), ITEM_IDS, 200, sink);
+
+		sink.await(1);
+		poll.cancel();
+
+		assertThat(TimeUnit.NANOSECONDS.toMillis(sink.times.get(0) - start) < 300, is(true));
+		assertThat(poll.getInterval(), is(200L));
+	}
+
+	@Test
+	public void testCancelStopsRuns() throws Exception
+	{
+		TimingSink sink = new TimingSink();
+		ScheduledPoll poll = scheduler.schedule(target(), ITEM_IDS, 20, 0, sink);
+
+		sink.await(2);
+		poll.cancel();
+		int runs = poll.getRunCount();
+		Thread.sleep(100);
+
+		assertThat(poll.isCancelled(), is(true));
+		assertThat(poll.getRunCount() <= runs + 1, is(true));
+	}
+
+	@Test
+	public void testAgentErrorIsReportedAndPollContinues() throws Exception
+	{
+		// genErr with an error index of 0, which doesn't point at any requested OID.
+		agent.errorStatus = ErrorStatus.GeneralError;
+		
+		TimingSink sink = new TimingSink();
+		ScheduledPoll poll = scheduler.schedule(target(), ITEM_IDS, 20, 0, sink);
+		
+		sink.awaitFailures(3);
+		poll.cancel();
+		
+		assertThat(sink.reasons.get(0) instanceof SnmpGetException, is(true));
+		assertThat(((SnmpGetException)sink.reasons.get(0)).errorStatus, is(ErrorStatus.GeneralError));
+		assertThat(poll.getRunCount() >= 3, is(true));
+		assertThat(sink.times.size(), is(0));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testScheduleAfterClose() throws Exception
+	{
+		scheduler.close();
+		scheduler.schedule(target(), ITEM_IDS, 1000, new TimingSink());
+	}
+
+	private SnmpTarget target()
+	{
+		return new SnmpTarget(InetAddress.getLoopbackAddress(), agent.getPort(), SnmpVersion.SNMPv2, "public", 2000);
+	}
+
+	private static class TimingSink implements SnmpPollResultSink
+	{
+		public final List<Long> times = new Vector<Long>();
+		public final List<Throwable> reasons = new Vector<Throwable>();
+		public volatile int failures = 0;
+
+		public synchronized void resultReceived(SnmpTarget target, SnmpVarBindList varBinds)
+		{
+			times.add(System.nanoTime());
+			notifyAll();
+		}
+
+		public synchronized void pollFailed(SnmpTarget target, Throwable reason)
+		{
+			failures++;
+			reasons.add(reason);
+			notifyAll();
+		}
+
+		public synchronized void await(int count) throws InterruptedException
+		{
+			long deadline = System.currentTimeMillis() + 5000;
+			while (times.size() < count && System.currentTimeMillis() < deadline)
+				wait(100);
+
+			assertThat(times.size() >= count, is(true));
+		}
+
+		public synchronized void awaitFailures(int count) throws InterruptedException
+		{
+			long deadline = System.currentTimeMillis() + 5000;
+			while (reasons.size() < count && System.currentTimeMillis() < deadline)
+				wait(100);
+
+			assertThat(reasons.size() >= count, is(true));
+		}
+	}
+}
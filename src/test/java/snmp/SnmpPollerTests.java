@@ -0,0 +1,198 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertThat;
+
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+
+public class SnmpPollerTests
+{
+	private static final String SYS_NAME = "1.3.6.1.2.1.1.5.0";
+	private static final String SYS_LOCATION = "1.3.6.1.2.1.1.6.0";
+	private static final String[] ITEM_IDS = { SYS_NAME, SYS_LOCATION };
+
+	private final List<MockAgent> agents = new ArrayList<MockAgent>();
+	private SnmpPoller poller;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		for (int i = 0; i < 4; i++)
+		{
+			MockAgent agent = new MockAgent();
+			agent.put(SYS_NAME, new SnmpOctetString("agent" + i));
+			agent.put(SYS_LOCATION, new SnmpOctetString("lab"));
+			agent.start();
+			agents.add(agent);
+		}
+	}
+
+	@After
+	public void tearDown()
+	{
+		if (poller != null)
+			poller.close();
+
+		for (MockAgent agent : agents)
+			agent.close();
+	}
+
+	@Test
+	public void testPollSeveralAgents() throws Exception
+	{
+		poller = new SnmpPoller(2, 0);
+		RecordingSink sink = new RecordingSink();
+
+		List<SnmpTarget> targets = new ArrayList<SnmpTarget>();
+		for (MockAgent agent : agents)
+			targets.add(target(agent));
+
+		poller.poll(targets, ITEM_IDS, sink).get(10, TimeUnit.SECONDS);
+
+		assertThat(sink.failures.isEmpty(), is(true));
+		assertThat(sink.results.size(), is(4));
+
+		for (int i = 0; i < agents.size(); i++)
+		{
+			SnmpVarBindList varBinds = sink.results.get(agents.get(i).getPort());
+			assertThat(varBinds.size(), is(2));
+			assertThat(((SnmpSequence)varBinds.getSNMPObjectAt(0)).getSNMPObjectAt(1).toString(), is("agent" + i));
+			assertThat(((SnmpSequence)varBinds.getSNMPObjectAt(1)).getSNMPObjectAt(1).toString(), is("lab"));
+		}
+	}
+
+	@Test
+	public void testConcurrencyIsCapped() throws Exception
+	{
+		// The agent holds requests until ten arrive or none arrive for a while, 
+		// so each batch it answers is the number that were outstanding at once.
+		MockAgent agent = agents.get(0);
+		agent.batchSize = 10;
+
+		poller = new SnmpPoller(3, 0);
+		RecordingSink sink = new RecordingSink();
+
+		SnmpTarget target = target(agent);
+		poller.poll(Collections.nCopies(9, target), ITEM_IDS, sink).get(10, TimeUnit.SECONDS);
+
+		assertThat(sink.resultCount, is(9));
+		for (int batch : agent.batches)
+			assertThat(batch <= 3, is(true));
+	}
+
+	@Test
+	public void testRequestRateIsLimitedPerAgent() throws Exception
+	{
+		poller = new SnmpPoller(8, 20);
+		RecordingSink sink = new RecordingSink();
+
+		List<SnmpTarget> targets = new ArrayList<SnmpTarget>();
+		for (int i = 0; i < 5; i++)
+		{
+			targets.add(target(agents.get(0)));
+			targets.add(target(agents.get(1)));
+		}
+
+		long start = System.nanoTime();
+		poller.poll(targets, ITEM_IDS, sink).get(10, TimeUnit.SECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// Five requests to each agent at 20 per second need at least four 50 ms intervals, 
+		// but the two agents are limited independently.
+		assertThat(sink.resultCount, is(10));
+		assertThat(elapsed >= 200, is(true));
+		assertThat(elapsed < 450, is(true));
+	}
+
+	@Test
+	public void testFailuresAreReported() throws Exception
+	{
+		DatagramSocket silent = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		try
+		{
+			poller = new SnmpPoller(2, 0);
+			RecordingSink sink = new RecordingSink();
+
+			List<SnmpTarget> targets = new ArrayList<SnmpTarget>();
+			targets.add(new SnmpTarget(InetAddress.getLoopbackAddress(), silent.getLocalPort(), SnmpVersion.SNMPv2, "public", 200));
+			targets.add(target(agents.get(0)));
+
+			poller.poll(targets, ITEM_IDS, sink).get(10, TimeUnit.SECONDS);
+
+			assertThat(sink.resultCount, is(1));
+			assertThat(sink.failures.size(), is(1));
+			assertThat(sink.failures.get(silent.getLocalPort()), instanceOf(SocketTimeoutException.class));
+		}
+		finally
+		{
+			silent.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidConcurrency() throws Exception
+	{
+		new SnmpPoller(0, 10);
+	}
+
+	private static SnmpTarget target(MockAgent agent)
+	{
+		return new SnmpTarget(InetAddress.getLoopbackAddress(), agent.getPort(), SnmpVersion.SNMPv2, "public", 5000);
+	}
+
+	private static class RecordingSink implements SnmpPollResultSink
+	{
+		public final Map<Integer, SnmpVarBindList> results = new TreeMap<Integer, SnmpVarBindList>();
+		public final Map<Integer, Throwable> failures = new TreeMap<Integer, Throwable>();
+		public int resultCount = 0;
+
+		public synchronized void resultReceived(SnmpTarget target, SnmpVarBindList varBinds)
+		{
+			results.put(target.getSocketAddress().getPort(), varBinds);
+			resultCount++;
+		}
+
+		public synchronized void pollFailed(SnmpTarget target, Throwable reason)
+		{
+			failures.put(target.getSocketAddress().getPort(), reason);
+		}
+	}
+}
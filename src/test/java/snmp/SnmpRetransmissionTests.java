@@ -0,0 +1,138 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import snmp.datatypes.SnmpInteger;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+
+public class SnmpRetransmissionTests
+{
+	private static final String COLUMN = "1.3.6.1.2.1.2.2.1.1";
+	private static final int ROWS = 40;
+
+	private MockAgent agent;
+	private SnmpV1Communicator communicator;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		agent = new MockAgent();
+		for (int row = 1; row <= ROWS; row++)
+			agent.put(COLUMN + "." + row, new SnmpInteger(row));
+		agent.start();
+
+		communicator = new SnmpV1Communicator(SnmpVersion.SNMPv2, InetAddress.getLoopbackAddress(), "public");
+		communicator.setPort(agent.getPort());
+		communicator.setTimeout(400);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		communicator.closeConnection();
+		agent.close();
+	}
+
+	@Test(expected = SocketTimeoutException.class)
+	public void testLostRequestWithoutRetries() throws Exception
+	{
+		agent.dropNext = 1;
+		communicator.getMIBEntry(COLUMN + ".1");
+	}
+
+	@Test
+	public void testLostRequestsAreRetransmitted() throws Exception
+	{
+		communicator.setRetries(2);
+		agent.dropNext = 2;
+
+		SnmpVarBindList result = communicator.getMIBEntry(COLUMN + ".1");
+
+		assertThat(result.size(), is(1));
+		assertThat(agent.requestCount, is(3));
+	}
+
+	@Test(expected = SocketTimeoutException.class)
+	public void testRetriesExhausted() throws Exception
+	{
+		communicator.setRetries(2);
+		agent.dropNext = 3;
+
+		communicator.getMIBEntry(COLUMN + ".1");
+	}
+
+	@Test
+	public void testWalkOverLossyLink() throws Exception
+	{
+		communicator.setRetries(3);
+		agent.dropEvery = 7;
+		agent.duplicateResponses = true;
+
+		SnmpVarBindList result = communicator.retrieveMIBTable(COLUMN);
+
+		assertThat(result.size(), is(ROWS));
+		for (int row = 1; row <= ROWS; row++)
+			assertThat(oidAt(result, row - 1), is(COLUMN + "." + row));
+
+		assertThat(communicator.getRoundTripTime() < 400, is(true));
+	}
+
+	@Test
+	public void testAsyncRetransmission() throws Exception
+	{
+		SnmpAsyncClient client = new SnmpAsyncClient();
+		try
+		{
+			SnmpTarget target = new SnmpTarget(InetAddress.getLoopbackAddress(), agent.getPort(), SnmpVersion.SNMPv2, "public", 400, 2);
+			agent.dropNext = 2;
+			agent.duplicateResponses = true;
+
+			SnmpVarBindList result = client.get(target, COLUMN + ".5").get(5, TimeUnit.SECONDS);
+			assertThat(oidAt(result, 0), is(COLUMN + ".5"));
+
+			// The late duplicate doesn't disturb the next request.
+			result = client.getNext(target, COLUMN + ".5").get(5, TimeUnit.SECONDS);
+			assertThat(oidAt(result, 0), is(COLUMN + ".6"));
+		}
+		finally
+		{
+			client.close();
+		}
+	}
+
+	private static String oidAt(SnmpVarBindList list, int index)
+	{
+		return ((SnmpSequence)list.getSNMPObjectAt(index)).getSNMPObjectAt(0).toString();
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import snmp.datatypes.SnmpInteger;
+import snmp.datatypes.SnmpIpAddress;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.SnmpTimeTicks;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.datatypes.sequence.SnmpVariablePair;
+import snmp.datatypes.sequence.pdu.SnmpPDU;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU.GenericTrapType;
+import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
+
+public class SnmpTrapDeduplicatorTests
+{
+	private static final String LINK_DOWN = "1.3.6.1.6.3.1.1.5.3";
+	private static final String IF_INDEX = "1.3.6.1.2.1.2.2.1.1";
+	private static final String IF_DESCR = "1.3.6.1.2.1.2.2.1.2";
+	
+	private InetAddress router;
+	private InetAddress otherRouter;
+	private SnmpTrapDeduplicator deduplicator;
+	private List<String> repeats;
+	
+	@Before
+	public void setUp() throws Exception
+	{
+		router = InetAddress.getByName("10.0.0.1");
+		otherRouter = InetAddress.getByName("10.0.0.2");
+		
+		deduplicator = new SnmpTrapDeduplicator(1000, 100);
+		repeats = new Vector<String>();
+		deduplicator.addRepeatListener(new SnmpTrapRepeatListener()
+		{
+			public void processRepeatedTrap(InetAddress source, SnmpPDU trapPDU, int count)
+			{
+				repeats.add(source.getHostAddress() + " " + count);
+			}
+		});
+	}
+	
+	@Test
+	public void testRepeatsInSlidingWindow() throws Exception
+	{
+		// Each repeat arrives within a window of the last, so the storm stays suppressed.
+		assertThat(deduplicator.offer(router, createLinkDown(1, 100), 0), is(true));
+		assertThat(deduplicator.offer(router, createLinkDown(1, 200), 900), is(false));
+		assertThat(deduplicator.offer(router, createLinkDown(1, 300), 1800), is(false));
+		assertThat(deduplicator.getSuppressedCount(), is(2L));
+		
+		deduplicator.expire(2700);
+		assertThat(repeats.isEmpty(), is(true));
+		
+		// Once quiet for a whole window, the repeats are reported and the trap is forgotten.
+		deduplicator.expire(2800);
+		assertThat(repeats.toString(), is("[10.0.0.1 3]"));
+		assertThat(deduplicator.size(), is(0));
+		assertThat(deduplicator.offer(router, createLinkDown(1, 400), 2900), is(true));
+	}
+	
+	@Test
+	public void testTrapsThatDiffer() throws Exception
+	{
+		assertThat(deduplicator.offer(router, createLinkDown(1, 100), 0), is(true));
+		assertThat(deduplicator.offer(router, createLinkDown(2, 100), 0), is(true));
+		assertThat(deduplicator.offer(otherRouter, createLinkDown(1, 100), 0), is(true));
+		assertThat(deduplicator.offer(router, new SnmpV2TrapPDU(new SnmpObjectIdentifier("1.3.6.1.6.3.1.1.5.4"), new SnmpTimeTicks(100)), 0), is(true));
+		
+		// A trap without repeats isn't reported.
+		deduplicator.expire(1000);
+		assertThat(repeats.isEmpty(), is(true));
+	}
+	
+	@Test
+	public void testKeyVarBinds() throws Exception
+	{
+		deduplicator.addKeyVarBind(new SnmpObjectIdentifier(IF_INDEX));
+		
+		// The descriptions differ but aren't keys.
+		assertThat(deduplicator.offer(router, createLinkDown(1, "eth0"), 0), is(true));
+		assertThat(deduplicator.offer(router, createLinkDown(1, "renamed"), 0), is(false));
+		assertThat(deduplicator.offer(router, createLinkDown(2, "eth0"), 0), is(true));
+	}
+	
+	@Test
+	public void testV1Traps() throws Exception
+	{
+		// Repeats of a v1 trap differ only in their time stamps.
+		assertThat(deduplicator.offer(router, createV1Trap(GenericTrapType.LinkDown, 100), 0), is(true));
+		assertThat(deduplicator.offer(router, createV1Trap(GenericTrapType.LinkDown, 200), 10), is(false));
+		assertThat(deduplicator.offer(router, createV1Trap(GenericTrapType.LinkUp, 300), 20), is(true));
+	}
+	
+	@Test
+	public void testCapacity() throws Exception
+	{
+		deduplicator = new SnmpTrapDeduplicator(1000, 2);
+		deduplicator.addRepeatListener(new SnmpTrapRepeatListener()
+		{
+			public void processRepeatedTrap(InetAddress source, SnmpPDU trapPDU, int count)
+			{
+				SnmpSequence ifIndexPair = (SnmpSequence)trapPDU.getVarBindList().getSNMPObjectAt(2);
+				repeats.add("ifIndex " + ifIndexPair.getSNMPObjectAt(1) + " " + count);
+			}
+		});
+		
+		deduplicator.offer(router, createLinkDown(1, 100), 0);
+		deduplicator.offer(router, createLinkDown(1, 100), 10);
+		deduplicator.offer(router, createLinkDown(2, 100), 20);
+		
+		// The trap heard from least recently makes room and is reported early.
+		assertThat(deduplicator.offer(router, createLinkDown(3, 100), 30), is(true));
+		assertThat(deduplicator.size(), is(2));
+		assertThat(repeats.toString(), is("[ifIndex 1 2]"));
+	}
+	
+	private static SnmpV2TrapPDU createLinkDown(int ifIndex, long sysUpTime) throws Exception
+	{
+		SnmpSequence varList = new SnmpVarBindList();
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier(IF_INDEX + "." + ifIndex), new SnmpInteger(ifIndex)));
+		return new SnmpV2TrapPDU(new SnmpTimeTicks(sysUpTime), new SnmpObjectIdentifier(LINK_DOWN), varList);
+	}
+	
+	private static SnmpV2TrapPDU createLinkDown(int ifIndex, String ifDescr) throws Exception
+	{
+		SnmpSequence varList = new SnmpVarBindList();
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier(IF_INDEX + "." + ifIndex), new SnmpInteger(ifIndex)));
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier(IF_DESCR + "." + ifIndex), new SnmpOctetString(ifDescr)));
+		return new SnmpV2TrapPDU(new SnmpTimeTicks(100), new SnmpObjectIdentifier(LINK_DOWN), varList);
+	}
+	
+	private static SnmpV1TrapPDU createV1Trap(GenericTrapType trapType, long timestamp) throws Exception
+	{
+		return new SnmpV1TrapPDU(new SnmpObjectIdentifier("1.3.6.1.4.1.9"), new SnmpIpAddress("10.0.0.1"), 
+				trapType, 0, new SnmpTimeTicks(timestamp));
+	}
+}
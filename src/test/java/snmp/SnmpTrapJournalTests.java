@@ -0,0 +1,308 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import snmp.datatypes.SnmpIpAddress;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.SnmpTimeTicks;
+import snmp.datatypes.sequence.SnmpMessage;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.datatypes.sequence.SnmpVariablePair;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU.GenericTrapType;
+import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
+
+public class SnmpTrapJournalTests
+{
+	private static final String LINK_DOWN = "1.3.6.1.6.3.1.1.5.3";
+	private static final int SMALL_SEGMENT = 80000;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private final InetSocketAddress source = new InetSocketAddress(InetAddress.getLoopbackAddress(), 5162);
+	
+	@Test
+	public void testReplayToListeners() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		journal.append(encode(createV1Trap()), source, 1000);
+		journal.append(encode(createV2Trap(LINK_DOWN, 0)), source, 2000);
+		journal.append(ByteBuffer.wrap(new byte[] { 0x30, 0x03, 0x02 }), source, 3000);	// not a valid message
+		
+		final List<String> traps = new ArrayList<String>();
+		long count = journal.replay(0, new SnmpV1TrapListener()
+		{
+			public void processv1Trap(SnmpV1TrapPDU trapPDU)
+			{
+				traps.add("v1 " + trapPDU.getEnterpriseOID() + " " + trapPDU.getGenericTrap());
+			}
+		}, 
+		new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				traps.add("v2 " + trapPDU.getSNMPTrapOID());
+			}
+		});
+		
+		assertThat(count, is(2L));
+		assertThat(traps.toString(), is("[v1 1.3.6.1.4.1.9 LinkDown, v2 " + LINK_DOWN + "]"));
+		journal.close();
+	}
+	
+	@Test
+	public void testEntriesKeepTimeAndSource() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		ByteBuffer encoding = encode(createV2Trap(LINK_DOWN, 0));
+		journal.append(encoding, source, 1000);
+		journal.append(encoding, new InetSocketAddress(InetAddress.getByName("::1"), 162), 2000);
+		assertThat(encoding.position(), is(0));
+		
+		Iterator<SnmpTrapJournal.Entry> entries = journal.iterator(1500);
+		SnmpTrapJournal.Entry entry = entries.next();
+		assertThat(entry.getReceiveTime(), is(2000L));
+		assertThat(entry.getSource(), is(new InetSocketAddress(InetAddress.getByName("::1"), 162)));
+		assertThat(entry.getEncoding(), is(encoding));
+		assertThat(entries.hasNext(), is(false));
+		
+		// Later appends aren't seen by an existing iterator.
+		entries = journal.iterator();
+		journal.append(encoding, source, 3000);
+		assertThat(count(entries), is(2));
+		journal.close();
+	}
+	
+	@Test
+	public void testReopenAppendsAfterExistingEntries() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		journal.append(encode(createV2Trap(LINK_DOWN, 0)), source, 1000);
+		journal.close();
+		
+		journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		journal.append(encode(createV2Trap(LINK_DOWN, 1)), source, 2000);
+		
+		Iterator<SnmpTrapJournal.Entry> entries = journal.iterator();
+		assertThat(entries.next().getReceiveTime(), is(1000L));
+		assertThat(entries.next().getReceiveTime(), is(2000L));
+		assertThat(entries.hasNext(), is(false));
+		assertThat(journal.getSegmentCount(), is(1));
+		journal.close();
+	}
+	
+	@Test
+	public void testSegmentsRollOverAndAreRetained() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		ByteBuffer encoding = encode(createV2Trap(LINK_DOWN, 3000));
+		for (int i = 0; i < 100; i++)
+			journal.append(encoding, source, 1000 + i);
+		
+		int segments = journal.getSegmentCount();
+		assertThat(segments > 3, is(true));
+		assertThat(count(journal.iterator()), is(100));
+		
+		// Keep only the segment being appended to and the one before it.
+		journal.setRetention(2L * SMALL_SEGMENT, Long.MAX_VALUE);
+		assertThat(journal.getSegmentCount(), is(2));
+		assertThat(folder.getRoot().listFiles().length, is(2));
+		
+		Iterator<SnmpTrapJournal.Entry> entries = journal.iterator();
+		assertThat(entries.next().getReceiveTime() > 1000L, is(true));
+		journal.close();
+	}
+	
+	@Test
+	public void testNextSegmentCreatedAhead() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		ByteBuffer encoding = encode(createV2Trap(LINK_DOWN, 3000));
+		for (int i = 0; i < 20; i++)
+			journal.append(encoding, source, 1000 + i);
+		
+		// More than half the segment is used, so the next one is created but not yet appended to.
+		journal.syncIfDue();
+		assertThat(journal.getSegmentCount(), is(1));
+		assertThat(folder.getRoot().listFiles().length, is(2));
+		
+		for (int i = 20; i < 40; i++)
+			journal.append(encoding, source, 1000 + i);
+		
+		assertThat(journal.getSegmentCount(), is(2));
+		assertThat(count(journal.iterator()), is(40));
+		journal.close();
+		
+		journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		assertThat(count(journal.iterator()), is(40));
+		journal.close();
+	}
+	
+	@Test
+	public void testUnusedNextSegmentDeletedOnClose() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		ByteBuffer encoding = encode(createV2Trap(LINK_DOWN, 3000));
+		for (int i = 0; i < 20; i++)
+			journal.append(encoding, source, 1000 + i);
+		
+		journal.syncIfDue();
+		journal.close();
+		assertThat(folder.getRoot().listFiles().length, is(1));
+	}
+	
+	@Test
+	public void testAgeRetention() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		ByteBuffer encoding = encode(createV2Trap(LINK_DOWN, 3000));
+		
+		// Entries from long ago fill the first segments; the last is still being appended to.
+		long longAgo = System.currentTimeMillis() - 24 * 60 * 60 * 1000L;
+		for (int i = 0; i < 60; i++)
+			journal.append(encoding, source, longAgo);
+		
+		journal.setRetention(Long.MAX_VALUE, 60 * 60 * 1000L);
+		assertThat(journal.getSegmentCount(), is(1));
+		journal.close();
+	}
+	
+	@Test
+	public void testAgeRetentionWithoutNewSegments() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		ByteBuffer encoding = encode(createV2Trap(LINK_DOWN, 3000));
+		journal.setSyncPolicy(1, 0);
+		journal.setRetention(Long.MAX_VALUE, 200);
+		
+		for (int i = 0; i < 60; i++)
+			journal.append(encoding, source, System.currentTimeMillis());
+		
+		assertThat(journal.getSegmentCount() > 1, is(true));
+		
+		// No segment is started while the receiver is quiet, but the old ones still age out.
+		Thread.sleep(400);
+		journal.syncIfDue();
+		assertThat(journal.getSegmentCount(), is(1));
+		journal.close();
+	}
+	
+	@Test
+	public void testTornEntryEndsSegment() throws Exception
+	{
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		journal.append(encode(createV2Trap(LINK_DOWN, 0)), source, 1000);
+		journal.append(encode(createV2Trap(LINK_DOWN, 10)), source, 2000);
+		journal.append(encode(createV2Trap(LINK_DOWN, 20)), source, 3000);
+		journal.close();
+		
+		// Damage the message of the second entry, as a crash could with its pages half written.
+		File segment = folder.getRoot().listFiles()[0];
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try
+		{
+			file.seek(8);
+			long second = 8 + 8 + file.readInt();
+			file.seek(second + 8 + 20);
+			int damaged = file.read() ^ 0xFF;
+			file.seek(second + 8 + 20);
+			file.write(damaged);
+		}
+		finally
+		{
+			file.close();
+		}
+		
+		journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		Iterator<SnmpTrapJournal.Entry> entries = journal.iterator();
+		assertThat(entries.next().getReceiveTime(), is(1000L));
+		assertThat(entries.hasNext(), is(false));
+		
+		// A new entry of the same size replaces the torn one, and the stale entry after it isn't read.
+		journal.append(encode(createV2Trap(LINK_DOWN, 10)), source, 4000);
+		journal.close();
+		
+		journal = new SnmpTrapJournal(folder.getRoot(), SMALL_SEGMENT);
+		entries = journal.iterator();
+		assertThat(entries.next().getReceiveTime(), is(1000L));
+		assertThat(entries.next().getReceiveTime(), is(4000L));
+		assertThat(entries.hasNext(), is(false));
+		journal.close();
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testSegmentTooSmall() throws Exception
+	{
+		new SnmpTrapJournal(folder.getRoot(), 1024);
+	}
+	
+	private static int count(Iterator<SnmpTrapJournal.Entry> entries)
+	{
+		int count = 0;
+		while (entries.hasNext())
+		{
+			entries.next();
+			count++;
+		}
+		
+		return count;
+	}
+	
+	private static ByteBuffer encode(SnmpMessage message)
+	{
+		return ByteBuffer.wrap(message.encode());
+	}
+	
+	private static SnmpMessage createV1Trap() throws Exception
+	{
+		SnmpV1TrapPDU pdu = new SnmpV1TrapPDU(new SnmpObjectIdentifier("1.3.6.1.4.1.9"), new SnmpIpAddress("10.0.0.1"), 
+				GenericTrapType.LinkDown, 0, new SnmpTimeTicks(100));
+		return new SnmpMessage(SnmpVersion.SNMPv1, "public", pdu);
+	}
+	
+	private static SnmpMessage createV2Trap(String trapOid, int padding) throws Exception
+	{
+		SnmpSequence varList = new SnmpVarBindList();
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier("1.3.6.1.2.1.1.1.0"), new SnmpOctetString(new byte[padding])));
+		return new SnmpMessage(SnmpVersion.SNMPv2, "public", 
+				new SnmpV2TrapPDU(new SnmpTimeTicks(100), new SnmpObjectIdentifier(trapOid), varList));
+	}
+}
@@ -0,0 +1,356 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import snmp.datatypes.SnmpIpAddress;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.SnmpOctetString;
+import snmp.datatypes.SnmpTimeTicks;
+import snmp.datatypes.sequence.SnmpMessage;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.datatypes.sequence.SnmpVariablePair;
+import snmp.datatypes.sequence.pdu.SnmpPDU;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU.GenericTrapType;
+import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
+
+public class SnmpTrapReceiverTests
+{
+	private static final String LINK_DOWN = "1.3.6.1.6.3.1.1.5.3";
+	
+	private DatagramSocket sender;
+	private SnmpTrapReceiver receiver;
+	private StringWriter errors;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Before
+	public void setUp() throws Exception
+	{
+		sender = new DatagramSocket();
+		errors = new StringWriter();
+	}
+	
+	@After
+	public void tearDown() throws Exception
+	{
+		sender.close();
+		if (receiver != null)
+			receiver.close();
+	}
+	
+	@Test
+	public void testDispatchOnReceivingThread() throws Exception
+	{
+		receiver = createReceiver(0, 0);
+		checkDispatch();
+	}
+	
+	@Test
+	public void testDispatchOnWorkers() throws Exception
+	{
+		receiver = createReceiver(2, 100);
+		checkDispatch();
+	}
+	
+	@Test
+	public void testDropWhenQueueIsFull() throws Exception
+	{
+		receiver = createReceiver(1, 2);
+		
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<SnmpV2TrapPDU> traps = new Vector<SnmpV2TrapPDU>();
+		receiver.addV2TrapListener(new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				traps.add(trapPDU);
+				entered.countDown();
+				try
+				{
+					release.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		receiver.startReceiving();
+		
+		// The first trap holds up the only worker, two more fill the queue, and the rest are dropped.
+		sendV2Trap(LINK_DOWN);
+		assertThat(entered.await(5, TimeUnit.SECONDS), is(true));
+		for (int i = 0; i < 5; i++)
+			sendV2Trap(LINK_DOWN);
+		
+		waitForReceivedCount(6);
+		assertThat(receiver.getDroppedCount(), is(3L));
+		assertThat(receiver.getQueueDepth(), is(2));
+		
+		release.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (traps.size() < 3 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		
+		assertThat(traps.size(), is(3));
+		assertThat(receiver.getQueueDepth(), is(0));
+	}
+	
+	@Test
+	public void testRepeatedTrapsAreHeldBack() throws Exception
+	{
+		receiver = createReceiver(2, 100);
+		receiver.setDeduplicator(new SnmpTrapDeduplicator(200, 100));
+		
+		final CountDownLatch reported = new CountDownLatch(1);
+		final List<Integer> counts = new Vector<Integer>();
+		receiver.getDeduplicator().addRepeatListener(new SnmpTrapRepeatListener()
+		{
+			public void processRepeatedTrap(InetAddress source, SnmpPDU trapPDU, int count)
+			{
+				counts.add(count);
+				reported.countDown();
+			}
+		});
+		
+		final List<SnmpV2TrapPDU> traps = new Vector<SnmpV2TrapPDU>();
+		receiver.addV2TrapListener(new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				traps.add(trapPDU);
+			}
+		});
+		receiver.startReceiving();
+		
+		for (int i = 0; i < 5; i++)
+			sendV2Trap(LINK_DOWN);
+		
+		// The repeats are reported by the receiving thread once the trap has been quiet for a window.
+		assertThat(reported.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(counts.toString(), is("[5]"));
+		assertThat(traps.size(), is(1));
+		assertThat(receiver.getDeduplicator().getSuppressedCount(), is(4L));
+	}
+	
+	@Test
+	public void testReceivedTrapsAreJournalled() throws Exception
+	{
+		receiver = createReceiver(1, 10);
+		SnmpTrapJournal journal = new SnmpTrapJournal(folder.getRoot(), 80000);
+		receiver.setJournal(journal);
+		receiver.startReceiving();
+		
+		sendV1Trap();
+		sendV2Trap(LINK_DOWN);
+		waitForReceivedCount(2);
+		
+		final List<String> traps = new Vector<String>();
+		journal.replay(0, new SnmpV1TrapListener()
+		{
+			public void processv1Trap(SnmpV1TrapPDU trapPDU)
+			{
+				traps.add("v1 " + trapPDU.getEnterpriseOID());
+			}
+		}, 
+		new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				traps.add("v2 " + trapPDU.getSNMPTrapOID());
+			}
+		});
+		
+		assertThat(traps.toString(), is("[v1 1.3.6.1.4.1.9, v2 " + LINK_DOWN + "]"));
+		assertThat(journal.iterator().next().getSource().getPort(), is(sender.getLocalPort()));
+		
+		receiver.close();
+		journal.close();
+	}
+	
+	@Test
+	public void testTrapsRoutedByRule() throws Exception
+	{
+		receiver = createReceiver(0, 0);
+		
+		final CountDownLatch received = new CountDownLatch(1);
+		final List<String> traps = new Vector<String>();
+		SnmpTrapRule linkDown = new SnmpTrapRule("link down");
+		linkDown.setSnmpTrapOID(new SnmpObjectIdentifier(LINK_DOWN));
+		linkDown.setCommunity("public");
+		linkDown.addV2TrapListener(new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				traps.add(trapPDU.getSNMPTrapOID().toString());
+				received.countDown();
+			}
+		});
+		
+		SnmpTrapRouter router = new SnmpTrapRouter();
+		router.addRule(linkDown);
+		receiver.setRouter(router);
+		receiver.startReceiving();
+		
+		// Only the trap matching the rule reaches its listener.
+		sendV2Trap("1.3.6.1.6.3.1.1.5.4");
+		sendV1Trap();
+		sendV2Trap(LINK_DOWN);
+		
+		assertThat(received.await(5, TimeUnit.SECONDS), is(true));
+		waitForReceivedCount(3);
+		assertThat(traps.toString(), is("[" + LINK_DOWN + "]"));
+		assertThat(errors.toString(), is(""));
+	}
+	
+	@Test
+	public void testLargeTrapIsNotTruncated() throws Exception
+	{
+		receiver = createReceiver(1, 10);
+		
+		final CountDownLatch received = new CountDownLatch(1);
+		final List<SnmpV2TrapPDU> traps = new Vector<SnmpV2TrapPDU>();
+		receiver.addV2TrapListener(new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				traps.add(trapPDU);
+				received.countDown();
+			}
+		});
+		receiver.startReceiving();
+		
+		byte[] text = new byte[3000];
+		Arrays.fill(text, (byte)'x');
+		SnmpSequence varList = new SnmpVarBindList();
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier("1.3.6.1.2.1.1.1.0"), new SnmpOctetString(text)));
+		send(new SnmpMessage(SnmpVersion.SNMPv2, "public", 
+				new SnmpV2TrapPDU(new SnmpTimeTicks(100), new SnmpObjectIdentifier(LINK_DOWN), varList)));
+		
+		assertThat(received.await(5, TimeUnit.SECONDS), is(true));
+		SnmpSequence pair = (SnmpSequence)traps.get(0).getVarBindList().getSNMPObjectAt(2);
+		assertThat((byte[])pair.getSNMPObjectAt(1).getValue(), is(text));
+	}
+	
+	@Test
+	public void testSocketReceiveBuffer() throws Exception
+	{
+		receiver = createReceiver(0, 0);
+		
+		// The operating system may grant less or more than asked for, but never nothing.
+		receiver.setSocketReceiveBufferSize(65536);
+		assertThat(receiver.getSocketReceiveBufferSize() > 0, is(true));
+	}
+	
+	private void checkDispatch() throws Exception
+	{
+		final CountDownLatch received = new CountDownLatch(2);
+		final List<String> traps = new Vector<String>();
+		
+		receiver.addV1TrapListener(new SnmpV1TrapListener()
+		{
+			public void processv1Trap(SnmpV1TrapPDU trapPDU)
+			{
+				traps.add("v1 " + trapPDU.getEnterpriseOID() + " " + trapPDU.getGenericTrap());
+				received.countDown();
+			}
+		});
+		receiver.addV2TrapListener(new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				traps.add("v2 " + trapPDU.getSNMPTrapOID());
+				received.countDown();
+			}
+		});
+		receiver.startReceiving();
+		
+		sendV1Trap();
+		sendV2Trap(LINK_DOWN);
+		
+		assertThat(received.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(traps.contains("v1 1.3.6.1.4.1.9 LinkDown"), is(true));
+		assertThat(traps.contains("v2 " + LINK_DOWN), is(true));
+		assertThat(receiver.getReceivedCount(), is(2L));
+		assertThat(receiver.getDroppedCount(), is(0L));
+		assertThat(errors.toString(), is(""));
+	}
+	
+	private SnmpTrapReceiver createReceiver(int workerCount, int queueCapacity) throws Exception
+	{
+		InetSocketAddress localAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+		return new SnmpTrapReceiver(localAddress, workerCount, queueCapacity, new PrintWriter(errors));
+	}
+	
+	private void waitForReceivedCount(long count) throws InterruptedException
+	{
+		long deadline = System.currentTimeMillis() + 5000;
+		while (receiver.getReceivedCount() < count && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		
+		assertThat(receiver.getReceivedCount(), is(count));
+	}
+	
+	private void sendV1Trap() throws Exception
+	{
+		SnmpV1TrapPDU pdu = new SnmpV1TrapPDU(new SnmpObjectIdentifier("1.3.6.1.4.1.9"), new SnmpIpAddress("10.0.0.1"), 
+				GenericTrapType.LinkDown, 0, new SnmpTimeTicks(100));
+		send(new SnmpMessage(SnmpVersion.SNMPv1, "public", pdu));
+	}
+	
+	private void sendV2Trap(String trapOid) throws Exception
+	{
+		SnmpV2TrapPDU pdu = new SnmpV2TrapPDU(new SnmpObjectIdentifier(trapOid), new SnmpTimeTicks(100));
+		send(new SnmpMessage(SnmpVersion.SNMPv2, "public", pdu));
+	}
+	
+	private void send(SnmpMessage message) throws Exception
+	{
+		byte[] encoding = message.encode();
+		sender.send(new DatagramPacket(encoding, encoding.length, receiver.getLocalAddress()));
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * SNMP Package
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ *
+ */
+
+package snmp;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import snmp.datatypes.SnmpInteger;
+import snmp.datatypes.SnmpIpAddress;
+import snmp.datatypes.SnmpObjectIdentifier;
+import snmp.datatypes.SnmpTimeTicks;
+import snmp.datatypes.sequence.SnmpSequence;
+import snmp.datatypes.sequence.SnmpVarBindList;
+import snmp.datatypes.sequence.SnmpVariablePair;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU;
+import snmp.datatypes.sequence.pdu.SnmpV1TrapPDU.GenericTrapType;
+import snmp.datatypes.sequence.pdu.SnmpV2TrapPDU;
+
+public class SnmpTrapRouterTests
+{
+	private static final String LINK_DOWN = "1.3.6.1.6.3.1.1.5.3";
+	private static final String IF_INDEX = "1.3.6.1.2.1.2.2.1.1";
+	
+	@Test
+	public void testV1Conditions() throws Exception
+	{
+		SnmpTrapRouter router = new SnmpTrapRouter();
+		router.addRule(createV1Rule("cisco", "1.3.6.1.4.1.9", null, null));
+		router.addRule(createV1Rule("cisco link down", "1.3.6.1.4.1.9", GenericTrapType.LinkDown, null));
+		router.addRule(createV1Rule("cisco specific 7", "1.3.6.1.4.1.9.1", GenericTrapType.Enterprise, 7));
+		router.addRule(createV1Rule("juniper", "1.3.6.1.4.1.2636", null, null));
+		
+		SnmpTrapRule v2Only = new SnmpTrapRule("v2 link down");
+		v2Only.setSnmpTrapOID(new SnmpObjectIdentifier(LINK_DOWN));
+		router.addRule(v2Only);
+		
+		InetAddress source = InetAddress.getByName("10.0.0.1");
+		assertThat(router.match(source, "public", createV1Trap("1.3.6.1.4.1.9.1", GenericTrapType.LinkDown, 0)).toString(), 
+				is("[cisco, cisco link down]"));
+		assertThat(router.match(source, "public", createV1Trap("1.3.6.1.4.1.9.1.5", GenericTrapType.Enterprise, 7)).toString(), 
+				is("[cisco, cisco specific 7]"));
+		assertThat(router.match(source, "public", createV1Trap("1.3.6.1.4.1.9.1", GenericTrapType.Enterprise, 8)).toString(), 
+				is("[cisco]"));
+		assertThat(router.match(source, "public", createV1Trap("1.3.6.1.4.1.90", GenericTrapType.LinkDown, 0)).toString(), 
+				is("[]"));
+	}
+	
+	@Test
+	public void testV2Conditions() throws Exception
+	{
+		SnmpTrapRouter router = new SnmpTrapRouter();
+		
+		SnmpTrapRule standard = new SnmpTrapRule("standard traps");
+		standard.setSnmpTrapOID(new SnmpObjectIdentifier("1.3.6.1.6.3.1.1.5"));
+		router.addRule(standard);
+		
+		SnmpTrapRule interfaces = new SnmpTrapRule("interface traps");
+		interfaces.addVarBindPrefix(new SnmpObjectIdentifier(IF_INDEX));
+		router.addRule(interfaces);
+		
+		SnmpTrapRule everything = new SnmpTrapRule("everything");
+		router.addRule(everything);
+		
+		router.addRule(createV1Rule("v1 only", null, GenericTrapType.LinkDown, null));
+		
+		InetAddress source = InetAddress.getByName("10.0.0.1");
+		assertThat(router.match(source, "public", createV2Trap(LINK_DOWN, IF_INDEX + ".3")).toString(), 
+				is("[standard traps, interface traps, everything]"));
+		assertThat(router.match(source, "public", createV2Trap("1.3.6.1.4.1.9.0.1", "1.3.6.1.2.1.1.5.0")).toString(), 
+				is("[everything]"));
+		
+		// The sysUpTime and snmpTrapOID bindings aren't matched against variable binding OIDs.
+		SnmpTrapRule upTime = new SnmpTrapRule("sysUpTime");
+		upTime.addVarBindPrefix(new SnmpObjectIdentifier("1.3.6.1.2.1.1.3"));
+		router.addRule(upTime);
+		assertThat(router.match(source, "public", createV2Trap(LINK_DOWN, IF_INDEX + ".3")).contains(upTime), is(false));
+	}
+	
+	@Test
+	public void testSourceAndCommunity() throws Exception
+	{
+		SnmpTrapRouter router = new SnmpTrapRouter();
+		
+		SnmpTrapRule lab = new SnmpTrapRule("lab");
+		lab.addSourceRange(InetAddress.getByName("10.1.0.0"), 16);
+		lab.addSource(InetAddress.getByName("192.168.5.5"));
+		router.addRule(lab);
+		
+		SnmpTrapRule labPrivate = new SnmpTrapRule("lab private");
+		labPrivate.addSourceRange(InetAddress.getByName("10.1.2.0"), 24);
+		labPrivate.setCommunity("private");
+		router.addRule(labPrivate);
+		
+		SnmpTrapRule v6 = new SnmpTrapRule("v6");
+		v6.addSourceRange(InetAddress.getByName("2001:db8::"), 32);
+		router.addRule(v6);
+		
+		SnmpV2TrapPDU trap = createV2Trap(LINK_DOWN, IF_INDEX + ".1");
+		assertThat(router.match(InetAddress.getByName("10.1.2.3"), "private", trap).toString(), is("[lab, lab private]"));
+		assertThat(router.match(InetAddress.getByName("10.1.2.3"), "public", trap).toString(), is("[lab]"));
+		assertThat(router.match(InetAddress.getByName("10.2.2.3"), "private", trap).toString(), is("[]"));
+		assertThat(router.match(InetAddress.getByName("192.168.5.5"), "public", trap).toString(), is("[lab]"));
+		assertThat(router.match(InetAddress.getByName("192.168.5.6"), "public", trap).toString(), is("[]"));
+		assertThat(router.match(InetAddress.getByName("2001:db8::1"), "public", trap).toString(), is("[v6]"));
+		assertThat(router.match(InetAddress.getByName("2001:db9::1"), "public", trap).toString(), is("[]"));
+		
+		router.removeRule(lab);
+		assertThat(router.match(InetAddress.getByName("10.1.2.3"), "private", trap).toString(), is("[lab private]"));
+	}
+	
+	@Test
+	public void testRouteToSubscribedListeners() throws Exception
+	{
+		final List<String> received = new ArrayList<String>();
+		SnmpV2TrapListener shared = new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				received.add("shared " + trapPDU.getSNMPTrapOID());
+			}
+		};
+		SnmpV2TrapListener other = new SnmpV2TrapListener()
+		{
+			public void processv2Trap(SnmpV2TrapPDU trapPDU)
+			{
+				received.add("other " + trapPDU.getSNMPTrapOID());
+			}
+		};
+		
+		SnmpTrapRule linkDown = new SnmpTrapRule("link down");
+		linkDown.setSnmpTrapOID(new SnmpObjectIdentifier(LINK_DOWN));
+		linkDown.addV2TrapListener(shared);
+		
+		SnmpTrapRule interfaces = new SnmpTrapRule("interfaces");
+		interfaces.addVarBindPrefix(new SnmpObjectIdentifier(IF_INDEX));
+		interfaces.addV2TrapListener(shared);
+		interfaces.addV2TrapListener(other);
+		
+		SnmpTrapRouter router = new SnmpTrapRouter();
+		router.addRule(linkDown);
+		router.addRule(interfaces);
+		
+		InetAddress source = InetAddress.getByName("10.0.0.1");
+		assertThat(router.route(source, "public", createV2Trap(LINK_DOWN, IF_INDEX + ".1")), is(true));
+		assertThat(router.route(source, "public", createV2Trap("1.3.6.1.6.3.1.1.5.1", "1.3.6.1.2.1.1.5.0")), is(false));
+		
+		// The shared listener receives the trap once although it matched both rules.
+		assertThat(received.toString(), is("[shared " + LINK_DOWN + ", other " + LINK_DOWN + "]"));
+	}
+	
+	@Test
+	public void testCompiledMatchesCheckingEachRule() throws Exception
+	{
+		Random random = new Random(42);
+		String[] enterprises = { "1.3.6.1.4.1.9", "1.3.6.1.4.1.9.1", "1.3.6.1.4.1.9.1.2", "1.3.6.1.4.1.2636", "1.3.6.1.4.1" };
+		String[] trapOIDs = { "1.3.6.1.6.3.1.1.5", LINK_DOWN, "1.3.6.1.6.3.1.1.5.4", "1.3.6.1.4.1.9.0", "1.3.6.1.4.1.9.0.1" };
+		String[] varBinds = { IF_INDEX, IF_INDEX + ".2", "1.3.6.1.2.1.1", "1.3.6.1.2.1.1.5.0" };
+		String[] communities = { "public", "private" };
+		
+		// Hundreds of rules with random conditions.
+		List<SnmpTrapRule> rules = new ArrayList<SnmpTrapRule>();
+		SnmpTrapRouter router = new SnmpTrapRouter();
+		for (int i = 0; i < 400; i++)
+		{
+			SnmpTrapRule rule = new SnmpTrapRule("rule " + i);
+			int kind = random.nextInt(3);
+			if (kind == 1)
+			{
+				if (random.nextBoolean())
+					rule.setEnterprise(new SnmpObjectIdentifier(enterprises[random.nextInt(enterprises.length)]));
+				if (random.nextInt(3) == 0)
+					rule.setGenericTrap(GenericTrapType.getInstance(random.nextInt(7)));
+				if (random.nextInt(3) == 0)
+					rule.setSpecificTrap(random.nextInt(3));
+			}
+			else if (kind == 2)
+			{
+				rule.setSnmpTrapOID(new SnmpObjectIdentifier(trapOIDs[random.nextInt(trapOIDs.length)]));
+			}
+			
+			if (random.nextInt(3) == 0)
+				rule.setCommunity(communities[random.nextInt(communities.length)]);
+			for (int j = random.nextInt(3); j > 0; j--)
+				rule.addSourceRange(InetAddress.getByAddress(new byte[] { 10, (byte)random.nextInt(4), (byte)random.nextInt(4), 0 }), 8 + random.nextInt(20));
+			for (int j = random.nextInt(3); j > 0; j--)
+				rule.addVarBindPrefix(new SnmpObjectIdentifier(varBinds[random.nextInt(varBinds.length)]));
+			
+			rules.add(rule);
+			router.addRule(rule);
+		}
+		
+		for (int i = 0; i < 500; i++)
+		{
+			InetAddress source = InetAddress.getByAddress(new byte[] { 10, (byte)random.nextInt(4), (byte)random.nextInt(4), (byte)random.nextInt(4) });
+			String community = communities[random.nextInt(communities.length)];
+			String varBind = varBinds[random.nextInt(varBinds.length)] + ".1";
+			
+			SnmpV1TrapPDU v1Trap = createV1Trap(enterprises[random.nextInt(enterprises.length)] + "." + random.nextInt(3), 
+					GenericTrapType.getInstance(random.nextInt(7)), random.nextInt(3), varBind);
+			List<SnmpTrapRule> expected = new ArrayList<SnmpTrapRule>();
+			for (SnmpTrapRule rule : rules)
+			{
+				if (rule.matches(source, community, v1Trap))
+					expected.add(rule);
+			}
+			assertThat(router.match(source, community, v1Trap), is(expected));
+			
+			SnmpV2TrapPDU v2Trap = createV2Trap(trapOIDs[random.nextInt(trapOIDs.length)] + "." + random.nextInt(3), varBind);
+			expected.clear();
+			for (SnmpTrapRule rule : rules)
+			{
+				if (rule.matches(source, community, v2Trap))
+					expected.add(rule);
+			}
+			assertThat(router.match(source, community, v2Trap), is(expected));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testRuleCannotMixVersions() throws Exception
+	{
+		SnmpTrapRule rule = new SnmpTrapRule("mixed");
+		rule.setGenericTrap(GenericTrapType.LinkDown);
+		rule.setSnmpTrapOID(new SnmpObjectIdentifier(LINK_DOWN));
+	}
+	
+	private static SnmpTrapRule createV1Rule(String name, String enterprise, GenericTrapType genericTrap, Integer specificTrap) 
+		throws Exception
+	{
+		SnmpTrapRule rule = new SnmpTrapRule(name);
+		if (enterprise != null)
+			rule.setEnterprise(new SnmpObjectIdentifier(enterprise));
+		rule.setGenericTrap(genericTrap);
+		rule.setSpecificTrap(specificTrap);
+		return rule;
+	}
+	
+	private static SnmpV1TrapPDU createV1Trap(String enterprise, GenericTrapType genericTrap, int specificTrap) throws Exception
+	{
+		return createV1Trap(enterprise, genericTrap, specificTrap, IF_INDEX + ".1");
+	}
+	
+	private static SnmpV1TrapPDU createV1Trap(String enterprise, GenericTrapType genericTrap, int specificTrap, String varBind) 
+		throws Exception
+	{
+		SnmpSequence varList = new SnmpVarBindList();
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier(varBind), new SnmpInteger(1)));
+		return new SnmpV1TrapPDU(new SnmpObjectIdentifier(enterprise), new SnmpIpAddress("10.0.0.1"), 
+				genericTrap, specificTrap, new SnmpTimeTicks(100), varList);
+	}
+	
+	private static SnmpV2TrapPDU createV2Trap(String trapOid, String varBind) throws Exception
+	{
+		SnmpSequence varList = new SnmpVarBindList();
+		varList.addSNMPObject(new SnmpVariablePair(new SnmpObjectIdentifier(varBind), new SnmpInteger(1)));
+		return new SnmpV2TrapPDU(new SnmpTimeTicks(100), new SnmpObjectIdentifier(trapOid), varList);
+	}
+}
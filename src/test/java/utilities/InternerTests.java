@@ -0,0 +1,67 @@
+/**
+ * MIB Navigator
+ *
+ * Copyright (C) 2010, Matt Hamilton <matthamilton@live.com>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ */
+
+package utilities;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class InternerTests
+{
+	@Test
+	public void testEqualValuesShareInstance()
+	{
+		Interner<String> interner = new Interner<String>(10);
+		String first = new String("value");
+		String second = new String("value");
+		
+		assertThat(interner.intern(first) == first, is(true));
+		assertThat(interner.intern(second) == first, is(true));
+		assertThat(interner.get(new String("value")) == first, is(true));
+		assertThat(interner.get("other") == null, is(true));
+		assertThat(interner.size(), is(1));
+	}
+	
+	@Test
+	public void testFullPoolReturnsValues()
+	{
+		Interner<String> interner = new Interner<String>(2);
+		interner.intern("a");
+		interner.intern("b");
+		assertThat(interner.isFull(), is(true));
+		
+		String extra = new String("c");
+		assertThat(interner.intern(extra) == extra, is(true));
+		assertThat(interner.get("c") == null, is(true));
+		assertThat(interner.size(), is(2));
+		
+		// Values already pooled are still found.
+		assertThat(interner.intern(new String("a")) == interner.get("a"), is(true));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeLimit()
+	{
+		new Interner<String>(-1);
+	}
+}